@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+
+/**
+ * Utility methods shared by the benchmarks, to create the (unsecured) SOAP messages of a
+ * given size, and to convert them between their serialized and DOM forms.
+ */
+public final class BenchmarkUtils {
+
+    public static final String PAYLOAD_NS = "http://ws.apache.org/wss4j/benchmark";
+
+    public static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER =
+        new ThreadLocal<DocumentBuilder>() {
+            @Override
+            protected DocumentBuilder initialValue() {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setNamespaceAware(true);
+                try {
+                    return factory.newDocumentBuilder();
+                } catch (ParserConfigurationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private BenchmarkUtils() {
+        // complete
+    }
+
+    /**
+     * Create a SOAP 1.1 message, where the SOAP Body contains the given number of elements
+     * @param elements the number of elements in the SOAP Body
+     * @return the serialized message
+     */
+    public static byte[] createMessage(int elements) {
+        StringBuilder sb = new StringBuilder(128 + elements * 96);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        sb.append("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">");
+        sb.append("<soapenv:Header/>");
+        sb.append("<soapenv:Body>");
+        sb.append("<ns1:order xmlns:ns1=\"").append(PAYLOAD_NS).append("\">");
+        for (int i = 0; i < elements; i++) {
+            sb.append("<ns1:item id=\"").append(i).append("\">");
+            sb.append("<ns1:name>Item ").append(i).append("</ns1:name>");
+            sb.append("<ns1:quantity>").append(i % 10 + 1).append("</ns1:quantity>");
+            sb.append("</ns1:item>");
+        }
+        sb.append("</ns1:order>");
+        sb.append("</soapenv:Body>");
+        sb.append("</soapenv:Envelope>");
+        try {
+            return sb.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parse the given message into a (namespace-aware) DOM Document
+     */
+    public static Document parse(byte[] message) throws Exception {
+        return DOCUMENT_BUILDER.get().parse(new ByteArrayInputStream(message));
+    }
+
+    /**
+     * Serialize the given DOM Document
+     */
+    public static byte[] serialize(Document document) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+        transformer.transform(new DOMSource(document), new StreamResult(outputStream));
+        return outputStream.toByteArray();
+    }
+
+}
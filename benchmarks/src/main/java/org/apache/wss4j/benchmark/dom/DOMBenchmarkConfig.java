@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark.dom;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerConstants;
+
+/**
+ * The configuration shared by the DOM benchmarks. All actions use the "wss40" key of the
+ * DOM test-suite, both as the sender and as the recipient of a message.
+ */
+final class DOMBenchmarkConfig {
+
+    static final String USER = "wss40";
+    static final String CRYPTO_PROPERTIES = "wss40.properties";
+
+    private DOMBenchmarkConfig() {
+        // complete
+    }
+
+    /**
+     * Map the name of a benchmarked action to the WSHandler action String
+     */
+    static String getHandlerAction(String action) {
+        if ("Timestamp".equals(action)) {
+            return WSHandlerConstants.TIMESTAMP;
+        } else if ("UsernameToken".equals(action)) {
+            return WSHandlerConstants.USERNAME_TOKEN;
+        } else if ("Signature".equals(action)) {
+            return WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE;
+        } else if ("Encrypt".equals(action)) {
+            return WSHandlerConstants.ENCRYPT;
+        } else if ("SignatureEncrypt".equals(action)) {
+            return WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE
+                + " " + WSHandlerConstants.ENCRYPT;
+        }
+        throw new IllegalArgumentException("Unknown action: " + action);
+    }
+
+    /**
+     * Create a WSHandler configured with the sender options for all the benchmarked actions
+     */
+    static CustomHandler createHandler() {
+        CustomHandler handler = new CustomHandler();
+        handler.setOption(WSHandlerConstants.PW_CALLBACK_REF, new KeystoreCallbackHandler());
+        handler.setOption(WSHandlerConstants.PASSWORD_TYPE, WSConstants.PW_DIGEST);
+        handler.setOption(WSHandlerConstants.SIG_PROP_FILE, CRYPTO_PROPERTIES);
+        handler.setOption(WSHandlerConstants.SIG_KEY_ID, "DirectReference");
+        handler.setOption(
+            WSHandlerConstants.SIGNATURE_PARTS,
+            "{}{" + WSConstants.WSU_NS + "}Timestamp;"
+            + "{}{http://schemas.xmlsoap.org/soap/envelope/}Body;"
+        );
+        handler.setOption(WSHandlerConstants.ENC_PROP_FILE, CRYPTO_PROPERTIES);
+        handler.setOption(WSHandlerConstants.ENCRYPTION_USER, USER);
+        handler.setOption(WSHandlerConstants.ENC_KEY_ID, "DirectReference");
+        return handler;
+    }
+
+    /**
+     * Create the RequestData to secure an outbound message
+     */
+    static RequestData createSenderRequestData(WSSConfig wssConfig) {
+        RequestData reqData = new RequestData();
+        reqData.setWssConfig(wssConfig);
+        reqData.setUsername(USER);
+        Map<String, Object> messageContext = new HashMap<String, Object>();
+        messageContext.put("password", "security");
+        reqData.setMsgContext(messageContext);
+        return reqData;
+    }
+
+    /**
+     * Create the RequestData to process an inbound message
+     */
+    static RequestData createReceiverRequestData(WSSConfig wssConfig, Crypto crypto) {
+        RequestData reqData = new RequestData();
+        reqData.setWssConfig(wssConfig);
+        reqData.setCallbackHandler(new KeystoreCallbackHandler());
+        reqData.setSigVerCrypto(crypto);
+        reqData.setDecCrypto(crypto);
+        return reqData;
+    }
+
+    static Crypto loadCrypto() throws WSSecurityException {
+        return CryptoFactory.getInstance(CRYPTO_PROPERTIES);
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark.dom;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.benchmark.BenchmarkUtils;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.SecurityPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Benchmarks WSSecurityEngine.processSecurityHeader, including the parsing of the secured
+ * message, as the processing modifies the DOM tree (e.g. on decryption). The secured
+ * message is created via the WSHandler for each iteration, so that the Timestamp does not
+ * expire during a run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DOMInboundBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int messageSize;
+
+    @Param({"Timestamp", "UsernameToken", "Signature", "Encrypt", "SignatureEncrypt"})
+    private String action;
+
+    private CustomHandler handler;
+    private SecurityPlan securityPlan;
+    private WSSConfig wssConfig;
+    private WSSecurityEngine secEngine;
+    private Crypto crypto;
+    private byte[] securedMessage;
+
+    @Setup
+    public void setUp() throws Exception {
+        WSSConfig.init();
+        handler = DOMBenchmarkConfig.createHandler();
+        securityPlan =
+            handler.compileSecurityPlan(DOMBenchmarkConfig.getHandlerAction(action), null);
+        wssConfig = WSSConfig.getNewInstance();
+        secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+        crypto = DOMBenchmarkConfig.loadCrypto();
+    }
+
+    @Setup(Level.Iteration)
+    public void secureMessage() throws Exception {
+        Document doc = BenchmarkUtils.parse(BenchmarkUtils.createMessage(messageSize));
+        RequestData reqData = DOMBenchmarkConfig.createSenderRequestData(wssConfig);
+        handler.send(doc, reqData, securityPlan, true);
+        securedMessage = BenchmarkUtils.serialize(doc);
+    }
+
+    @Benchmark
+    public List<WSSecurityEngineResult> processSecurityHeader() throws Exception {
+        Document doc = BenchmarkUtils.parse(securedMessage);
+        RequestData reqData = DOMBenchmarkConfig.createReceiverRequestData(wssConfig, crypto);
+        return secEngine.processSecurityHeader(doc, null, reqData);
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.benchmark.BenchmarkUtils;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.SecurityPlan;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Benchmarks the WSHandler sender actions, i.e. securing an outbound (parsed) message via
+ * the DOM API. The "handlerActions" benchmark decodes the handler options for each message,
+ * and the "securityPlan" benchmark uses a SecurityPlan compiled once from the same options.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DOMOutboundBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int messageSize;
+
+    @Param({"Timestamp", "UsernameToken", "Signature", "Encrypt", "SignatureEncrypt"})
+    private String action;
+
+    private byte[] message;
+    private CustomHandler handler;
+    private WSSConfig wssConfig;
+    private int doAction;
+    private List<Integer> actions;
+    private SecurityPlan securityPlan;
+
+    @Setup
+    public void setUp() throws Exception {
+        WSSConfig.init();
+        message = BenchmarkUtils.createMessage(messageSize);
+        handler = DOMBenchmarkConfig.createHandler();
+        wssConfig = WSSConfig.getNewInstance();
+
+        String handlerAction = DOMBenchmarkConfig.getHandlerAction(action);
+        actions = new ArrayList<Integer>();
+        doAction = WSSecurityUtil.decodeAction(handlerAction, actions);
+        securityPlan = handler.compileSecurityPlan(handlerAction, null);
+    }
+
+    @Benchmark
+    public Document handlerActions() throws Exception {
+        Document doc = BenchmarkUtils.parse(message);
+        RequestData reqData = DOMBenchmarkConfig.createSenderRequestData(wssConfig);
+        handler.send(doAction, doc, reqData, actions, true);
+        return doc;
+    }
+
+    @Benchmark
+    public Document securityPlan() throws Exception {
+        Document doc = BenchmarkUtils.parse(message);
+        RequestData reqData = DOMBenchmarkConfig.createSenderRequestData(wssConfig);
+        handler.send(doc, reqData, securityPlan, true);
+        return doc;
+    }
+
+}
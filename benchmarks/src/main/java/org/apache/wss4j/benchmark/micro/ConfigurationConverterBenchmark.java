@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark.micro;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.stax.ConfigurationConverter;
+import org.apache.wss4j.stax.WSSec;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.test.CallbackHandlerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the conversion of a WSHandler-style configuration Map to WSSSecurityProperties
+ * via ConfigurationConverter, followed by the validation of the resulting properties, which
+ * is done by integrations (e.g. CXF) that configure the streaming engine via a Map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationConverterBenchmark {
+
+    private Map<String, Object> outboundConfig;
+    private Map<String, Object> inboundConfig;
+
+    @Setup
+    public void setUp() {
+        outboundConfig = new HashMap<String, Object>();
+        outboundConfig.put(
+            ConfigurationConstants.ACTION,
+            ConfigurationConstants.TIMESTAMP + " " + ConfigurationConstants.SIGNATURE + " "
+            + ConfigurationConstants.ENCRYPT
+        );
+        outboundConfig.put(ConfigurationConstants.SIGNATURE_USER, "transmitter");
+        outboundConfig.put(ConfigurationConstants.ENCRYPTION_USER, "receiver");
+        outboundConfig.put(ConfigurationConstants.PW_CALLBACK_REF, new CallbackHandlerImpl());
+        outboundConfig.put(ConfigurationConstants.SIG_PROP_FILE, "transmitter-crypto.properties");
+        outboundConfig.put(ConfigurationConstants.ENC_PROP_FILE, "transmitter-crypto.properties");
+        outboundConfig.put(ConfigurationConstants.SIG_KEY_ID, "DirectReference");
+        outboundConfig.put(
+            ConfigurationConstants.SIGNATURE_PARTS,
+            "{}{http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd}Timestamp;"
+            + "{}{http://schemas.xmlsoap.org/soap/envelope/}Body;"
+        );
+        outboundConfig.put(
+            ConfigurationConstants.ENCRYPTION_PARTS,
+            "{Content}{http://schemas.xmlsoap.org/soap/envelope/}Body;"
+        );
+        outboundConfig.put(ConfigurationConstants.TTL_TIMESTAMP, "300");
+
+        inboundConfig = new HashMap<String, Object>();
+        inboundConfig.put(ConfigurationConstants.PW_CALLBACK_REF, new CallbackHandlerImpl());
+        inboundConfig.put(ConfigurationConstants.SIG_VER_PROP_FILE, "receiver-crypto.properties");
+        inboundConfig.put(ConfigurationConstants.DEC_PROP_FILE, "receiver-crypto.properties");
+        inboundConfig.put(ConfigurationConstants.ENABLE_NONCE_CACHE, "false");
+    }
+
+    @Benchmark
+    public WSSSecurityProperties convertOutbound() throws Exception {
+        WSSSecurityProperties properties = ConfigurationConverter.convert(outboundConfig);
+        return WSSec.validateAndApplyDefaultsToOutboundSecurityProperties(properties);
+    }
+
+    @Benchmark
+    public WSSSecurityProperties convertInbound() throws Exception {
+        WSSSecurityProperties properties = ConfigurationConverter.convert(inboundConfig);
+        return WSSec.validateAndApplyDefaultsToInboundSecurityProperties(properties);
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark.micro;
+
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.stax.test.CallbackHandlerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the certificate and private key lookups of Merlin, with and without the
+ * private key cache. A single Merlin instance is shared by all threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MerlinBenchmark {
+
+    @Param({"false", "true"})
+    private boolean privateKeyCaching;
+
+    private Merlin crypto;
+    private CallbackHandler callbackHandler;
+    private X509Certificate[] certificates;
+    private CryptoType aliasType;
+    private CryptoType issuerSerialType;
+    private CryptoType thumbprintType;
+
+    @Setup
+    public void setUp() throws Exception {
+        crypto = (Merlin)CryptoFactory.getInstance("transmitter-crypto.properties");
+        crypto.setPrivateKeyCaching(privateKeyCaching);
+        callbackHandler = new CallbackHandlerImpl();
+
+        aliasType = new CryptoType(CryptoType.TYPE.ALIAS);
+        aliasType.setAlias("transmitter");
+        certificates = crypto.getX509Certificates(aliasType);
+
+        X509Certificate certificate = certificates[0];
+        issuerSerialType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        issuerSerialType.setIssuerSerial(
+            certificate.getIssuerX500Principal().getName(), certificate.getSerialNumber()
+        );
+        thumbprintType = new CryptoType(CryptoType.TYPE.THUMBPRINT_SHA1);
+        thumbprintType.setBytes(MessageDigest.getInstance("SHA-1").digest(certificate.getEncoded()));
+    }
+
+    @Benchmark
+    public X509Certificate[] certificateByAlias() throws Exception {
+        return crypto.getX509Certificates(aliasType);
+    }
+
+    @Benchmark
+    public X509Certificate[] certificateByIssuerSerial() throws Exception {
+        return crypto.getX509Certificates(issuerSerialType);
+    }
+
+    @Benchmark
+    public X509Certificate[] certificateByThumbprint() throws Exception {
+        return crypto.getX509Certificates(thumbprintType);
+    }
+
+    @Benchmark
+    public String x509Identifier() throws Exception {
+        return crypto.getX509Identifier(certificates[0]);
+    }
+
+    @Benchmark
+    public PrivateKey privateKeyByAlias() throws Exception {
+        return crypto.getPrivateKey("transmitter", "default");
+    }
+
+    @Benchmark
+    public PrivateKey privateKeyByCertificate() throws Exception {
+        return crypto.getPrivateKey(certificates[0], callbackHandler);
+    }
+
+    @Benchmark
+    public boolean verifyTrust() throws Exception {
+        return crypto.verifyTrust(certificates, false);
+    }
+
+}
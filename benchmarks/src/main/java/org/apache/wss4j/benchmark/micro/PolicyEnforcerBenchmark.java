@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark.micro;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.common.crypto.WSProviderConfig;
+import org.apache.wss4j.policy.stax.PolicyEnforcer;
+import org.apache.wss4j.policy.stax.PolicyEnforcerFactory;
+import org.apache.wss4j.stax.WSSec;
+import org.apache.wss4j.stax.impl.securityToken.X509SecurityTokenImpl;
+import org.apache.wss4j.stax.securityEvent.OperationSecurityEvent;
+import org.apache.wss4j.stax.securityEvent.X509TokenSecurityEvent;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.config.Init;
+import org.apache.xml.security.stax.impl.util.IDGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the WS-SecurityPolicy enforcement of the streaming engine: the parsing of the
+ * policies of a WSDL into a PolicyEnforcerFactory, the creation of a PolicyEnforcer (which
+ * happens for each message), and the enforcement of a SupportingTokens policy for the
+ * SecurityEvents of a message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolicyEnforcerBenchmark {
+
+    private URL wsdl;
+    private PolicyEnforcerFactory policyEnforcerFactory;
+    private X509SecurityTokenImpl x509SecurityToken;
+
+    @Setup
+    public void setUp() throws Exception {
+        WSProviderConfig.init();
+        Init.init(WSSec.class.getClassLoader().getResource("wss/wss-config.xml").toURI());
+
+        wsdl = this.getClass().getClassLoader().getResource("wsdl/supporting-token.wsdl");
+        policyEnforcerFactory = PolicyEnforcerFactory.newInstance(wsdl);
+
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        InputStream inputStream =
+            this.getClass().getClassLoader().getResourceAsStream("transmitter.jks");
+        try {
+            keyStore.load(inputStream, "default".toCharArray());
+        } finally {
+            inputStream.close();
+        }
+        x509SecurityToken =
+            new X509SecurityTokenImpl(
+                WSSecurityTokenConstants.X509V3Token, null, null, null,
+                IDGenerator.generateID(null),
+                WSSecurityTokenConstants.KeyIdentifier_ThumbprintIdentifier, null, true) {
+                @Override
+                protected String getAlias() throws XMLSecurityException {
+                    return "transmitter";
+                }
+            };
+        x509SecurityToken.setPublicKey(keyStore.getCertificate("transmitter").getPublicKey());
+        Certificate[] certificates = keyStore.getCertificateChain("transmitter");
+        X509Certificate[] x509Certificates = new X509Certificate[certificates.length];
+        for (int i = 0; i < certificates.length; i++) {
+            x509Certificates[i] = (X509Certificate)certificates[i];
+        }
+        x509SecurityToken.setX509Certificates(x509Certificates);
+        x509SecurityToken.addTokenUsage(WSSecurityTokenConstants.TokenUsage_SupportingTokens);
+    }
+
+    @Benchmark
+    public PolicyEnforcerFactory newPolicyEnforcerFactory() throws Exception {
+        return PolicyEnforcerFactory.newInstance(wsdl);
+    }
+
+    @Benchmark
+    public PolicyEnforcer newPolicyEnforcer() throws Exception {
+        return policyEnforcerFactory.newPolicyEnforcer("", false);
+    }
+
+    @Benchmark
+    public PolicyEnforcer enforceSupportingToken() throws Exception {
+        PolicyEnforcer policyEnforcer = policyEnforcerFactory.newPolicyEnforcer("", false);
+
+        X509TokenSecurityEvent x509TokenSecurityEvent = new X509TokenSecurityEvent();
+        x509TokenSecurityEvent.setSecurityToken(x509SecurityToken);
+        policyEnforcer.registerSecurityEvent(x509TokenSecurityEvent);
+
+        OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+        operationSecurityEvent.setOperation(new QName("definitions"));
+        policyEnforcer.registerSecurityEvent(operationSecurityEvent);
+
+        policyEnforcer.doFinal();
+        return policyEnforcer;
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark.micro;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.cache.EHCacheReplayCache;
+import org.apache.wss4j.common.cache.EHCacheReplayCacheFactory;
+import org.apache.wss4j.common.cache.MemoryReplayCacheFactory;
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the ReplayCache implementations. The cache is shared by all threads, as the
+ * nonce and timestamp replay caches are shared by all messages of an endpoint. The
+ * "checkAndAdd" benchmark mirrors the use of a ReplayCache by the validators, i.e. a
+ * lookup followed by the addition of a new identifier.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayCacheBenchmark {
+
+    private static final int PREPOPULATED_ENTRIES = 10000;
+
+    @Param({"memory", "ehcache"})
+    private String implementation;
+
+    private ReplayCache replayCache;
+    private String[] cachedIdentifiers;
+
+    /**
+     * The per-thread state used to create unique identifiers
+     */
+    @State(Scope.Thread)
+    public static class Identifiers {
+        private final String prefix = UUID.randomUUID().toString();
+        private long counter;
+        private int index;
+
+        String next() {
+            return prefix + counter++;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        String key = "wss4j-benchmark-" + UUID.randomUUID().toString();
+        if ("ehcache".equals(implementation)) {
+            replayCache = new EHCacheReplayCacheFactory().newReplayCache(key, null);
+        } else {
+            replayCache = new MemoryReplayCacheFactory().newReplayCache(key, null);
+        }
+
+        cachedIdentifiers = new String[PREPOPULATED_ENTRIES];
+        for (int i = 0; i < PREPOPULATED_ENTRIES; i++) {
+            cachedIdentifiers[i] = UUID.randomUUID().toString();
+            replayCache.add(cachedIdentifiers[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (replayCache instanceof EHCacheReplayCache) {
+            ((EHCacheReplayCache)replayCache).close();
+        }
+    }
+
+    @Benchmark
+    public void add(Identifiers identifiers) {
+        replayCache.add(identifiers.next());
+    }
+
+    @Benchmark
+    public boolean containsHit(Identifiers identifiers) {
+        identifiers.index = (identifiers.index + 1) % PREPOPULATED_ENTRIES;
+        return replayCache.contains(cachedIdentifiers[identifiers.index]);
+    }
+
+    @Benchmark
+    public boolean containsMiss(Identifiers identifiers) {
+        return replayCache.contains(identifiers.next());
+    }
+
+    @Benchmark
+    public boolean checkAndAdd(Identifiers identifiers) {
+        String identifier = identifiers.next();
+        if (replayCache.contains(identifier)) {
+            return false;
+        }
+        replayCache.add(identifier);
+        return true;
+    }
+
+}
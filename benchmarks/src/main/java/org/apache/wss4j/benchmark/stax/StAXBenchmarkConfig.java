@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark.stax;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.saml.builder.SAML1Constants;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.wss4j.stax.test.CallbackHandlerImpl;
+import org.apache.wss4j.stax.test.saml.SAMLCallbackHandlerImpl;
+
+/**
+ * The configuration shared by the StAX benchmarks. Messages are secured with the
+ * "transmitter" key for the "receiver", as in the StAX test-suite.
+ */
+final class StAXBenchmarkConfig {
+
+    private static final char[] PASSWORD = "default".toCharArray();
+
+    private StAXBenchmarkConfig() {
+        // complete
+    }
+
+    /**
+     * Create the outbound security properties for the given benchmarked action
+     * @param action the name of the benchmarked action
+     * @param secret the secret of the SecurityContextToken
+     */
+    static WSSSecurityProperties createOutboundProperties(String action, byte[] secret)
+        throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.setCallbackHandler(new CallbackHandlerImpl(secret));
+
+        if ("Timestamp".equals(action)) {
+            securityProperties.setOutAction(new WSSConstants.Action[]{WSSConstants.TIMESTAMP});
+        } else if ("UsernameToken".equals(action)) {
+            securityProperties.setOutAction(
+                new WSSConstants.Action[]{WSSConstants.USERNAMETOKEN}
+            );
+            securityProperties.setTokenUser("transmitter");
+        } else if ("Signature".equals(action)) {
+            securityProperties.setOutAction(
+                new WSSConstants.Action[]{WSSConstants.TIMESTAMP, WSSConstants.SIGNATURE}
+            );
+            configureSignature(securityProperties);
+        } else if ("Encrypt".equals(action)) {
+            securityProperties.setOutAction(new WSSConstants.Action[]{WSSConstants.ENCRYPT});
+            configureEncryption(securityProperties);
+        } else if ("SignatureEncrypt".equals(action)) {
+            securityProperties.setOutAction(
+                new WSSConstants.Action[]{
+                    WSSConstants.TIMESTAMP, WSSConstants.SIGNATURE, WSSConstants.ENCRYPT
+                }
+            );
+            configureSignature(securityProperties);
+            configureEncryption(securityProperties);
+        } else if ("SAMLHolderOfKey".equals(action)) {
+            securityProperties.setOutAction(
+                new WSSConstants.Action[]{WSSConstants.SAML_TOKEN_SIGNED}
+            );
+            SAMLCallbackHandlerImpl samlCallbackHandler = new SAMLCallbackHandlerImpl();
+            samlCallbackHandler.setStatement(SAMLCallbackHandlerImpl.Statement.AUTHN);
+            samlCallbackHandler.setConfirmationMethod(SAML1Constants.CONF_HOLDER_KEY);
+            samlCallbackHandler.setIssuer("www.example.com");
+            samlCallbackHandler.setCerts(getTransmitterCertificates());
+            securityProperties.setSamlCallbackHandler(samlCallbackHandler);
+            configureSignature(securityProperties);
+        } else if ("DerivedKey".equals(action)) {
+            securityProperties.setOutAction(
+                new WSSConstants.Action[]{WSSConstants.SIGNATURE_WITH_DERIVED_KEY}
+            );
+            securityProperties.setSignatureAlgorithm("http://www.w3.org/2000/09/xmldsig#hmac-sha1");
+            securityProperties.setDerivedKeyTokenReference(
+                WSSConstants.DerivedKeyTokenReference.EncryptedKey
+            );
+            securityProperties.setEncryptionKeyIdentifier(
+                WSSecurityTokenConstants.KeyIdentifier_ThumbprintIdentifier
+            );
+            configureEncryption(securityProperties);
+        } else if ("SecurityContextToken".equals(action)) {
+            securityProperties.setOutAction(
+                new WSSConstants.Action[]{WSSConstants.ENCRYPT_WITH_DERIVED_KEY}
+            );
+            securityProperties.setDerivedKeyTokenReference(
+                WSSConstants.DerivedKeyTokenReference.SecurityContextToken
+            );
+            configureEncryption(securityProperties);
+        } else {
+            throw new IllegalArgumentException("Unknown action: " + action);
+        }
+        return securityProperties;
+    }
+
+    /**
+     * Create the inbound security properties, which accept all of the benchmarked actions.
+     * The replay caches are disabled, as the same message is processed repeatedly.
+     * @param secret the secret of the SecurityContextToken
+     */
+    static WSSSecurityProperties createInboundProperties(byte[] secret) throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.setCallbackHandler(new CallbackHandlerImpl(secret));
+        securityProperties.loadSignatureVerificationKeystore(getResource("receiver.jks"), PASSWORD);
+        securityProperties.loadDecryptionKeystore(getResource("receiver.jks"), PASSWORD);
+        securityProperties.setEnableTimestampReplayCache(false);
+        securityProperties.setEnableNonceReplayCache(false);
+        return securityProperties;
+    }
+
+    private static void configureSignature(WSSSecurityProperties securityProperties)
+        throws Exception {
+        securityProperties.loadSignatureKeyStore(getResource("transmitter.jks"), PASSWORD);
+        securityProperties.setSignatureUser("transmitter");
+    }
+
+    private static void configureEncryption(WSSSecurityProperties securityProperties)
+        throws Exception {
+        securityProperties.loadEncryptionKeystore(getResource("transmitter.jks"), PASSWORD);
+        securityProperties.setEncryptionUser("receiver");
+        securityProperties.setEncryptionSymAlgorithm("http://www.w3.org/2001/04/xmlenc#aes128-cbc");
+    }
+
+    private static X509Certificate[] getTransmitterCertificates() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        InputStream inputStream = getResource("transmitter.jks").openStream();
+        try {
+            keyStore.load(inputStream, PASSWORD);
+        } finally {
+            inputStream.close();
+        }
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(keyStore);
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("transmitter");
+        return crypto.getX509Certificates(cryptoType);
+    }
+
+    private static URL getResource(String name) {
+        return StAXBenchmarkConfig.class.getClassLoader().getResource(name);
+    }
+}
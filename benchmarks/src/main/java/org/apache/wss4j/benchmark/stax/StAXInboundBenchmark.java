@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmark.stax;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.wss4j.benchmark.BenchmarkUtils;
+import org.apache.wss4j.stax.WSSec;
+import org.apache.wss4j.stax.ext.InboundWSSec;
+import org.apache.wss4j.stax.ext.OutboundWSSec;
+import org.apache.wss4j.stax.test.utils.XmlReaderToWriter;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks InboundWSSec, i.e. processing a secured message while it is read from the
+ * secured XMLStreamReader. A single InboundWSSec instance is shared by all threads. The
+ * secured message is created via OutboundWSSec for each iteration, so that the Timestamp
+ * does not expire during a run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StAXInboundBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int messageSize;
+
+    @Param({
+        "Timestamp", "UsernameToken", "Signature", "Encrypt", "SignatureEncrypt",
+        "SAMLHolderOfKey", "DerivedKey", "SecurityContextToken"
+    })
+    private String action;
+
+    private OutboundWSSec outboundWSSec;
+    private InboundWSSec inboundWSSec;
+    private volatile byte[] securedMessage;
+
+    @Setup
+    public void setUp() throws Exception {
+        byte[] secret = new byte[16];
+        outboundWSSec =
+            WSSec.getOutboundWSSec(StAXBenchmarkConfig.createOutboundProperties(action, secret));
+        inboundWSSec = WSSec.getInboundWSSec(StAXBenchmarkConfig.createInboundProperties(secret));
+    }
+
+    @Setup(Level.Iteration)
+    public void secureMessage() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XMLStreamWriter xmlStreamWriter =
+            outboundWSSec.processOutMessage(outputStream, "UTF-8", new ArrayList<SecurityEvent>());
+        XMLStreamReader xmlStreamReader =
+            BenchmarkUtils.XML_INPUT_FACTORY.createXMLStreamReader(
+                new ByteArrayInputStream(BenchmarkUtils.createMessage(messageSize))
+            );
+        XmlReaderToWriter.writeAll(xmlStreamReader, xmlStreamWriter);
+        xmlStreamWriter.close();
+        xmlStreamReader.close();
+        securedMessage = outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public int processInMessage() throws Exception {
+        XMLStreamReader xmlStreamReader =
+            inboundWSSec.processInMessage(
+                BenchmarkUtils.XML_INPUT_FACTORY.createXMLStreamReader(
+                    new ByteArrayInputStream(securedMessage)
+                )
+            );
+        int events = 0;
+        try {
+            while (xmlStreamReader.hasNext()) {
+                xmlStreamReader.next();
+                events++;
+            }
+        } finally {
+            xmlStreamReader.close();
+        }
+        return events;
+    }
+
+}
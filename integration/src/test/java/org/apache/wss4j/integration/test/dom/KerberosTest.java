@@ -25,6 +25,8 @@ import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSSecurityEngineResult;
 import org.apache.wss4j.dom.common.SOAPUtil;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosClientCredentialCache;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialCache;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.message.WSSecEncrypt;
 import org.apache.wss4j.dom.message.WSSecHeader;
@@ -45,9 +47,11 @@ import org.w3c.dom.Document;
 import java.io.File;
 import java.io.IOException;
 import java.security.Principal;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.crypto.SecretKey;
+import javax.security.auth.Subject;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.PasswordCallback;
@@ -153,6 +157,138 @@ public class KerberosTest {
         Assert.assertTrue(principal.getName().contains("alice"));
     }
     
+    /**
+     * Process two service tickets with a KerberosTokenValidator that shares the login of the
+     * service via a KerberosServiceCredentialCache.
+     */
+    @Test
+    public void testKerberosServiceCredentialCache() throws Exception {
+        if (!kerberosServerStarted) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        CallbackHandler callbackHandler = new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                PasswordCallback passwordCallback = (PasswordCallback)callbacks[0];
+                if (passwordCallback.getPrompt().contains("alice")) {
+                    passwordCallback.setPassword("alice".toCharArray());
+                } else if (passwordCallback.getPrompt().contains("bob")) {
+                    passwordCallback.setPassword("bob".toCharArray());
+                }
+            }
+        };
+        
+        // Configure the Validator
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        KerberosTokenValidator validator = new KerberosTokenValidator();
+        validator.setContextName("bob");
+        validator.setServiceName("bob@service.ws.apache.org");
+        validator.setServiceCredentialCache(new KerberosServiceCredentialCache());
+        wssConfig.setValidator(WSSecurityEngine.BINARY_TOKEN, validator);
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+
+        Subject subject = null;
+        for (int i = 0; i < 2; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+
+            WSSecHeader secHeader = new WSSecHeader();
+            secHeader.insertSecurityHeader(doc);
+            
+            KerberosSecurity bst = new KerberosSecurity(doc);
+            bst.retrieveServiceTicket("alice", callbackHandler, "bob@service.ws.apache.org");
+            WSSecurityUtil.prependChildElement(secHeader.getSecurityHeader(), bst.getElement());
+            
+            List<WSSecurityEngineResult> results =
+                secEngine.processSecurityHeader(doc, null, callbackHandler, null);
+            WSSecurityEngineResult actionResult =
+                WSSecurityUtil.fetchActionResult(results, WSConstants.BST);
+            
+            Principal principal = (Principal)actionResult.get(WSSecurityEngineResult.TAG_PRINCIPAL);
+            Assert.assertTrue(principal instanceof KerberosPrincipal);
+            Assert.assertTrue(principal.getName().contains("alice"));
+            
+            Subject resultSubject = (Subject)actionResult.get(WSSecurityEngineResult.TAG_SUBJECT);
+            Assert.assertNotNull(resultSubject);
+            // The keys of the cached service login are not exposed
+            Assert.assertTrue(resultSubject.isReadOnly());
+            Assert.assertTrue(resultSubject.getPrivateCredentials().isEmpty());
+            if (subject != null) {
+                // The service did not log in again
+                Assert.assertSame(resultSubject, subject);
+            }
+            subject = resultSubject;
+        }
+    }
+    
+    /**
+     * Create two tokens from a service ticket cached by a KerberosClientCredentialCache, and
+     * process them.
+     */
+    @Test
+    public void testKerberosClientCredentialCache() throws Exception {
+        if (!kerberosServerStarted) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        CallbackHandler callbackHandler = new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                PasswordCallback passwordCallback = (PasswordCallback)callbacks[0];
+                if (passwordCallback.getPrompt().contains("alice")) {
+                    passwordCallback.setPassword("alice".toCharArray());
+                } else if (passwordCallback.getPrompt().contains("bob")) {
+                    passwordCallback.setPassword("bob".toCharArray());
+                }
+            }
+        };
+        KerberosClientCredentialCache clientCredentialCache = new KerberosClientCredentialCache();
+        
+        // Configure the Validator
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        KerberosTokenValidator validator = new KerberosTokenValidator();
+        validator.setContextName("bob");
+        validator.setServiceName("bob@service.ws.apache.org");
+        wssConfig.setValidator(WSSecurityEngine.BINARY_TOKEN, validator);
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+
+        byte[] previousToken = null;
+        SecretKey previousKey = null;
+        for (int i = 0; i < 2; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+
+            WSSecHeader secHeader = new WSSecHeader();
+            secHeader.insertSecurityHeader(doc);
+            
+            KerberosSecurity bst = new KerberosSecurity(doc);
+            bst.retrieveServiceTicket(
+                "alice", callbackHandler, "bob@service.ws.apache.org", clientCredentialCache
+            );
+            WSSecurityUtil.prependChildElement(secHeader.getSecurityHeader(), bst.getElement());
+            
+            List<WSSecurityEngineResult> results =
+                secEngine.processSecurityHeader(doc, null, callbackHandler, null);
+            WSSecurityEngineResult actionResult =
+                WSSecurityUtil.fetchActionResult(results, WSConstants.BST);
+            
+            Principal principal = (Principal)actionResult.get(WSSecurityEngineResult.TAG_PRINCIPAL);
+            Assert.assertTrue(principal instanceof KerberosPrincipal);
+            Assert.assertTrue(principal.getName().contains("alice"));
+            
+            if (previousToken != null) {
+                // A new authenticator for the same service ticket
+                Assert.assertFalse(Arrays.equals(bst.getToken(), previousToken));
+                Assert.assertEquals(bst.getSecretKey(), previousKey);
+            }
+            previousToken = bst.getToken();
+            previousKey = bst.getSecretKey();
+        }
+    }
+    
     /**
      * Get and validate a SPNEGO token.
      */
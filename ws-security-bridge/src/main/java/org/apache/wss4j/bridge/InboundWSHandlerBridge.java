@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.bridge;
+
+import java.io.InputStream;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.stax.WSSec;
+import org.apache.wss4j.stax.ext.InboundWSSec;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityEvent.UsernameTokenSecurityEvent;
+import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
+import org.apache.wss4j.stax.securityToken.SubjectAndPrincipalSecurityToken;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.securityEvent.AbstractSecuredElementSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
+import org.apache.xml.security.stax.securityToken.SecurityToken;
+
+/**
+ * This class processes an inbound message with the streaming (StAX) security engine, and
+ * returns the result in the form used by the DOM WSHandler API, i.e. a WSHandlerResult
+ * containing a list of WSSecurityEngineResult objects. It allows code written against the
+ * DOM results (e.g. to check the signing certificate or the signed parts) to use the
+ * streaming engine, without having to parse the message into a DOM tree.
+ *
+ * The following SecurityEvents are mapped to results:
+ *  - A Timestamp to a WSConstants.TS result.
+ *  - A UsernameToken to a WSConstants.UT result (or WSConstants.UT_NOPASSWORD if no
+ *    password was sent), with the principal of the token.
+ *  - The signed elements and parts to a WSConstants.SIGN result per signing token, with the
+ *    certificates, public key and principal of the token, and the data references.
+ *  - The encrypted elements and parts to a WSConstants.ENCR result per encryption token,
+ *    with the data references.
+ * Element and part events that are not actually signed (resp. encrypted) are ignored.
+ *
+ * This class lives in a separate module, so that the streaming module does not depend on
+ * the DOM module.
+ * As with the DOM WSSecurityEngine, the last processed result is first in the list.
+ *
+ * Only the SecurityEvents which are mapped to results are built by the streaming engine.
+ *
+ * Note that the data references do not contain the protected Element, as no DOM tree is
+ * available. The name and the XPath expression of the element are set instead.
+ */
+public class InboundWSHandlerBridge {
+
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    static {
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    // The SecurityEvents which are mapped to results
+    private static final Set<SecurityEventConstants.Event> REQUIRED_SECURITY_EVENTS =
+        Collections.unmodifiableSet(
+            new HashSet<SecurityEventConstants.Event>(
+                Arrays.asList(
+                    WSSecurityEventConstants.Timestamp, WSSecurityEventConstants.UsernameToken,
+                    WSSecurityEventConstants.SignedElement, WSSecurityEventConstants.SignedPart,
+                    WSSecurityEventConstants.EncryptedElement, WSSecurityEventConstants.EncryptedPart,
+                    WSSecurityEventConstants.ContentEncrypted
+                )
+            )
+        );
+
+    private final InboundWSSec inboundWSSec;
+    private final String actor;
+
+    public InboundWSHandlerBridge(WSSSecurityProperties securityProperties)
+        throws WSSecurityException {
+        this.inboundWSSec = WSSec.getInboundWSSec(securityProperties);
+        this.actor = securityProperties.getActor();
+    }
+
+    /**
+     * Process the message read from the given InputStream, which is consumed in full.
+     * @param inputStream The message
+     * @return the results of the security processing
+     */
+    public WSHandlerResult processInMessage(InputStream inputStream)
+        throws XMLStreamException, XMLSecurityException {
+        return processInMessage(xmlInputFactory.createXMLStreamReader(inputStream));
+    }
+
+    /**
+     * Process the message read from the given XMLStreamReader, which is consumed in full.
+     * @param xmlStreamReader The original XMLStreamReader
+     * @return the results of the security processing
+     */
+    public WSHandlerResult processInMessage(XMLStreamReader xmlStreamReader)
+        throws XMLStreamException, XMLSecurityException {
+        List<SecurityEvent> securityEvents = new ArrayList<SecurityEvent>();
+        XMLStreamReader securedReader = processInMessage(xmlStreamReader, securityEvents);
+        try {
+            while (securedReader.hasNext()) {
+                securedReader.next();
+            }
+        } finally {
+            securedReader.close();
+        }
+        return toHandlerResult(securityEvents);
+    }
+
+    /**
+     * Process the message read from the given XMLStreamReader. The returned XMLStreamReader
+     * must be consumed by the caller, after which the collected SecurityEvents can be
+     * converted via toHandlerResult.
+     * @param xmlStreamReader The original XMLStreamReader
+     * @param securityEvents A list to which the received SecurityEvents are added
+     * @return A new XMLStreamReader which does transparently the security processing.
+     */
+    public XMLStreamReader processInMessage(
+        XMLStreamReader xmlStreamReader, final List<SecurityEvent> securityEvents
+    ) throws XMLStreamException, WSSecurityException {
+        SecurityEventListener listener = new SecurityEventListener() {
+            @Override
+            public void registerSecurityEvent(SecurityEvent securityEvent)
+                throws XMLSecurityException {
+                securityEvents.add(securityEvent);
+            }
+        };
+        return inboundWSSec.processInMessage(
+            xmlStreamReader, null, listener, REQUIRED_SECURITY_EVENTS
+        );
+    }
+
+    /**
+     * Convert the given SecurityEvents to a WSHandlerResult for the configured actor
+     */
+    public WSHandlerResult toHandlerResult(List<SecurityEvent> securityEvents)
+        throws XMLSecurityException {
+        return new WSHandlerResult(actor, convert(securityEvents));
+    }
+
+    /**
+     * Convert the given SecurityEvents to a list of WSSecurityEngineResult objects
+     */
+    public static List<WSSecurityEngineResult> convert(List<SecurityEvent> securityEvents)
+        throws XMLSecurityException {
+        List<WSSecurityEngineResult> results = new ArrayList<WSSecurityEngineResult>();
+        Map<SecurityToken, List<WSDataRef>> signedRefs =
+            new LinkedHashMap<SecurityToken, List<WSDataRef>>();
+        Map<SecurityToken, List<WSDataRef>> encryptedRefs =
+            new LinkedHashMap<SecurityToken, List<WSDataRef>>();
+
+        for (SecurityEvent securityEvent : securityEvents) {
+            SecurityEventConstants.Event event = securityEvent.getSecurityEventType();
+            if (WSSecurityEventConstants.Timestamp == event) {
+                results.add(0, new WSSecurityEngineResult(WSConstants.TS));
+            } else if (WSSecurityEventConstants.UsernameToken == event) {
+                results.add(0, convertUsernameToken((UsernameTokenSecurityEvent)securityEvent));
+            } else if (WSSecurityEventConstants.SignedElement == event
+                || WSSecurityEventConstants.SignedPart == event) {
+                // Unsigned parts are reported as well, e.g. by the policy enforcer
+                AbstractSecuredElementSecurityEvent securedEvent =
+                    (AbstractSecuredElementSecurityEvent)securityEvent;
+                if (securedEvent.isSigned()) {
+                    addDataRef(securedEvent, false, signedRefs);
+                }
+            } else if (WSSecurityEventConstants.EncryptedElement == event
+                || WSSecurityEventConstants.EncryptedPart == event
+                || WSSecurityEventConstants.ContentEncrypted == event) {
+                // Unencrypted parts are reported as well, e.g. by the policy enforcer
+                AbstractSecuredElementSecurityEvent securedEvent =
+                    (AbstractSecuredElementSecurityEvent)securityEvent;
+                if (securedEvent.isEncrypted()) {
+                    addDataRef(
+                        securedEvent, WSSecurityEventConstants.ContentEncrypted == event,
+                        encryptedRefs
+                    );
+                }
+            }
+        }
+
+        for (Map.Entry<SecurityToken, List<WSDataRef>> entry : encryptedRefs.entrySet()) {
+            results.add(0, new WSSecurityEngineResult(WSConstants.ENCR, entry.getValue()));
+        }
+        for (Map.Entry<SecurityToken, List<WSDataRef>> entry : signedRefs.entrySet()) {
+            results.add(0, convertSignature(entry.getKey(), entry.getValue()));
+        }
+        return results;
+    }
+
+    private static WSSecurityEngineResult convertUsernameToken(
+        UsernameTokenSecurityEvent securityEvent
+    ) throws XMLSecurityException {
+        SubjectAndPrincipalSecurityToken token = securityEvent.getSecurityToken();
+        int action = WSConstants.UT;
+        if (securityEvent.getUsernameTokenPasswordType()
+            == WSSConstants.UsernameTokenPasswordType.PASSWORD_NONE) {
+            action = WSConstants.UT_NOPASSWORD;
+        }
+        WSSecurityEngineResult result = new WSSecurityEngineResult(action);
+        if (token != null) {
+            result.put(WSSecurityEngineResult.TAG_PRINCIPAL, token.getPrincipal());
+            result.put(WSSecurityEngineResult.TAG_ID, token.getId());
+        }
+        return result;
+    }
+
+    private static WSSecurityEngineResult convertSignature(
+        SecurityToken token, List<WSDataRef> dataRefs
+    ) throws XMLSecurityException {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.SIGN, dataRefs);
+        if (token == null) {
+            return result;
+        }
+        X509Certificate[] certs = token.getX509Certificates();
+        if (certs != null && certs.length > 0) {
+            result.put(WSSecurityEngineResult.TAG_X509_CERTIFICATE, certs[0]);
+            result.put(WSSecurityEngineResult.TAG_X509_CERTIFICATES, certs);
+        }
+        result.put(WSSecurityEngineResult.TAG_PUBLIC_KEY, token.getPublicKey());
+        if (token instanceof SubjectAndPrincipalSecurityToken) {
+            result.put(
+                WSSecurityEngineResult.TAG_PRINCIPAL,
+                ((SubjectAndPrincipalSecurityToken)token).getPrincipal()
+            );
+        }
+        return result;
+    }
+
+    private static void addDataRef(
+        AbstractSecuredElementSecurityEvent securityEvent,
+        boolean content,
+        Map<SecurityToken, List<WSDataRef>> dataRefs
+    ) {
+        List<QName> elementPath = securityEvent.getElementPath();
+        if (elementPath == null || elementPath.isEmpty()) {
+            return;
+        }
+        WSDataRef dataRef = new WSDataRef();
+        dataRef.setName(elementPath.get(elementPath.size() - 1));
+        dataRef.setContent(content);
+        StringBuilder xpath = new StringBuilder();
+        for (QName name : elementPath) {
+            xpath.append('/');
+            if (name.getPrefix() != null && name.getPrefix().length() > 0) {
+                xpath.append(name.getPrefix()).append(':');
+            }
+            xpath.append(name.getLocalPart());
+        }
+        dataRef.setXpath(xpath.toString());
+
+        SecurityToken token = securityEvent.getSecurityToken();
+        List<WSDataRef> tokenRefs = dataRefs.get(token);
+        if (tokenRefs == null) {
+            tokenRefs = new ArrayList<WSDataRef>();
+            dataRefs.put(token, tokenRefs);
+        }
+        tokenRefs.add(dataRef);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.bridge;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.WSHandlerConstants;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityEvent.EncryptedPartSecurityEvent;
+import org.apache.wss4j.stax.securityEvent.SignedPartSecurityEvent;
+import org.apache.wss4j.stax.test.AbstractTestBase;
+import org.apache.wss4j.stax.test.CallbackHandlerImpl;
+import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+
+public class InboundWSHandlerBridgeTest extends AbstractTestBase {
+
+    @Test
+    public void testSignatureTimestamp() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE;
+            Properties properties = new Properties();
+            properties.setProperty(WSHandlerConstants.SIGNATURE_PARTS, "{Element}{http://schemas.xmlsoap.org/soap/envelope/}Body;");
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, properties);
+
+            javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.loadSignatureVerificationKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+            InboundWSHandlerBridge bridge = new InboundWSHandlerBridge(securityProperties);
+            WSHandlerResult handlerResult = bridge.processInMessage(new ByteArrayInputStream(baos.toByteArray()));
+
+            List<WSSecurityEngineResult> results = handlerResult.getResults();
+            Assert.assertNotNull(WSSecurityUtil.fetchActionResult(results, WSConstants.TS));
+
+            WSSecurityEngineResult signResult = WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN);
+            Assert.assertNotNull(signResult);
+            X509Certificate cert = (X509Certificate) signResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE);
+            Assert.assertNotNull(cert);
+            Assert.assertNotNull(signResult.get(WSSecurityEngineResult.TAG_PUBLIC_KEY));
+
+            @SuppressWarnings("unchecked")
+            List<WSDataRef> dataRefs = (List<WSDataRef>) signResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+            Assert.assertEquals(dataRefs.size(), 1);
+            Assert.assertEquals(dataRefs.get(0).getName(), new QName(WSConstants.URI_SOAP11_ENV, WSConstants.ELEM_BODY));
+            Assert.assertTrue(dataRefs.get(0).getXpath().endsWith(":Body"));
+        }
+    }
+
+    @Test
+    public void testUsernameToken() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.USERNAME_TOKEN;
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, new Properties());
+
+            javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+            InboundWSHandlerBridge bridge = new InboundWSHandlerBridge(securityProperties);
+            WSHandlerResult handlerResult = bridge.processInMessage(new ByteArrayInputStream(baos.toByteArray()));
+
+            WSSecurityEngineResult utResult =
+                WSSecurityUtil.fetchActionResult(handlerResult.getResults(), WSConstants.UT);
+            Assert.assertNotNull(utResult);
+            Assert.assertNotNull(utResult.get(WSSecurityEngineResult.TAG_PRINCIPAL));
+        }
+    }
+
+    @Test
+    public void testUnprotectedPartsAreIgnored() throws Exception {
+        List<QName> bodyPath = new ArrayList<QName>();
+        bodyPath.add(new QName(WSConstants.URI_SOAP11_ENV, WSConstants.ELEM_ENVELOPE));
+        bodyPath.add(new QName(WSConstants.URI_SOAP11_ENV, WSConstants.ELEM_BODY));
+
+        List<SecurityEvent> securityEvents = new ArrayList<SecurityEvent>();
+        SignedPartSecurityEvent signedPartSecurityEvent = new SignedPartSecurityEvent(null, false, null);
+        signedPartSecurityEvent.setElementPath(bodyPath);
+        securityEvents.add(signedPartSecurityEvent);
+        EncryptedPartSecurityEvent encryptedPartSecurityEvent = new EncryptedPartSecurityEvent(null, false, null);
+        encryptedPartSecurityEvent.setElementPath(bodyPath);
+        securityEvents.add(encryptedPartSecurityEvent);
+        ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
+            new ContentEncryptedElementSecurityEvent(null, false, null);
+        contentEncryptedElementSecurityEvent.setElementPath(bodyPath);
+        securityEvents.add(contentEncryptedElementSecurityEvent);
+
+        List<WSSecurityEngineResult> results = InboundWSHandlerBridge.convert(securityEvents);
+        Assert.assertNull(WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN));
+        Assert.assertNull(WSSecurityUtil.fetchActionResult(results, WSConstants.ENCR));
+
+        SignedPartSecurityEvent signedBodySecurityEvent = new SignedPartSecurityEvent(null, true, null);
+        signedBodySecurityEvent.setElementPath(bodyPath);
+        securityEvents.add(signedBodySecurityEvent);
+        results = InboundWSHandlerBridge.convert(securityEvents);
+        Assert.assertNotNull(WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN));
+        Assert.assertNull(WSSecurityUtil.fetchActionResult(results, WSConstants.ENCR));
+    }
+}
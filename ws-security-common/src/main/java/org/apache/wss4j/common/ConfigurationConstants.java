@@ -512,6 +512,16 @@ public final class ConfigurationConstants {
      */
     public static final String ENABLE_TIMESTAMP_CACHE = "ws-security.enable.timestamp.cache";
     
+    /**
+     * Whether a handler (e.g. WSHandler) reuses the CallbackHandler instances that it loads via a
+     * class name (e.g. PW_CALLBACK_CLASS) for all messages with the same ClassLoader, instead of
+     * creating a new instance per message. A CallbackHandler class must be thread-safe and must
+     * not keep any per-message state to be reused. The cached instances keep their ClassLoader
+     * reachable until the handler is discarded or its cache is cleared. The default value is
+     * "false".
+     */
+    public static final String CACHE_CALLBACK_HANDLERS = "cacheCallbackHandlers";
+    
     //
     // (Non-boolean) Configuration parameters for the actions/processors
     //
@@ -795,5 +805,48 @@ public final class ConfigurationConstants {
      */
     public static final String TIMESTAMP_CACHE_INSTANCE = "timestampCacheInstance";
     
+    /**
+     * This holds a reference to a UsernameTokenCache instance used to cache the passwords
+     * returned by the password CallbackHandler, as well as keys derived from a UsernameToken.
+     * There is no default instance, i.e. this caching is disabled unless an instance is supplied.
+     */
+    public static final String USERNAME_TOKEN_CACHE_INSTANCE = "usernameTokenCacheInstance";
+    
+    /**
+     * This holds a reference to a SessionKeyCache instance used to store the session keys
+     * transported in an EncryptedKey, so that they can be referred to in subsequent messages via
+     * an EncryptedKeySHA1 KeyIdentifier. There is no default instance, i.e. EncryptedKeySHA1
+     * references are only resolved via the CallbackHandler unless an instance is supplied.
+     */
+    public static final String SESSION_KEY_CACHE_INSTANCE = "sessionKeyCacheInstance";
+    
+    /**
+     * This holds a reference to a ReusableSessionKey instance, which allows the sender to reuse
+     * the session key for encryption for a number of messages. The first message carries the
+     * session key in an EncryptedKey, and subsequent messages refer to it via an
+     * EncryptedKeySHA1 KeyIdentifier, which requires the recipient to cache the session key
+     * (see SESSION_KEY_CACHE_INSTANCE). There is no default instance, i.e. a new session key
+     * is generated for each message unless an instance is supplied.
+     */
+    public static final String REUSABLE_SESSION_KEY_INSTANCE = "reusableSessionKeyInstance";
+    
+    /**
+     * This holds a reference to an AuthenticationResultCache instance used to cache the Subject
+     * of a successful JAAS login for a UsernameToken, keyed on the username and a salted digest
+     * of the password. There is no default instance, i.e. every UsernameToken is authenticated
+     * via the LoginContext unless an instance is supplied.
+     */
+    public static final String AUTHENTICATION_RESULT_CACHE_INSTANCE = "authenticationResultCacheInstance";
+    
+    /**
+     * This holds a reference to a SignatureVerificationCache instance used to cache successful
+     * signature verifications, keyed on a digest of the canonicalized SignedInfo, the
+     * SignatureValue and the public key. The public key operation is then skipped when the same
+     * signature is received again, while the Reference digests are still verified. There is no
+     * default instance, i.e. every signature is verified unless an instance is supplied.
+     */
+    public static final String SIGNATURE_VERIFICATION_CACHE_INSTANCE = 
+        "signatureVerificationCacheInstance";
+    
 }
 
@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import javax.security.auth.Subject;
+
+/**
+ * A cache of positive authentication results, i.e. of the Subject returned by a successful
+ * (JAAS) login with a given username and password. A result must only be returned for the same
+ * realm, username and password it was cached with. The realm identifies the login, e.g. the JAAS
+ * context name and the CallbackHandler, so that a cache shared by several validators never
+ * returns the result of a different login configuration. Failed authentications are never cached.
+ *
+ * The cached Subject is shared by all callers, so implementations must only hand out a read-only
+ * Subject.
+ */
+public interface AuthenticationResultCache {
+
+    /**
+     * Return the cached (read-only) Subject for the given realm, username and password, or null
+     * if none is cached
+     * @param realm The realm of the login
+     * @param username The username
+     * @param password The (plaintext) password
+     */
+    Subject getSubject(String realm, String username, String password);
+
+    /**
+     * Cache the Subject of a successful authentication with the given realm, username and password
+     * @param realm The realm of the login
+     * @param username The username
+     * @param password The (plaintext) password
+     * @param subject The authenticated Subject
+     */
+    void addSubject(String realm, String username, String password, Subject subject);
+
+    /**
+     * Remove the cached results of all realms for the given username, e.g. once its password
+     * was changed or its account was disabled
+     * @param username The username
+     */
+    void remove(String username);
+
+    /**
+     * Remove all cached results
+     */
+    void clear();
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The bounded map behind the simple in-memory caches. Entries are evicted in
+ * least-recently-used order once the maximum number of entries is reached, and expire after a
+ * TTL. All methods are synchronized.
+ */
+final class BoundedExpiringMap<K, V> {
+
+    /**
+     * Selects the values to remove in removeMatching
+     */
+    interface Matcher<V> {
+        boolean matches(V value);
+    }
+
+    private final long ttl;
+    private final Map<K, Entry<V>> entries;
+
+    /**
+     * @param maxEntries The maximum number of entries
+     * @param timeToLive The length of time to keep an entry in milliseconds
+     */
+    BoundedExpiringMap(int maxEntries, long timeToLive) {
+        this.ttl = timeToLive;
+        this.entries = new LRUMap<K, V>(maxEntries);
+    }
+
+    /**
+     * Get the value of the given key, or null if there is none or it has expired
+     */
+    synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expires < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, new Entry<V>(value, System.currentTimeMillis() + ttl));
+    }
+
+    synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    synchronized void removeMatching(Matcher<V> matcher) {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (matcher.matches(iterator.next().value)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expires;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private static final class LRUMap<K, V> extends LinkedHashMap<K, Entry<V>> {
+        private static final long serialVersionUID = 6040527389346174235L;
+
+        private final int maxEntries;
+
+        LRUMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
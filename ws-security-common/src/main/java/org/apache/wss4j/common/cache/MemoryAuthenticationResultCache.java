@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.security.auth.Subject;
+
+import org.apache.wss4j.common.crypto.CryptoPrimitives;
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A simple bounded in-memory AuthenticationResultCache. Entries are evicted in
+ * least-recently-used order once the maximum number of entries is reached, and expire after a
+ * TTL. The default TTL is 300 seconds and the default maximum number of entries is 1000.
+ *
+ * The password is not stored. Each entry holds a SHA-256 digest of the password and a random
+ * salt, which is generated once per cache instance. The Subject is stored as a read-only copy,
+ * so that a caller can't add principals or credentials to the Subject of the other callers.
+ */
+public class MemoryAuthenticationResultCache implements AuthenticationResultCache {
+
+    public static final long DEFAULT_TTL = 300L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(MemoryAuthenticationResultCache.class);
+
+    private final BoundedExpiringMap<String, CacheEntry> results;
+    private final byte[] salt = new byte[16];
+
+    public MemoryAuthenticationResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxEntries The maximum number of results to cache
+     * @param timeToLive The length of time to cache a result in seconds
+     */
+    public MemoryAuthenticationResultCache(int maxEntries, long timeToLive) {
+        long ttl = timeToLive > 0 ? timeToLive : DEFAULT_TTL;
+        results =
+            new BoundedExpiringMap<String, CacheEntry>(
+                maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES, ttl * 1000L
+            );
+        new SecureRandom().nextBytes(salt);
+    }
+
+    public Subject getSubject(String realm, String username, String password) {
+        if (username == null || password == null) {
+            return null;
+        }
+        CacheEntry entry = results.get(getKey(realm, username));
+        if (entry == null) {
+            return null;
+        }
+        byte[] passwordHash = hash(password);
+        if (passwordHash == null || !MessageDigest.isEqual(passwordHash, entry.passwordHash)) {
+            return null;
+        }
+        return entry.subject;
+    }
+
+    public void addSubject(String realm, String username, String password, Subject subject) {
+        if (username == null || password == null || subject == null) {
+            return;
+        }
+        byte[] passwordHash = hash(password);
+        if (passwordHash == null) {
+            return;
+        }
+        Subject readOnlySubject = subject;
+        if (!subject.isReadOnly()) {
+            readOnlySubject =
+                new Subject(true, subject.getPrincipals(), subject.getPublicCredentials(),
+                            subject.getPrivateCredentials());
+        }
+        results.put(getKey(realm, username), new CacheEntry(username, passwordHash, readOnlySubject));
+    }
+
+    public void remove(final String username) {
+        if (username == null) {
+            return;
+        }
+        results.removeMatching(new BoundedExpiringMap.Matcher<CacheEntry>() {
+            public boolean matches(CacheEntry entry) {
+                return username.equals(entry.username);
+            }
+        });
+    }
+
+    public void clear() {
+        results.clear();
+    }
+
+    private static String getKey(String realm, String username) {
+        if (realm == null) {
+            return ":" + username;
+        }
+        // the length prefix keeps the realm and the username apart
+        return realm.length() + ":" + realm + username;
+    }
+
+    private byte[] hash(String password) {
+        try {
+            MessageDigest digest = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA256);
+            digest.update(salt);
+            return digest.digest(password.getBytes("UTF-8"));
+        } catch (WSSecurityException e) {
+            LOG.debug(e.getMessage(), e);
+        } catch (UnsupportedEncodingException e) {
+            LOG.debug(e.getMessage(), e);
+        }
+        return null;
+    }
+
+    private static final class CacheEntry {
+        private final String username;
+        private final byte[] passwordHash;
+        private final Subject subject;
+
+        CacheEntry(String username, byte[] passwordHash, Subject subject) {
+            this.username = username;
+            this.passwordHash = passwordHash;
+            this.subject = subject;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+/**
+ * A simple bounded in-memory SessionKeyCache. Entries are evicted in least-recently-used
+ * order once the maximum number of entries is reached, and expire after a TTL. The default
+ * TTL is 300 seconds and the default maximum number of entries is 1000.
+ */
+public class MemorySessionKeyCache implements SessionKeyCache {
+
+    public static final long DEFAULT_TTL = 300L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final BoundedExpiringMap<String, byte[]> sessionKeys;
+
+    public MemorySessionKeyCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxEntries The maximum number of session keys to cache
+     * @param timeToLive The length of time to cache a session key in seconds
+     */
+    public MemorySessionKeyCache(int maxEntries, long timeToLive) {
+        long ttl = timeToLive > 0 ? timeToLive : DEFAULT_TTL;
+        sessionKeys =
+            new BoundedExpiringMap<String, byte[]>(
+                maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES, ttl * 1000L
+            );
+    }
+
+    public byte[] getSessionKey(String sha1Identifier) {
+        if (sha1Identifier == null) {
+            return null;
+        }
+        byte[] sessionKey = sessionKeys.get(sha1Identifier);
+        if (sessionKey == null) {
+            return null;
+        }
+        return sessionKey.clone();
+    }
+
+    public void addSessionKey(String sha1Identifier, byte[] sessionKey) {
+        if (sha1Identifier == null || sessionKey == null) {
+            return;
+        }
+        sessionKeys.put(sha1Identifier, sessionKey.clone());
+    }
+
+    public void remove(String sha1Identifier) {
+        if (sha1Identifier == null) {
+            return;
+        }
+        sessionKeys.remove(sha1Identifier);
+    }
+
+    public void clear() {
+        sessionKeys.clear();
+    }
+}
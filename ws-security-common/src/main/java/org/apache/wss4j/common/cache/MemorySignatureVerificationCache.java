@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+
+import org.apache.wss4j.common.crypto.CryptoPrimitives;
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A simple bounded in-memory SignatureVerificationCache. Entries are evicted in
+ * least-recently-used order once the maximum number of entries is reached, and expire after a
+ * TTL. The default TTL is 300 seconds and the default maximum number of entries is 1000.
+ *
+ * Each entry is a SHA-256 digest over the canonicalized SignedInfo, the SignatureValue and the
+ * algorithm and encoding of the public key.
+ */
+public class MemorySignatureVerificationCache implements SignatureVerificationCache {
+
+    public static final long DEFAULT_TTL = 300L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(MemorySignatureVerificationCache.class);
+
+    private final BoundedExpiringMap<ByteBuffer, Boolean> verifications;
+
+    public MemorySignatureVerificationCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxEntries The maximum number of verifications to cache
+     * @param timeToLive The length of time to cache a verification in seconds
+     */
+    public MemorySignatureVerificationCache(int maxEntries, long timeToLive) {
+        long ttl = timeToLive > 0 ? timeToLive : DEFAULT_TTL;
+        verifications =
+            new BoundedExpiringMap<ByteBuffer, Boolean>(
+                maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES, ttl * 1000L
+            );
+    }
+
+    public boolean isVerified(
+        byte[] canonicalizedSignedInfo, byte[] signatureValue, PublicKey publicKey
+    ) {
+        ByteBuffer key = digest(canonicalizedSignedInfo, signatureValue, publicKey);
+        return key != null && verifications.get(key) != null;
+    }
+
+    public void addVerified(
+        byte[] canonicalizedSignedInfo, byte[] signatureValue, PublicKey publicKey
+    ) {
+        ByteBuffer key = digest(canonicalizedSignedInfo, signatureValue, publicKey);
+        if (key != null) {
+            verifications.put(key, Boolean.TRUE);
+        }
+    }
+
+    public void clear() {
+        verifications.clear();
+    }
+
+    private static ByteBuffer digest(
+        byte[] canonicalizedSignedInfo, byte[] signatureValue, PublicKey publicKey
+    ) {
+        if (canonicalizedSignedInfo == null || signatureValue == null || publicKey == null
+            || publicKey.getEncoded() == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA256);
+            update(digest, canonicalizedSignedInfo);
+            update(digest, signatureValue);
+            update(digest, publicKey.getAlgorithm().getBytes("UTF-8"));
+            update(digest, publicKey.getEncoded());
+            return ByteBuffer.wrap(digest.digest());
+        } catch (WSSecurityException e) {
+            LOG.debug(e.getMessage(), e);
+        } catch (UnsupportedEncodingException e) {
+            LOG.debug(e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Digest the length of the given bytes before the bytes, so that the boundaries between
+     * the parts are unambiguous
+     */
+    private static void update(MessageDigest digest, byte[] bytes) {
+        int length = bytes.length;
+        digest.update((byte)(length >>> 24));
+        digest.update((byte)(length >>> 16));
+        digest.update((byte)(length >>> 8));
+        digest.update((byte)length);
+        digest.update(bytes);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import org.apache.xml.security.utils.Base64;
+
+/**
+ * A simple bounded in-memory UsernameTokenCache. Entries are evicted in least-recently-used
+ * order once the maximum number of entries is reached, and expire after a (short) TTL. The
+ * default TTL is 60 seconds and the default maximum number of entries is 1000.
+ */
+public class MemoryUsernameTokenCache implements UsernameTokenCache {
+
+    public static final long DEFAULT_TTL = 60L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final BoundedExpiringMap<String, String> passwords;
+    private final BoundedExpiringMap<String, DerivedKeyEntry> derivedKeys;
+
+    public MemoryUsernameTokenCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxEntries The maximum number of passwords (and of derived keys) to cache
+     * @param timeToLive The length of time to cache an entry in seconds
+     */
+    public MemoryUsernameTokenCache(int maxEntries, long timeToLive) {
+        long ttl = (timeToLive > 0 ? timeToLive : DEFAULT_TTL) * 1000L;
+        int max = maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES;
+        passwords = new BoundedExpiringMap<String, String>(max, ttl);
+        derivedKeys = new BoundedExpiringMap<String, DerivedKeyEntry>(max, ttl);
+    }
+
+    public String getPassword(String username) {
+        if (username == null) {
+            return null;
+        }
+        return passwords.get(username);
+    }
+
+    public void addPassword(String username, String password) {
+        if (username == null || password == null) {
+            return;
+        }
+        passwords.put(username, password);
+    }
+
+    public byte[] getDerivedKey(String username, byte[] salt, int iteration) {
+        if (username == null || salt == null) {
+            return null;
+        }
+        DerivedKeyEntry entry = derivedKeys.get(getDerivedKeyId(username, salt, iteration));
+        if (entry == null) {
+            return null;
+        }
+        return entry.derivedKey.clone();
+    }
+
+    public void addDerivedKey(String username, byte[] salt, int iteration, byte[] derivedKey) {
+        if (username == null || salt == null || derivedKey == null) {
+            return;
+        }
+        derivedKeys.put(
+            getDerivedKeyId(username, salt, iteration), new DerivedKeyEntry(username, derivedKey.clone())
+        );
+    }
+
+    public void remove(final String username) {
+        if (username == null) {
+            return;
+        }
+        passwords.remove(username);
+        derivedKeys.removeMatching(new BoundedExpiringMap.Matcher<DerivedKeyEntry>() {
+            public boolean matches(DerivedKeyEntry entry) {
+                return username.equals(entry.username);
+            }
+        });
+    }
+
+    public void clear() {
+        passwords.clear();
+        derivedKeys.clear();
+    }
+
+    private static String getDerivedKeyId(String username, byte[] salt, int iteration) {
+        return username + "|" + Base64.encode(salt) + "|" + iteration;
+    }
+
+    private static final class DerivedKeyEntry {
+        private final String username;
+        private final byte[] derivedKey;
+
+        DerivedKeyEntry(String username, byte[] derivedKey) {
+            this.username = username;
+            this.derivedKey = derivedKey;
+        }
+    }
+}
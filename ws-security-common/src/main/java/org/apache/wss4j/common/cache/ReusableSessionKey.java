@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.cert.X509Certificate;
+
+import org.apache.wss4j.common.crypto.CryptoPrimitives;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.xml.security.utils.Base64;
+
+/**
+ * This class holds the (symmetric) session key used by a sender to encrypt outbound
+ * messages to a given recipient, so that it can be reused for a number of messages. The
+ * first message carries the session key in an EncryptedKey, and the following messages
+ * refer to it via its EncryptedKeySHA1 identifier, which saves the key transport
+ * (public key) operation for each message. The recipient must cache the session key for
+ * this to work, see SessionKeyCache.
+ *
+ * A session key is rotated once it has expired, once it has been used for the maximum
+ * number of messages, or if a different recipient certificate or encryption algorithm is
+ * requested. The default lifetime is 60 seconds, and the default maximum number of
+ * messages is 100. The lifetime should be shorter than the time the recipient caches the
+ * session key for. Instances of this class are thread-safe.
+ */
+public class ReusableSessionKey {
+
+    public static final long DEFAULT_LIFETIME = 60L;
+    public static final int DEFAULT_MAX_MESSAGES = 100;
+
+    private final long lifetime;
+    private final int maxMessages;
+    private SessionKey current;
+
+    public ReusableSessionKey() {
+        this(DEFAULT_LIFETIME, DEFAULT_MAX_MESSAGES);
+    }
+
+    /**
+     * @param lifetime The length of time to use a session key for in seconds
+     * @param maxMessages The maximum number of messages to use a session key for
+     */
+    public ReusableSessionKey(long lifetime, int maxMessages) {
+        if (lifetime <= 0) {
+            this.lifetime = DEFAULT_LIFETIME * 1000L;
+        } else {
+            this.lifetime = lifetime * 1000L;
+        }
+        this.maxMessages = maxMessages > 0 ? maxMessages : DEFAULT_MAX_MESSAGES;
+    }
+
+    /**
+     * Get the current session key to encrypt a message for the given recipient, if it can
+     * be reused. The message is counted against the maximum number of messages.
+     * @param recipient The certificate of the recipient
+     * @param algorithm The symmetric encryption algorithm
+     * @return the current session key, or null if a new session key must be generated
+     */
+    public synchronized SessionKey acquire(X509Certificate recipient, String algorithm) {
+        if (current == null) {
+            return null;
+        }
+        if (current.expires < System.currentTimeMillis()
+            || current.messages >= maxMessages
+            || !current.recipient.equals(recipient)
+            || !current.algorithm.equals(algorithm)) {
+            current = null;
+            return null;
+        }
+        current.messages++;
+        return current;
+    }
+
+    /**
+     * Store a new session key, which has been sent to the recipient in an EncryptedKey.
+     * This message counts as the first use of the session key.
+     * @param recipient The certificate of the recipient
+     * @param algorithm The symmetric encryption algorithm
+     * @param key The session key
+     * @param encryptedKey The session key encrypted with the public key of the recipient
+     */
+    public void update(
+        X509Certificate recipient, String algorithm, byte[] key, byte[] encryptedKey
+    ) throws WSSecurityException {
+        if (recipient == null || algorithm == null || key == null || encryptedKey == null) {
+            return;
+        }
+        String sha1Identifier = Base64.encode(CryptoPrimitives.digestSHA1(encryptedKey));
+        SessionKey sessionKey =
+            new SessionKey(
+                recipient, algorithm, key.clone(), encryptedKey.clone(), sha1Identifier,
+                System.currentTimeMillis() + lifetime
+            );
+        synchronized (this) {
+            current = sessionKey;
+        }
+    }
+
+    /**
+     * Discard the current session key, e.g. if the recipient rejected a message
+     */
+    public synchronized void reset() {
+        current = null;
+    }
+
+    /**
+     * A session key, together with its encrypted form and EncryptedKeySHA1 identifier
+     */
+    public static final class SessionKey {
+        private final X509Certificate recipient;
+        private final String algorithm;
+        private final byte[] key;
+        private final byte[] encryptedKey;
+        private final String sha1Identifier;
+        private final long expires;
+        private int messages = 1;
+
+        SessionKey(
+            X509Certificate recipient, String algorithm, byte[] key, byte[] encryptedKey,
+            String sha1Identifier, long expires
+        ) {
+            this.recipient = recipient;
+            this.algorithm = algorithm;
+            this.key = key;
+            this.encryptedKey = encryptedKey;
+            this.sha1Identifier = sha1Identifier;
+            this.expires = expires;
+        }
+
+        public byte[] getKey() {
+            return key.clone();
+        }
+
+        public byte[] getEncryptedKey() {
+            return encryptedKey.clone();
+        }
+
+        public String getSha1Identifier() {
+            return sha1Identifier;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+
+/**
+ * A store of the symmetric (session) keys transported in an EncryptedKey, keyed on the
+ * EncryptedKeySHA1 identifier of the EncryptedKey, i.e. the Base64 encoded SHA-1 digest of
+ * the encrypted key bytes. As per the WS-Security 1.1 specification, a client may send an
+ * EncryptedKey once, and then refer to the same key in subsequent messages via an
+ * EncryptedKeySHA1 KeyIdentifier. If a SessionKeyCache is configured, such a reference is
+ * resolved from the cache without calling the CallbackHandler.
+ */
+public interface SessionKeyCache {
+
+    /**
+     * Return the cached session key for the given EncryptedKeySHA1 identifier, or null if
+     * none is cached
+     * @param sha1Identifier The (Base64 encoded) EncryptedKeySHA1 identifier
+     */
+    byte[] getSessionKey(String sha1Identifier);
+
+    /**
+     * Cache the session key for the given EncryptedKeySHA1 identifier
+     * @param sha1Identifier The (Base64 encoded) EncryptedKeySHA1 identifier
+     * @param sessionKey The decrypted session key
+     */
+    void addSessionKey(String sha1Identifier, byte[] sessionKey);
+
+    /**
+     * Remove the cached session key for the given EncryptedKeySHA1 identifier
+     * @param sha1Identifier The (Base64 encoded) EncryptedKeySHA1 identifier
+     */
+    void remove(String sha1Identifier);
+
+    /**
+     * Remove all cached session keys
+     */
+    void clear();
+
+}
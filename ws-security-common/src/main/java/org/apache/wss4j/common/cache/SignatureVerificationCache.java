@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.PublicKey;
+
+/**
+ * A cache of successful signature verifications, i.e. of the (canonicalized) SignedInfo,
+ * SignatureValue and public key of signatures which were verified before. It allows the public
+ * key operation to be skipped when exactly the same signature is received again, e.g. for a
+ * retried idempotent request. The digests of the References are still verified for every message.
+ */
+public interface SignatureVerificationCache {
+
+    /**
+     * Return whether the given signature value was successfully verified before
+     * @param canonicalizedSignedInfo The canonicalized SignedInfo
+     * @param signatureValue The SignatureValue
+     * @param publicKey The public key the signature is verified with
+     */
+    boolean isVerified(byte[] canonicalizedSignedInfo, byte[] signatureValue, PublicKey publicKey);
+
+    /**
+     * Record a successful verification of the given signature value
+     * @param canonicalizedSignedInfo The canonicalized SignedInfo as it was verified
+     * @param signatureValue The SignatureValue
+     * @param publicKey The public key the signature was verified with
+     */
+    void addVerified(byte[] canonicalizedSignedInfo, byte[] signatureValue, PublicKey publicKey);
+
+    /**
+     * Remove all cached verifications
+     */
+    void clear();
+
+}
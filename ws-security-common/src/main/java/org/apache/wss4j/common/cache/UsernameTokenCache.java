@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+
+/**
+ * A short-lived cache for the expensive parts of UsernameToken processing, namely the password
+ * resolved for a given username via the password CallbackHandler, and keys derived from a
+ * password as per the UsernameToken Profile 1.1 (which requires "iteration" SHA-1 rounds).
+ */
+public interface UsernameTokenCache {
+
+    /**
+     * Return the cached password for the given username, or null if none is cached
+     * @param username The username
+     */
+    String getPassword(String username);
+
+    /**
+     * Cache the (resolved) password for the given username
+     * @param username The username
+     * @param password The password associated with this username
+     */
+    void addPassword(String username, String password);
+
+    /**
+     * Return the cached derived key for the given username, salt and iteration count, or null if
+     * none is cached
+     * @param username The username
+     * @param salt The Salt value
+     * @param iteration The Iteration value
+     */
+    byte[] getDerivedKey(String username, byte[] salt, int iteration);
+
+    /**
+     * Cache a derived key for the given username, salt and iteration count
+     * @param username The username
+     * @param salt The Salt value
+     * @param iteration The Iteration value
+     * @param derivedKey The derived key
+     */
+    void addDerivedKey(String username, byte[] salt, int iteration, byte[] derivedKey);
+
+    /**
+     * Remove all cached entries for the given username
+     * @param username The username
+     */
+    void remove(String username);
+
+    /**
+     * Remove all cached entries
+     */
+    void clear();
+
+}
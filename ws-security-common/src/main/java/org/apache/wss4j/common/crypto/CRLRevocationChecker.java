@@ -0,0 +1,605 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.cert.CRL;
+import java.security.cert.CRLException;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXCertPathChecker;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A PKIXCertPathChecker that checks certificates against a set of CRLs, which are indexed up
+ * front by issuer and serial number. This replaces the scan of the CRL entries that the PKIX
+ * CertPathValidator does for every validation, and so it should be used instead of adding a
+ * CertStore of CRLs to the PKIXParameters, with the built-in revocation checking disabled.
+ *
+ * The CRLs can be reloaded in the background. A reload builds a new index, which then replaces
+ * the old one atomically, so that concurrent checks never see a partially built index. If a
+ * reload fails, the previous index is kept.
+ *
+ * The signature of every CRL is verified once when it is loaded, with the configured issuer
+ * certificates (the trust anchors, and any intermediate certificates which are configured too),
+ * and only the revoked serial numbers and the keys which verified the CRL are kept. A checked
+ * certificate is only decided on by a CRL which was verified with the key of its issuer
+ * certificate, which is the preceding certificate of the path, or one of the configured issuer
+ * certificates for the first certificate of the path. A certificate whose issuer has no CRL, or
+ * only an expired one, is rejected, as the PKIX CertPathValidator does.
+ *
+ * Only complete CRLs of a single issuer are indexed. Delta CRLs, CRLs with an
+ * IssuingDistributionPoint or any other critical extension, and CRLs with critical entry
+ * extensions (e.g. the certificate issuer of an indirect CRL) are not indexed, and neither are
+ * CRLs which can't be verified with a configured issuer certificate. If the index can't decide on
+ * the status of a certificate for one of these reasons, or because no indexed CRL of its issuer was
+ * verified with the key of the issuer certificate of the path, the check fails with an exception
+ * for which isUndecided returns true. The caller can then validate the path again with the
+ * built-in revocation checking of the PKIX CertPathValidator and the CertStore of getCRLCertStore,
+ * which is only loaded when it is needed.
+ *
+ * The checker must be used for reverse checking only, which is what the PKIX CertPathValidator
+ * does. PKIXParameters clones the checker, so that every validation has its own path state.
+ */
+public class CRLRevocationChecker extends PKIXCertPathChecker {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CRLRevocationChecker.class);
+
+    private final List<URL> crlLocations;
+    private final Collection<X509Certificate> issuerCerts;
+    private final CertificateFactory certificateFactory;
+    private final long[] lastModified;
+
+    private volatile CRLIndex index;
+    private ScheduledExecutorService reloadExecutor;
+
+    /**
+     * The certificate which was checked last in the current validation, which is the issuer of
+     * the next certificate of the path
+     */
+    private X509Certificate previousCert;
+
+    /**
+     * Constructor. The CRLs are loaded and indexed straight away.
+     *
+     * @param crlLocations the locations of the (PEM or DER encoded) CRL files
+     * @param issuerCerts the trust anchor certificates, which are used to verify the signatures
+     *        of the CRLs of the certificates they issued
+     * @param certificateFactory the CertificateFactory used to parse the CRLs
+     * @throws WSSecurityException if a CRL file can't be loaded
+     */
+    public CRLRevocationChecker(
+        List<URL> crlLocations,
+        Collection<X509Certificate> issuerCerts,
+        CertificateFactory certificateFactory
+    ) throws WSSecurityException {
+        this.crlLocations = new ArrayList<URL>(crlLocations);
+        this.issuerCerts = new ArrayList<X509Certificate>(issuerCerts);
+        this.certificateFactory = certificateFactory;
+        this.lastModified = new long[crlLocations.size()];
+        reload();
+    }
+
+    /**
+     * Load and index all CRLs again, and replace the current index with the new one.
+     *
+     * @throws WSSecurityException if a CRL file can't be loaded
+     */
+    public synchronized void reload() throws WSSecurityException {
+        Map<X500Principal, List<RevokedSerials>> newIndex =
+            new HashMap<X500Principal, List<RevokedSerials>>();
+        Set<X500Principal> unsupportedIssuers = new HashSet<X500Principal>();
+        Set<X500Principal> unverifiedIssuers = new HashSet<X500Principal>();
+        long[] newLastModified = new long[crlLocations.size()];
+        for (int i = 0; i < crlLocations.size(); i++) {
+            URL crlLocation = crlLocations.get(i);
+            newLastModified[i] = getLastModified(crlLocation);
+            for (X509CRL crl : loadCRLs(crlLocation)) {
+                if (!isSupported(crl)) {
+                    LOG.warn(
+                        "The CRL of " + crl.getIssuerX500Principal().getName() + " from "
+                        + crlLocation + " is a delta, partitioned or indirect CRL, or has an "
+                        + "unsupported critical extension, and is not indexed"
+                    );
+                    unsupportedIssuers.add(crl.getIssuerX500Principal());
+                    continue;
+                }
+                List<PublicKey> verifiedKeys = verify(crl);
+                if (verifiedKeys.isEmpty()) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(
+                            "The CRL of " + crl.getIssuerX500Principal().getName() + " from "
+                            + crlLocation + " can't be verified with a configured issuer "
+                            + "certificate, and is not indexed"
+                        );
+                    }
+                    unverifiedIssuers.add(crl.getIssuerX500Principal());
+                    continue;
+                }
+                RevokedSerials revokedSerials = new RevokedSerials(crl, verifiedKeys);
+                List<RevokedSerials> issuerCRLs = newIndex.get(revokedSerials.issuer);
+                if (issuerCRLs == null) {
+                    issuerCRLs = new ArrayList<RevokedSerials>();
+                    newIndex.put(revokedSerials.issuer, issuerCRLs);
+                }
+                issuerCRLs.add(revokedSerials);
+            }
+        }
+        for (List<RevokedSerials> issuerCRLs : newIndex.values()) {
+            // the most recent CRL first
+            Collections.sort(issuerCRLs, new Comparator<RevokedSerials>() {
+                public int compare(RevokedSerials o1, RevokedSerials o2) {
+                    return o2.thisUpdate.compareTo(o1.thisUpdate);
+                }
+            });
+        }
+
+        index = new CRLIndex(newIndex, unsupportedIssuers, unverifiedIssuers);
+        System.arraycopy(newLastModified, 0, lastModified, 0, lastModified.length);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Indexed the CRLs of " + newIndex.size() + " issuer(s)");
+        }
+    }
+
+    /**
+     * Start reloading the CRLs in a background thread, whenever one of the CRL files has been
+     * modified.
+     *
+     * @param interval how often (in seconds) the CRL files are checked for modifications
+     */
+    public synchronized void startReloading(long interval) {
+        if (reloadExecutor != null) {
+            return;
+        }
+        reloadExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CRLRevocationChecker-reload");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reloadExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                reloadIfModified();
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop reloading the CRLs in the background.
+     */
+    public synchronized void stopReloading() {
+        if (reloadExecutor != null) {
+            reloadExecutor.shutdownNow();
+            reloadExecutor = null;
+        }
+    }
+
+    /**
+     * Get a CertStore of all CRLs, including the ones which are not indexed. It can be used to
+     * validate a path with the built-in revocation checking of the PKIX CertPathValidator, if this
+     * checker can't decide on the status of a certificate. The CRL files are loaded again the
+     * first time the CertStore is needed, and it is kept until the CRLs are reloaded.
+     *
+     * @throws WSSecurityException if a CRL file can't be loaded
+     */
+    public CertStore getCRLCertStore() throws WSSecurityException {
+        CRLIndex currentIndex = index;
+        synchronized (currentIndex) {
+            if (currentIndex.crlCertStore == null) {
+                List<X509CRL> allCRLs = new ArrayList<X509CRL>();
+                for (URL crlLocation : crlLocations) {
+                    allCRLs.addAll(loadCRLs(crlLocation));
+                }
+                try {
+                    currentIndex.crlCertStore =
+                        CertStore.getInstance("Collection", new CollectionCertStoreParameters(allCRLs));
+                } catch (GeneralSecurityException ex) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "ioError00", ex);
+                }
+            }
+            return currentIndex.crlCertStore;
+        }
+    }
+
+    /**
+     * Get whether the given certificate is listed as revoked by the CRL of its issuer. Only the
+     * CRLs which can be verified with one of the configured issuer certificates are taken into
+     * account, and the freshness of the CRL is not.
+     */
+    public boolean isRevoked(X509Certificate cert) {
+        X509Certificate issuerCert = findIssuerCert(cert);
+        if (issuerCert == null) {
+            return false;
+        }
+        RevokedSerials revokedSerials =
+            findVerifiedCRL(index.revokedSerials.get(cert.getIssuerX500Principal()), issuerCert);
+        return revokedSerials != null && revokedSerials.contains(cert.getSerialNumber());
+    }
+
+    /**
+     * Get whether the given exception (or one of its causes) was thrown by a CRLRevocationChecker
+     * because it can't decide on the revocation status of a certificate.
+     */
+    public static boolean isUndecided(Throwable ex) {
+        Throwable cause = ex;
+        while (cause != null) {
+            if (cause instanceof UndecidedException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    @Override
+    public void init(boolean forward) throws CertPathValidatorException {
+        if (forward) {
+            throw new CertPathValidatorException("Forward checking is not supported");
+        }
+        previousCert = null;
+    }
+
+    @Override
+    public boolean isForwardCheckingSupported() {
+        // the issuer certificate is only known when the path is checked from the trust anchor
+        return false;
+    }
+
+    @Override
+    public Set<String> getSupportedExtensions() {
+        return null;
+    }
+
+    @Override
+    public void check(
+        Certificate cert, Collection<String> unresolvedCritExts
+    ) throws CertPathValidatorException {
+        X509Certificate x509Cert = (X509Certificate)cert;
+        X500Principal issuer = x509Cert.getIssuerX500Principal();
+        X509Certificate issuerCert = previousCert;
+        previousCert = x509Cert;
+        if (issuerCert == null || !issuerCert.getSubjectX500Principal().equals(issuer)) {
+            issuerCert = findIssuerCert(x509Cert);
+        }
+
+        CRLIndex currentIndex = index;
+        if (currentIndex.unsupportedIssuers.contains(issuer)) {
+            throw new UndecidedException(
+                "Certificate revocation status can't be determined from the index, the CRLs of "
+                + issuer.getName() + " are not supported"
+            );
+        }
+        List<RevokedSerials> issuerCRLs = currentIndex.revokedSerials.get(issuer);
+        if (issuerCRLs == null && currentIndex.unverifiedIssuers.contains(issuer)) {
+            throw new UndecidedException(
+                "Certificate revocation status can't be determined from the index, the CRLs of "
+                + issuer.getName() + " can't be verified with a configured issuer certificate"
+            );
+        }
+        if (issuerCRLs == null) {
+            throw new CertPathValidatorException(
+                "Certificate revocation status can't be determined, no CRL is available for "
+                + issuer.getName()
+            );
+        }
+        RevokedSerials revokedSerials = findVerifiedCRL(issuerCRLs, issuerCert);
+        if (revokedSerials == null) {
+            throw new UndecidedException(
+                "Certificate revocation status can't be determined from the index, no CRL of "
+                + issuer.getName() + " was verified with the key of the issuer certificate"
+            );
+        }
+        if (revokedSerials.nextUpdate != null && revokedSerials.nextUpdate.before(new Date())) {
+            throw new CertPathValidatorException(
+                "Certificate revocation status can't be determined, the CRL of "
+                + issuer.getName() + " has expired"
+            );
+        }
+        if (revokedSerials.contains(x509Cert.getSerialNumber())) {
+            throw new CertPathValidatorException(
+                "Certificate has been revoked: " + x509Cert.getSubjectX500Principal().getName()
+            );
+        }
+    }
+
+    private synchronized void reloadIfModified() {
+        boolean modified = false;
+        for (int i = 0; i < crlLocations.size(); i++) {
+            if (getLastModified(crlLocations.get(i)) != lastModified[i]) {
+                modified = true;
+                break;
+            }
+        }
+        if (modified) {
+            try {
+                reload();
+            } catch (WSSecurityException ex) {
+                LOG.warn("Error reloading the CRLs, the previous CRLs are still used", ex);
+            } catch (RuntimeException ex) {
+                LOG.warn("Error reloading the CRLs, the previous CRLs are still used", ex);
+            }
+        }
+    }
+
+    private Collection<X509CRL> loadCRLs(URL crlLocation) throws WSSecurityException {
+        List<X509CRL> crls = new ArrayList<X509CRL>();
+        InputStream is = null;
+        try {
+            is = crlLocation.openStream();
+            for (CRL crl : certificateFactory.generateCRLs(is)) {
+                crls.add((X509CRL)crl);
+            }
+        } catch (IOException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "ioError00", ex);
+        } catch (CRLException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "ioError00", ex);
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException ex) {
+                    LOG.debug(ex.getMessage(), ex);
+                }
+            }
+        }
+        return crls;
+    }
+
+    /**
+     * Get the keys of the configured issuer certificates which verify the signature of the CRL
+     */
+    private List<PublicKey> verify(X509CRL crl) {
+        List<PublicKey> keys = new ArrayList<PublicKey>(1);
+        for (X509Certificate issuerCert : issuerCerts) {
+            if (!issuerCert.getSubjectX500Principal().equals(crl.getIssuerX500Principal())) {
+                continue;
+            }
+            PublicKey key = issuerCert.getPublicKey();
+            if (keys.contains(key)) {
+                continue;
+            }
+            try {
+                crl.verify(key);
+                keys.add(key);
+            } catch (GeneralSecurityException ex) {
+                LOG.debug(ex.getMessage(), ex);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Find the configured issuer certificate which issued the given certificate
+     */
+    private X509Certificate findIssuerCert(X509Certificate cert) {
+        List<X509Certificate> candidates = new ArrayList<X509Certificate>(1);
+        for (X509Certificate issuerCert : issuerCerts) {
+            if (issuerCert.getSubjectX500Principal().equals(cert.getIssuerX500Principal())) {
+                candidates.add(issuerCert);
+            }
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        // several certificates with the same subject, so find the one with the issuer key
+        for (X509Certificate issuerCert : candidates) {
+            try {
+                cert.verify(issuerCert.getPublicKey());
+                return issuerCert;
+            } catch (GeneralSecurityException ex) {
+                LOG.debug(ex.getMessage(), ex);
+            }
+        }
+        return null;
+    }
+
+    private static RevokedSerials findVerifiedCRL(
+        List<RevokedSerials> issuerCRLs, X509Certificate issuerCert
+    ) {
+        if (issuerCRLs == null || issuerCert == null) {
+            return null;
+        }
+        PublicKey issuerKey = issuerCert.getPublicKey();
+        for (RevokedSerials revokedSerials : issuerCRLs) {
+            if (revokedSerials.verifiedKeys.contains(issuerKey)) {
+                return revokedSerials;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get whether the given CRL is a complete CRL of a single issuer without any unsupported
+     * critical (entry) extensions
+     */
+    private static boolean isSupported(X509CRL crl) {
+        Set<String> criticalExtensions = crl.getCriticalExtensionOIDs();
+        if (criticalExtensions != null && !criticalExtensions.isEmpty()
+            || crl.getExtensionValue(CryptoBase.DELTA_CRL_INDICATOR_OID) != null
+            || crl.getExtensionValue(CryptoBase.ISSUING_DISTRIBUTION_POINT_OID) != null) {
+            return false;
+        }
+        Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+        if (entries != null) {
+            for (X509CRLEntry entry : entries) {
+                Set<String> criticalEntryExtensions = entry.getCriticalExtensionOIDs();
+                if (criticalEntryExtensions != null && !criticalEntryExtensions.isEmpty()
+                    || entry.getExtensionValue(CryptoBase.CERTIFICATE_ISSUER_OID) != null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static long getLastModified(URL crlLocation) {
+        try {
+            return crlLocation.openConnection().getLastModified();
+        } catch (IOException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            return 0L;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the loaded CRLs, apart from the CertStore of all CRLs, which is
+     * only created when it is needed
+     */
+    private static final class CRLIndex {
+
+        private final Map<X500Principal, List<RevokedSerials>> revokedSerials;
+        private final Set<X500Principal> unsupportedIssuers;
+        private final Set<X500Principal> unverifiedIssuers;
+        private CertStore crlCertStore;
+
+        CRLIndex(
+            Map<X500Principal, List<RevokedSerials>> revokedSerials,
+            Set<X500Principal> unsupportedIssuers,
+            Set<X500Principal> unverifiedIssuers
+        ) {
+            this.revokedSerials = revokedSerials;
+            this.unsupportedIssuers = unsupportedIssuers;
+            this.unverifiedIssuers = unverifiedIssuers;
+        }
+    }
+
+    /**
+     * Thrown if the index can't decide on the revocation status of a certificate
+     */
+    private static final class UndecidedException extends CertPathValidatorException {
+
+        private static final long serialVersionUID = 8214937263157634562L;
+
+        UndecidedException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * The revoked serial numbers of one CRL. Serial numbers which fit into a long are stored in
+     * an open addressing hash table of primitive longs, any longer ones in a HashSet. Instead of
+     * the CRL, only the keys which verified its signature are kept.
+     */
+    private static final class RevokedSerials {
+
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private final List<PublicKey> verifiedKeys;
+        private final X500Principal issuer;
+        private final Date thisUpdate;
+        private final Date nextUpdate;
+        private final long[] table;
+        private final int mask;
+        private final Set<BigInteger> largeSerials = new HashSet<BigInteger>();
+        private boolean containsEmpty;
+
+        RevokedSerials(X509CRL crl, List<PublicKey> verifiedKeys) {
+            this.verifiedKeys = verifiedKeys;
+            issuer = crl.getIssuerX500Principal();
+            thisUpdate = crl.getThisUpdate();
+            nextUpdate = crl.getNextUpdate();
+
+            Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+            int size = entries == null ? 0 : entries.size();
+            // keep the load factor at or below 0.5
+            int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+            table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            mask = capacity - 1;
+            if (entries != null) {
+                for (X509CRLEntry entry : entries) {
+                    add(entry.getSerialNumber());
+                }
+            }
+        }
+
+        private void add(BigInteger serial) {
+            if (serial.bitLength() > 63) {
+                largeSerials.add(serial);
+                return;
+            }
+            long value = serial.longValue();
+            if (value == EMPTY) {
+                containsEmpty = true;
+                return;
+            }
+            int slot = hash(value) & mask;
+            while (table[slot] != EMPTY && table[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+        }
+
+        boolean contains(BigInteger serial) {
+            if (serial.bitLength() > 63) {
+                return largeSerials.contains(serial);
+            }
+            long value = serial.longValue();
+            if (value == EMPTY) {
+                return containsEmpty;
+            }
+            int slot = hash(value) & mask;
+            while (table[slot] != EMPTY) {
+                if (table[slot] == value) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        private static int hash(long value) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+
+}
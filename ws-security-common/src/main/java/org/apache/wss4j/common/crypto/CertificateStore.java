@@ -21,7 +21,6 @@ package org.apache.wss4j.common.crypto;
 
 import java.math.BigInteger;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.CertPath;
@@ -46,7 +45,11 @@ import org.apache.wss4j.common.ext.WSSecurityException;
  */
 public class CertificateStore extends CryptoBase {
     
+    private static final org.slf4j.Logger LOG = 
+        org.slf4j.LoggerFactory.getLogger(CertificateStore.class);
+    
     private X509Certificate[] trustedCerts;
+    private CRLRevocationChecker crlRevocationChecker;
     
     /**
      * Constructor
@@ -54,6 +57,20 @@ public class CertificateStore extends CryptoBase {
     public CertificateStore(X509Certificate[] trustedCerts) {
         this.trustedCerts = trustedCerts;
     }
+    
+    /**
+     * Set the CRLRevocationChecker to use for Certificate Revocation checking.
+     */
+    public void setCRLRevocationChecker(CRLRevocationChecker crlRevocationChecker) {
+        this.crlRevocationChecker = crlRevocationChecker;
+    }
+    
+    /**
+     * Get the CRLRevocationChecker to use for Certificate Revocation checking.
+     */
+    public CRLRevocationChecker getCRLRevocationChecker() {
+        return crlRevocationChecker;
+    }
    
     /**
      * Get an X509Certificate (chain) corresponding to the CryptoType argument. The supported
@@ -159,7 +176,12 @@ public class CertificateStore extends CryptoBase {
             }
 
             PKIXParameters param = new PKIXParameters(set);
-            param.setRevocationEnabled(enableRevocation);
+            if (enableRevocation && crlRevocationChecker != null) {
+                param.setRevocationEnabled(false);
+                param.addCertPathChecker(crlRevocationChecker);
+            } else {
+                param.setRevocationEnabled(enableRevocation);
+            }
 
             // Verify the trust path using the above settings
             String provider = getCryptoProvider();
@@ -169,7 +191,22 @@ public class CertificateStore extends CryptoBase {
             } else {
                 validator = CertPathValidator.getInstance("PKIX", provider);
             }
-            validator.validate(path, param);
+            try {
+                validator.validate(path, param);
+            } catch (java.security.cert.CertPathValidatorException e) {
+                if (param.isRevocationEnabled() || !CRLRevocationChecker.isUndecided(e)) {
+                    throw e;
+                }
+                // The indexed CRLs can't decide on the revocation status, so let the
+                // PKIX CertPathValidator check the CRLs instead
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(e.getMessage(), e);
+                }
+                param = new PKIXParameters(set);
+                param.setRevocationEnabled(true);
+                param.addCertStore(crlRevocationChecker.getCRLCertStore());
+                validator.validate(path, param);
+            }
             return true;
         } catch (java.security.NoSuchProviderException e) {
                 throw new WSSecurityException(
@@ -273,19 +310,11 @@ public class CertificateStore extends CryptoBase {
      * @throws WSSecurityException if problems during keystore handling or wrong certificate
      */
     private X509Certificate[] getX509Certificates(byte[] thumb) throws WSSecurityException {
-        MessageDigest sha = null;
-        
         if (trustedCerts == null) {
             return null;
         }
         
-        try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, "noSHA1availabe", null, e
-            );
-        }
+        MessageDigest sha = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA1);
         for (X509Certificate trustedCert : trustedCerts) {
             try {
                 sha.update(trustedCert.getEncoded());
@@ -22,7 +22,6 @@ package org.apache.wss4j.common.crypto;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
-import java.security.MessageDigest;
 import java.security.NoSuchProviderException;
 import java.security.cert.CertPath;
 import java.security.cert.CertificateEncodingException;
@@ -37,6 +36,8 @@ import java.util.Map;
 import javax.security.auth.x500.X500Principal;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.NoOpSecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
 
 /**
  * This Abstract Base Class implements the accessor and keystore-independent methods and
@@ -52,12 +53,23 @@ public abstract class CryptoBase implements Crypto {
      */
     public static final String NAME_CONSTRAINTS_OID = "2.5.29.30";
     
+    /**
+     * OIDs of the DeltaCRLIndicator, IssuingDistributionPoint and CertificateIssuer CRL
+     * (entry) extensions
+     *
+     * http://www.ietf.org/rfc/rfc5280.txt (s. 5.2.4, 5.2.5 and 5.3.3)
+     */
+    public static final String DELTA_CRL_INDICATOR_OID = "2.5.29.27";
+    public static final String ISSUING_DISTRIBUTION_POINT_OID = "2.5.29.28";
+    public static final String CERTIFICATE_ISSUER_OID = "2.5.29.29";
+    
     private static final Constructor<?> BC_509CLASS_CONS;
 
     protected Map<String, CertificateFactory> certFactMap = 
         new HashMap<String, CertificateFactory>();
     protected String defaultAlias = null;
     protected String cryptoProvider = null;
+    protected SecurityMetricsListener metricsListener = NoOpSecurityMetricsListener.INSTANCE;
     
     static {
         Constructor<?> cons = null;
@@ -92,6 +104,26 @@ public abstract class CryptoBase implements Crypto {
         cryptoProvider = provider;
     }
     
+    /**
+     * Get the listener that receives the CRYPTO_LOOKUP timings of this implementation
+     * @return the metrics listener
+     */
+    public SecurityMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+    
+    /**
+     * Set the listener that receives the CRYPTO_LOOKUP timings of this implementation
+     * @param metricsListener the metrics listener to set, or null to disable metrics
+     */
+    public void setMetricsListener(SecurityMetricsListener metricsListener) {
+        if (metricsListener == null) {
+            this.metricsListener = NoOpSecurityMetricsListener.INSTANCE;
+        } else {
+            this.metricsListener = metricsListener;
+        }
+    }
+    
     /**
      * Retrieves the identifier name of the default certificate. This should be the certificate 
      * that is used for signature and encryption. This identifier corresponds to the certificate 
@@ -217,8 +249,7 @@ public abstract class CryptoBase implements Crypto {
             X509SubjectPublicKeyInfo spki = new X509SubjectPublicKeyInfo(cert.getPublicKey());
             byte[] value = spki.getSubjectPublicKey();
             try {
-                MessageDigest digest = MessageDigest.getInstance("SHA-1");
-                return digest.digest(value);
+                return CryptoPrimitives.digestSHA1(value);
             } catch (Exception ex) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.UNSUPPORTED_SECURITY_TOKEN, "noSKIHandling",
@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.xml.security.algorithms.JCEMapper;
+
+/**
+ * A shared source of JCA primitives (MessageDigest, Mac and Cipher instances). MessageDigest and
+ * Mac instances are looked up once per thread, algorithm and provider and then reused, so that
+ * callers neither serialize on a global lock nor pay for the JCA provider lookup on every message.
+ * Cipher instances carry key and mode state, and so a new instance is returned on every call.
+ *
+ * The algorithm can either be given as an XML Security algorithm URI (which is translated via
+ * the JCEMapper) or directly as a JCE algorithm name. A JCE provider is only requested explicitly
+ * if one is configured for that algorithm URI in the JCEMapper, otherwise the JCA default
+ * provider is used as before.
+ *
+ * The returned MessageDigest and Mac objects are confined to the calling thread. They must be used
+ * and discarded within a single method call, and must not be handed to another thread or held
+ * across a call that might request the same algorithm again.
+ */
+public final class CryptoPrimitives {
+
+    public static final String SHA1 = "SHA-1";
+    public static final String SHA256 = "SHA-256";
+    public static final String HMAC_SHA1 = "HmacSHA1";
+
+    private static final Map<String, String> DEFAULT_ALGORITHMS = new HashMap<String, String>();
+
+    static {
+        // These are needed before the JCEMapper may have been initialized by Santuario
+        DEFAULT_ALGORITHMS.put("http://www.w3.org/2000/09/xmldsig#sha1", SHA1);
+        DEFAULT_ALGORITHMS.put("http://www.w3.org/2000/09/xmldsig#hmac-sha1", HMAC_SHA1);
+    }
+
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS =
+        new ThreadLocal<Map<String, MessageDigest>>() {
+            @Override
+            protected Map<String, MessageDigest> initialValue() {
+                return new HashMap<String, MessageDigest>();
+            }
+        };
+
+    private static final ThreadLocal<Map<String, Mac>> MACS =
+        new ThreadLocal<Map<String, Mac>>() {
+            @Override
+            protected Map<String, Mac> initialValue() {
+                return new HashMap<String, Mac>();
+            }
+        };
+
+    /**
+     * A SHA-1 digest that is only used by digestSHA1, so that it can't be reset underneath a caller
+     * that is holding the instance returned by getMessageDigest.
+     */
+    private static final ThreadLocal<MessageDigest> SHA1_DIGEST =
+        new ThreadLocal<MessageDigest>();
+
+    private CryptoPrimitives() {
+        // complete
+    }
+
+    /**
+     * Get a MessageDigest for the given algorithm URI or JCE name. The returned instance is reset.
+     * @param algorithm the algorithm URI or JCE algorithm name
+     * @return a MessageDigest confined to the calling thread
+     * @throws WSSecurityException if the algorithm is not supported
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws WSSecurityException {
+        String provider = getProvider(algorithm);
+        String key = cacheKey(algorithm, provider);
+        Map<String, MessageDigest> digests = DIGESTS.get();
+        MessageDigest digest = digests.get(key);
+        if (digest == null) {
+            String jceName = translate(algorithm);
+            try {
+                if (provider == null) {
+                    digest = MessageDigest.getInstance(jceName);
+                } else {
+                    digest = MessageDigest.getInstance(jceName, provider);
+                }
+            } catch (GeneralSecurityException ex) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, "unknownAlgorithm",
+                    ex, algorithm
+                );
+            }
+            digests.put(key, digest);
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+
+    /**
+     * Get a Mac for the given algorithm URI or JCE name. The returned instance must be
+     * initialized by the caller before use.
+     * @param algorithm the algorithm URI or JCE algorithm name
+     * @return a Mac confined to the calling thread
+     * @throws WSSecurityException if the algorithm is not supported
+     */
+    public static Mac getMac(String algorithm) throws WSSecurityException {
+        String provider = getProvider(algorithm);
+        String key = cacheKey(algorithm, provider);
+        Map<String, Mac> macs = MACS.get();
+        Mac mac = macs.get(key);
+        if (mac == null) {
+            String jceName = translate(algorithm);
+            try {
+                if (provider == null) {
+                    mac = Mac.getInstance(jceName);
+                } else {
+                    mac = Mac.getInstance(jceName, provider);
+                }
+            } catch (GeneralSecurityException ex) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, "unknownAlgorithm",
+                    ex, algorithm
+                );
+            }
+            macs.put(key, mac);
+        } else {
+            mac.reset();
+        }
+        return mac;
+    }
+
+    /**
+     * Get a new Cipher for the given algorithm URI or JCE name. Cipher instances are not cached,
+     * as they would otherwise carry the key and mode of the previous caller. The returned
+     * instance must be initialized by the caller before use.
+     * @param algorithm the algorithm URI or JCE algorithm name
+     * @return a new Cipher instance
+     * @throws WSSecurityException if the algorithm or padding is not supported
+     */
+    public static Cipher getCipher(String algorithm) throws WSSecurityException {
+        String provider = getProvider(algorithm);
+        String jceName = translate(algorithm);
+        try {
+            if (provider == null) {
+                return Cipher.getInstance(jceName);
+            }
+            return Cipher.getInstance(jceName, provider);
+        } catch (GeneralSecurityException ex) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, "unknownAlgorithm",
+                ex, algorithm
+            );
+        }
+    }
+
+    /**
+     * Generate a SHA-1 digest of the input bytes. The MessageDigest that backs this method is
+     * private to the calling thread and is never handed out, so no locking is required.
+     * @param inputBytes the bytes to digest
+     * @return the digest of the input bytes
+     * @throws WSSecurityException
+     */
+    public static byte[] digestSHA1(byte[] inputBytes) throws WSSecurityException {
+        MessageDigest digest = SHA1_DIGEST.get();
+        if (digest == null) {
+            try {
+                digest = MessageDigest.getInstance(SHA1);
+            } catch (GeneralSecurityException ex) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, "unknownAlgorithm",
+                    ex, SHA1
+                );
+            }
+            SHA1_DIGEST.set(digest);
+        } else {
+            digest.reset();
+        }
+        return digest.digest(inputBytes);
+    }
+
+    private static String translate(String algorithm) {
+        String jceName = DEFAULT_ALGORITHMS.get(algorithm);
+        if (jceName == null) {
+            jceName = JCEMapper.translateURItoJCEID(algorithm);
+        }
+        if (jceName == null) {
+            jceName = algorithm;
+        }
+        return jceName;
+    }
+
+    private static String getProvider(String algorithm) {
+        return JCEMapper.getJCEProviderFromURI(algorithm);
+    }
+
+    private static String cacheKey(String algorithm, String provider) {
+        if (provider == null) {
+            return algorithm;
+        }
+        return algorithm + "@" + provider;
+    }
+
+}
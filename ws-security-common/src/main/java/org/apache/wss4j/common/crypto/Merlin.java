@@ -19,9 +19,12 @@
 
 package org.apache.wss4j.common.crypto;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
 import java.security.Key;
@@ -45,13 +48,16 @@ import java.security.cert.PKIXParameters;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
@@ -60,7 +66,10 @@ import javax.security.auth.x500.X500Principal;
 
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.common.util.Loader;
+import org.apache.xml.security.utils.Base64;
 
 /**
  * A Crypto implementation based on two Java KeyStore objects, one being the keystore, and one
@@ -90,6 +99,7 @@ public class Merlin extends CryptoBase {
     public static final String KEYSTORE_TYPE ="keystore.type";
     public static final String KEYSTORE_ALIAS ="keystore.alias";
     public static final String KEYSTORE_PRIVATE_PASSWORD ="keystore.private.password";
+    public static final String KEYSTORE_PRIVATE_KEY_CACHING ="keystore.private.caching";
     
     /*
      * TrustStore configuration types
@@ -103,6 +113,8 @@ public class Merlin extends CryptoBase {
      * CRL configuration
      */
     public static final String X509_CRL_FILE = "x509crl.file";
+    public static final String X509_CRL_INDEXED = "x509crl.indexed";
+    public static final String X509_CRL_RELOAD_INTERVAL = "x509crl.reload.interval";
     
     private static final org.slf4j.Logger LOG = 
         org.slf4j.LoggerFactory.getLogger(Merlin.class);
@@ -112,8 +124,19 @@ public class Merlin extends CryptoBase {
     protected KeyStore keystore;
     protected KeyStore truststore;
     protected CertStore crlCertStore;
+    protected CRLRevocationChecker crlRevocationChecker;
     protected boolean loadCACerts;
     protected boolean privatePasswordSet; 
+    protected boolean privateKeyCaching;
+    
+    /*
+     * Recovered private keys (keyed on the alias and a fingerprint of the password), and the
+     * aliases of certificates, if private key caching is enabled
+     */
+    private final Map<String, PrivateKey> privateKeyCache = 
+        new ConcurrentHashMap<String, PrivateKey>();
+    private final Map<X509Certificate, String> identifierCache = 
+        new ConcurrentHashMap<X509Certificate, String>();
     
     public Merlin() {
         // default constructor
@@ -168,6 +191,7 @@ public class Merlin extends CryptoBase {
             return;
         }
         this.properties = properties;
+        clearPrivateKeyCache();
         
         String prefix = PREFIX;
         for (Object key : properties.keySet()) {
@@ -229,6 +253,9 @@ public class Merlin extends CryptoBase {
                 if (privatePasswd != null) {
                     privatePasswordSet = true;
                 }
+                String privateKeyCachingProp = 
+                    properties.getProperty(prefix + KEYSTORE_PRIVATE_KEY_CACHING, "false");
+                privateKeyCaching = Boolean.valueOf(privateKeyCachingProp.trim());
             } finally {
                 if (is != null) {
                     is.close();
@@ -302,7 +329,11 @@ public class Merlin extends CryptoBase {
         // Load the CRL file
         //
         String crlLocation = properties.getProperty(prefix + X509_CRL_FILE);
-        if (crlLocation != null) {
+        String crlIndexed = properties.getProperty(prefix + X509_CRL_INDEXED, "false");
+        if (crlLocation != null && Boolean.valueOf(crlIndexed.trim())) {
+            // the indexed CRLs replace the CertStore of CRLs
+            loadCRLRevocationChecker(loader, crlLocation.trim(), prefix);
+        } else if (crlLocation != null) {
             crlLocation = crlLocation.trim();
             InputStream is = loadInputStream(loader, crlLocation);
 
@@ -341,6 +372,55 @@ public class Merlin extends CryptoBase {
             }
         }
     }
+    
+    /**
+     * Index the revoked serial numbers of the CRL file, and reload it in the background if
+     * a reload interval is configured. The reload thread is stopped by close().
+     */
+    private void loadCRLRevocationChecker(
+        ClassLoader loader, String crlLocation, String prefix
+    ) throws WSSecurityException, IOException {
+        URL crlUrl = Loader.getResource(loader, crlLocation);
+        if (crlUrl == null) {
+            crlUrl = new File(crlLocation).toURI().toURL();
+        }
+        
+        List<X509Certificate> issuerCerts = new ArrayList<X509Certificate>();
+        try {
+            addCertificates(truststore, issuerCerts);
+            addCertificates(keystore, issuerCerts);
+        } catch (KeyStoreException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "ioError00", e);
+        }
+        
+        if (crlRevocationChecker != null) {
+            crlRevocationChecker.stopReloading();
+        }
+        crlRevocationChecker = 
+            new CRLRevocationChecker(
+                Collections.singletonList(crlUrl), issuerCerts, getCertificateFactory()
+            );
+        
+        String reloadInterval = properties.getProperty(prefix + X509_CRL_RELOAD_INTERVAL);
+        if (reloadInterval != null && Long.parseLong(reloadInterval.trim()) > 0) {
+            crlRevocationChecker.startReloading(Long.parseLong(reloadInterval.trim()));
+        }
+    }
+    
+    private static void addCertificates(
+        KeyStore store, List<X509Certificate> certs
+    ) throws KeyStoreException {
+        if (store == null) {
+            return;
+        }
+        Enumeration<String> aliases = store.aliases();
+        while (aliases.hasMoreElements()) {
+            Certificate cert = store.getCertificate(aliases.nextElement());
+            if (cert instanceof X509Certificate) {
+                certs.add((X509Certificate)cert);
+            }
+        }
+    }
 
     
     /**
@@ -434,6 +514,34 @@ public class Merlin extends CryptoBase {
      */
     public void setKeyStore(KeyStore keyStore) {
         keystore = keyStore;
+        clearPrivateKeyCache();
+    }
+    
+    /**
+     * Set whether to cache the private keys recovered from the keystore. Recovering a key
+     * from a PKCS#12 or JCEKS keystore involves a password-based key derivation, which is
+     * expensive. Caching is disabled by default. The cache is cleared when the keystore is
+     * set or reloaded.
+     * 
+     * @param privateKeyCaching whether to cache the private keys recovered from the keystore
+     */
+    public void setPrivateKeyCaching(boolean privateKeyCaching) {
+        this.privateKeyCaching = privateKeyCaching;
+        if (!privateKeyCaching) {
+            clearPrivateKeyCache();
+        }
+    }
+    
+    public boolean isPrivateKeyCaching() {
+        return privateKeyCaching;
+    }
+    
+    /**
+     * Clear the cached private keys
+     */
+    public void clearPrivateKeyCache() {
+        privateKeyCache.clear();
+        identifierCache.clear();
     }
     
     /**
@@ -474,6 +582,34 @@ public class Merlin extends CryptoBase {
         return crlCertStore;
     }
     
+    /**
+     * Set the CRLRevocationChecker to use for Certificate Revocation checking. If set, it is
+     * used instead of the CertStore of CRLs.
+     * @param crlRevocationChecker the CRLRevocationChecker to use for Certificate Revocation
+     * checking.
+     */
+    public void setCRLRevocationChecker(CRLRevocationChecker crlRevocationChecker) {
+        this.crlRevocationChecker = crlRevocationChecker;
+    }
+    
+    /**
+     * Get the CRLRevocationChecker to use for Certificate Revocation checking.
+     * @return the CRLRevocationChecker to use for Certificate Revocation checking.
+     */
+    public CRLRevocationChecker getCRLRevocationChecker() {
+        return crlRevocationChecker;
+    }
+
+    /**
+     * Release the resources of this Crypto instance, i.e. stop reloading the indexed CRLs in
+     * the background. The instance can still be used afterwards, without any reloading.
+     */
+    public void close() {
+        if (crlRevocationChecker != null) {
+            crlRevocationChecker.stopReloading();
+        }
+    }
+
     /**
      * Singleton certificate factory for this Crypto instance.
      * <p/>
@@ -609,27 +745,32 @@ public class Merlin extends CryptoBase {
         }
         CryptoType.TYPE type = cryptoType.getType();
         X509Certificate[] certs = null;
-        switch (type) {
-        case ISSUER_SERIAL: {
-            certs = getX509Certificates(cryptoType.getIssuer(), cryptoType.getSerial());
-            break;
-        }
-        case THUMBPRINT_SHA1: {
-            certs = getX509Certificates(cryptoType.getBytes());
-            break;
-        }
-        case SKI_BYTES: {
-            certs = getX509CertificatesSKI(cryptoType.getBytes());
-            break;
-        }
-        case SUBJECT_DN: {
-            certs = getX509CertificatesSubjectDN(cryptoType.getSubjectDN());
-            break;
-        }
-        case ALIAS: {
-            certs = getX509Certificates(cryptoType.getAlias());
-            break;
-        }
+        metricsListener.phaseStarted(SecurityPhase.CRYPTO_LOOKUP);
+        try {
+            switch (type) {
+            case ISSUER_SERIAL: {
+                certs = getX509Certificates(cryptoType.getIssuer(), cryptoType.getSerial());
+                break;
+            }
+            case THUMBPRINT_SHA1: {
+                certs = getX509Certificates(cryptoType.getBytes());
+                break;
+            }
+            case SKI_BYTES: {
+                certs = getX509CertificatesSKI(cryptoType.getBytes());
+                break;
+            }
+            case SUBJECT_DN: {
+                certs = getX509CertificatesSubjectDN(cryptoType.getSubjectDN());
+                break;
+            }
+            case ALIAS: {
+                certs = getX509Certificates(cryptoType.getAlias());
+                break;
+            }
+            }
+        } finally {
+            metricsListener.phaseFinished(SecurityPhase.CRYPTO_LOOKUP);
         }
         return certs;
     }
@@ -673,7 +814,16 @@ public class Merlin extends CryptoBase {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty", "The CallbackHandler is null");
         }
         
-        String identifier = getIdentifier(certificate, keystore);
+        String identifier = null;
+        if (privateKeyCaching && certificate != null) {
+            identifier = identifierCache.get(certificate);
+        }
+        if (identifier == null) {
+            identifier = getIdentifier(certificate, keystore);
+            if (privateKeyCaching && identifier != null) {
+                identifierCache.put(certificate, identifier);
+            }
+        }
         try {
             if (identifier == null || !keystore.isKeyEntry(identifier)) {
                 String msg = "Cannot find key for alias: [" + identifier + "]";
@@ -691,15 +841,7 @@ public class Merlin extends CryptoBase {
                     password = password.trim();
                 }
             }
-            Key keyTmp = keystore.getKey(identifier, password == null 
-                                         ? new char[]{} : password.toCharArray());
-            if (!(keyTmp instanceof PrivateKey)) {
-                String msg = "Key is not a private key, alias: [" + identifier + "]";
-                String logMsg = createKeyStoreErrorMessage(keystore);
-                LOG.error(msg + logMsg);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty", msg);
-            }
-            return (PrivateKey) keyTmp;
+            return recoverPrivateKey(identifier, password);
         } catch (KeyStoreException ex) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, "noPrivateKey", new Object[]{ex.getMessage()}, ex
@@ -745,15 +887,7 @@ public class Merlin extends CryptoBase {
                     password = password.trim();
                 }
             }
-            Key keyTmp = keystore.getKey(identifier, password == null 
-                                         ? new char[]{} : password.toCharArray());
-            if (!(keyTmp instanceof PrivateKey)) {
-                String msg = "Key is not a private key, alias: [" + identifier + "]";
-                String logMsg = createKeyStoreErrorMessage(keystore);
-                LOG.error(msg + logMsg);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty", msg);
-            }
-            return (PrivateKey) keyTmp;
+            return recoverPrivateKey(identifier, password);
         } catch (KeyStoreException ex) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, "noPrivateKey", new Object[]{ex.getMessage()}, ex
@@ -822,9 +956,16 @@ public class Merlin extends CryptoBase {
             }
 
             PKIXParameters param = new PKIXParameters(set);
-            param.setRevocationEnabled(enableRevocation);
-            if (enableRevocation && crlCertStore != null) {
-                param.addCertStore(crlCertStore);
+            CRLRevocationChecker revocationChecker = crlRevocationChecker;
+            if (enableRevocation && revocationChecker != null) {
+                // the indexed CRLs replace the built-in revocation checking
+                param.setRevocationEnabled(false);
+                param.addCertPathChecker(revocationChecker);
+            } else {
+                param.setRevocationEnabled(enableRevocation);
+                if (enableRevocation && crlCertStore != null) {
+                    param.addCertStore(crlCertStore);
+                }
             }
 
             // Verify the trust path using the above settings
@@ -835,7 +976,22 @@ public class Merlin extends CryptoBase {
             } else {
                 validator = CertPathValidator.getInstance("PKIX", provider);
             }
-            validator.validate(path, param);
+            try {
+                validator.validate(path, param);
+            } catch (java.security.cert.CertPathValidatorException e) {
+                if (param.isRevocationEnabled() || !CRLRevocationChecker.isUndecided(e)) {
+                    throw e;
+                }
+                // The indexed CRLs can't decide on the revocation status, so let the
+                // PKIX CertPathValidator check the CRLs instead
+                if (DO_DEBUG) {
+                    LOG.debug(e.getMessage(), e);
+                }
+                param = new PKIXParameters(set);
+                param.setRevocationEnabled(true);
+                param.addCertStore(revocationChecker.getCRLCertStore());
+                validator.validate(path, param);
+            }
             return true;
         } catch (java.security.NoSuchProviderException e) {
                 throw new WSSecurityException(
@@ -1011,15 +1167,7 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException if problems during keystore handling or wrong certificate
      */
     private X509Certificate[] getX509Certificates(byte[] thumbprint) throws WSSecurityException {
-        MessageDigest sha = null;
-        
-        try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, "noSHA1availabe", null, e
-            );
-        }
+        MessageDigest sha = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA1);
         Certificate[] certs = null;
         if (keystore != null) {
             certs = getCertificates(thumbprint, keystore, sha);
@@ -1386,6 +1534,53 @@ public class Merlin extends CryptoBase {
         return null;
     }
     
+    /**
+     * Recover the private key for the given alias from the keystore, or from the cache if
+     * private key caching is enabled.
+     */
+    private PrivateKey recoverPrivateKey(String identifier, String password) 
+        throws KeyStoreException, UnrecoverableKeyException, NoSuchAlgorithmException,
+        WSSecurityException {
+        String cacheKey = null;
+        if (privateKeyCaching) {
+            byte[] fingerprint = null;
+            try {
+                fingerprint = 
+                    CryptoPrimitives.digestSHA1((password == null ? "" : password).getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException ex) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, "noPrivateKey", new Object[]{ex.getMessage()}, ex
+                );
+            }
+            cacheKey = identifier + "|" + Base64.encode(fingerprint);
+            PrivateKey cachedKey = privateKeyCache.get(cacheKey);
+            if (cachedKey != null) {
+                metricsListener.cacheAccessed(CacheType.PRIVATE_KEY, true);
+                return cachedKey;
+            }
+            metricsListener.cacheAccessed(CacheType.PRIVATE_KEY, false);
+        }
+        
+        metricsListener.phaseStarted(SecurityPhase.CRYPTO_LOOKUP);
+        Key keyTmp = null;
+        try {
+            keyTmp = keystore.getKey(identifier, password == null 
+                                     ? new char[]{} : password.toCharArray());
+        } finally {
+            metricsListener.phaseFinished(SecurityPhase.CRYPTO_LOOKUP);
+        }
+        if (!(keyTmp instanceof PrivateKey)) {
+            String msg = "Key is not a private key, alias: [" + identifier + "]";
+            String logMsg = createKeyStoreErrorMessage(keystore);
+            LOG.error(msg + logMsg);
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty", msg);
+        }
+        if (cacheKey != null) {
+            privateKeyCache.put(cacheKey, (PrivateKey) keyTmp);
+        }
+        return (PrivateKey) keyTmp;
+    }
+    
     /**
      * Get a password from the CallbackHandler
      * @param identifier The identifier to give to the Callback
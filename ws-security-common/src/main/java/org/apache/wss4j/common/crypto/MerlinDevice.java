@@ -51,6 +51,7 @@ public class MerlinDevice extends Merlin {
             return;
         }
         this.properties = properties;
+        clearPrivateKeyCache();
         //
         // Load the provider(s)
         //
@@ -102,6 +103,8 @@ public class MerlinDevice extends Merlin {
         } else {
             keystore = load(null, keyStorePassword, provider, keyStoreType);
         }
+        String privateKeyCachingProp = properties.getProperty(KEYSTORE_PRIVATE_KEY_CACHING, "false");
+        privateKeyCaching = Boolean.valueOf(privateKeyCachingProp.trim());
         
         //
         // Load the TrustStore
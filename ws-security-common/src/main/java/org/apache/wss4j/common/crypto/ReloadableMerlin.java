@@ -0,0 +1,484 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.CertStore;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.util.Loader;
+
+/**
+ * A Merlin Crypto implementation which reloads its keystore, truststore and CRL file when they
+ * are modified. Use "org.apache.wss4j.common.crypto.ReloadableMerlin" as the
+ * "org.apache.wss4j.crypto.provider", together with the usual Merlin properties.
+ *
+ * The files are checked for modifications in a background thread, every
+ * "org.apache.wss4j.crypto.merlin.reload.interval" seconds (60 by default). When one of them
+ * has been modified, a complete new Merlin instance is loaded in the background thread, and then
+ * published atomically. Every method call is delegated to the Merlin instance that is current
+ * at the time of the call, so requests that are in flight are never blocked, and always see a
+ * consistent keystore, truststore and set of CRLs. If loading fails, the previous instance is
+ * kept. Handlers which cache this Crypto instance never see stale keys.
+ *
+ * All instances share a single daemon thread for the checks, and an instance which is no longer
+ * referenced stops being checked. Call close() to stop checking an instance straight away. The
+ * settings made through the setters of this class (e.g. setKeyStore or setPrivateKeyCaching) are
+ * applied to every reloaded instance as well, so an explicitly set keystore or truststore also
+ * replaces the configured one after a reload.
+ *
+ * The protected fields inherited from Merlin are not used by this class, subclasses must use
+ * the accessor methods instead.
+ */
+public class ReloadableMerlin extends Merlin {
+
+    public static final String RELOAD_INTERVAL = "reload.interval";
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ReloadableMerlin.class);
+
+    private volatile Merlin current;
+    private Properties reloadProperties;
+    private ClassLoader loader;
+    private List<URL> watchedLocations = new ArrayList<URL>();
+    private long[] lastModified = new long[0];
+    private ScheduledFuture<?> reloadTask;
+
+    private Boolean privateKeyCachingSetting;
+    private KeyStore keyStoreSetting;
+    private KeyStore trustStoreSetting;
+    private CertStore crlCertStoreSetting;
+    private CRLRevocationChecker crlRevocationCheckerSetting;
+    private String certFactoryProviderSetting;
+    private CertificateFactory certFactorySetting;
+
+    private static ScheduledExecutorService reloadExecutor;
+
+    public ReloadableMerlin(Properties properties)
+        throws WSSecurityException, IOException {
+        this(properties, Loader.getClassLoader(ReloadableMerlin.class));
+    }
+
+    public ReloadableMerlin(Properties properties, ClassLoader loader)
+        throws WSSecurityException, IOException {
+        loadProperties(properties, loader);
+    }
+
+    /**
+     * Load the Merlin instance from the given properties, and start watching the configured
+     * keystore, truststore and CRL file for modifications.
+     */
+    @Override
+    public synchronized void loadProperties(Properties properties, ClassLoader loader)
+        throws WSSecurityException, IOException {
+        if (properties == null) {
+            return;
+        }
+        this.reloadProperties = properties;
+        this.properties = properties;
+        this.loader = loader;
+
+        String prefix = PREFIX;
+        for (Object key : properties.keySet()) {
+            if (key instanceof String) {
+                String propKey = (String)key;
+                if (propKey.startsWith(PREFIX)) {
+                    break;
+                } else if (propKey.startsWith(OLD_PREFIX)) {
+                    prefix = OLD_PREFIX;
+                    break;
+                }
+            }
+        }
+
+        String keyStoreLocation = properties.getProperty(prefix + KEYSTORE_FILE);
+        if (keyStoreLocation == null) {
+            keyStoreLocation = properties.getProperty(prefix + OLD_KEYSTORE_FILE);
+        }
+        List<URL> locations = new ArrayList<URL>();
+        addWatchedLocation(keyStoreLocation, locations);
+        addWatchedLocation(properties.getProperty(prefix + TRUSTSTORE_FILE), locations);
+        addWatchedLocation(properties.getProperty(prefix + X509_CRL_FILE), locations);
+        watchedLocations = locations;
+        lastModified = new long[locations.size()];
+
+        reload();
+
+        stopReloading();
+        long interval = Long.parseLong(properties.getProperty(prefix + RELOAD_INTERVAL, "60").trim());
+        if (interval > 0) {
+            startReloading(interval);
+        }
+    }
+
+    /**
+     * Load a new Merlin instance from the properties, and publish it if it loads successfully.
+     */
+    public synchronized void reload() throws WSSecurityException, IOException {
+        // read the modification times before loading, so that a later modification is not missed,
+        // but only record them once the new instance is published, so that a failed load is retried
+        long[] modified = new long[watchedLocations.size()];
+        for (int i = 0; i < modified.length; i++) {
+            modified[i] = getLastModified(watchedLocations.get(i));
+        }
+
+        Merlin merlin = new Merlin(reloadProperties, loader);
+        applySettings(merlin);
+
+        Merlin previous = current;
+        current = merlin;
+        lastModified = modified;
+        if (previous != null && previous.getCRLRevocationChecker() != crlRevocationCheckerSetting) {
+            // stop reloading the CRLs of the previous instance, unless they were set explicitly
+            previous.close();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("The keystore, truststore and CRL file have been (re)loaded");
+        }
+    }
+
+    /**
+     * Stop watching the keystore, truststore and CRL file for modifications.
+     */
+    public synchronized void stopReloading() {
+        if (reloadTask != null) {
+            reloadTask.cancel(false);
+            reloadTask = null;
+        }
+    }
+
+    /**
+     * Stop watching the keystore, truststore and CRL file for modifications, and stop reloading
+     * the indexed CRLs of the current instance.
+     */
+    @Override
+    public synchronized void close() {
+        stopReloading();
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void startReloading(long interval) {
+        ReloadTask task = new ReloadTask(this);
+        reloadTask =
+            getReloadExecutor().scheduleWithFixedDelay(task, interval, interval, TimeUnit.SECONDS);
+        task.future = reloadTask;
+    }
+
+    private static synchronized ScheduledExecutorService getReloadExecutor() {
+        if (reloadExecutor == null) {
+            reloadExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ReloadableMerlin-reload");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return reloadExecutor;
+    }
+
+    /**
+     * Apply the settings which were made through the setters to a newly loaded instance
+     */
+    private void applySettings(Merlin merlin) {
+        if (cryptoProvider != null) {
+            merlin.setCryptoProvider(cryptoProvider);
+        }
+        if (defaultAlias != null) {
+            merlin.setDefaultX509Identifier(defaultAlias);
+        }
+        if (metricsListener != null) {
+            merlin.setMetricsListener(metricsListener);
+        }
+        if (privateKeyCachingSetting != null) {
+            merlin.setPrivateKeyCaching(privateKeyCachingSetting.booleanValue());
+        }
+        if (keyStoreSetting != null) {
+            merlin.setKeyStore(keyStoreSetting);
+        }
+        if (trustStoreSetting != null) {
+            merlin.setTrustStore(trustStoreSetting);
+        }
+        if (crlCertStoreSetting != null) {
+            merlin.setCRLCertStore(crlCertStoreSetting);
+        }
+        if (crlRevocationCheckerSetting != null) {
+            // the instance loads its own checker if the CRLs are indexed
+            merlin.close();
+            merlin.setCRLRevocationChecker(crlRevocationCheckerSetting);
+        }
+        if (certFactorySetting != null) {
+            merlin.setCertificateFactory(certFactoryProviderSetting, certFactorySetting);
+        }
+    }
+
+    private synchronized void reloadIfModified() {
+        boolean modified = false;
+        for (int i = 0; i < watchedLocations.size(); i++) {
+            if (getLastModified(watchedLocations.get(i)) != lastModified[i]) {
+                modified = true;
+                break;
+            }
+        }
+        if (modified) {
+            try {
+                reload();
+            } catch (Exception ex) {
+                LOG.warn("Error reloading the Crypto, the previous keys are still used", ex);
+            }
+        }
+    }
+
+    private void addWatchedLocation(String location, List<URL> locations) throws IOException {
+        if (location == null) {
+            return;
+        }
+        URL url = Loader.getResource(loader, location.trim());
+        if (url == null) {
+            url = new File(location.trim()).toURI().toURL();
+        }
+        locations.add(url);
+    }
+
+    private static long getLastModified(URL location) {
+        try {
+            return location.openConnection().getLastModified();
+        } catch (IOException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            return 0L;
+        }
+    }
+
+    /**
+     * Get the Merlin instance to which the calls are currently delegated.
+     */
+    public Merlin getCurrentCrypto() {
+        return current;
+    }
+
+    @Override
+    public KeyStore getKeyStore() {
+        return current.getKeyStore();
+    }
+
+    @Override
+    public synchronized void setKeyStore(KeyStore keyStore) {
+        keyStoreSetting = keyStore;
+        current.setKeyStore(keyStore);
+    }
+
+    @Override
+    public KeyStore getTrustStore() {
+        return current.getTrustStore();
+    }
+
+    @Override
+    public synchronized void setTrustStore(KeyStore trustStore) {
+        trustStoreSetting = trustStore;
+        current.setTrustStore(trustStore);
+    }
+
+    @Override
+    public CertStore getCRLCertStore() {
+        return current.getCRLCertStore();
+    }
+
+    @Override
+    public synchronized void setCRLCertStore(CertStore crlCertStore) {
+        crlCertStoreSetting = crlCertStore;
+        current.setCRLCertStore(crlCertStore);
+    }
+
+    @Override
+    public CRLRevocationChecker getCRLRevocationChecker() {
+        return current.getCRLRevocationChecker();
+    }
+
+    @Override
+    public synchronized void setCRLRevocationChecker(CRLRevocationChecker crlRevocationChecker) {
+        crlRevocationCheckerSetting = crlRevocationChecker;
+        current.setCRLRevocationChecker(crlRevocationChecker);
+    }
+
+    @Override
+    public synchronized void setPrivateKeyCaching(boolean privateKeyCaching) {
+        privateKeyCachingSetting = Boolean.valueOf(privateKeyCaching);
+        current.setPrivateKeyCaching(privateKeyCaching);
+    }
+
+    @Override
+    public boolean isPrivateKeyCaching() {
+        return current.isPrivateKeyCaching();
+    }
+
+    @Override
+    public void clearPrivateKeyCache() {
+        if (current != null) {
+            current.clearPrivateKeyCache();
+        }
+    }
+
+    @Override
+    public String getCryptoProvider() {
+        return current.getCryptoProvider();
+    }
+
+    @Override
+    public synchronized void setCryptoProvider(String provider) {
+        cryptoProvider = provider;
+        current.setCryptoProvider(provider);
+    }
+
+    @Override
+    public String getDefaultX509Identifier() throws WSSecurityException {
+        return current.getDefaultX509Identifier();
+    }
+
+    @Override
+    public synchronized void setDefaultX509Identifier(String identifier) {
+        defaultAlias = identifier;
+        current.setDefaultX509Identifier(identifier);
+    }
+
+    @Override
+    public SecurityMetricsListener getMetricsListener() {
+        return current.getMetricsListener();
+    }
+
+    @Override
+    public synchronized void setMetricsListener(SecurityMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        current.setMetricsListener(metricsListener);
+    }
+
+    @Override
+    public synchronized void setCertificateFactory(String provider, CertificateFactory certFactory) {
+        certFactoryProviderSetting = provider;
+        certFactorySetting = certFactory;
+        current.setCertificateFactory(provider, certFactory);
+    }
+
+    @Override
+    public CertificateFactory getCertificateFactory() throws WSSecurityException {
+        return current.getCertificateFactory();
+    }
+
+    @Override
+    public X509Certificate loadCertificate(InputStream in) throws WSSecurityException {
+        return current.loadCertificate(in);
+    }
+
+    @Override
+    public byte[] getSKIBytesFromCert(X509Certificate cert) throws WSSecurityException {
+        return current.getSKIBytesFromCert(cert);
+    }
+
+    @Override
+    public byte[] getBytesFromCertificates(X509Certificate[] certs) throws WSSecurityException {
+        return current.getBytesFromCertificates(certs);
+    }
+
+    @Override
+    public X509Certificate[] getCertificatesFromBytes(byte[] data) throws WSSecurityException {
+        return current.getCertificatesFromBytes(data);
+    }
+
+    @Override
+    public X509Certificate[] getX509Certificates(CryptoType cryptoType) throws WSSecurityException {
+        return current.getX509Certificates(cryptoType);
+    }
+
+    @Override
+    public String getX509Identifier(X509Certificate cert) throws WSSecurityException {
+        return current.getX509Identifier(cert);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(
+        X509Certificate certificate, CallbackHandler callbackHandler
+    ) throws WSSecurityException {
+        return current.getPrivateKey(certificate, callbackHandler);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String identifier, String password) throws WSSecurityException {
+        return current.getPrivateKey(identifier, password);
+    }
+
+    @Override
+    public boolean verifyTrust(
+        X509Certificate[] certs, boolean enableRevocation
+    ) throws WSSecurityException {
+        return current.verifyTrust(certs, enableRevocation);
+    }
+
+    @Override
+    public boolean verifyTrust(PublicKey publicKey) throws WSSecurityException {
+        return current.verifyTrust(publicKey);
+    }
+
+    /**
+     * The periodic check of an instance. It only holds a weak reference, so that an instance
+     * which is no longer used can be garbage collected, after which the check is cancelled.
+     */
+    private static final class ReloadTask implements Runnable {
+
+        private final WeakReference<ReloadableMerlin> reference;
+        private volatile ScheduledFuture<?> future;
+
+        ReloadTask(ReloadableMerlin reloadableMerlin) {
+            reference = new WeakReference<ReloadableMerlin>(reloadableMerlin);
+        }
+
+        public void run() {
+            ReloadableMerlin reloadableMerlin = reference.get();
+            if (reloadableMerlin == null) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            reloadableMerlin.reloadIfModified();
+        }
+    }
+
+}
@@ -42,7 +42,9 @@ package org.apache.wss4j.common.derivedKey;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+
+import org.apache.wss4j.common.crypto.CryptoPrimitives;
+import org.apache.wss4j.common.ext.WSSecurityException;
 
 public class P_SHA1 implements DerivationAlgorithm {
 
@@ -51,7 +53,7 @@ public class P_SHA1 implements DerivationAlgorithm {
             throws ConversationException {
 
         try {
-            Mac mac = Mac.getInstance("HmacSHA1");
+            Mac mac = CryptoPrimitives.getMac(CryptoPrimitives.HMAC_SHA1);
 
             byte[] tempBytes = P_hash(secret, seed, mac, (offset + (int) length));
 
@@ -60,7 +62,7 @@ public class P_SHA1 implements DerivationAlgorithm {
             System.arraycopy(tempBytes, offset, key, 0, key.length);
 
             return key;
-        } catch (NoSuchAlgorithmException e) {
+        } catch (WSSecurityException e) {
             throw new ConversationException("errorInKeyDerivation", null, e);
         } catch (InvalidKeyException e) {
             throw new ConversationException("errorInKeyDerivation", null, e);
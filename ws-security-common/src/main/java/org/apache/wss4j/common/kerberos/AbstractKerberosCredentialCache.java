@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * The lifecycle shared by the Kerberos credential caches. A credential is cached per JAAS context
+ * name, CallbackHandler and service name, and is renewed by the first request made within the
+ * refresh margin of its expiry. The login is done under a lock of the cache entry, so that logins
+ * for different entries don't wait for each other. While a credential is renewed, other requests
+ * are still served with the previous credential, as long as it has not expired.
+ */
+public abstract class AbstractKerberosCredentialCache<T> {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(AbstractKerberosCredentialCache.class);
+
+    private final ConcurrentMap<CacheKey, CacheEntry<T>> entries =
+        new ConcurrentHashMap<CacheKey, CacheEntry<T>>();
+
+    private long maxLifetime = 8L * 60L * 60L * 1000L;
+    private long refreshMargin = 5L * 60L * 1000L;
+
+    /**
+     * Get the cached credential, logging in if there is no cached credential or it is about
+     * to expire.
+     */
+    protected T getCredential(
+        String contextName, CallbackHandler callbackHandler, String serviceName
+    ) throws WSSecurityException {
+        CacheKey key = new CacheKey(contextName, callbackHandler, serviceName);
+        CacheEntry<T> entry = entries.get(key);
+        if (entry == null) {
+            CacheEntry<T> newEntry = new CacheEntry<T>();
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+
+        T credential = entry.credential;
+        if (credential != null && !isExpiring(credential)) {
+            return credential;
+        }
+        if (credential != null && isValid(credential)) {
+            if (!entry.lock.tryLock()) {
+                // another request renews the credential
+                return credential;
+            }
+        } else {
+            entry.lock.lock();
+        }
+        try {
+            credential = entry.credential;
+            if (credential == null || isExpiring(credential)) {
+                try {
+                    credential = login(contextName, callbackHandler, serviceName);
+                } catch (WSSecurityException ex) {
+                    if (credential == null || !isValid(credential)) {
+                        throw ex;
+                    }
+                    LOG.warn("Error renewing a Kerberos credential, the previous credential is still used", ex);
+                    return credential;
+                }
+                entry.credential = credential;
+            }
+            return credential;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all cached credentials.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get the maximum time (in milliseconds) for which a login is reused, if neither its
+     * tickets nor the credential expire earlier. The default is 8 hours.
+     */
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    /**
+     * Get the time (in milliseconds) before the expiry of a credential at which it is renewed.
+     * The default is 5 minutes.
+     */
+    public long getRefreshMargin() {
+        return refreshMargin;
+    }
+
+    public void setRefreshMargin(long refreshMargin) {
+        this.refreshMargin = refreshMargin;
+    }
+
+    /**
+     * Log in and create a new credential.
+     */
+    protected abstract T login(
+        String contextName, CallbackHandler callbackHandler, String serviceName
+    ) throws WSSecurityException;
+
+    /**
+     * Get the time (in milliseconds) at which the credential expires.
+     */
+    protected abstract long getExpires(T credential);
+
+    /**
+     * Whether the credential can still be used.
+     */
+    protected boolean isValid(T credential) {
+        return System.currentTimeMillis() < getExpires(credential);
+    }
+
+    /**
+     * Create a LoginContext for the JAAS context name and log in.
+     */
+    protected static LoginContext jaasLogin(
+        String contextName, CallbackHandler callbackHandler
+    ) throws WSSecurityException {
+        try {
+            LoginContext loginContext;
+            if (callbackHandler != null) {
+                loginContext = new LoginContext(contextName, callbackHandler);
+            } else {
+                loginContext = new LoginContext(contextName);
+            }
+            loginContext.login();
+            return loginContext;
+        } catch (LoginException ex) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(ex.getMessage(), ex);
+            }
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, "kerberosLoginError", ex, ex.getMessage()
+            );
+        }
+    }
+
+    private boolean isExpiring(T credential) {
+        return System.currentTimeMillis() + refreshMargin >= getExpires(credential)
+            || !isValid(credential);
+    }
+
+    private static final class CacheEntry<T> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile T credential;
+    }
+
+    private static final class CacheKey {
+        private final String contextName;
+        private final CallbackHandler callbackHandler;
+        private final String serviceName;
+
+        CacheKey(String contextName, CallbackHandler callbackHandler, String serviceName) {
+            this.contextName = contextName;
+            this.callbackHandler = callbackHandler;
+            this.serviceName = serviceName;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey)obj;
+            return isEqual(contextName, other.contextName)
+                && isEqual(callbackHandler, other.callbackHandler)
+                && isEqual(serviceName, other.serviceName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = contextName == null ? 0 : contextName.hashCode();
+            result = 31 * result + (callbackHandler == null ? 0 : callbackHandler.hashCode());
+            return 31 * result + (serviceName == null ? 0 : serviceName.hashCode());
+        }
+
+        private static boolean isEqual(Object o1, Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.security.Principal;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+
+/**
+ * The Subject of a Kerberos client together with the service ticket it holds for a service, as
+ * they are cached by the KerberosClientCredentialCache.
+ */
+public class KerberosClientCredential {
+
+    private final Subject subject;
+    private final Principal clientPrincipal;
+    private final String serviceName;
+    private final KerberosTicket serviceTicket;
+    private final long expires;
+
+    public KerberosClientCredential(
+        Subject subject, Principal clientPrincipal, String serviceName,
+        KerberosTicket serviceTicket, long expires
+    ) {
+        this.subject = subject;
+        this.clientPrincipal = clientPrincipal;
+        this.serviceName = serviceName;
+        this.serviceTicket = serviceTicket;
+        this.expires = expires;
+    }
+
+    /**
+     * Get the Subject of the JAAS login of the client. Its private credentials contain the TGT
+     * and the service ticket.
+     */
+    public Subject getSubject() {
+        return subject;
+    }
+
+    /**
+     * Get the principal of the client.
+     */
+    public Principal getClientPrincipal() {
+        return clientPrincipal;
+    }
+
+    /**
+     * Get the name of the service the ticket was issued for.
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * Get the service ticket. Its session key is the key shared with the service.
+     */
+    public KerberosTicket getServiceTicket() {
+        return serviceTicket;
+    }
+
+    /**
+     * Get the time (in milliseconds) at which the login or the service ticket expires.
+     */
+    public long getExpires() {
+        return expires;
+    }
+
+}
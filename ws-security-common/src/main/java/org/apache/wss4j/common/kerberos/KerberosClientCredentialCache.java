@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.security.Principal;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosTicket;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A cache of the service tickets of Kerberos clients. Without it, every outbound Kerberos token
+ * causes a JAAS login and a request of a new service ticket from the KDC. With it, the login and
+ * the service ticket request are done once per JAAS context, CallbackHandler and service name. Further tokens are
+ * created by running a KerberosClientAction with the cached Subject, which builds a new AP-REQ
+ * (with a fresh authenticator) from the service ticket held by the Subject without contacting the
+ * KDC. The login is renewed by the first request made within the refresh margin of the expiry of
+ * the TGT or the service ticket.
+ *
+ * A single instance can be shared by the DOM KerberosSecurity token and the StAX
+ * KerberosClientSecurityToken (via the WSSSecurityProperties).
+ */
+public class KerberosClientCredentialCache
+    extends AbstractKerberosCredentialCache<KerberosClientCredential> {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KerberosClientCredentialCache.class);
+
+    /**
+     * Get the credential of the client for the service, logging in and requesting a service
+     * ticket if there is no cached credential or it is about to expire.
+     *
+     * @param contextName the JAAS Login context name of the client
+     * @param callbackHandler the CallbackHandler to use with the LoginContext. It can be null.
+     * @param serviceName the name of the service
+     * @throws WSSecurityException if the login or the service ticket request fails
+     */
+    public KerberosClientCredential getClientCredential(
+        String contextName, CallbackHandler callbackHandler, String serviceName
+    ) throws WSSecurityException {
+        return getCredential(contextName, callbackHandler, serviceName);
+    }
+
+    /**
+     * Create a new AP-REQ for the service from the cached service ticket of the client.
+     *
+     * @param credential a credential returned by getClientCredential
+     * @return the AP-REQ
+     * @throws WSSecurityException if no AP-REQ could be created
+     */
+    public byte[] createServiceTicket(KerberosClientCredential credential) throws WSSecurityException {
+        KerberosClientAction action =
+            new KerberosClientAction(credential.getClientPrincipal(), credential.getServiceName());
+        byte[] ticket = Subject.doAs(credential.getSubject(), action);
+        if (ticket == null) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, "kerberosServiceTicketError"
+            );
+        }
+        return ticket;
+    }
+
+    @Override
+    protected long getExpires(KerberosClientCredential credential) {
+        return credential.getExpires();
+    }
+
+    @Override
+    protected boolean isValid(KerberosClientCredential credential) {
+        return super.isValid(credential) && credential.getServiceTicket().isCurrent();
+    }
+
+    @Override
+    protected KerberosClientCredential login(
+        String contextName, CallbackHandler callbackHandler, String serviceName
+    ) throws WSSecurityException {
+        long now = System.currentTimeMillis();
+        Subject clientSubject = jaasLogin(contextName, callbackHandler).getSubject();
+
+        Set<Principal> clientPrincipals = clientSubject.getPrincipals();
+        if (clientPrincipals.isEmpty()) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE,
+                "kerberosLoginError",
+                "No Client principals found after login");
+        }
+        Principal clientPrincipal = clientPrincipals.iterator().next();
+        KerberosTicket tgt = getKerberosTicket(clientSubject, null);
+
+        // Request the service ticket, which is stored in the private credentials of the Subject
+        KerberosClientAction action = new KerberosClientAction(clientPrincipal, serviceName);
+        if (Subject.doAs(clientSubject, action) == null) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, "kerberosServiceTicketError"
+            );
+        }
+        KerberosTicket serviceTicket = getKerberosTicket(clientSubject, tgt);
+        if (serviceTicket == null) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, "kerberosServiceTicketError"
+            );
+        }
+
+        long expires = now + getMaxLifetime();
+        if (tgt != null && tgt.getEndTime() != null) {
+            expires = Math.min(expires, tgt.getEndTime().getTime());
+        }
+        if (serviceTicket.getEndTime() != null) {
+            expires = Math.min(expires, serviceTicket.getEndTime().getTime());
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Retrieved a service ticket for " + serviceName + " with the JAAS context " + contextName);
+        }
+        return new KerberosClientCredential(clientSubject, clientPrincipal, serviceName, serviceTicket, expires);
+    }
+
+    /**
+     * Get a KerberosTicket from the clientSubject parameter, that is not equal to the supplied
+     * KerberosTicket parameter (can be null)
+     */
+    private static KerberosTicket getKerberosTicket(Subject clientSubject, KerberosTicket previousTicket) {
+        Set<KerberosTicket> privateCredentials = clientSubject.getPrivateCredentials(KerberosTicket.class);
+        for (KerberosTicket privateCredential : privateCredentials) {
+            if (!privateCredential.equals(previousTicket)) {
+                return privateCredential;
+            }
+        }
+        return null;
+    }
+}
@@ -40,22 +40,35 @@ public class KerberosServiceAction implements PrivilegedAction<Principal> {
     
     private byte[] ticket;
     private String serviceName;
+    private GSSCredential credential;
     
     public KerberosServiceAction(byte[] ticket, String serviceName) {
         this.ticket = ticket;
         this.serviceName = serviceName;
     }
+    
+    /**
+     * Validate the ticket with an existing accepting credential of the service, e.g. one
+     * cached by the KerberosServiceCredentialCache, instead of creating a new one.
+     */
+    public KerberosServiceAction(byte[] ticket, String serviceName, GSSCredential credential) {
+        this(ticket, serviceName);
+        this.credential = credential;
+    }
 
     public Principal run() {
         try {
             GSSManager gssManager = GSSManager.getInstance();
         
-            Oid kerberos5Oid = new Oid("1.2.840.113554.1.2.2");
-            GSSName gssService = gssManager.createName(serviceName, GSSName.NT_HOSTBASED_SERVICE);
-            GSSCredential credentials = 
-                gssManager.createCredential(
-                    gssService, GSSCredential.DEFAULT_LIFETIME, kerberos5Oid, GSSCredential.ACCEPT_ONLY
-                );
+            GSSCredential credentials = credential;
+            if (credentials == null) {
+                Oid kerberos5Oid = new Oid("1.2.840.113554.1.2.2");
+                GSSName gssService = gssManager.createName(serviceName, GSSName.NT_HOSTBASED_SERVICE);
+                credentials = 
+                    gssManager.createCredential(
+                        gssService, GSSCredential.DEFAULT_LIFETIME, kerberos5Oid, GSSCredential.ACCEPT_ONLY
+                    );
+            }
             
             GSSContext secContext =
                 gssManager.createContext(credentials);
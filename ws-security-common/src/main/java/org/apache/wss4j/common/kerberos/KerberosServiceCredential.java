@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.util.Collections;
+
+import javax.security.auth.Subject;
+
+import org.ietf.jgss.GSSCredential;
+
+/**
+ * The Subject and the accepting GSSCredential of a Kerberos service, as they are cached by the
+ * KerberosServiceCredentialCache.
+ */
+public class KerberosServiceCredential {
+
+    private final Subject subject;
+    private final Subject publicSubject;
+    private final String serviceName;
+    private final GSSCredential credential;
+    private final long expires;
+
+    public KerberosServiceCredential(
+        Subject subject, String serviceName, GSSCredential credential, long expires
+    ) {
+        this.subject = subject;
+        this.publicSubject =
+            new Subject(true, subject.getPrincipals(), subject.getPublicCredentials(), Collections.emptySet());
+        this.serviceName = serviceName;
+        this.credential = credential;
+        this.expires = expires;
+    }
+
+    /**
+     * Get the Subject of the JAAS login of the service. It holds the long-term keys of the service,
+     * and must only be used to accept and decode service tickets, not be handed to the application.
+     */
+    public Subject getSubject() {
+        return subject;
+    }
+
+    /**
+     * Get a read-only Subject with the principals and the public credentials of the service, but
+     * without its keys, which can be handed to the application as the Subject of a request.
+     */
+    public Subject getPublicSubject() {
+        return publicSubject;
+    }
+
+    /**
+     * Get the name of the service, which is the principal name of the Subject if no service
+     * name was configured.
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * Get the GSSCredential to accept security contexts with.
+     */
+    public GSSCredential getCredential() {
+        return credential;
+    }
+
+    /**
+     * Get the time (in milliseconds) at which the login or the credential expires.
+     */
+    public long getExpires() {
+        return expires;
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.security.Principal;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosTicket;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSException;
+import org.ietf.jgss.GSSManager;
+import org.ietf.jgss.GSSName;
+import org.ietf.jgss.Oid;
+
+/**
+ * A cache of the credentials of Kerberos services. Without it, every received Kerberos token
+ * causes a JAAS login (which reads the keytab or contacts the KDC) and the creation of a new
+ * accepting GSSCredential. With it, the login is done once per JAAS context, CallbackHandler and
+ * service name, and the Subject and GSSCredential are reused until shortly before the login or the
+ * credential expires, when the next request logs in again. The cached Subject is read-only.
+ *
+ * A single instance can be shared by the DOM KerberosTokenValidator and the StAX
+ * KerberosServiceSecurityTokenImpl (via the WSSSecurityProperties).
+ */
+public class KerberosServiceCredentialCache
+    extends AbstractKerberosCredentialCache<KerberosServiceCredential> {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KerberosServiceCredentialCache.class);
+
+    private static final String KERBEROS_5_OID = "1.2.840.113554.1.2.2";
+
+    /**
+     * Get the credential of the service, logging in if there is no cached credential or it is
+     * about to expire.
+     *
+     * @param contextName the JAAS Login context name to use
+     * @param callbackHandler the CallbackHandler to use with the LoginContext. It can be null.
+     * @param serviceName the name of the service. This value can be null, in which case it
+     *                    defaults to the principal name of the Subject
+     * @throws WSSecurityException if the login or the creation of the credential fails
+     */
+    public KerberosServiceCredential getServiceCredential(
+        String contextName, CallbackHandler callbackHandler, String serviceName
+    ) throws WSSecurityException {
+        return getCredential(contextName, callbackHandler, serviceName);
+    }
+
+    @Override
+    protected long getExpires(KerberosServiceCredential credential) {
+        return credential.getExpires();
+    }
+
+    @Override
+    protected KerberosServiceCredential login(
+        String contextName, CallbackHandler callbackHandler, String serviceName
+    ) throws WSSecurityException {
+        long now = System.currentTimeMillis();
+        Subject subject = jaasLogin(contextName, callbackHandler).getSubject();
+
+        // Get the service name to use - fall back on the principal
+        String service = serviceName;
+        if (service == null) {
+            Set<Principal> principals = subject.getPrincipals();
+            if (principals.isEmpty()) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE,
+                    "kerberosLoginError",
+                    "No Client principals found after login");
+            }
+            service = principals.iterator().next().getName();
+        }
+
+        GSSCredential credential;
+        try {
+            credential = Subject.doAs(subject, new CreateCredentialAction(service));
+        } catch (PrivilegedActionException ex) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(ex.getMessage(), ex);
+            }
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, "kerberosLoginError",
+                ex.getException(), ex.getException().getMessage()
+            );
+        }
+
+        // the Subject holds the long-term keys of the service and is shared by all requests
+        subject.setReadOnly();
+
+        long expires = now + getMaxLifetime();
+        for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            if (ticket.getEndTime() != null) {
+                expires = Math.min(expires, ticket.getEndTime().getTime());
+            }
+        }
+        try {
+            int remainingLifetime = credential.getRemainingLifetime();
+            if (remainingLifetime != GSSCredential.INDEFINITE_LIFETIME) {
+                expires = Math.min(expires, now + remainingLifetime * 1000L);
+            }
+        } catch (GSSException ex) {
+            LOG.debug(ex.getMessage(), ex);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Logged in to the JAAS context " + contextName + " for the service " + service);
+        }
+        return new KerberosServiceCredential(subject, service, credential, expires);
+    }
+
+    private static class CreateCredentialAction implements PrivilegedExceptionAction<GSSCredential> {
+
+        private final String serviceName;
+
+        CreateCredentialAction(String serviceName) {
+            this.serviceName = serviceName;
+        }
+
+        public GSSCredential run() throws GSSException {
+            GSSManager gssManager = GSSManager.getInstance();
+            GSSName gssService = gssManager.createName(serviceName, GSSName.NT_HOSTBASED_SERVICE);
+            return gssManager.createCredential(
+                gssService, GSSCredential.DEFAULT_LIFETIME, new Oid(KERBEROS_5_OID), GSSCredential.ACCEPT_ONLY
+            );
+        }
+    }
+}
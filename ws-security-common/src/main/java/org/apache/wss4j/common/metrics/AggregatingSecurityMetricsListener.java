@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.xml.namespace.QName;
+
+/**
+ * A SecurityMetricsListener that aggregates the events it receives, i.e. the number of times
+ * each phase was executed together with the total time and number of bytes, the number of
+ * tokens processed per type and the hits and misses per cache. The aggregated values can be
+ * read at any time, e.g. to export them to a monitoring system.
+ *
+ * Nested occurrences of the same phase on a thread (if any) are counted once, for the
+ * outermost occurrence.
+ */
+public class AggregatingSecurityMetricsListener implements SecurityMetricsListener {
+
+    private static final int PHASES = SecurityPhase.values().length;
+    private static final int CACHES = CacheType.values().length;
+
+    private final AtomicLongArray phaseCounts = new AtomicLongArray(PHASES);
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(PHASES);
+    private final AtomicLongArray phaseBytes = new AtomicLongArray(PHASES);
+    private final AtomicLongArray cacheHits = new AtomicLongArray(CACHES);
+    private final AtomicLongArray cacheMisses = new AtomicLongArray(CACHES);
+    private final ConcurrentMap<QName, AtomicLong> tokenCounts =
+        new ConcurrentHashMap<QName, AtomicLong>();
+
+    // The start time of each phase on a thread, followed by the nesting depth of each phase
+    private final ThreadLocal<long[]> phaseStarts = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[PHASES * 2];
+        }
+    };
+
+    public void phaseStarted(SecurityPhase phase) {
+        long[] starts = phaseStarts.get();
+        int index = phase.ordinal();
+        if (starts[PHASES + index]++ == 0) {
+            starts[index] = System.nanoTime();
+        }
+    }
+
+    public void phaseFinished(SecurityPhase phase) {
+        long[] starts = phaseStarts.get();
+        int index = phase.ordinal();
+        if (starts[PHASES + index] == 0) {
+            return;
+        }
+        if (--starts[PHASES + index] == 0) {
+            phaseNanos.addAndGet(index, System.nanoTime() - starts[index]);
+            phaseCounts.incrementAndGet(index);
+        }
+    }
+
+    public void bytesProcessed(SecurityPhase phase, long bytes) {
+        phaseBytes.addAndGet(phase.ordinal(), bytes);
+    }
+
+    public void tokenProcessed(QName tokenType) {
+        AtomicLong count = tokenCounts.get(tokenType);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = tokenCounts.putIfAbsent(tokenType, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    public void cacheAccessed(CacheType cache, boolean hit) {
+        if (hit) {
+            cacheHits.incrementAndGet(cache.ordinal());
+        } else {
+            cacheMisses.incrementAndGet(cache.ordinal());
+        }
+    }
+
+    /**
+     * Get the number of times the given phase has finished
+     */
+    public long getCount(SecurityPhase phase) {
+        return phaseCounts.get(phase.ordinal());
+    }
+
+    /**
+     * Get the total time spent in the given phase in nanoseconds
+     */
+    public long getTotalNanos(SecurityPhase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    /**
+     * Get the total number of bytes processed by the given phase
+     */
+    public long getBytes(SecurityPhase phase) {
+        return phaseBytes.get(phase.ordinal());
+    }
+
+    /**
+     * Get the number of tokens of the given type that were processed
+     */
+    public long getTokenCount(QName tokenType) {
+        AtomicLong count = tokenCounts.get(tokenType);
+        return count == null ? 0L : count.get();
+    }
+
+    /**
+     * Get the number of tokens processed per type
+     */
+    public Map<QName, Long> getTokenCounts() {
+        Map<QName, Long> counts = new HashMap<QName, Long>();
+        for (Map.Entry<QName, AtomicLong> entry : tokenCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    public long getCacheHits(CacheType cache) {
+        return cacheHits.get(cache.ordinal());
+    }
+
+    public long getCacheMisses(CacheType cache) {
+        return cacheMisses.get(cache.ordinal());
+    }
+
+    /**
+     * Reset all the aggregated values. Phases in progress are not affected.
+     */
+    public void reset() {
+        for (int i = 0; i < PHASES; i++) {
+            phaseCounts.set(i, 0L);
+            phaseNanos.set(i, 0L);
+            phaseBytes.set(i, 0L);
+        }
+        for (int i = 0; i < CACHES; i++) {
+            cacheHits.set(i, 0L);
+            cacheMisses.set(i, 0L);
+        }
+        tokenCounts.clear();
+    }
+
+}
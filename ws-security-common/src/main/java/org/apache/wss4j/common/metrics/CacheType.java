@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.metrics;
+
+/**
+ * The caches for which hits and misses are reported to a SecurityMetricsListener.
+ */
+public enum CacheType {
+
+    /**
+     * The replay cache for UsernameToken nonces. A hit means that a replay was detected.
+     */
+    NONCE_REPLAY,
+
+    /**
+     * The replay cache for Timestamp/Signature combinations. A hit means that a replay
+     * was detected.
+     */
+    TIMESTAMP_REPLAY,
+
+    /**
+     * The cache of session keys referenced via EncryptedKeySHA1
+     */
+    SESSION_KEY,
+
+    /**
+     * The cache of UsernameToken passwords and derived keys
+     */
+    USERNAME_TOKEN,
+
+    /**
+     * The cache of JAAS UsernameToken authentication results
+     */
+    AUTHENTICATION_RESULT,
+
+    /**
+     * The cache of successful signature verifications
+     */
+    SIGNATURE_VERIFICATION,
+
+    /**
+     * The private key cache of a Crypto implementation
+     */
+    PRIVATE_KEY
+
+}
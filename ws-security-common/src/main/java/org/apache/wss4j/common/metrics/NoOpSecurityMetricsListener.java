@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.metrics;
+
+import javax.xml.namespace.QName;
+
+/**
+ * The default SecurityMetricsListener, which ignores all events.
+ */
+public final class NoOpSecurityMetricsListener implements SecurityMetricsListener {
+
+    public static final NoOpSecurityMetricsListener INSTANCE = new NoOpSecurityMetricsListener();
+
+    private NoOpSecurityMetricsListener() {
+        // complete
+    }
+
+    public void phaseStarted(SecurityPhase phase) {
+        // complete
+    }
+
+    public void phaseFinished(SecurityPhase phase) {
+        // complete
+    }
+
+    public void bytesProcessed(SecurityPhase phase, long bytes) {
+        // complete
+    }
+
+    public void tokenProcessed(QName tokenType) {
+        // complete
+    }
+
+    public void cacheAccessed(CacheType cache, boolean hit) {
+        // complete
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.metrics;
+
+import javax.xml.namespace.QName;
+
+/**
+ * This interface receives instrumentation events from the DOM and StAX security processing,
+ * i.e. when a processing phase starts and finishes, the number of bytes processed by a
+ * phase, the types of the tokens that were processed, and the hits and misses of the
+ * caches. It can be used to find out where the processing time of a message is spent.
+ *
+ * A listener is configured via the WSSConfig or RequestData (DOM), or via the
+ * WSSSecurityProperties (StAX). If no listener is configured, NoOpSecurityMetricsListener
+ * is used. Implementations must be thread-safe, as the same listener receives the events
+ * of all the messages processed concurrently. A phase always finishes on the thread it was
+ * started on, and phases of different types may be nested (e.g. SIGNATURE_TRUST and
+ * CRYPTO_LOOKUP in SIGNATURE_VERIFICATION). The events are reported without any
+ * allocation, so implementations that record timings should do so without allocating
+ * either, e.g. by keeping a per-thread array of start times indexed by the phase ordinal.
+ */
+public interface SecurityMetricsListener {
+
+    /**
+     * A processing phase has started on the current thread
+     */
+    void phaseStarted(SecurityPhase phase);
+
+    /**
+     * A processing phase has finished (successfully or not) on the current thread
+     */
+    void phaseFinished(SecurityPhase phase);
+
+    /**
+     * The given number of bytes were processed by a phase, e.g. the size of decrypted data
+     */
+    void bytesProcessed(SecurityPhase phase, long bytes);
+
+    /**
+     * A token (a child element of the security header) was processed
+     * @param tokenType the QName of the token element
+     */
+    void tokenProcessed(QName tokenType);
+
+    /**
+     * A cache was accessed
+     * @param cache the type of the cache
+     * @param hit whether the cache contained the requested entry
+     */
+    void cacheAccessed(CacheType cache, boolean hit);
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.metrics;
+
+/**
+ * The processing phases reported to a SecurityMetricsListener.
+ */
+public enum SecurityPhase {
+
+    /**
+     * The processing of the security header of an inbound message
+     */
+    SECURITY_HEADER,
+
+    /**
+     * The processing of a security header element without a more specific phase
+     */
+    TOKEN_PROCESSING,
+
+    /**
+     * The verification of a signature, i.e. the canonicalization and digest of the
+     * references and the signature value check
+     */
+    SIGNATURE_VERIFICATION,
+
+    /**
+     * The trust validation of the certificate or public key of a signature
+     */
+    SIGNATURE_TRUST,
+
+    /**
+     * The decryption of an EncryptedKey, e.g. the RSA unwrap of the session key
+     */
+    KEY_TRANSPORT,
+
+    /**
+     * The decryption of EncryptedData
+     */
+    DECRYPTION,
+
+    /**
+     * The validation of a UsernameToken
+     */
+    USERNAME_TOKEN_VALIDATION,
+
+    /**
+     * The validation of a Timestamp
+     */
+    TIMESTAMP_VALIDATION,
+
+    /**
+     * The validation of a SAML Assertion
+     */
+    SAML_VALIDATION,
+
+    /**
+     * A certificate or private key lookup in a Crypto implementation
+     */
+    CRYPTO_LOOKUP,
+
+    /**
+     * The creation of a signature for an outbound message
+     */
+    SIGNATURE_CREATION,
+
+    /**
+     * The encryption of an outbound message
+     */
+    ENCRYPTION,
+
+    /**
+     * The streaming (StAX) inbound processor chain, reported for each event read
+     */
+    STREAMING_INBOUND,
+
+    /**
+     * The streaming (StAX) outbound processor chain, reported for each event written
+     */
+    STREAMING_OUTBOUND
+
+}
@@ -20,8 +20,8 @@
 package org.apache.wss4j.common.util;
 
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
+import org.apache.wss4j.common.crypto.CryptoPrimitives;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 
@@ -55,17 +55,7 @@ public final class UsernameTokenUtil {
         System.arraycopy(password, 0, pwSalt, 0, password.length);
         System.arraycopy(salt, 0, pwSalt, password.length, salt.length);
 
-        MessageDigest sha = null;
-        try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(e.getMessage(), e);
-            }
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, "noSHA1availabe", e
-            );
-        }
+        MessageDigest sha = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA1);
         //
         // Make the first hash round with start value
         //
@@ -0,0 +1,337 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+
+/**
+ * Some tests for the CRLRevocationChecker, using the CRL of the wss40CA, in which the
+ * certificate of wss40rev is revoked, and the CAs and CRLs in keys/crl (see ca.config there).
+ * In the latter the root CA (in rootCA.jks) issued the sub CA, which issued the "good" and the
+ * "revoked" certificates. The CRL files contain the CRL of the root CA and a CRL of the sub CA:
+ * empty.pem lists no certificate, revoked.pem lists the "revoked" certificate, delta.pem is a
+ * delta CRL and idp.pem a CRL with an IssuingDistributionPoint, both listing the "revoked"
+ * certificate.
+ */
+public class CRLRevocationCheckerTest extends org.junit.Assert {
+
+    @org.junit.Test
+    public void testMerlinIndexedCRL() throws Exception {
+        Properties properties = new Properties();
+        properties.put(
+            "org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin"
+        );
+        properties.put("org.apache.wss4j.crypto.merlin.truststore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.truststore.file", "keys/wss40CA.jks");
+        properties.put("org.apache.wss4j.crypto.merlin.x509crl.file", "keys/wss40CACRL.pem");
+        properties.put("org.apache.wss4j.crypto.merlin.x509crl.indexed", "true");
+        Merlin crypto = (Merlin)CryptoFactory.getInstance(properties);
+
+        CRLRevocationChecker checker = crypto.getCRLRevocationChecker();
+        assertNotNull(checker);
+
+        X509Certificate revokedCert = loadCertificate(crypto, "keys/wss40rev.crt");
+        X509Certificate cert = loadCertificate(crypto, "keys/wss40_server.crt");
+        assertTrue(checker.isRevoked(revokedCert));
+        assertFalse(checker.isRevoked(cert));
+
+        try {
+            checker.check(revokedCert, Collections.<String>emptySet());
+            fail("Failure expected on a revoked certificate");
+        } catch (CertPathValidatorException ex) {
+            // expected
+        }
+    }
+
+    @org.junit.Test
+    public void testReload() throws Exception {
+        Merlin crypto = new Merlin();
+        File crlFile = File.createTempFile("crl", ".pem");
+        crlFile.deleteOnExit();
+        copyResource("keys/crl/empty.pem", crlFile);
+        X509Certificate rootCert = loadRootCertificate();
+        X509Certificate subCACert = loadCertificate(crypto, "keys/crl/subCA.crt");
+        X509Certificate revokedCert = loadCertificate(crypto, "keys/crl/revoked.crt");
+
+        // the sub CA certificate is configured, so that the CRL of the sub CA is indexed
+        CRLRevocationChecker checker =
+            new CRLRevocationChecker(
+                Collections.singletonList(crlFile.toURI().toURL()),
+                Arrays.asList(rootCert, subCACert),
+                crypto.getCertificateFactory()
+            );
+        checker.init(false);
+        checker.check(subCACert, Collections.<String>emptySet());
+        checker.check(revokedCert, Collections.<String>emptySet());
+
+        replaceFile("keys/crl/revoked.pem", crlFile);
+        checker.reload();
+
+        checker.init(false);
+        checker.check(subCACert, Collections.<String>emptySet());
+        try {
+            checker.check(revokedCert, Collections.<String>emptySet());
+            fail("Failure expected on a revoked certificate");
+        } catch (CertPathValidatorException ex) {
+            assertFalse(CRLRevocationChecker.isUndecided(ex));
+        }
+    }
+
+    @org.junit.Test
+    public void testBackgroundReload() throws Exception {
+        File crlFile = File.createTempFile("crl", ".pem");
+        crlFile.deleteOnExit();
+        copyResource("keys/crl/empty.pem", crlFile);
+
+        Properties properties = createCRLProperties(crlFile.getAbsolutePath());
+        properties.put("org.apache.wss4j.crypto.merlin.x509crl.reload.interval", "1");
+        Merlin crypto = (Merlin)CryptoFactory.getInstance(properties);
+        try {
+            X509Certificate[] revokedPath = loadPath(crypto, "keys/crl/revoked.crt");
+            assertTrue(crypto.verifyTrust(revokedPath, true));
+
+            replaceFile("keys/crl/revoked.pem", crlFile);
+            long timeout = System.currentTimeMillis() + 20000L;
+            boolean revoked = false;
+            while (!revoked && System.currentTimeMillis() < timeout) {
+                Thread.sleep(200L);
+                try {
+                    crypto.verifyTrust(revokedPath, true);
+                } catch (WSSecurityException ex) {
+                    revoked = true;
+                }
+            }
+            assertTrue("The modified CRL file was not reloaded", revoked);
+        } finally {
+            crypto.close();
+        }
+    }
+
+    @org.junit.Test
+    public void testMerlinVerifyTrust() throws Exception {
+        Merlin crypto =
+            (Merlin)CryptoFactory.getInstance(createCRLProperties("keys/crl/revoked.pem"));
+        assertNotNull(crypto.getCRLRevocationChecker());
+        // the indexed CRLs replace the CertStore of CRLs
+        assertNull(crypto.getCRLCertStore());
+
+        // The CRL of the sub CA can't be verified when it is loaded, as the sub CA certificate
+        // is not in the truststore, so the PKIX CertPathValidator checks it instead
+        assertTrue(crypto.verifyTrust(loadPath(crypto, "keys/crl/good.crt"), true));
+        try {
+            crypto.verifyTrust(loadPath(crypto, "keys/crl/revoked.crt"), true);
+            fail("Failure expected on a revoked certificate");
+        } catch (WSSecurityException ex) {
+            assertFalse(CRLRevocationChecker.isUndecided(ex));
+        }
+        crypto.close();
+    }
+
+    @org.junit.Test
+    public void testDeltaCRLIsNotIndexed() throws Exception {
+        Merlin crypto = new Merlin();
+        ClassLoader loader = Loader.getClassLoader(CRLRevocationCheckerTest.class);
+        URL crlUrl = Loader.getResource(loader, "keys/crl/delta.pem");
+        X509Certificate subCACert = loadCertificate(crypto, "keys/crl/subCA.crt");
+        X509Certificate goodCert = loadCertificate(crypto, "keys/crl/good.crt");
+
+        CRLRevocationChecker checker =
+            new CRLRevocationChecker(
+                Collections.singletonList(crlUrl), Collections.singletonList(loadRootCertificate()),
+                crypto.getCertificateFactory()
+            );
+        checker.init(false);
+        checker.check(subCACert, Collections.<String>emptySet());
+        try {
+            checker.check(goodCert, Collections.<String>emptySet());
+            fail("Failure expected as the delta CRL is not indexed");
+        } catch (CertPathValidatorException ex) {
+            assertTrue(CRLRevocationChecker.isUndecided(ex));
+        }
+    }
+
+    @org.junit.Test
+    public void testUnsupportedCRLFallsBackToPKIX() throws Exception {
+        // The CRL with an IssuingDistributionPoint is not indexed, but is checked by the
+        // PKIX CertPathValidator instead
+        Merlin crypto =
+            (Merlin)CryptoFactory.getInstance(createCRLProperties("keys/crl/idp.pem"));
+        assertTrue(crypto.verifyTrust(loadPath(crypto, "keys/crl/good.crt"), true));
+        try {
+            crypto.verifyTrust(loadPath(crypto, "keys/crl/revoked.crt"), true);
+            fail("Failure expected on a revoked certificate");
+        } catch (WSSecurityException ex) {
+            assertFalse(CRLRevocationChecker.isUndecided(ex));
+        }
+        crypto.close();
+    }
+
+    @org.junit.Test
+    public void testCRLOfUnconfiguredIssuerIsNotIndexed() throws Exception {
+        Merlin crypto = new Merlin();
+        ClassLoader loader = Loader.getClassLoader(CRLRevocationCheckerTest.class);
+        URL crlUrl = Loader.getResource(loader, "keys/crl/revoked.pem");
+        X509Certificate subCACert = loadCertificate(crypto, "keys/crl/subCA.crt");
+        X509Certificate revokedCert = loadCertificate(crypto, "keys/crl/revoked.crt");
+
+        CRLRevocationChecker checker =
+            new CRLRevocationChecker(
+                Collections.singletonList(crlUrl), Collections.singletonList(loadRootCertificate()),
+                crypto.getCertificateFactory()
+            );
+        checker.init(false);
+        checker.check(subCACert, Collections.<String>emptySet());
+        try {
+            checker.check(revokedCert, Collections.<String>emptySet());
+            fail("Failure expected as the CRL of the sub CA is not indexed");
+        } catch (CertPathValidatorException ex) {
+            assertTrue(CRLRevocationChecker.isUndecided(ex));
+        }
+
+        // the CertStore for the fallback is only loaded once
+        assertNotNull(checker.getCRLCertStore());
+        assertSame(checker.getCRLCertStore(), checker.getCRLCertStore());
+    }
+
+    @org.junit.Test
+    public void testCertificateStore() throws Exception {
+        Merlin crypto = new Merlin();
+        X509Certificate rootCert = loadRootCertificate();
+        X509Certificate subCACert = loadCertificate(crypto, "keys/crl/subCA.crt");
+        ClassLoader loader = Loader.getClassLoader(CRLRevocationCheckerTest.class);
+
+        // the CRLs of revoked.pem are indexed, the sub CA CRL of idp.pem is checked by the
+        // PKIX CertPathValidator instead
+        for (String crlLocation : new String[] {"keys/crl/revoked.pem", "keys/crl/idp.pem"}) {
+            CertificateStore certificateStore =
+                new CertificateStore(new X509Certificate[] {rootCert});
+            certificateStore.setCRLRevocationChecker(
+                new CRLRevocationChecker(
+                    Collections.singletonList(Loader.getResource(loader, crlLocation)),
+                    Arrays.asList(rootCert, subCACert), crypto.getCertificateFactory()
+                )
+            );
+
+            assertTrue(
+                certificateStore.verifyTrust(loadPath(crypto, "keys/crl/good.crt"), true)
+            );
+            try {
+                certificateStore.verifyTrust(loadPath(crypto, "keys/crl/revoked.crt"), true);
+                fail("Failure expected on a revoked certificate");
+            } catch (WSSecurityException ex) {
+                assertFalse(CRLRevocationChecker.isUndecided(ex));
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testUnverifiedCRL() throws Exception {
+        Merlin crypto = new Merlin();
+        ClassLoader loader = Loader.getClassLoader(CRLRevocationCheckerTest.class);
+        URL crlUrl = Loader.getResource(loader, "keys/wss40CACRL.pem");
+        X509Certificate revokedCert = loadCertificate(crypto, "keys/wss40rev.crt");
+
+        // The CRL is ignored without the certificate of its issuer
+        CRLRevocationChecker checker =
+            new CRLRevocationChecker(
+                Collections.singletonList(crlUrl), Collections.<X509Certificate>emptyList(),
+                crypto.getCertificateFactory()
+            );
+        assertFalse(checker.isRevoked(revokedCert));
+        try {
+            checker.check(revokedCert, Collections.<String>emptySet());
+            fail("Failure expected without a CRL");
+        } catch (CertPathValidatorException ex) {
+            // expected
+        }
+    }
+
+    private Properties createCRLProperties(String crlLocation) {
+        Properties properties = new Properties();
+        properties.put(
+            "org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin"
+        );
+        properties.put("org.apache.wss4j.crypto.merlin.truststore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.truststore.file", "keys/crl/rootCA.jks");
+        properties.put("org.apache.wss4j.crypto.merlin.x509crl.file", crlLocation);
+        properties.put("org.apache.wss4j.crypto.merlin.x509crl.indexed", "true");
+        return properties;
+    }
+
+    private X509Certificate[] loadPath(Merlin crypto, String location) throws Exception {
+        return new X509Certificate[] {
+            loadCertificate(crypto, location), loadCertificate(crypto, "keys/crl/subCA.crt")
+        };
+    }
+
+    private X509Certificate loadRootCertificate() throws Exception {
+        Properties properties = createCRLProperties("keys/crl/empty.pem");
+        properties.remove("org.apache.wss4j.crypto.merlin.x509crl.file");
+        Merlin crypto = (Merlin)CryptoFactory.getInstance(properties);
+        return (X509Certificate)crypto.getTrustStore().getCertificate("rootca");
+    }
+
+    private void copyResource(String location, File target) throws Exception {
+        ClassLoader loader = Loader.getClassLoader(CRLRevocationCheckerTest.class);
+        InputStream input = Merlin.loadInputStream(loader, location);
+        OutputStream output = new FileOutputStream(target);
+        try {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        } finally {
+            output.close();
+            input.close();
+        }
+    }
+
+    /**
+     * Replace the content of the target file, and make sure that its modification time changes
+     */
+    private void replaceFile(String location, File target) throws Exception {
+        long lastModified = target.lastModified();
+        copyResource(location, target);
+        assertTrue(target.setLastModified(lastModified + 10000L));
+    }
+
+    private X509Certificate loadCertificate(Merlin crypto, String location) throws Exception {
+        ClassLoader loader = Loader.getClassLoader(CRLRevocationCheckerTest.class);
+        InputStream input = Merlin.loadInputStream(loader, location);
+        try {
+            return crypto.loadCertificate(input);
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * Some tests for the per-thread JCA primitives returned by CryptoPrimitives.
+ */
+public class CryptoPrimitivesTest extends org.junit.Assert {
+
+    @org.junit.Test
+    public void testDigestIsReusedAndReset() throws Exception {
+        MessageDigest digest = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA1);
+        digest.update("partial".getBytes("UTF-8"));
+
+        MessageDigest digest2 = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA1);
+        assertSame(digest, digest2);
+
+        byte[] expected = MessageDigest.getInstance("SHA-1").digest("data".getBytes("UTF-8"));
+        assertTrue(Arrays.equals(expected, digest2.digest("data".getBytes("UTF-8"))));
+        assertTrue(Arrays.equals(expected, CryptoPrimitives.digestSHA1("data".getBytes("UTF-8"))));
+    }
+
+    @org.junit.Test
+    public void testAlgorithmURI() throws Exception {
+        MessageDigest digest =
+            CryptoPrimitives.getMessageDigest("http://www.w3.org/2000/09/xmldsig#sha1");
+        assertEquals("SHA-1", digest.getAlgorithm());
+
+        Mac mac = CryptoPrimitives.getMac("http://www.w3.org/2000/09/xmldsig#hmac-sha1");
+        assertEquals("HmacSHA1", mac.getAlgorithm());
+
+        Cipher cipher = CryptoPrimitives.getCipher("RSA/ECB/PKCS1Padding");
+        assertEquals("RSA/ECB/PKCS1Padding", cipher.getAlgorithm());
+    }
+
+    @org.junit.Test
+    public void testCipherIsNotShared() throws Exception {
+        Cipher cipher = CryptoPrimitives.getCipher("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(new byte[16], "AES"));
+
+        Cipher cipher2 = CryptoPrimitives.getCipher("AES/CBC/PKCS5Padding");
+        assertNotSame(cipher, cipher2);
+        try {
+            cipher2.doFinal(new byte[16]);
+            fail("A new Cipher must not carry the state of a previous caller");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    @org.junit.Test
+    public void testDigestSHA1DoesNotResetHeldDigest() throws Exception {
+        MessageDigest digest = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA1);
+        digest.update("da".getBytes("UTF-8"));
+        CryptoPrimitives.digestSHA1("other".getBytes("UTF-8"));
+        digest.update("ta".getBytes("UTF-8"));
+
+        byte[] expected = MessageDigest.getInstance("SHA-1").digest("data".getBytes("UTF-8"));
+        assertTrue(Arrays.equals(expected, digest.digest()));
+    }
+
+    @org.junit.Test
+    public void testInstancesAreThreadConfined() throws Exception {
+        final MessageDigest digest = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA1);
+        final MessageDigest[] other = new MessageDigest[1];
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    other[0] = CryptoPrimitives.getMessageDigest(CryptoPrimitives.SHA1);
+                } catch (WSSecurityException ex) {
+                    fail(ex.getMessage());
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNotNull(other[0]);
+        assertNotSame(digest, other[0]);
+    }
+
+    @org.junit.Test
+    public void testUnknownAlgorithm() throws Exception {
+        try {
+            CryptoPrimitives.getMessageDigest("http://unknown/algorithm");
+            fail("Failure expected on an unknown algorithm");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, ex.getErrorCode());
+        }
+    }
+}
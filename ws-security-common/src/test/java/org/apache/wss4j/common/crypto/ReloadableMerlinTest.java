@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.cert.X509Certificate;
+import java.util.Properties;
+
+import org.apache.wss4j.common.util.Loader;
+
+/**
+ * Some tests for the ReloadableMerlin Crypto implementation.
+ */
+public class ReloadableMerlinTest extends org.junit.Assert {
+
+    @org.junit.Test
+    public void testReloadKeyStore() throws Exception {
+        File keyStoreFile = File.createTempFile("reloadable", ".jks");
+        keyStoreFile.deleteOnExit();
+        copy("keys/wss40.jks", keyStoreFile);
+
+        Properties properties = new Properties();
+        properties.put(
+            "org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.ReloadableMerlin"
+        );
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.type", "jks");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", keyStoreFile.getPath());
+        properties.put("org.apache.wss4j.crypto.merlin.reload.interval", "0");
+        Crypto crypto = CryptoFactory.getInstance(properties);
+        assertTrue(crypto instanceof ReloadableMerlin);
+        ReloadableMerlin reloadableMerlin = (ReloadableMerlin)crypto;
+
+        Merlin previous = reloadableMerlin.getCurrentCrypto();
+        assertTrue(crypto.getX509Certificates(alias("wss40")) != null);
+        assertNull(crypto.getX509Certificates(alias("wss40rev")));
+
+        copy("keys/wss40rev.jks", keyStoreFile);
+        reloadableMerlin.reload();
+
+        assertNotSame(previous, reloadableMerlin.getCurrentCrypto());
+        assertNull(crypto.getX509Certificates(alias("wss40")));
+        X509Certificate[] certs = crypto.getX509Certificates(alias("wss40rev"));
+        assertTrue(certs != null && certs.length > 0);
+        assertNotNull(crypto.getPrivateKey("wss40rev", "security"));
+        assertTrue(reloadableMerlin.getKeyStore().containsAlias("wss40rev"));
+    }
+
+    @org.junit.Test
+    public void testFailedReloadKeepsKeyStore() throws Exception {
+        File keyStoreFile = File.createTempFile("reloadable", ".jks");
+        keyStoreFile.deleteOnExit();
+        copy("keys/wss40.jks", keyStoreFile);
+
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.type", "jks");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", keyStoreFile.getPath());
+        properties.put("org.apache.wss4j.crypto.merlin.reload.interval", "0");
+        ReloadableMerlin crypto = new ReloadableMerlin(properties);
+
+        // Truncate the keystore, which can't be loaded any more
+        new FileOutputStream(keyStoreFile).close();
+        try {
+            crypto.reload();
+            fail("Failure expected on loading an empty keystore");
+        } catch (Exception ex) {
+            // expected
+        }
+        assertTrue(crypto.getX509Certificates(alias("wss40")) != null);
+    }
+
+    @org.junit.Test
+    public void testBackgroundReload() throws Exception {
+        File keyStoreFile = File.createTempFile("reloadable", ".jks");
+        keyStoreFile.deleteOnExit();
+        copy("keys/wss40.jks", keyStoreFile);
+
+        ReloadableMerlin crypto = new ReloadableMerlin(createProperties(keyStoreFile, "1"));
+        try {
+            Merlin previous = crypto.getCurrentCrypto();
+            assertNull(crypto.getX509Certificates(alias("wss40rev")));
+
+            long lastModified = keyStoreFile.lastModified();
+            copy("keys/wss40rev.jks", keyStoreFile);
+            assertTrue(keyStoreFile.setLastModified(lastModified + 10000L));
+
+            long timeout = System.currentTimeMillis() + 20000L;
+            while (crypto.getCurrentCrypto() == previous && System.currentTimeMillis() < timeout) {
+                Thread.sleep(200L);
+            }
+            assertNotSame("The modified keystore was not reloaded", previous, crypto.getCurrentCrypto());
+            assertTrue(crypto.getKeyStore().containsAlias("wss40rev"));
+        } finally {
+            crypto.close();
+        }
+    }
+
+    @org.junit.Test
+    public void testFailedReloadIsRetried() throws Exception {
+        File keyStoreFile = File.createTempFile("reloadable", ".jks");
+        keyStoreFile.deleteOnExit();
+        copy("keys/wss40.jks", keyStoreFile);
+
+        ReloadableMerlin crypto = new ReloadableMerlin(createProperties(keyStoreFile, "1"));
+        try {
+            Merlin previous = crypto.getCurrentCrypto();
+            long lastModified = keyStoreFile.lastModified() + 10000L;
+
+            // Truncate the keystore, which can't be loaded any more
+            new FileOutputStream(keyStoreFile).close();
+            assertTrue(keyStoreFile.setLastModified(lastModified));
+            try {
+                crypto.reload();
+                fail("Failure expected on loading an empty keystore");
+            } catch (Exception ex) {
+                // expected
+            }
+            assertSame(previous, crypto.getCurrentCrypto());
+
+            // The fixed keystore has the same modification time as the truncated one
+            copy("keys/wss40rev.jks", keyStoreFile);
+            assertTrue(keyStoreFile.setLastModified(lastModified));
+
+            long timeout = System.currentTimeMillis() + 20000L;
+            while (crypto.getCurrentCrypto() == previous && System.currentTimeMillis() < timeout) {
+                Thread.sleep(200L);
+            }
+            assertNotSame("The failed reload was not retried", previous, crypto.getCurrentCrypto());
+            assertTrue(crypto.getKeyStore().containsAlias("wss40rev"));
+        } finally {
+            crypto.close();
+        }
+    }
+
+    @org.junit.Test
+    public void testCloseStopsReloading() throws Exception {
+        File keyStoreFile = File.createTempFile("reloadable", ".jks");
+        keyStoreFile.deleteOnExit();
+        copy("keys/wss40.jks", keyStoreFile);
+
+        ReloadableMerlin crypto = new ReloadableMerlin(createProperties(keyStoreFile, "1"));
+        Merlin previous = crypto.getCurrentCrypto();
+        crypto.close();
+
+        long lastModified = keyStoreFile.lastModified();
+        copy("keys/wss40rev.jks", keyStoreFile);
+        assertTrue(keyStoreFile.setLastModified(lastModified + 10000L));
+        Thread.sleep(2500L);
+        assertSame(previous, crypto.getCurrentCrypto());
+    }
+
+    @org.junit.Test
+    public void testSettingsAreKeptOnReload() throws Exception {
+        File keyStoreFile = File.createTempFile("reloadable", ".jks");
+        keyStoreFile.deleteOnExit();
+        copy("keys/wss40.jks", keyStoreFile);
+
+        ReloadableMerlin crypto = new ReloadableMerlin(createProperties(keyStoreFile, "0"));
+        Merlin trustStoreCrypto = new Merlin(createProperties(keyStoreFile, "0"));
+        crypto.setPrivateKeyCaching(true);
+        crypto.setTrustStore(trustStoreCrypto.getKeyStore());
+        crypto.setDefaultX509Identifier("wss40");
+
+        copy("keys/wss40rev.jks", keyStoreFile);
+        crypto.reload();
+
+        assertTrue(crypto.getCurrentCrypto().isPrivateKeyCaching());
+        assertSame(trustStoreCrypto.getKeyStore(), crypto.getCurrentCrypto().getTrustStore());
+        assertEquals("wss40", crypto.getCurrentCrypto().getDefaultX509Identifier());
+        assertTrue(crypto.getKeyStore().containsAlias("wss40rev"));
+
+        // An explicitly set keystore replaces the reloaded one
+        crypto.setKeyStore(trustStoreCrypto.getKeyStore());
+        crypto.reload();
+        assertSame(trustStoreCrypto.getKeyStore(), crypto.getKeyStore());
+    }
+
+    private static Properties createProperties(File keyStoreFile, String reloadInterval) {
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.type", "jks");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", keyStoreFile.getPath());
+        properties.put("org.apache.wss4j.crypto.merlin.reload.interval", reloadInterval);
+        return properties;
+    }
+
+    private static CryptoType alias(String alias) {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias(alias);
+        return cryptoType;
+    }
+
+    private void copy(String location, File file) throws Exception {
+        ClassLoader loader = Loader.getClassLoader(ReloadableMerlinTest.class);
+        InputStream input = Merlin.loadInputStream(loader, location);
+        OutputStream output = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[4096];
+            int read = input.read(buffer);
+            while (read != -1) {
+                output.write(buffer, 0, read);
+                read = input.read(buffer);
+            }
+        } finally {
+            output.close();
+            input.close();
+        }
+    }
+}
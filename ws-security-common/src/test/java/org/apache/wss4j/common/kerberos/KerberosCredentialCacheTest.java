@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * Some tests for the lifecycle of the Kerberos credential caches, with a credential which does not
+ * need a KDC.
+ */
+public class KerberosCredentialCacheTest extends org.junit.Assert {
+
+    @org.junit.Test
+    public void testCredentialIsReused() throws Exception {
+        TestCredentialCache cache = new TestCredentialCache(600000L);
+        TestCredential credential = cache.getCredential("bob", null, "service");
+        assertSame(credential, cache.getCredential("bob", null, "service"));
+        assertEquals(1, cache.logins.get());
+
+        cache.getCredential("bob", null, "otherService");
+        assertEquals(2, cache.logins.get());
+
+        cache.clear();
+        assertNotSame(credential, cache.getCredential("bob", null, "service"));
+        assertEquals(3, cache.logins.get());
+    }
+
+    @org.junit.Test
+    public void testCallbackHandlerIsPartOfTheKey() throws Exception {
+        TestCredentialCache cache = new TestCredentialCache(600000L);
+        TestCredential credential = cache.getCredential("bob", new TestCallbackHandler(), "service");
+        TestCredential otherCredential = cache.getCredential("bob", new TestCallbackHandler(), "service");
+        assertNotSame(credential, otherCredential);
+        assertEquals(2, cache.logins.get());
+    }
+
+    @org.junit.Test
+    public void testExpiringCredentialIsServedWhileRenewing() throws Exception {
+        // every credential is within the refresh margin
+        final TestCredentialCache cache = new TestCredentialCache(60000L);
+        cache.setRefreshMargin(120000L);
+        final TestCredential credential = cache.getCredential("bob", null, "service");
+
+        cache.loginStarted = new CountDownLatch(1);
+        cache.finishLogin = new CountDownLatch(1);
+        final TestCredential[] renewed = new TestCredential[1];
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    renewed[0] = cache.getCredential("bob", null, "service");
+                } catch (WSSecurityException ex) {
+                    fail(ex.getMessage());
+                }
+            }
+        });
+        thread.start();
+        assertTrue(cache.loginStarted.await(10L, TimeUnit.SECONDS));
+
+        // the previous credential is served, without waiting for the login
+        assertSame(credential, cache.getCredential("bob", null, "service"));
+
+        cache.finishLogin.countDown();
+        thread.join(10000L);
+        assertNotNull(renewed[0]);
+        assertNotSame(credential, renewed[0]);
+        assertEquals(2, cache.logins.get());
+    }
+
+    @org.junit.Test
+    public void testFailedRenewalKeepsValidCredential() throws Exception {
+        TestCredentialCache cache = new TestCredentialCache(60000L);
+        cache.setRefreshMargin(120000L);
+        TestCredential credential = cache.getCredential("bob", null, "service");
+
+        cache.failLogin = true;
+        assertSame(credential, cache.getCredential("bob", null, "service"));
+    }
+
+    @org.junit.Test
+    public void testFailedLoginWithoutValidCredential() throws Exception {
+        TestCredentialCache cache = new TestCredentialCache(-1L);
+        cache.getCredential("bob", null, "service");
+
+        cache.failLogin = true;
+        try {
+            cache.getCredential("bob", null, "service");
+            fail("Failure expected on an expired credential which can't be renewed");
+        } catch (WSSecurityException ex) {
+            // expected
+        }
+    }
+
+    private static class TestCredential {
+        private final long expires;
+
+        TestCredential(long expires) {
+            this.expires = expires;
+        }
+    }
+
+    private static class TestCredentialCache extends AbstractKerberosCredentialCache<TestCredential> {
+
+        private final long lifetime;
+        private final AtomicInteger logins = new AtomicInteger();
+        private volatile boolean failLogin;
+        private volatile CountDownLatch loginStarted;
+        private volatile CountDownLatch finishLogin;
+
+        TestCredentialCache(long lifetime) {
+            this.lifetime = lifetime;
+        }
+
+        @Override
+        protected TestCredential login(
+            String contextName, CallbackHandler callbackHandler, String serviceName
+        ) throws WSSecurityException {
+            if (failLogin) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "kerberosLoginError");
+            }
+            if (loginStarted != null) {
+                loginStarted.countDown();
+                try {
+                    finishLogin.await(10L, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            logins.incrementAndGet();
+            return new TestCredential(System.currentTimeMillis() + lifetime);
+        }
+
+        @Override
+        protected long getExpires(TestCredential credential) {
+            return credential.expires;
+        }
+    }
+
+    private static class TestCallbackHandler implements CallbackHandler {
+        public void handle(Callback[] callbacks) {
+            // no callbacks are handled
+        }
+    }
+}
@@ -51,6 +51,27 @@ public class WSDocInfo {
     private Element securityHeader;
 
     public WSDocInfo(Document doc) {
+        setDocument(doc);
+    }
+    
+    /**
+     * Reset this object for the processing of another document. Unlike clear, the internal 
+     * lists are kept (emptied) for reuse.
+     */
+    public void reset(Document doc) {
+        setDocument(doc);
+        crypto = null;
+        callbackLookup = null;
+        securityHeader = null;
+        if (tokenList != null) {
+            tokenList.clear();
+        }
+        if (resultsList != null) {
+            resultsList.clear();
+        }
+    }
+    
+    private void setDocument(Document doc) {
         //
         // This is a bit of a hack. When the Document is a SAAJ SOAPPart instance, it may
         // be that the "owner" document of any child elements is an internal Document, rather
@@ -221,11 +242,8 @@ public class WSDocInfo {
         List<WSSecurityEngineResult> foundResults = new ArrayList<WSSecurityEngineResult>();
         if (resultsList != null) {
             for (WSSecurityEngineResult result : resultsList) {
-                if (result != null) {
-                    Integer resultTag = (Integer)result.get(WSSecurityEngineResult.TAG_ACTION);
-                    if (tag.intValue() == resultTag.intValue()) {
-                        foundResults.add(result);
-                    }
+                if (result != null && tag == result.getAction()) {
+                    foundResults.add(result);
                 }
             }
         }
@@ -244,12 +262,8 @@ public class WSDocInfo {
         }
         if (resultsList != null) {
             for (WSSecurityEngineResult result : resultsList) {
-                if (result != null) {
-                    Integer resultTag = (Integer)result.get(WSSecurityEngineResult.TAG_ACTION);
-                    String cId = (String)result.get(WSSecurityEngineResult.TAG_ID);
-                    if ((tag.intValue() == resultTag.intValue()) && id.equals(cId)) {
-                        return result;
-                    }
+                if (result != null && tag == result.getAction() && id.equals(result.getId())) {
+                    return result;
                 }
             }
         }
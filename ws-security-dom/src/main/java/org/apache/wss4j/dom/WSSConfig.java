@@ -32,6 +32,7 @@ import javax.xml.namespace.QName;
 import org.apache.wss4j.dom.action.Action;
 import org.apache.wss4j.common.crypto.WSProviderConfig;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
 import org.apache.wss4j.common.util.WSCurrentTimeSource;
 import org.apache.wss4j.common.util.WSTimeSource;
 import org.apache.wss4j.dom.processor.Processor;
@@ -318,6 +319,12 @@ public class WSSConfig {
      */
     private WSTimeSource currentTime;
     
+    /**
+     * The listener that receives the timings of the security processing phases. The
+     * default is null, i.e. no metrics are recorded.
+     */
+    private SecurityMetricsListener metricsListener;
+    
     /**
      * The default wsu:Id allocator is a simple "start at 1 and increment up"
      * thing that is very fast.
@@ -359,6 +366,13 @@ public class WSSConfig {
     private final Map<QName, Object> processorMap = 
         new HashMap<QName, Object>(DEFAULT_PROCESSORS);
     
+    /**
+     * The QNames of the known processors, indexed by namespace and local name, so that the
+     * processor of a security header element can be found without creating a QName. It is
+     * rebuilt on demand after the processors are modified.
+     */
+    private volatile Map<String, Map<String, QName>> processorNames;
+    
     /**
      * The known validators. This map is of the form <QName, Class<?>> or
      * <QName, Validator>.
@@ -394,6 +408,39 @@ public class WSSConfig {
         return new WSSConfig();
     }
 
+    /**
+     * @return a new WSSConfig instance with the same settings, actions, processors and
+     *         validators as this instance. Changing the returned copy does not affect this
+     *         instance, although any Action, Processor or Validator instances are shared.
+     */
+    public WSSConfig copy() {
+        WSSConfig copy = new WSSConfig();
+        copy.addInclusivePrefixes = addInclusivePrefixes;
+        copy.precisionInMilliSeconds = precisionInMilliSeconds;
+        copy.enableSignatureConfirmation = enableSignatureConfirmation;
+        copy.timeStampStrict = timeStampStrict;
+        copy.requiredPasswordType = requiredPasswordType;
+        copy.allowUsernameTokenNoPassword = allowUsernameTokenNoPassword;
+        copy.timeStampTTL = timeStampTTL;
+        copy.timeStampFutureTTL = timeStampFutureTTL;
+        copy.utTTL = utTTL;
+        copy.utFutureTTL = utFutureTTL;
+        copy.handleCustomPasswordTypes = handleCustomPasswordTypes;
+        copy.allowNamespaceQualifiedPasswordTypes = allowNamespaceQualifiedPasswordTypes;
+        copy.passwordsAreEncoded = passwordsAreEncoded;
+        copy.validateSamlSubjectConfirmation = validateSamlSubjectConfirmation;
+        copy.currentTime = currentTime;
+        copy.metricsListener = metricsListener;
+        copy.idAllocator = idAllocator;
+        copy.actionMap.clear();
+        copy.actionMap.putAll(actionMap);
+        copy.processorMap.clear();
+        copy.processorMap.putAll(processorMap);
+        copy.validatorMap.clear();
+        copy.validatorMap.putAll(validatorMap);
+        return copy;
+    }
+
     /**
      * Checks if we need to use milliseconds in timestamps
      * 
@@ -613,6 +660,7 @@ public class WSSConfig {
      */
     public Class<?> setProcessor(QName el, Processor processor) {
         Object result = processorMap.put(el, processor);
+        processorNames = null;
         if (result instanceof Class<?>) {
             return (Class<?>)result;
         } else if (result instanceof Processor) {
@@ -628,6 +676,7 @@ public class WSSConfig {
      */
     public Class<?> setProcessor(QName el, Class<?> clazz) {
         Object result = processorMap.put(el, clazz);
+        processorNames = null;
         if (result instanceof Class<?>) {
             return (Class<?>)result;
         } else if (result instanceof Processor) {
@@ -695,6 +744,37 @@ public class WSSConfig {
         return null;
     }
     
+    /**
+     * @return      the QName under which a processor is registered for the
+     *              given namespace and local name of a SOAP security header
+     *              element, or null if there is no processor for it. No
+     *              QName is created for the lookup.
+     */
+    public QName getProcessorName(String namespace, String localName) {
+        Map<String, Map<String, QName>> names = processorNames;
+        if (names == null) {
+            names = new HashMap<String, Map<String, QName>>();
+            for (Map.Entry<QName, Object> entry : processorMap.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                QName el = entry.getKey();
+                Map<String, QName> localNames = names.get(el.getNamespaceURI());
+                if (localNames == null) {
+                    localNames = new HashMap<String, QName>();
+                    names.put(el.getNamespaceURI(), localNames);
+                }
+                localNames.put(el.getLocalPart(), el);
+            }
+            processorNames = names;
+        }
+        Map<String, QName> localNames = names.get(namespace == null ? "" : namespace);
+        if (localNames == null) {
+            return null;
+        }
+        return localNames.get(localName);
+    }
+    
     /**
      * @return      the SOAP processor associated with the specified
      *              QName.  The QName is intended to refer to an element
@@ -781,4 +861,12 @@ public class WSSConfig {
     public void setCurrentTime(WSTimeSource currentTime) {
         this.currentTime = currentTime;
     }
+
+    public SecurityMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public void setMetricsListener(SecurityMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
 }
@@ -0,0 +1,324 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Processes a batch of documents with a shared configuration, e.g. for the offline verification
+ * of archived messages or the bulk signing of messages.
+ * 
+ * The documents are processed by the (optional) ExecutorService, or else one after the other in
+ * the calling thread. At most maxInFlight documents are submitted to the ExecutorService at a
+ * time, so that a large (or lazily loaded) batch doesn't fill the queue of the ExecutorService.
+ * Each thread uses its own WSSecurityEngine and WSSecurityEngineContext, which are reused for all
+ * the documents it processes: the RequestData of the context is cleared and configured again via
+ * configureRequestData before each document. Subclasses can override configureRequestData to
+ * supply further configuration, such as replay caches or BSP settings. The context of the calling
+ * thread is removed once the batch has been processed, while the threads of the ExecutorService
+ * keep theirs (see WSSecurityEngineContext.remove()).
+ * 
+ * The results are returned in the order of the documents. A failure of one document is
+ * recorded in its WSSecurityBatchResult and does not affect the other documents.
+ */
+public class WSSecurityBatchEngine {
+    
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    
+    private static org.slf4j.Logger log = 
+        org.slf4j.LoggerFactory.getLogger(WSSecurityBatchEngine.class);
+    
+    private volatile WSSConfig wssConfig;
+    private ExecutorService executorService;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private String actor;
+    private CallbackHandler callbackHandler;
+    private Crypto sigVerCrypto;
+    private Crypto decCrypto;
+    
+    private final ThreadLocal<WSSecurityEngine> engines = new ThreadLocal<WSSecurityEngine>();
+    
+    /**
+     * Process the security header of each document.
+     * 
+     * @param documents the documents to process
+     * @return the results of the security header processing of each document, in order
+     * @throws WSSecurityException if the calling thread is interrupted while waiting for the
+     *                             results
+     */
+    public List<WSSecurityBatchResult<List<WSSecurityEngineResult>>> processSecurityHeaders(
+        Iterable<Document> documents
+    ) throws WSSecurityException {
+        return execute(documents, new WSSecurityBatchTask<List<WSSecurityEngineResult>>() {
+            public List<WSSecurityEngineResult> execute(
+                Document doc, WSSecurityEngine engine, RequestData requestData
+            ) throws WSSecurityException {
+                Element securityHeader = 
+                    WSSecurityUtil.getSecurityHeader(doc, actor == null ? "" : actor);
+                if (securityHeader == null) {
+                    return null;
+                }
+                return engine.processSecurityHeader(
+                    securityHeader, requestData, WSSecurityEngineContext.getThreadContext()
+                );
+            }
+        });
+    }
+    
+    /**
+     * Run the given task for each document.
+     * 
+     * @param documents the documents to process
+     * @param task the task to run for each document
+     * @return the results of the task for each document, in order
+     * @throws WSSecurityException if the calling thread is interrupted while waiting for the
+     *                             results
+     */
+    public <T> List<WSSecurityBatchResult<T>> execute(
+        Iterable<Document> documents, WSSecurityBatchTask<T> task
+    ) throws WSSecurityException {
+        List<WSSecurityBatchResult<T>> results = new ArrayList<WSSecurityBatchResult<T>>();
+        if (executorService == null) {
+            try {
+                int index = 0;
+                for (Document doc : documents) {
+                    results.add(executeTask(index++, doc, task));
+                }
+            } finally {
+                // the calling thread may outlive the application, e.g. in a container
+                WSSecurityEngineContext.remove();
+            }
+            return results;
+        }
+        
+        List<Future<WSSecurityBatchResult<T>>> futures = 
+            new ArrayList<Future<WSSecurityBatchResult<T>>>();
+        Semaphore window = new Semaphore(maxInFlight);
+        try {
+            int index = 0;
+            for (Document doc : documents) {
+                window.acquire();
+                try {
+                    futures.add(
+                        executorService.submit(new BatchCallable<T>(index++, doc, task, window))
+                    );
+                } catch (RejectedExecutionException e) {
+                    window.release();
+                    throw e;
+                }
+            }
+            for (Future<WSSecurityBatchResult<T>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            for (Future<WSSecurityBatchResult<T>> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        } catch (ExecutionException e) {
+            // executeTask records any Exception, so only an Error can get here
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+        return results;
+    }
+    
+    /**
+     * Configure the (cleared) RequestData of the calling thread with the shared configuration
+     * of the batch, before it is used to process a document.
+     * @param requestData the RequestData to configure
+     */
+    protected void configureRequestData(RequestData requestData) {
+        requestData.setWssConfig(getWssConfig());
+        requestData.setActor(actor);
+        requestData.setCallbackHandler(callbackHandler);
+        requestData.setSigVerCrypto(sigVerCrypto);
+        requestData.setDecCrypto(decCrypto);
+    }
+    
+    private <T> WSSecurityBatchResult<T> executeTask(
+        int index, Document doc, WSSecurityBatchTask<T> task
+    ) {
+        WSSecurityEngine engine = engines.get();
+        if (engine == null) {
+            engine = new WSSecurityEngine();
+            engines.set(engine);
+        }
+        engine.setWssConfig(getWssConfig());
+        
+        WSSecurityEngineContext context = WSSecurityEngineContext.getThreadContext();
+        try {
+            RequestData requestData = context.getRequestData();
+            configureRequestData(requestData);
+            T result = task.execute(doc, engine, requestData);
+            return new WSSecurityBatchResult<T>(index, doc, result, null);
+        } catch (Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Processing of document " + index + " failed", e);
+            }
+            return new WSSecurityBatchResult<T>(index, doc, null, e);
+        } finally {
+            // don't keep the last document of a batch reachable from the worker thread
+            context.reset();
+        }
+    }
+    
+    private class BatchCallable<T> implements Callable<WSSecurityBatchResult<T>> {
+        
+        private final int index;
+        private final Document doc;
+        private final WSSecurityBatchTask<T> task;
+        private final Semaphore window;
+        
+        BatchCallable(int index, Document doc, WSSecurityBatchTask<T> task, Semaphore window) {
+            this.index = index;
+            this.doc = doc;
+            this.task = task;
+            this.window = window;
+        }
+        
+        public WSSecurityBatchResult<T> call() {
+            try {
+                return executeTask(index, doc, task);
+            } finally {
+                window.release();
+            }
+        }
+    }
+    
+    /**
+     * @return the WSSConfig shared by all documents of a batch
+     */
+    public WSSConfig getWssConfig() {
+        WSSConfig config = wssConfig;
+        if (config == null) {
+            synchronized (this) {
+                config = wssConfig;
+                if (config == null) {
+                    config = WSSConfig.getNewInstance();
+                    wssConfig = config;
+                }
+            }
+        }
+        return config;
+    }
+    
+    /**
+     * @param wssConfig the WSSConfig shared by all documents of a batch
+     */
+    public void setWssConfig(WSSConfig wssConfig) {
+        this.wssConfig = wssConfig;
+    }
+    
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+    
+    /**
+     * Set the ExecutorService to process the documents with. If it is null (the default), the
+     * documents are processed one after the other in the calling thread.
+     * @param executorService the ExecutorService to process the documents with
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+    
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+    
+    /**
+     * Set the maximum number of documents which are submitted to the ExecutorService at a time.
+     * The default is 64.
+     * @param maxInFlight the maximum number of documents submitted at a time
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            this.maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        } else {
+            this.maxInFlight = maxInFlight;
+        }
+    }
+    
+    public String getActor() {
+        return actor;
+    }
+    
+    /**
+     * @param actor the actor of the security headers to process
+     */
+    public void setActor(String actor) {
+        this.actor = actor;
+    }
+    
+    public CallbackHandler getCallbackHandler() {
+        return callbackHandler;
+    }
+    
+    /**
+     * @param callbackHandler the CallbackHandler to resolve passwords and keys with
+     */
+    public void setCallbackHandler(CallbackHandler callbackHandler) {
+        this.callbackHandler = callbackHandler;
+    }
+    
+    public Crypto getSigVerCrypto() {
+        return sigVerCrypto;
+    }
+    
+    /**
+     * @param sigVerCrypto the Crypto to verify signatures with
+     */
+    public void setSigVerCrypto(Crypto sigVerCrypto) {
+        this.sigVerCrypto = sigVerCrypto;
+    }
+    
+    public Crypto getDecCrypto() {
+        return decCrypto;
+    }
+    
+    /**
+     * @param decCrypto the Crypto to decrypt with
+     */
+    public void setDecCrypto(Crypto decCrypto) {
+        this.decCrypto = decCrypto;
+    }
+    
+}
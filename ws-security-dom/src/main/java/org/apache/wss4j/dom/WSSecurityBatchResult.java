@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom;
+
+import org.w3c.dom.Document;
+
+/**
+ * The outcome of the processing of a single document by the WSSecurityBatchEngine: either the
+ * result of the WSSecurityBatchTask or the exception it failed with.
+ */
+public class WSSecurityBatchResult<T> {
+
+    private final int index;
+    private final Document document;
+    private final T result;
+    private final Exception exception;
+
+    public WSSecurityBatchResult(int index, Document document, T result, Exception exception) {
+        this.index = index;
+        this.document = document;
+        this.result = result;
+        this.exception = exception;
+    }
+
+    /**
+     * Get the position of the document in the batch
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the processed document
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * Get the result of the task, or null if it failed
+     */
+    public T getResult() {
+        return result;
+    }
+
+    /**
+     * Get the exception the task failed with, or null if it succeeded
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * @return true if the task succeeded for this document
+     */
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+}
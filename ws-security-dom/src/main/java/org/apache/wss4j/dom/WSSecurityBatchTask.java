@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom;
+
+import org.apache.wss4j.dom.handler.RequestData;
+import org.w3c.dom.Document;
+
+/**
+ * A unit of work run by the WSSecurityBatchEngine for each document of a batch, for example the
+ * verification of its security header or the signing of it with a WSSecSignature builder.
+ *
+ * A task may be run concurrently by several threads, for different documents. The engine and the
+ * RequestData passed to it are confined to the calling thread and reused for the next document
+ * processed by that thread, so they must not be kept beyond the call.
+ */
+public interface WSSecurityBatchTask<T> {
+
+    /**
+     * Process a single document of the batch.
+     *
+     * @param doc the document to process
+     * @param engine the WSSecurityEngine of the calling thread
+     * @param requestData the RequestData of the calling thread, configured with the shared
+     *                    configuration of the batch
+     * @return the result for this document
+     * @throws Exception if the document cannot be processed. The exception is recorded as the
+     *                   failure of this document, the other documents are still processed.
+     */
+    T execute(Document doc, WSSecurityEngine engine, RequestData requestData) throws Exception;
+
+}
@@ -29,6 +29,8 @@ import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.CallbackLookup;
 import org.apache.wss4j.dom.processor.Processor;
@@ -132,6 +134,7 @@ public class WSSecurityEngine {
     private WSSConfig wssConfig;
     private boolean doDebug;
     private CallbackLookup callbackLookup;
+    private boolean useThreadContext;
     
     /**
      * @return      the WSSConfig object set on this instance
@@ -173,6 +176,25 @@ public class WSSecurityEngine {
         return callbackLookup;
     }
     
+    /**
+     * Set whether processSecurityHeader(Element, RequestData), and so every entry point that
+     * does not take a WSSecurityEngineContext, reuses the WSSecurityEngineContext of the calling
+     * thread. The default is false. If this is enabled, every thread that processes a message
+     * keeps its context until WSSecurityEngineContext.remove() is called on it, which must be
+     * done before e.g. an application that runs on the threads of a container is undeployed.
+     * @param useThreadContext whether to reuse the WSSecurityEngineContext of the calling thread
+     */
+    public void setUseThreadContext(boolean useThreadContext) {
+        this.useThreadContext = useThreadContext;
+    }
+    
+    /**
+     * @return whether the WSSecurityEngineContext of the calling thread is reused
+     */
+    public boolean isUseThreadContext() {
+        return useThreadContext;
+    }
+    
     /**
      * Process the security header given the soap envelope as W3C document.
      * <p/>
@@ -361,6 +383,9 @@ public class WSSecurityEngine {
      * Note that additional child elements can be processed if appropriate
      * Processors have been registered with the WSSCondig instance set
      * on this class.
+     * 
+     * The per-message structures are taken from the WSSecurityEngineContext of the
+     * calling thread if useThreadContext is enabled, and are allocated otherwise.
      *
      * @param securityHeader the <code>wsse:Security</code> header element
      * @param requestData    the RequestData associated with the request.  It should
@@ -377,21 +402,76 @@ public class WSSecurityEngine {
         Element securityHeader,
         RequestData requestData
     ) throws WSSecurityException {
-        List<WSSecurityEngineResult> returnResults = new ArrayList<WSSecurityEngineResult>();
+        WSSecurityEngineContext context = null;
+        if (useThreadContext) {
+            context = WSSecurityEngineContext.getThreadContext();
+        }
+        return processSecurityHeader(securityHeader, requestData, context);
+    }
+    
+    /**
+     * Process the security header given the <code>wsse:Security</code> DOM
+     * Element, reusing the per-message structures of the given WSSecurityEngineContext
+     * instead of allocating them.
+     *
+     * @param securityHeader the <code>wsse:Security</code> header element
+     * @param requestData    the RequestData associated with the request.  It should
+     *                       be able to provide the callback handler, cryptos, etc...
+     *                       as needed by the processing
+     * @param context        the WSSecurityEngineContext of the calling thread (may be null)
+     * @return a List of {@link WSSecurityEngineResult}
+     * @throws WSSecurityException
+     */
+    public List<WSSecurityEngineResult> processSecurityHeader(
+        Element securityHeader,
+        RequestData requestData,
+        WSSecurityEngineContext context
+    ) throws WSSecurityException {
         if (securityHeader == null) {
-            return returnResults;
+            return new ArrayList<WSSecurityEngineResult>();
         }
     
         if (requestData.getWssConfig() == null) {
             requestData.setWssConfig(getWssConfig());
         }
         
+        WSDocInfo wsDocInfo = null;
+        if (context != null) {
+            wsDocInfo = context.acquireDocInfo(securityHeader.getOwnerDocument());
+        }
+        List<List<WSSecurityEngineResult>> tokenResults;
+        if (wsDocInfo == null) {
+            wsDocInfo = new WSDocInfo(securityHeader.getOwnerDocument());
+            tokenResults = new ArrayList<List<WSSecurityEngineResult>>();
+            context = null;
+        } else {
+            tokenResults = context.getTokenResults();
+        }
+        
+        SecurityMetricsListener metrics = requestData.getMetricsListener();
+        metrics.phaseStarted(SecurityPhase.SECURITY_HEADER);
+        try {
+            return processSecurityHeader(securityHeader, requestData, metrics, wsDocInfo, tokenResults);
+        } finally {
+            metrics.phaseFinished(SecurityPhase.SECURITY_HEADER);
+            if (context != null) {
+                context.release();
+            }
+        }
+    }
+    
+    private List<WSSecurityEngineResult> processSecurityHeader(
+        Element securityHeader,
+        RequestData requestData,
+        SecurityMetricsListener metrics,
+        WSDocInfo wsDocInfo,
+        List<List<WSSecurityEngineResult>> tokenResults
+    ) throws WSSecurityException {
         //
         // Gather some info about the document to process and store
         // it for retrieval. Store the implementation of signature crypto
         // (no need for encryption --- yet)
         //
-        WSDocInfo wsDocInfo = new WSDocInfo(securityHeader.getOwnerDocument());
         wsDocInfo.setCallbackLookup(callbackLookup);
         wsDocInfo.setCrypto(requestData.getSigVerCrypto());
         wsDocInfo.setSecurityHeader(securityHeader);
@@ -403,24 +483,36 @@ public class WSSecurityEngine {
         while (node != null) {
             Node nextSibling = node.getNextSibling();
             if (Node.ELEMENT_NODE == node.getNodeType()) {
-                QName el = new QName(node.getNamespaceURI(), node.getLocalName());
+                String namespace = node.getNamespaceURI();
+                String localName = node.getLocalName();
                 
                 // Check for multiple timestamps
-                if (foundTimestamp && el.equals(TIMESTAMP)) {
-                    requestData.getBSPEnforcer().handleBSPRule(BSPRule.R3227);
-                } else if (el.equals(TIMESTAMP)) {
-                    foundTimestamp = true;
+                if (WSConstants.TIMESTAMP_TOKEN_LN.equals(localName) 
+                    && WSConstants.WSU_NS.equals(namespace)) {
+                    if (foundTimestamp) {
+                        requestData.getBSPEnforcer().handleBSPRule(BSPRule.R3227);
+                    } else {
+                        foundTimestamp = true;
+                    }
                 }
                 //
                 // Call the processor for this token. After the processor returns, 
                 // store it for later retrieval. The token processor may store some
                 // information about the processed token
                 //
-                Processor p = cfg.getProcessor(el);
+                QName el = cfg.getProcessorName(namespace, localName);
+                Processor p = null;
+                if (el != null) {
+                    p = cfg.getProcessor(el);
+                }
                 if (p != null) {
-                    List<WSSecurityEngineResult> results = 
-                        p.handleToken((Element) node, requestData, wsDocInfo);
-                    returnResults.addAll(0, results);
+                    metrics.tokenProcessed(el);
+                    metrics.phaseStarted(SecurityPhase.TOKEN_PROCESSING);
+                    try {
+                        tokenResults.add(p.handleToken((Element) node, requestData, wsDocInfo));
+                    } finally {
+                        metrics.phaseFinished(SecurityPhase.TOKEN_PROCESSING);
+                    }
                 } else {
                     if (doDebug) {
                         log.debug(
@@ -442,6 +534,16 @@ public class WSSecurityEngine {
             }
         }
         
+        // The results of the last token come first
+        int size = 0;
+        for (int i = 0; i < tokenResults.size(); i++) {
+            size += tokenResults.get(i).size();
+        }
+        List<WSSecurityEngineResult> returnResults = new ArrayList<WSSecurityEngineResult>(size);
+        for (int i = tokenResults.size() - 1; i >= 0; i--) {
+            returnResults.addAll(tokenResults.get(i));
+        }
+        
         // Validate SAML Subject Confirmation requirements
         if (wssConfig.isValidateSamlSubjectConfirmation()) {
             Element bodyElement = 
@@ -449,7 +551,6 @@ public class WSSecurityEngine {
             
             DOMSAMLUtil.validateSAMLResults(returnResults, requestData.getTlsCerts(), bodyElement);
         }
-        
         return returnResults;
     }
 }
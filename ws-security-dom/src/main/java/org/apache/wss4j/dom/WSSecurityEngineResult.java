@@ -21,17 +21,43 @@ package org.apache.wss4j.dom;
 
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.dom.message.token.BinarySecurity;
+import org.apache.wss4j.dom.message.token.DerivedKeyToken;
 import org.apache.wss4j.dom.message.token.SecurityContextToken;
 import org.apache.wss4j.dom.message.token.SignatureConfirmation;
 import org.apache.wss4j.dom.message.token.Timestamp;
 import org.apache.wss4j.dom.message.token.UsernameToken;
+import org.apache.wss4j.dom.str.STRParser;
+import org.w3c.dom.Element;
 
+import java.io.Serializable;
 import java.security.Principal;
+import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
+import javax.security.auth.Subject;
 
-public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
+/**
+ * The result of the processing of a security token or action. The values of the well-known
+ * TAG_* keys are held in fixed slots, and the action as a primitive int, so that creating and
+ * scanning results does not need a hash table per result. The Map view supports any other key,
+ * which is stored in a HashMap that is only created when such a key is put.
+ * 
+ * Migration note: up to WSS4J 1.6 this class extended HashMap&lt;String, Object&gt;, it now
+ * extends AbstractMap&lt;String, Object&gt;. This breaks binary compatibility, so code that
+ * uses the results must be recompiled. Code which casts a result to HashMap or calls
+ * HashMap-only methods such as clone() must use the Map interface instead, or copy the result
+ * into a new HashMap. The serialized form has changed as well. The value of TAG_ACTION must be
+ * an Integer.
+ */
+public class WSSecurityEngineResult extends AbstractMap<String, Object> implements Serializable {
     
     //
     // Tokens
@@ -40,7 +66,7 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
     /**
      * 
      */
-    private static final long serialVersionUID = 8877354445092724300L;
+    private static final long serialVersionUID = -1187620435542651337L;
 
     /**
      * Tag denoting the SAML Assertion found, if applicable.
@@ -227,18 +253,70 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
      */
     public static final String TAG_ID = "id";
     
+    private static final int ACTION = 0;
+    private static final int ID = 1;
+    private static final int PRINCIPAL = 2;
+    private static final int SUBJECT = 3;
+    private static final int X509_CERTIFICATE = 4;
+    private static final int X509_CERTIFICATES = 5;
+    private static final int X509_REFERENCE_TYPE = 6;
+    private static final int SIGNATURE_VALUE = 7;
+    private static final int SECRET = 8;
+    private static final int ENCRYPTED_EPHEMERAL_KEY = 9;
+    private static final int PUBLIC_KEY = 10;
+    private static final int DATA_REF_URIS = 11;
+    private static final int VALIDATED_TOKEN = 12;
+    private static final int TOKEN_ELEMENT = 13;
+    private static final int SAML_ASSERTION = 14;
+    private static final int TIMESTAMP = 15;
+    private static final int SECURITY_CONTEXT_TOKEN = 16;
+    private static final int USERNAME_TOKEN = 17;
+    private static final int DERIVED_KEY_TOKEN = 18;
+    private static final int SIGNATURE_CONFIRMATION = 19;
+    private static final int BINARY_SECURITY_TOKEN = 20;
+    private static final int TRANSFORMED_TOKEN = 21;
+    private static final int ENCRYPTED_KEY_TRANSPORT_METHOD = 22;
+    private static final int SIGNATURE_METHOD = 23;
+    private static final int CANONICALIZATION_METHOD = 24;
+    
+    /**
+     * The well-known tags, indexed by their slot
+     */
+    private static final String[] TAGS = {
+        TAG_ACTION, TAG_ID, TAG_PRINCIPAL, TAG_SUBJECT, TAG_X509_CERTIFICATE, 
+        TAG_X509_CERTIFICATES, TAG_X509_REFERENCE_TYPE, TAG_SIGNATURE_VALUE, TAG_SECRET,
+        TAG_ENCRYPTED_EPHEMERAL_KEY, TAG_PUBLIC_KEY, TAG_DATA_REF_URIS, TAG_VALIDATED_TOKEN,
+        TAG_TOKEN_ELEMENT, TAG_SAML_ASSERTION, TAG_TIMESTAMP, TAG_SECURITY_CONTEXT_TOKEN,
+        TAG_USERNAME_TOKEN, TAG_DERIVED_KEY_TOKEN, TAG_SIGNATURE_CONFIRMATION,
+        TAG_BINARY_SECURITY_TOKEN, TAG_TRANSFORMED_TOKEN, TAG_ENCRYPTED_KEY_TRANSPORT_METHOD,
+        TAG_SIGNATURE_METHOD, TAG_CANONICALIZATION_METHOD
+    };
+    
+    private static final Map<String, Integer> SLOTS = new HashMap<String, Integer>();
+    
+    static {
+        for (int i = 0; i < TAGS.length; i++) {
+            SLOTS.put(TAGS[i], i);
+        }
+    }
+    
+    private int action;
+    private final Object[] values = new Object[TAGS.length];
+    private int present;
+    private HashMap<String, Object> extras;
+    
     public WSSecurityEngineResult(int act) {
-        put(TAG_ACTION, act);
+        setAction(act);
     }
     
     public WSSecurityEngineResult(
         int act, 
         SamlAssertionWrapper ass
     ) {
-        put(TAG_ACTION, act);
-        put(TAG_SAML_ASSERTION, ass);
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
-        put(TAG_TOKEN_ELEMENT, ass.getElement());
+        setAction(act);
+        set(SAML_ASSERTION, ass);
+        set(VALIDATED_TOKEN, Boolean.FALSE);
+        set(TOKEN_ELEMENT, ass.getElement());
     }
 
     public WSSecurityEngineResult(
@@ -247,14 +325,14 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
         X509Certificate[] certs, 
         byte[] sv
     ) {
-        put(TAG_ACTION, act);
-        put(TAG_PRINCIPAL, princ);
-        put(TAG_X509_CERTIFICATES, certs);
-        put(TAG_SIGNATURE_VALUE, sv);
+        setAction(act);
+        set(PRINCIPAL, princ);
+        set(X509_CERTIFICATES, certs);
+        set(SIGNATURE_VALUE, sv);
         if (certs != null) {
-            put(TAG_X509_CERTIFICATE, certs[0]);
+            set(X509_CERTIFICATE, certs[0]);
         }
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
+        set(VALIDATED_TOKEN, Boolean.FALSE);
     }
 
     public
@@ -266,7 +344,7 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
         byte[] sv
     ) {
         this(act, princ, certs, sv);
-        put(TAG_DATA_REF_URIS, dataRefs);
+        set(DATA_REF_URIS, dataRefs);
     }
     
     public WSSecurityEngineResult(
@@ -275,11 +353,11 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
         byte[] encryptedKeyBytes,
         List<WSDataRef> dataRefUris
     ) {
-        put(TAG_ACTION, act);
-        put(TAG_SECRET, decryptedKey);
-        put(TAG_ENCRYPTED_EPHEMERAL_KEY, encryptedKeyBytes);
-        put(TAG_DATA_REF_URIS, dataRefUris);
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
+        setAction(act);
+        set(SECRET, decryptedKey);
+        set(ENCRYPTED_EPHEMERAL_KEY, encryptedKeyBytes);
+        set(DATA_REF_URIS, dataRefUris);
+        set(VALIDATED_TOKEN, Boolean.FALSE);
     }
     
     public WSSecurityEngineResult(
@@ -289,42 +367,42 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
         List<WSDataRef> dataRefUris,
         X509Certificate[] certs
     ) {
-        put(TAG_ACTION, act);
-        put(TAG_SECRET, decryptedKey);
-        put(TAG_ENCRYPTED_EPHEMERAL_KEY, encryptedKeyBytes);
-        put(TAG_DATA_REF_URIS, dataRefUris);
-        put(TAG_X509_CERTIFICATES, certs);
+        setAction(act);
+        set(SECRET, decryptedKey);
+        set(ENCRYPTED_EPHEMERAL_KEY, encryptedKeyBytes);
+        set(DATA_REF_URIS, dataRefUris);
+        set(X509_CERTIFICATES, certs);
         if (certs != null) {
-            put(TAG_X509_CERTIFICATE, certs[0]);
+            set(X509_CERTIFICATE, certs[0]);
         }
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
+        set(VALIDATED_TOKEN, Boolean.FALSE);
     }
     
     public WSSecurityEngineResult(int act, List<WSDataRef> dataRefUris) {
-        put(TAG_ACTION, act);
-        put(TAG_DATA_REF_URIS, dataRefUris);
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
+        setAction(act);
+        set(DATA_REF_URIS, dataRefUris);
+        set(VALIDATED_TOKEN, Boolean.FALSE);
     }
     
     public WSSecurityEngineResult(int act, Timestamp tstamp) {
-        put(TAG_ACTION, act);
-        put(TAG_TIMESTAMP, tstamp);
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
-        put(TAG_TOKEN_ELEMENT, tstamp.getElement());
+        setAction(act);
+        set(TIMESTAMP, tstamp);
+        set(VALIDATED_TOKEN, Boolean.FALSE);
+        set(TOKEN_ELEMENT, tstamp.getElement());
     }
     
     public WSSecurityEngineResult(int act, SecurityContextToken sct) {
-        put(TAG_ACTION, act);
-        put(TAG_SECURITY_CONTEXT_TOKEN, sct);
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
-        put(TAG_TOKEN_ELEMENT, sct.getElement());
+        setAction(act);
+        set(SECURITY_CONTEXT_TOKEN, sct);
+        set(VALIDATED_TOKEN, Boolean.FALSE);
+        set(TOKEN_ELEMENT, sct.getElement());
     }
     
     public WSSecurityEngineResult(int act, SignatureConfirmation sc) {
-        put(TAG_ACTION, act);
-        put(TAG_SIGNATURE_CONFIRMATION, sc);
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
-        put(TAG_TOKEN_ELEMENT, sc.getElement());
+        setAction(act);
+        set(SIGNATURE_CONFIRMATION, sc);
+        set(VALIDATED_TOKEN, Boolean.FALSE);
+        set(TOKEN_ELEMENT, sc.getElement());
     }
     
     public WSSecurityEngineResult(int act, UsernameToken usernameToken) {
@@ -332,23 +410,393 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
     }
     
     public WSSecurityEngineResult(int act, UsernameToken usernameToken, Principal principal) {
-        put(TAG_ACTION, act);
-        put(TAG_USERNAME_TOKEN, usernameToken);
-        put(TAG_PRINCIPAL, principal);
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
-        put(TAG_TOKEN_ELEMENT, usernameToken.getElement());
+        setAction(act);
+        set(USERNAME_TOKEN, usernameToken);
+        set(PRINCIPAL, principal);
+        set(VALIDATED_TOKEN, Boolean.FALSE);
+        set(TOKEN_ELEMENT, usernameToken.getElement());
     }
 
     public WSSecurityEngineResult(int act, BinarySecurity token, X509Certificate[] certs) {
-        put(TAG_ACTION, act);
-        put(TAG_BINARY_SECURITY_TOKEN, token);
-        put(TAG_X509_CERTIFICATES, certs);
+        setAction(act);
+        set(BINARY_SECURITY_TOKEN, token);
+        set(X509_CERTIFICATES, certs);
         if (certs != null) {
-            put(TAG_X509_CERTIFICATE, certs[0]);
+            set(X509_CERTIFICATE, certs[0]);
+        }
+        set(VALIDATED_TOKEN, Boolean.FALSE);
+        set(TOKEN_ELEMENT, token.getElement());
+    }
+    
+    /**
+     * @return the cryptographic operation performed (one of the WSConstants action values)
+     */
+    public int getAction() {
+        return action;
+    }
+    
+    /**
+     * @return the (wsu) Id of the token corresponding to this result
+     */
+    public String getId() {
+        return (String)values[ID];
+    }
+    
+    /**
+     * @return the security principal found, if applicable
+     */
+    public Principal getPrincipal() {
+        return (Principal)values[PRINCIPAL];
+    }
+    
+    /**
+     * @return the security subject found, if applicable
+     */
+    public Subject getSubject() {
+        return (Subject)values[SUBJECT];
+    }
+    
+    /**
+     * @return the X.509 certificate found, if applicable
+     */
+    public X509Certificate getX509Certificate() {
+        return (X509Certificate)values[X509_CERTIFICATE];
+    }
+    
+    /**
+     * @return the X.509 certificate chain found, if applicable
+     */
+    public X509Certificate[] getX509Certificates() {
+        return (X509Certificate[])values[X509_CERTIFICATES];
+    }
+    
+    /**
+     * @return the signature value of a signed element, if applicable
+     */
+    public byte[] getSignatureValue() {
+        return (byte[])values[SIGNATURE_VALUE];
+    }
+    
+    /**
+     * @return the secret associated with this token, if applicable
+     */
+    public byte[] getSecret() {
+        return (byte[])values[SECRET];
+    }
+    
+    /**
+     * @return the encrypted key bytes, if applicable
+     */
+    public byte[] getEncryptedEphemeralKey() {
+        return (byte[])values[ENCRYPTED_EPHEMERAL_KEY];
+    }
+    
+    /**
+     * @return the PublicKey associated with this token, if applicable
+     */
+    public PublicKey getPublicKey() {
+        return (PublicKey)values[PUBLIC_KEY];
+    }
+    
+    /**
+     * @return the references to the protected elements, if applicable
+     */
+    @SuppressWarnings("unchecked")
+    public List<WSDataRef> getDataRefs() {
+        return (List<WSDataRef>)values[DATA_REF_URIS];
+    }
+    
+    /**
+     * @return whether the token has been validated by a Validator implementation
+     */
+    public boolean isValidatedToken() {
+        return Boolean.TRUE.equals(values[VALIDATED_TOKEN]);
+    }
+    
+    /**
+     * @return the DOM Element of the processed token, if applicable
+     */
+    public Element getTokenElement() {
+        return (Element)values[TOKEN_ELEMENT];
+    }
+    
+    /**
+     * @return the SAML Assertion found, if applicable
+     */
+    public SamlAssertionWrapper getSamlAssertion() {
+        return (SamlAssertionWrapper)values[SAML_ASSERTION];
+    }
+    
+    /**
+     * @return the Timestamp found, if applicable
+     */
+    public Timestamp getTimestamp() {
+        return (Timestamp)values[TIMESTAMP];
+    }
+    
+    /**
+     * @return the UsernameToken found, if applicable
+     */
+    public UsernameToken getUsernameToken() {
+        return (UsernameToken)values[USERNAME_TOKEN];
+    }
+    
+    /**
+     * @return the BinarySecurityToken found, if applicable
+     */
+    public BinarySecurity getBinarySecurityToken() {
+        return (BinarySecurity)values[BINARY_SECURITY_TOKEN];
+    }
+    
+    /**
+     * @return the transformed token (see TAG_TRANSFORMED_TOKEN), if applicable
+     */
+    public SamlAssertionWrapper getTransformedToken() {
+        return (SamlAssertionWrapper)values[TRANSFORMED_TOKEN];
+    }
+    
+    /**
+     * @return the SecurityContextToken found, if applicable
+     */
+    public SecurityContextToken getSecurityContextToken() {
+        return (SecurityContextToken)values[SECURITY_CONTEXT_TOKEN];
+    }
+    
+    /**
+     * @return the DerivedKeyToken found, if applicable
+     */
+    public DerivedKeyToken getDerivedKeyToken() {
+        return (DerivedKeyToken)values[DERIVED_KEY_TOKEN];
+    }
+    
+    /**
+     * @return the SignatureConfirmation found, if applicable
+     */
+    public SignatureConfirmation getSignatureConfirmation() {
+        return (SignatureConfirmation)values[SIGNATURE_CONFIRMATION];
+    }
+    
+    /**
+     * @return how the X.509 certificate (chain) was referenced, if applicable
+     */
+    public STRParser.REFERENCE_TYPE getX509ReferenceType() {
+        return (STRParser.REFERENCE_TYPE)values[X509_REFERENCE_TYPE];
+    }
+    
+    /**
+     * @return the encrypted key transport algorithm, if applicable
+     */
+    public String getEncryptedKeyTransportMethod() {
+        return (String)values[ENCRYPTED_KEY_TRANSPORT_METHOD];
+    }
+    
+    /**
+     * @return the algorithm that was used to sign the message, if applicable
+     */
+    public String getSignatureMethod() {
+        return (String)values[SIGNATURE_METHOD];
+    }
+    
+    /**
+     * @return the algorithm that was used to do canonicalization, if applicable
+     */
+    public String getCanonicalizationMethod() {
+        return (String)values[CANONICALIZATION_METHOD];
+    }
+    
+    //
+    // Map view
+    //
+    
+    @Override
+    public Object get(Object key) {
+        int slot = getSlot(key);
+        if (slot >= 0) {
+            return isPresent(slot) ? getValue(slot) : null;
+        }
+        return extras == null ? null : extras.get(key);
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = getSlot(key);
+        if (slot >= 0) {
+            return isPresent(slot);
+        }
+        return extras != null && extras.containsKey(key);
+    }
+    
+    /**
+     * Put a value. The value of TAG_ACTION must be an Integer.
+     */
+    @Override
+    public Object put(String key, Object value) {
+        int slot = getSlot(key);
+        if (slot < 0) {
+            if (extras == null) {
+                extras = new HashMap<String, Object>();
+            }
+            return extras.put(key, value);
+        }
+        Object oldValue = isPresent(slot) ? getValue(slot) : null;
+        if (slot == ACTION) {
+            if (!(value instanceof Integer)) {
+                throw new IllegalArgumentException("The value of " + TAG_ACTION + " must be an Integer");
+            }
+            setAction((Integer)value);
+        } else {
+            set(slot, value);
+        }
+        return oldValue;
+    }
+    
+    @Override
+    public Object remove(Object key) {
+        int slot = getSlot(key);
+        if (slot < 0) {
+            return extras == null ? null : extras.remove(key);
+        }
+        Object oldValue = null;
+        if (isPresent(slot)) {
+            oldValue = getValue(slot);
+            unset(slot);
+        }
+        return oldValue;
+    }
+    
+    @Override
+    public void clear() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        action = 0;
+        present = 0;
+        extras = null;
+    }
+    
+    @Override
+    public int size() {
+        return Integer.bitCount(present) + (extras == null ? 0 : extras.size());
+    }
+    
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new EntrySet();
+    }
+    
+    private static int getSlot(Object key) {
+        Integer slot = SLOTS.get(key);
+        return slot == null ? -1 : slot;
+    }
+    
+    private boolean isPresent(int slot) {
+        return (present & (1 << slot)) != 0;
+    }
+    
+    private Object getValue(int slot) {
+        return slot == ACTION ? Integer.valueOf(action) : values[slot];
+    }
+    
+    private void setAction(int act) {
+        action = act;
+        present |= 1 << ACTION;
+    }
+    
+    private void set(int slot, Object value) {
+        values[slot] = value;
+        present |= 1 << slot;
+    }
+    
+    private void unset(int slot) {
+        values[slot] = null;
+        if (slot == ACTION) {
+            action = 0;
+        }
+        present &= ~(1 << slot);
+    }
+    
+    private int nextPresentSlot(int slot) {
+        int next = slot;
+        while (next < TAGS.length && !isPresent(next)) {
+            next++;
+        }
+        return next;
+    }
+    
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+        
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+        
+        @Override
+        public int size() {
+            return WSSecurityEngineResult.this.size();
+        }
+    }
+    
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+        
+        private int nextSlot = nextPresentSlot(0);
+        private int lastSlot = -1;
+        private Iterator<Map.Entry<String, Object>> extrasIterator;
+        private boolean lastFromExtras;
+        
+        public boolean hasNext() {
+            if (nextSlot < TAGS.length) {
+                return true;
+            }
+            if (extrasIterator == null) {
+                if (extras == null) {
+                    return false;
+                }
+                extrasIterator = extras.entrySet().iterator();
+            }
+            return extrasIterator.hasNext();
+        }
+        
+        public Map.Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextSlot < TAGS.length) {
+                lastSlot = nextSlot;
+                lastFromExtras = false;
+                nextSlot = nextPresentSlot(nextSlot + 1);
+                return new SlotEntry(lastSlot);
+            }
+            lastSlot = -1;
+            lastFromExtras = true;
+            return extrasIterator.next();
+        }
+        
+        public void remove() {
+            if (lastFromExtras) {
+                extrasIterator.remove();
+                lastFromExtras = false;
+            } else if (lastSlot >= 0) {
+                unset(lastSlot);
+                lastSlot = -1;
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+    
+    private final class SlotEntry extends AbstractMap.SimpleEntry<String, Object> {
+        
+        private static final long serialVersionUID = 4125376548823934127L;
+        
+        SlotEntry(int slot) {
+            super(TAGS[slot], WSSecurityEngineResult.this.getValue(slot));
+        }
+        
+        @Override
+        public Object setValue(Object value) {
+            put(getKey(), value);
+            return super.setValue(value);
         }
-        put(TAG_VALIDATED_TOKEN, Boolean.FALSE);
-        put(TAG_TOKEN_ELEMENT, token.getElement());
     }
-
     
 }
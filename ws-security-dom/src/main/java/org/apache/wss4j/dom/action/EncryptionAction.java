@@ -28,6 +28,8 @@ import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandler;
 import org.apache.wss4j.dom.handler.WSHandlerConstants;
@@ -37,6 +39,17 @@ import org.w3c.dom.Document;
 public class EncryptionAction implements Action {
     public void execute(WSHandler handler, int actionToDo, Document doc, RequestData reqData)
             throws WSSecurityException {
+        SecurityMetricsListener metrics = reqData.getMetricsListener();
+        metrics.phaseStarted(SecurityPhase.ENCRYPTION);
+        try {
+            encrypt(handler, actionToDo, doc, reqData);
+        } finally {
+            metrics.phaseFinished(SecurityPhase.ENCRYPTION);
+        }
+    }
+    
+    private void encrypt(WSHandler handler, int actionToDo, Document doc, RequestData reqData)
+            throws WSSecurityException {
         WSSecEncrypt wsEncrypt = new WSSecEncrypt(reqData.getWssConfig());
 
         if (reqData.getEncKeyId() != 0) {
@@ -74,6 +87,7 @@ public class EncryptionAction implements Action {
         
         wsEncrypt.setUserInfo(reqData.getEncUser());
         wsEncrypt.setUseThisCert(reqData.getEncCert());
+        wsEncrypt.setReusableSessionKey(reqData.getReusableSessionKey());
         Crypto crypto = reqData.getEncCrypto();
         boolean enableRevocation = Boolean.valueOf(handler.getStringOption(WSHandlerConstants.ENABLE_REVOCATION));
         if (enableRevocation && crypto != null) {
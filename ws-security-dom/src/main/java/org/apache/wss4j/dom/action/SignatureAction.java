@@ -25,6 +25,8 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSEncryptionPart;
 import org.apache.wss4j.dom.handler.RequestData;
@@ -37,6 +39,17 @@ import org.w3c.dom.Node;
 public class SignatureAction implements Action {
     public void execute(WSHandler handler, int actionToDo, Document doc, RequestData reqData)
             throws WSSecurityException {
+        SecurityMetricsListener metrics = reqData.getMetricsListener();
+        metrics.phaseStarted(SecurityPhase.SIGNATURE_CREATION);
+        try {
+            sign(handler, actionToDo, doc, reqData);
+        } finally {
+            metrics.phaseFinished(SecurityPhase.SIGNATURE_CREATION);
+        }
+    }
+    
+    private void sign(WSHandler handler, int actionToDo, Document doc, RequestData reqData)
+            throws WSSecurityException {
         CallbackHandler callbackHandler = 
             handler.getPasswordCallbackHandler(reqData);
         WSPasswordCallback passwordCallback = 
@@ -37,11 +37,18 @@ import org.apache.wss4j.dom.WSEncryptionPart;
 import org.apache.wss4j.dom.WSSConfig;
 import org.apache.wss4j.dom.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.AuthenticationResultCache;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.cache.ReplayCacheFactory;
+import org.apache.wss4j.common.cache.ReusableSessionKey;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.cache.SignatureVerificationCache;
+import org.apache.wss4j.common.cache.UsernameTokenCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.NoOpSecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
 import org.apache.wss4j.dom.message.WSSecHeader;
 import org.apache.wss4j.dom.message.token.UsernameToken;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
@@ -89,6 +96,11 @@ public class RequestData {
     protected boolean requireSignedEncryptedDataElements;
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
+    private UsernameTokenCache usernameTokenCache;
+    private SessionKeyCache sessionKeyCache;
+    private ReusableSessionKey reusableSessionKey;
+    private AuthenticationResultCache authenticationResultCache;
+    private SignatureVerificationCache signatureVerificationCache;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<Pattern>();
     private final List<BSPRule> ignoredBSPRules = new LinkedList<BSPRule>();
     private boolean appendSignatureAfterTimestamp;
@@ -96,11 +108,14 @@ public class RequestData {
     private AlgorithmSuite algorithmSuite;
     private AlgorithmSuite samlAlgorithmSuite;
     private boolean disableBSPEnforcement;
+    private BSPEnforcer bspEnforcer;
     private boolean allowRSA15KeyTransportAlgorithm;
     private boolean addUsernameTokenNonce;
     private boolean addUsernameTokenCreated;
     private Certificate[] tlsCerts;
     private boolean includeSignatureToken;
+    private SecurityPlan securityPlan;
+    private SecurityMetricsListener metricsListener;
 
     public void clear() {
         soapConstants = null;
@@ -122,8 +137,14 @@ public class RequestData {
         enableRevocation = false;
         timestampReplayCache = null;
         nonceReplayCache = null;
+        usernameTokenCache = null;
+        sessionKeyCache = null;
+        reusableSessionKey = null;
+        authenticationResultCache = null;
+        signatureVerificationCache = null;
         subjectDNPatterns.clear();
         ignoredBSPRules.clear();
+        bspEnforcer = null;
         appendSignatureAfterTimestamp = false;
         algorithmSuite = null;
         samlAlgorithmSuite = null;
@@ -134,6 +155,8 @@ public class RequestData {
         setAddUsernameTokenCreated(false);
         setTlsCerts(null);
         includeSignatureToken = false;
+        securityPlan = null;
+        metricsListener = null;
     }
 
     public Object getMsgContext() {
@@ -521,6 +544,81 @@ public class RequestData {
         return nonceReplayCache;
     }
     
+    /**
+     * Set the (optional) cache for UsernameToken passwords and derived keys
+     */
+    public void setUsernameTokenCache(UsernameTokenCache usernameTokenCache) {
+        this.usernameTokenCache = usernameTokenCache;
+    }
+
+    /**
+     * Get the (optional) cache for UsernameToken passwords and derived keys
+     * @return the UsernameTokenCache or null if no caching is to be done
+     */
+    public UsernameTokenCache getUsernameTokenCache() {
+        return usernameTokenCache;
+    }
+    
+    /**
+     * Set the (optional) cache for session keys referred to via EncryptedKeySHA1
+     */
+    public void setSessionKeyCache(SessionKeyCache sessionKeyCache) {
+        this.sessionKeyCache = sessionKeyCache;
+    }
+
+    /**
+     * Get the (optional) cache for session keys referred to via EncryptedKeySHA1
+     * @return the SessionKeyCache or null if no caching is to be done
+     */
+    public SessionKeyCache getSessionKeyCache() {
+        return sessionKeyCache;
+    }
+    
+    /**
+     * Set the (optional) holder of the session key to reuse for outbound encryption
+     */
+    public void setReusableSessionKey(ReusableSessionKey reusableSessionKey) {
+        this.reusableSessionKey = reusableSessionKey;
+    }
+
+    /**
+     * Get the (optional) holder of the session key to reuse for outbound encryption
+     * @return the ReusableSessionKey or null if a new session key is to be used per message
+     */
+    public ReusableSessionKey getReusableSessionKey() {
+        return reusableSessionKey;
+    }
+    
+    /**
+     * Set the (optional) cache for the results of JAAS UsernameToken authentication
+     */
+    public void setAuthenticationResultCache(AuthenticationResultCache authenticationResultCache) {
+        this.authenticationResultCache = authenticationResultCache;
+    }
+
+    /**
+     * Get the (optional) cache for the results of JAAS UsernameToken authentication
+     * @return the AuthenticationResultCache or null if no caching is to be done
+     */
+    public AuthenticationResultCache getAuthenticationResultCache() {
+        return authenticationResultCache;
+    }
+    
+    /**
+     * Set the (optional) cache of successful signature verifications
+     */
+    public void setSignatureVerificationCache(SignatureVerificationCache signatureVerificationCache) {
+        this.signatureVerificationCache = signatureVerificationCache;
+    }
+
+    /**
+     * Get the (optional) cache of successful signature verifications
+     * @return the SignatureVerificationCache or null if no caching is to be done
+     */
+    public SignatureVerificationCache getSignatureVerificationCache() {
+        return signatureVerificationCache;
+    }
+    
     /**
      * Set the Signature Subject Cert Constraints
      */
@@ -540,6 +638,7 @@ public class RequestData {
     public void setIgnoredBSPRules(List<BSPRule> bspRules) {
         ignoredBSPRules.clear();
         ignoredBSPRules.addAll(bspRules);
+        bspEnforcer = null;
     }
 
     public List<BSPRule> getIgnoredBSPRules() {
@@ -547,10 +646,15 @@ public class RequestData {
     }
     
     public BSPEnforcer getBSPEnforcer() {
-        if (disableBSPEnforcement) {
-            return new BSPEnforcer(true);
+        // The BSPEnforcer is created once per configuration, as it is requested per token
+        if (bspEnforcer == null) {
+            if (disableBSPEnforcement) {
+                bspEnforcer = new BSPEnforcer(true);
+            } else {
+                bspEnforcer = new BSPEnforcer(ignoredBSPRules);
+            }
         }
-        return new BSPEnforcer(ignoredBSPRules);
+        return bspEnforcer;
     }
 
     public boolean isAppendSignatureAfterTimestamp() {
@@ -591,6 +695,7 @@ public class RequestData {
 
     public void setDisableBSPEnforcement(boolean disableBSPEnforcement) {
         this.disableBSPEnforcement = disableBSPEnforcement;
+        bspEnforcer = null;
     }
 
     public boolean isAllowRSA15KeyTransportAlgorithm() {
@@ -633,4 +738,42 @@ public class RequestData {
         this.includeSignatureToken = includeSignatureToken;
     }
         
+    /**
+     * Set the (precompiled) SecurityPlan that is used to secure an outbound message
+     */
+    public void setSecurityPlan(SecurityPlan securityPlan) {
+        this.securityPlan = securityPlan;
+    }
+
+    /**
+     * Get the SecurityPlan that is used to secure an outbound message
+     * @return the SecurityPlan or null if the message is not secured via a SecurityPlan
+     */
+    public SecurityPlan getSecurityPlan() {
+        return securityPlan;
+    }
+
+    /**
+     * Set the (optional) listener that receives the timings of the security processing
+     * phases of this request. It takes precedence over the listener of the WSSConfig.
+     */
+    public void setMetricsListener(SecurityMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Get the listener that receives the timings of the security processing phases
+     * @return the listener of this request, else the listener of the WSSConfig, else
+     *         a listener that discards all events
+     */
+    public SecurityMetricsListener getMetricsListener() {
+        if (metricsListener != null) {
+            return metricsListener;
+        }
+        if (wssConfig != null && wssConfig.getMetricsListener() != null) {
+            return wssConfig.getMetricsListener();
+        }
+        return NoOpSecurityMetricsListener.INSTANCE;
+    }
+    
 }
@@ -0,0 +1,301 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.cache.ReusableSessionKey;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSEncryptionPart;
+import org.apache.wss4j.dom.WSSConfig;
+
+/**
+ * A precompiled set of outbound security actions and their configuration, as built by
+ * WSHandler#compileSecurityPlan from the handler options. A SecurityPlan is built once (e.g.
+ * per endpoint), and is then applied to each outbound message via WSHandler#doSenderAction,
+ * which only has to supply the message specific state.
+ *
+ * A SecurityPlan is immutable and can be shared between threads. Note however that the
+ * Crypto and CallbackHandler instances it holds are shared by all messages sent with the
+ * plan, and so must be thread-safe. The WSSConfig instance is owned by the plan and must not
+ * be modified once the plan has been compiled.
+ */
+public final class SecurityPlan {
+
+    private final int doAction;
+    private final List<Integer> actions;
+    private final List<Integer> actionsToPerform;
+    private final int originalSignatureActionPosition;
+    private final WSSConfig wssConfig;
+    private final String actor;
+    private final boolean mustUnderstand;
+    private final CallbackHandler passwordCallbackHandler;
+
+    // UsernameToken
+    private final String pwType;
+    private final boolean pwTypeSpecified;
+    private final boolean addUsernameTokenNonce;
+    private final boolean addUsernameTokenCreated;
+    private final boolean useDerivedKeyForMAC;
+    private final int derivedKeyIterations;
+
+    // Signature
+    private final Crypto sigCrypto;
+    private final String signatureUser;
+    private final int sigKeyId;
+    private final String sigAlgorithm;
+    private final String sigDigestAlgorithm;
+    private final boolean useSingleCert;
+    private final boolean includeSignatureToken;
+    private final List<WSEncryptionPart> soap11SignatureParts;
+    private final List<WSEncryptionPart> soap12SignatureParts;
+
+    // Encryption
+    private final Crypto encCrypto;
+    private final String encUser;
+    private final int encKeyId;
+    private final String encSymmAlgo;
+    private final String encKeyTransport;
+    private final String encDigestAlgorithm;
+    private final String encMGFAlgorithm;
+    private final boolean encryptSymmetricEncryptionKey;
+    private final ReusableSessionKey reusableSessionKey;
+    private final List<WSEncryptionPart> soap11EncryptParts;
+    private final List<WSEncryptionPart> soap12EncryptParts;
+
+    /**
+     * Create a new SecurityPlan. The configuration values are copied from the RequestData
+     * argument, which has been populated from the handler options only.
+     */
+    SecurityPlan(
+        int doAction,
+        List<Integer> actions,
+        WSSConfig wssConfig,
+        boolean mustUnderstand,
+        boolean pwTypeSpecified,
+        RequestData planData,
+        List<WSEncryptionPart> soap11SignatureParts,
+        List<WSEncryptionPart> soap12SignatureParts,
+        List<WSEncryptionPart> soap11EncryptParts,
+        List<WSEncryptionPart> soap12EncryptParts,
+        CallbackHandler passwordCallbackHandler
+    ) {
+        this.doAction = doAction;
+        this.actions = Collections.unmodifiableList(new ArrayList<Integer>(actions));
+        this.wssConfig = wssConfig;
+        this.actor = planData.getActor();
+        this.mustUnderstand = mustUnderstand;
+        this.passwordCallbackHandler = passwordCallbackHandler;
+
+        this.pwType = planData.getPwType();
+        this.pwTypeSpecified = pwTypeSpecified;
+        this.addUsernameTokenNonce = planData.isAddUsernameTokenNonce();
+        this.addUsernameTokenCreated = planData.isAddUsernameTokenCreated();
+        this.useDerivedKeyForMAC = planData.isUseDerivedKeyForMAC();
+        this.derivedKeyIterations = planData.getDerivedKeyIterations();
+
+        this.sigCrypto = planData.getSigCrypto();
+        this.signatureUser = planData.getSignatureUser();
+        this.sigKeyId = planData.getSigKeyId();
+        this.sigAlgorithm = planData.getSigAlgorithm();
+        this.sigDigestAlgorithm = planData.getSigDigestAlgorithm();
+        this.useSingleCert = planData.isUseSingleCert();
+        this.includeSignatureToken = planData.isIncludeSignatureToken();
+        this.soap11SignatureParts = Collections.unmodifiableList(soap11SignatureParts);
+        this.soap12SignatureParts = Collections.unmodifiableList(soap12SignatureParts);
+
+        this.encCrypto = planData.getEncCrypto();
+        this.encUser = planData.getEncUser();
+        this.encKeyId = planData.getEncKeyId();
+        this.encSymmAlgo = planData.getEncSymmAlgo();
+        this.encKeyTransport = planData.getEncKeyTransport();
+        this.encDigestAlgorithm = planData.getEncDigestAlgorithm();
+        this.encMGFAlgorithm = planData.getEncMGFAlgorithm();
+        this.encryptSymmetricEncryptionKey = planData.getEncryptSymmetricEncryptionKey();
+        this.reusableSessionKey = planData.getReusableSessionKey();
+        this.soap11EncryptParts = Collections.unmodifiableList(soap11EncryptParts);
+        this.soap12EncryptParts = Collections.unmodifiableList(soap12EncryptParts);
+
+        //
+        // If the Timestamp is to be signed, and the Signature action is defined before the
+        // Timestamp action, then the Signature action must be performed last, as the Timestamp
+        // must appear in the security header first for signature creation to work.
+        //
+        int signatureIndex = actions.indexOf(WSConstants.SIGN);
+        int timestampIndex = actions.indexOf(WSConstants.TS);
+        if (signatureIndex != -1 && timestampIndex != -1 && signatureIndex < timestampIndex
+            && isSignTimestamp(soap11SignatureParts)) {
+            List<Integer> reordered = new ArrayList<Integer>(actions);
+            reordered.remove(signatureIndex);
+            reordered.add(WSConstants.SIGN);
+            this.actionsToPerform = Collections.unmodifiableList(reordered);
+            this.originalSignatureActionPosition = signatureIndex;
+        } else {
+            this.actionsToPerform = this.actions;
+            this.originalSignatureActionPosition = -1;
+        }
+    }
+
+    /**
+     * Populate the RequestData for the current message from this plan. Values that are not
+     * specified by the plan are left untouched.
+     */
+    void applyTo(RequestData reqData) {
+        reqData.setWssConfig(wssConfig);
+        reqData.setActor(actor);
+
+        if ((doAction & (WSConstants.UT | WSConstants.UT_SIGN)) != 0) {
+            if (pwTypeSpecified) {
+                reqData.setPwType(pwType);
+            }
+            reqData.setAddUsernameTokenNonce(addUsernameTokenNonce);
+            reqData.setAddUsernameTokenCreated(addUsernameTokenCreated);
+            reqData.setUseDerivedKeyForMAC(useDerivedKeyForMAC);
+            reqData.setDerivedKeyIterations(derivedKeyIterations);
+        }
+
+        boolean soap12 =
+            WSConstants.URI_SOAP12_ENV.equals(reqData.getSoapConstants().getEnvelopeURI());
+        if ((doAction & (WSConstants.SIGN | WSConstants.UT_SIGN | WSConstants.ST_SIGNED)) != 0) {
+            if ((doAction & WSConstants.SIGN) == WSConstants.SIGN
+                && reqData.getSigCrypto() == null) {
+                reqData.setSigCrypto(sigCrypto);
+            }
+            if (signatureUser != null) {
+                reqData.setSignatureUser(signatureUser);
+            } else {
+                reqData.setSignatureUser(reqData.getUsername());
+            }
+            if (sigKeyId != 0) {
+                reqData.setSigKeyId(sigKeyId);
+            }
+            reqData.setSigAlgorithm(sigAlgorithm);
+            reqData.setSigDigestAlgorithm(sigDigestAlgorithm);
+            reqData.setUseSingleCert(useSingleCert);
+            reqData.setIncludeSignatureToken(includeSignatureToken);
+            copyParts(soap12 ? soap12SignatureParts : soap11SignatureParts,
+                      reqData.getSignatureParts());
+        }
+
+        if ((doAction & WSConstants.ENCR) == WSConstants.ENCR) {
+            if (reqData.getEncCrypto() == null) {
+                reqData.setEncCrypto(encCrypto);
+            }
+            if (encKeyId != 0) {
+                reqData.setEncKeyId(encKeyId);
+            }
+            reqData.setEncSymmAlgo(encSymmAlgo);
+            reqData.setEncKeyTransport(encKeyTransport);
+            reqData.setEncDigestAlgorithm(encDigestAlgorithm);
+            reqData.setEncMGFAlgorithm(encMGFAlgorithm);
+            reqData.setEncryptSymmetricEncryptionKey(encryptSymmetricEncryptionKey);
+            if (reqData.getReusableSessionKey() == null) {
+                reqData.setReusableSessionKey(reusableSessionKey);
+            }
+            if (encUser != null) {
+                reqData.setEncUser(encUser);
+            } else {
+                reqData.setEncUser(reqData.getUsername());
+            }
+            copyParts(soap12 ? soap12EncryptParts : soap11EncryptParts,
+                      reqData.getEncryptParts());
+        }
+
+        if (originalSignatureActionPosition != -1) {
+            reqData.setAppendSignatureAfterTimestamp(true);
+            reqData.setOriginalSignatureActionPosition(originalSignatureActionPosition);
+        }
+    }
+
+    /**
+     * WSEncryptionPart objects are modified while processing a message, so each message
+     * gets its own copy of the compiled parts.
+     */
+    private static void copyParts(List<WSEncryptionPart> from, List<WSEncryptionPart> to) {
+        for (WSEncryptionPart part : from) {
+            to.add(new WSEncryptionPart(part.getName(), part.getNamespace(), part.getEncModifier()));
+        }
+    }
+
+    private static boolean isSignTimestamp(List<WSEncryptionPart> signatureParts) {
+        for (WSEncryptionPart encP : signatureParts) {
+            if (WSConstants.WSU_NS.equals(encP.getNamespace())
+                && "Timestamp".equals(encP.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the or'd integer of all the (non-custom) actions
+     */
+    public int getDoAction() {
+        return doAction;
+    }
+
+    /**
+     * @return the actions in the order in which they were configured
+     */
+    public List<Integer> getActions() {
+        return actions;
+    }
+
+    /**
+     * @return the actions in the order in which they are performed
+     */
+    public List<Integer> getActionsToPerform() {
+        return actionsToPerform;
+    }
+
+    public WSSConfig getWssConfig() {
+        return wssConfig;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public boolean isMustUnderstand() {
+        return mustUnderstand;
+    }
+
+    /**
+     * @return the CallbackHandler to obtain passwords, or null if none was configured
+     * via the handler options
+     */
+    public CallbackHandler getPasswordCallbackHandler() {
+        return passwordCallbackHandler;
+    }
+
+    public Crypto getSigCrypto() {
+        return sigCrypto;
+    }
+
+    public Crypto getEncCrypto() {
+        return encCrypto;
+    }
+
+}
@@ -19,7 +19,6 @@
 
 package org.apache.wss4j.dom.handler;
 
-import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -40,6 +39,11 @@ import org.apache.wss4j.dom.WSSConfig;
 import org.apache.wss4j.dom.WSSecurityEngine;
 import org.apache.wss4j.dom.WSSecurityEngineResult;
 import org.apache.wss4j.dom.action.Action;
+import org.apache.wss4j.common.cache.ReusableSessionKey;
+import org.apache.wss4j.common.cache.AuthenticationResultCache;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.cache.SignatureVerificationCache;
+import org.apache.wss4j.common.cache.UsernameTokenCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
@@ -61,6 +65,13 @@ public abstract class WSHandler {
         org.slf4j.LoggerFactory.getLogger(WSHandler.class);
     protected WSSecurityEngine secEngine = new WSSecurityEngine();
     protected Map<String, Crypto> cryptos = new ConcurrentHashMap<String, Crypto>();
+    /**
+     * The CallbackHandler instances loaded by class name, if CACHE_CALLBACK_HANDLERS is enabled,
+     * keyed by the ClassLoader that loaded them and the class name. Entries are only removed via
+     * {@link #clearCache()}.
+     */
+    protected Map<List<Object>, CallbackHandler> callbackHandlers = 
+        new ConcurrentHashMap<List<Object>, CallbackHandler>();
 
     private boolean doDebug = log.isDebugEnabled();
 
@@ -75,7 +86,6 @@ public abstract class WSHandler {
      *                in the deployment file or property
      * @throws WSSecurityException
      */
-    @SuppressWarnings("unchecked")
     protected void doSenderAction(
             int doAction, 
             Document doc,
@@ -102,7 +112,7 @@ public abstract class WSHandler {
         reqData.setWssConfig(wssConfig);
 
         Object mc = reqData.getMsgContext();
-        String actor = getString(WSHandlerConstants.ACTOR, mc);
+        String actor = lookupString(WSHandlerConstants.ACTOR, mc);
         reqData.setActor(actor);
 
         WSSecHeader secHeader = new WSSecHeader(actor, mu);
@@ -156,6 +166,164 @@ public abstract class WSHandler {
             }
             decodeEncryptionParameter(reqData);
         }
+        
+        // See if the Signature and Timestamp actions (in that order) are defined, and if
+        // the Timestamp is to be signed. In this case we need to swap the actions, as the 
+        // Timestamp must appear in the security header first for signature creation to work.
+        List<Integer> actionsToPerform = actions;
+        if (actions.contains(WSConstants.SIGN) && actions.contains(WSConstants.TS)
+            && (actions.indexOf(WSConstants.SIGN) < actions.indexOf(WSConstants.TS))) {
+            boolean signTimestamp = false;
+            for (WSEncryptionPart encP : reqData.getSignatureParts()) {
+                if (WSConstants.WSU_NS.equals(encP.getNamespace()) 
+                    && "Timestamp".equals(encP.getName())) {
+                    signTimestamp = true;
+                }
+            }
+            if (signTimestamp) {
+                actionsToPerform = new ArrayList<Integer>(actions);
+                Collections.copy(actionsToPerform, actions);
+                int signatureIndex = actions.indexOf(WSConstants.SIGN);
+                actionsToPerform.remove(signatureIndex);
+                actionsToPerform.add(WSConstants.SIGN);
+                reqData.setAppendSignatureAfterTimestamp(true);
+                reqData.setOriginalSignatureActionPosition(signatureIndex);
+            }
+        }
+        
+        performSenderActions(doc, reqData, actionsToPerform, isRequest);
+    }
+    
+    /**
+     * Compile the outbound handler options into a SecurityPlan. The plan is built from the
+     * handler options only (see {@link #getOption(String)}), and so does not take into
+     * account any properties that are set on a particular message context. It can then be
+     * applied to each outbound message via 
+     * {@link #doSenderAction(Document, RequestData, SecurityPlan, boolean)}, which avoids
+     * decoding the configuration again for every message.
+     * 
+     * @param action the String of actions to perform
+     * @param wssConfig the WSSConfig instance holding the base configuration (e.g. custom
+     *                  actions) for all messages sent with this plan. The plan works on a copy
+     *                  of it, so the given instance is not modified. If null, a new instance
+     *                  is created.
+     * @return the compiled SecurityPlan
+     * @throws WSSecurityException if the configuration is invalid
+     */
+    public SecurityPlan compileSecurityPlan(
+        String action, WSSConfig wssConfig
+    ) throws WSSecurityException {
+        WSSConfig planConfig;
+        if (wssConfig == null) {
+            planConfig = WSSConfig.getNewInstance();
+        } else {
+            planConfig = wssConfig.copy();
+        }
+        List<Integer> actions = new ArrayList<Integer>();
+        int doAction = WSSecurityUtil.decodeAction(action, actions, planConfig);
+        
+        // A RequestData without a message context, so that only the handler options are used
+        RequestData planData = new RequestData();
+        planData.setWssConfig(planConfig);
+        
+        boolean mu = decodeMustUnderstand(planData);
+        planConfig.setEnableSignatureConfirmation(decodeEnableSignatureConfirmation(planData));
+        planConfig.setPasswordsAreEncoded(decodeUseEncodedPasswords(planData));
+        planConfig.setPrecisionInMilliSeconds(decodeTimestampPrecision(planData));
+        planConfig.setAddInclusivePrefixes(decodeAddInclusivePrefixes(planData));
+        planData.setActor(lookupString(WSHandlerConstants.ACTOR, null));
+        
+        boolean pwTypeSpecified = false;
+        if ((doAction & (WSConstants.UT | WSConstants.UT_SIGN)) != 0) {
+            pwTypeSpecified = lookupString(WSHandlerConstants.PASSWORD_TYPE, null) != null;
+            decodeUTParameter(planData);
+        }
+        
+        List<WSEncryptionPart> soap11SignatureParts = new ArrayList<WSEncryptionPart>();
+        List<WSEncryptionPart> soap12SignatureParts = new ArrayList<WSEncryptionPart>();
+        if ((doAction & (WSConstants.SIGN | WSConstants.UT_SIGN | WSConstants.ST_SIGNED)) != 0) {
+            if ((doAction & WSConstants.SIGN) == WSConstants.SIGN) {
+                planData.setSigCrypto(loadSignatureCrypto(planData));
+            }
+            planData.setSignatureUser(lookupString(WSHandlerConstants.SIGNATURE_USER, null));
+            decodeSignatureOptions(planData);
+            String parts = lookupString(WSHandlerConstants.SIGNATURE_PARTS, null);
+            if (parts != null) {
+                splitEncParts(parts, soap11SignatureParts, WSConstants.URI_SOAP11_ENV);
+                splitEncParts(parts, soap12SignatureParts, WSConstants.URI_SOAP12_ENV);
+            }
+        }
+        
+        List<WSEncryptionPart> soap11EncryptParts = new ArrayList<WSEncryptionPart>();
+        List<WSEncryptionPart> soap12EncryptParts = new ArrayList<WSEncryptionPart>();
+        if ((doAction & WSConstants.ENCR) == WSConstants.ENCR) {
+            planData.setEncCrypto(loadEncryptionCrypto(planData));
+            planData.setEncUser(lookupString(WSHandlerConstants.ENCRYPTION_USER, null));
+            decodeEncryptionOptions(planData);
+            String parts = lookupString(WSHandlerConstants.ENCRYPTION_PARTS, null);
+            if (parts != null) {
+                splitEncParts(parts, soap11EncryptParts, WSConstants.URI_SOAP11_ENV);
+                splitEncParts(parts, soap12EncryptParts, WSConstants.URI_SOAP12_ENV);
+            }
+        }
+        
+        CallbackHandler passwordCallbackHandler = getPasswordCallbackHandler(planData);
+        
+        return new SecurityPlan(
+            doAction, actions, planConfig, mu, pwTypeSpecified, planData,
+            soap11SignatureParts, soap12SignatureParts, 
+            soap11EncryptParts, soap12EncryptParts,
+            passwordCallbackHandler
+        );
+    }
+    
+    /**
+     * Performs all security actions of a precompiled SecurityPlan to set-up the SOAP request.
+     * Only the message specific state (e.g. the username and password, or the results of a
+     * previous request for SignatureConfirmation) is taken from the message context.
+     * 
+     * @param doc the request as DOM document 
+     * @param reqData a data storage to pass values around between methods
+     * @param plan the SecurityPlan compiled via {@link #compileSecurityPlan(String, WSSConfig)}
+     * @param isRequest whether the message is a request or a response
+     * @throws WSSecurityException
+     */
+    protected void doSenderAction(
+        Document doc,
+        RequestData reqData,
+        SecurityPlan plan,
+        boolean isRequest
+    ) throws WSSecurityException {
+        reqData.setSecurityPlan(plan);
+        
+        WSSecHeader secHeader = new WSSecHeader(plan.getActor(), plan.isMustUnderstand());
+        secHeader.insertSecurityHeader(doc);
+        
+        reqData.setSecHeader(secHeader);
+        reqData.setSoapConstants(
+            WSSecurityUtil.getSOAPConstants(doc.getDocumentElement())
+        );
+        plan.applyTo(reqData);
+        
+        if ((plan.getDoAction() & WSConstants.ENCR) == WSConstants.ENCR) {
+            if (reqData.getEncryptSymmetricEncryptionKey() && reqData.getEncUser() == null) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                        "empty", "WSHandler: Encryption: no username");
+            }
+            handleSpecialUser(reqData);
+        }
+        
+        performSenderActions(doc, reqData, plan.getActionsToPerform(), isRequest);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void performSenderActions(
+        Document doc,
+        RequestData reqData,
+        List<Integer> actionsToPerform,
+        boolean isRequest
+    ) throws WSSecurityException {
+        WSSConfig wssConfig = reqData.getWssConfig();
         /*
          * If after all the parsing no Signature parts defined, set here a
          * default set. This is necessary because we add SignatureConfirmation
@@ -182,30 +350,6 @@ public abstract class WSHandler {
             }
         }
         
-        // See if the Signature and Timestamp actions (in that order) are defined, and if
-        // the Timestamp is to be signed. In this case we need to swap the actions, as the 
-        // Timestamp must appear in the security header first for signature creation to work.
-        List<Integer> actionsToPerform = actions;
-        if (actions.contains(WSConstants.SIGN) && actions.contains(WSConstants.TS)
-            && (actions.indexOf(WSConstants.SIGN) < actions.indexOf(WSConstants.TS))) {
-            boolean signTimestamp = false;
-            for (WSEncryptionPart encP : reqData.getSignatureParts()) {
-                if (WSConstants.WSU_NS.equals(encP.getNamespace()) 
-                    && "Timestamp".equals(encP.getName())) {
-                    signTimestamp = true;
-                }
-            }
-            if (signTimestamp) {
-                actionsToPerform = new ArrayList<Integer>(actions);
-                Collections.copy(actionsToPerform, actions);
-                int signatureIndex = actions.indexOf(WSConstants.SIGN);
-                actionsToPerform.remove(signatureIndex);
-                actionsToPerform.add(WSConstants.SIGN);
-                reqData.setAppendSignatureAfterTimestamp(true);
-                reqData.setOriginalSignatureActionPosition(signatureIndex);
-            }
-        }
-        
         /*
          * Here we have all necessary information to perform the requested
          * action(s).
@@ -300,6 +444,10 @@ public abstract class WSHandler {
             reqData.setDisableBSPEnforcement(true);
         }
         reqData.setWssConfig(wssConfig);
+        decodeUsernameTokenCache(reqData);
+        decodeSessionKeyCache(reqData);
+        decodeAuthenticationResultCache(reqData);
+        decodeSignatureVerificationCache(reqData);
 
         if (((doAction & WSConstants.SIGN) == WSConstants.SIGN)
             || ((doAction & WSConstants.ST_SIGNED) == WSConstants.ST_SIGNED)
@@ -319,8 +467,7 @@ public abstract class WSHandler {
         int size = actions.size();
         int ai = 0;
         for (WSSecurityEngineResult result : wsResult) {
-            final Integer actInt = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
-            int act = actInt;
+            int act = result.getAction();
             if (act == WSConstants.SC || act == WSConstants.BST) {
                 continue;
             }
@@ -346,13 +493,12 @@ public abstract class WSHandler {
         }
         
         for (WSSecurityEngineResult result : wsResult) {
-            final Integer actInt = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
-            int act = actInt;
+            int act = result.getAction();
             if (act == WSConstants.SC || act == WSConstants.BST) {
                 continue;
             }
             
-            if (!recordedActions.remove(actInt)) {
+            if (!recordedActions.remove(Integer.valueOf(act))) {
                 return false;
             }
         }
@@ -450,7 +596,7 @@ public abstract class WSHandler {
         throws WSSecurityException {
         Object mc = reqData.getMsgContext();
         
-        String type = getString(WSHandlerConstants.PASSWORD_TYPE, mc);
+        String type = lookupString(WSHandlerConstants.PASSWORD_TYPE, mc);
         if (type != null) {
             if (WSConstants.PW_TEXT.equals(type)) {
                 reqData.setPwType(WSConstants.PASSWORD_TEXT);
@@ -472,13 +618,13 @@ public abstract class WSHandler {
             decodeBooleanConfigValue(reqData, WSHandlerConstants.ADD_USERNAMETOKEN_CREATED, false);
         reqData.setAddUsernameTokenCreated(addCreated);
         
-        String derivedMAC = getString(WSHandlerConstants.USE_DERIVED_KEY_FOR_MAC, mc);
+        String derivedMAC = lookupString(WSHandlerConstants.USE_DERIVED_KEY_FOR_MAC, mc);
         boolean useDerivedKeyForMAC = Boolean.parseBoolean(derivedMAC);
         if (useDerivedKeyForMAC) {
             reqData.setUseDerivedKeyForMAC(useDerivedKeyForMAC);
         }
         
-        String iterations = getString(WSHandlerConstants.DERIVED_KEY_ITERATIONS, mc);
+        String iterations = lookupString(WSHandlerConstants.DERIVED_KEY_ITERATIONS, mc);
         if (iterations != null) {
             int iIterations = Integer.parseInt(iterations);
             reqData.setDerivedKeyIterations(iIterations);
@@ -488,7 +634,7 @@ public abstract class WSHandler {
     protected void decodeSignatureParameter(RequestData reqData) 
         throws WSSecurityException {
         Object mc = reqData.getMsgContext();
-        String signatureUser = getString(WSHandlerConstants.SIGNATURE_USER, mc);
+        String signatureUser = lookupString(WSHandlerConstants.SIGNATURE_USER, mc);
 
         if (signatureUser != null) {
             reqData.setSignatureUser(signatureUser);
@@ -496,7 +642,18 @@ public abstract class WSHandler {
             reqData.setSignatureUser(reqData.getUsername());
         }
         
-        String keyId = getString(WSHandlerConstants.SIG_KEY_ID, mc);
+        decodeSignatureOptions(reqData);
+
+        String parts = lookupString(WSHandlerConstants.SIGNATURE_PARTS, mc);
+        if (parts != null) {
+            splitEncParts(parts, reqData.getSignatureParts(), 
+                          reqData.getSoapConstants().getEnvelopeURI());
+        }
+    }
+    
+    private void decodeSignatureOptions(RequestData reqData) throws WSSecurityException {
+        Object mc = reqData.getMsgContext();
+        String keyId = lookupString(WSHandlerConstants.SIG_KEY_ID, mc);
         if (keyId != null) {
             Integer id = WSHandlerConstants.getKeyIdentifier(keyId);
             if (id == null) {
@@ -520,16 +677,11 @@ public abstract class WSHandler {
             }
             reqData.setSigKeyId(tmp);
         }
-        String algo = getString(WSHandlerConstants.SIG_ALGO, mc);
+        String algo = lookupString(WSHandlerConstants.SIG_ALGO, mc);
         reqData.setSigAlgorithm(algo);
         
-        String digestAlgo = getString(WSHandlerConstants.SIG_DIGEST_ALGO, mc);
+        String digestAlgo = lookupString(WSHandlerConstants.SIG_DIGEST_ALGO, mc);
         reqData.setSigDigestAlgorithm(digestAlgo);
-
-        String parts = getString(WSHandlerConstants.SIGNATURE_PARTS, mc);
-        if (parts != null) {
-            splitEncParts(parts, reqData.getSignatureParts(), reqData);
-        }
         
         boolean useSingleCert = decodeUseSingleCertificate(reqData);
         reqData.setUseSingleCert(useSingleCert);
@@ -546,20 +698,20 @@ public abstract class WSHandler {
         
         AlgorithmSuite algorithmSuite = new AlgorithmSuite();
         
-        String signatureAlgorithm = getString(WSHandlerConstants.SIG_ALGO, mc);
+        String signatureAlgorithm = lookupString(WSHandlerConstants.SIG_ALGO, mc);
         if (signatureAlgorithm != null && !"".equals(signatureAlgorithm)) {
             algorithmSuite.addSignatureMethod(signatureAlgorithm);
         }
-        String signatureDigestAlgorithm = getString(WSHandlerConstants.SIG_DIGEST_ALGO, mc);
+        String signatureDigestAlgorithm = lookupString(WSHandlerConstants.SIG_DIGEST_ALGO, mc);
         if (signatureDigestAlgorithm != null && !"".equals(signatureDigestAlgorithm)) {
             algorithmSuite.addDigestAlgorithm(signatureDigestAlgorithm);
         }
         
-        String encrAlgorithm = getString(WSHandlerConstants.ENC_SYM_ALGO, mc);
+        String encrAlgorithm = lookupString(WSHandlerConstants.ENC_SYM_ALGO, mc);
         if (encrAlgorithm != null && !"".equals(encrAlgorithm)) {
             algorithmSuite.addEncryptionMethod(encrAlgorithm);
         }
-        String transportAlgorithm = getString(WSHandlerConstants.ENC_KEY_TRANSPORT, mc);
+        String transportAlgorithm = lookupString(WSHandlerConstants.ENC_KEY_TRANSPORT, mc);
         if (transportAlgorithm != null && !"".equals(transportAlgorithm)) {
             algorithmSuite.addKeyWrapAlgorithm(transportAlgorithm);
         }
@@ -571,11 +723,40 @@ public abstract class WSHandler {
         throws WSSecurityException {
         Object mc = reqData.getMsgContext();
 
+        decodeEncryptionOptions(reqData);
+        
+        String encUser = lookupString(WSHandlerConstants.ENCRYPTION_USER, mc);
+        if (encUser != null) {
+            reqData.setEncUser(encUser);
+        } else {
+            reqData.setEncUser(reqData.getUsername());
+        }
+        if (reqData.getEncryptSymmetricEncryptionKey() && reqData.getEncUser() == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                    "empty", "WSHandler: Encryption: no username");
+        }
+        /*
+         * String msgType = msgContext.getCurrentMessage().getMessageType(); if
+         * (msgType != null && msgType.equals(Message.RESPONSE)) {
+         * handleSpecialUser(encUser); }
+         */
+        handleSpecialUser(reqData);
+
+        String encParts = lookupString(WSHandlerConstants.ENCRYPTION_PARTS, mc);
+        if (encParts != null) {
+            splitEncParts(encParts, reqData.getEncryptParts(), 
+                          reqData.getSoapConstants().getEnvelopeURI());
+        }
+    }
+    
+    private void decodeEncryptionOptions(RequestData reqData) throws WSSecurityException {
+        Object mc = reqData.getMsgContext();
+
         /*
          * If the following parameters are no used (they return null) then the
          * default values of WSS4J are used.
          */
-        String encKeyId = getString(WSHandlerConstants.ENC_KEY_ID, mc);
+        String encKeyId = lookupString(WSHandlerConstants.ENC_KEY_ID, mc);
         if (encKeyId != null) {
             Integer id = WSHandlerConstants.getKeyIdentifier(encKeyId);
             if (id == null) {
@@ -599,45 +780,31 @@ public abstract class WSHandler {
                 );
             }
         }
-        String encSymAlgo = getString(WSHandlerConstants.ENC_SYM_ALGO, mc);
+        String encSymAlgo = lookupString(WSHandlerConstants.ENC_SYM_ALGO, mc);
         reqData.setEncSymmAlgo(encSymAlgo);
 
         String encKeyTransport = 
-            getString(WSHandlerConstants.ENC_KEY_TRANSPORT, mc);
+            lookupString(WSHandlerConstants.ENC_KEY_TRANSPORT, mc);
         reqData.setEncKeyTransport(encKeyTransport);
         
-        String digestAlgo = getString(WSHandlerConstants.ENC_DIGEST_ALGO, mc);
+        String digestAlgo = lookupString(WSHandlerConstants.ENC_DIGEST_ALGO, mc);
         reqData.setEncDigestAlgorithm(digestAlgo);
 
-        String mgfAlgo = getString(WSHandlerConstants.ENC_MGF_ALGO, mc);
+        String mgfAlgo = lookupString(WSHandlerConstants.ENC_MGF_ALGO, mc);
         reqData.setEncMGFAlgorithm(mgfAlgo);
         
-        String encSymEncKey = getString(WSHandlerConstants.ENC_SYM_ENC_KEY, mc);
+        String encSymEncKey = lookupString(WSHandlerConstants.ENC_SYM_ENC_KEY, mc);
         if (encSymEncKey != null) {
             boolean encSymEndKeyBoolean = Boolean.parseBoolean(encSymEncKey);
             reqData.setEncryptSymmetricEncryptionKey(encSymEndKeyBoolean);
         }
-        
-        String encUser = getString(WSHandlerConstants.ENCRYPTION_USER, mc);
-        if (encUser != null) {
-            reqData.setEncUser(encUser);
-        } else {
-            reqData.setEncUser(reqData.getUsername());
-        }
-        if (reqData.getEncryptSymmetricEncryptionKey() && reqData.getEncUser() == null) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
-                    "empty", "WSHandler: Encryption: no username");
-        }
-        /*
-         * String msgType = msgContext.getCurrentMessage().getMessageType(); if
-         * (msgType != null && msgType.equals(Message.RESPONSE)) {
-         * handleSpecialUser(encUser); }
-         */
-        handleSpecialUser(reqData);
 
-        String encParts = getString(WSHandlerConstants.ENCRYPTION_PARTS, mc);
-        if (encParts != null) {
-            splitEncParts(encParts, reqData.getEncryptParts(), reqData);
+        Object reusableSessionKey = getOption(WSHandlerConstants.REUSABLE_SESSION_KEY_INSTANCE);
+        if (reusableSessionKey == null && mc != null) {
+            reusableSessionKey = getProperty(mc, WSHandlerConstants.REUSABLE_SESSION_KEY_INSTANCE);
+        }
+        if (reusableSessionKey instanceof ReusableSessionKey) {
+            reqData.setReusableSessionKey((ReusableSessionKey)reusableSessionKey);
         }
     }
 
@@ -650,7 +817,7 @@ public abstract class WSHandler {
         if (!timestamp) {
             tag = WSHandlerConstants.TTL_USERNAMETOKEN;
         }
-        String ttl = getString(tag, reqData.getMsgContext());
+        String ttl = lookupString(tag, reqData.getMsgContext());
         int defaultTimeToLive = 300;
         if (ttl != null) {
             try {
@@ -675,7 +842,7 @@ public abstract class WSHandler {
         if (!timestamp) {
             tag = WSHandlerConstants.TTL_FUTURE_USERNAMETOKEN;
         }
-        String ttl = getString(tag, reqData.getMsgContext());
+        String ttl = lookupString(tag, reqData.getMsgContext());
         int defaultFutureTimeToLive = 60;
         if (ttl != null) {
             try {
@@ -713,7 +880,7 @@ public abstract class WSHandler {
     } 
     
     protected String decodePasswordType(RequestData reqData) throws WSSecurityException {
-        String type = getString(WSHandlerConstants.PASSWORD_TYPE, reqData.getMsgContext());
+        String type = lookupString(WSHandlerConstants.PASSWORD_TYPE, reqData.getMsgContext());
         if (type != null) {
             if (WSConstants.PW_TEXT.equals(type)) {
                 return WSConstants.PASSWORD_TEXT;
@@ -809,7 +976,7 @@ public abstract class WSHandler {
         RequestData reqData, String configTag, boolean defaultToTrue
     ) throws WSSecurityException {
 
-        String value = getString(configTag, reqData.getMsgContext());
+        String value = lookupString(configTag, reqData.getMsgContext());
 
         if (value == null) {
             return defaultToTrue;
@@ -911,11 +1078,11 @@ public abstract class WSHandler {
         //
         // Try the Property Ref Id first
         //
-        String refId = getString(cryptoPropertyRefId, mc);
+        String refId = lookupString(cryptoPropertyRefId, mc);
         if (refId != null) {
             crypto = cryptos.get(refId);
             if (crypto == null) {
-                Object obj = getProperty(mc, refId);
+                Object obj = mc == null ? getOption(refId) : getProperty(mc, refId);
                 if (obj instanceof Properties) {
                     crypto = CryptoFactory.getInstance((Properties)obj);
                     cryptos.put(refId, crypto);
@@ -935,12 +1102,14 @@ public abstract class WSHandler {
         // Now try loading the properties file
         //
         if (crypto == null) {
-            String propFile = getString(cryptoPropertyFile, mc);
+            String propFile = lookupString(cryptoPropertyFile, mc);
             if (propFile != null) {
                 crypto = cryptos.get(propFile);
                 if (crypto == null) {
                     crypto = loadCryptoFromPropertiesFile(propFile, requestData);
-                    cryptos.put(propFile, crypto);
+                    if (crypto != null) {
+                        cryptos.put(propFile, crypto);
+                    }
                 }
                 if (crypto == null) {
                     log.warn(
@@ -989,11 +1158,11 @@ public abstract class WSHandler {
     ) throws WSSecurityException {
         Object mc = requestData.getMsgContext();
         CallbackHandler cbHandler = (CallbackHandler) getOption(callbackHandlerRef);
-        if (cbHandler == null) {
+        if (cbHandler == null && mc != null) {
             cbHandler = (CallbackHandler) getProperty(mc, callbackHandlerRef);
         }
         if (cbHandler == null) {
-            String callback = getString(callbackHandlerClass, mc);
+            String callback = lookupString(callbackHandlerClass, mc);
             if (callback != null) {
                 cbHandler = loadCallbackHandler(callback, requestData);
             }
@@ -1009,6 +1178,10 @@ public abstract class WSHandler {
      */
     public CallbackHandler getPasswordCallbackHandler(RequestData reqData) 
         throws WSSecurityException {
+        SecurityPlan plan = reqData.getSecurityPlan();
+        if (plan != null && plan.getPasswordCallbackHandler() != null) {
+            return plan.getPasswordCallbackHandler();
+        }
         return 
             getCallbackHandler(
                 WSHandlerConstants.PW_CALLBACK_CLASS,
@@ -1018,7 +1191,13 @@ public abstract class WSHandler {
     }
     
     /**
-     * Load a CallbackHandler instance.
+     * Load a CallbackHandler instance. A new instance is created for every call, unless
+     * CACHE_CALLBACK_HANDLERS is enabled. In that case the instance is cached by the ClassLoader
+     * of the message context and the configured class name, and so is shared between all
+     * messages processed by this handler with the same ClassLoader and configuration. It is
+     * then up to the implementing class to ensure that it is thread-safe and holds no state
+     * for a single message. The cache is not invalidated automatically, see
+     * {@link #clearCache()}.
      * @param callbackHandlerClass The class name of the CallbackHandler instance
      * @param requestData The RequestData which supplies the message context
      * @return a CallbackHandler instance
@@ -1029,11 +1208,25 @@ public abstract class WSHandler {
         RequestData requestData
     ) throws WSSecurityException {
 
-        Class<? extends CallbackHandler> cbClass = null;
+        ClassLoader classLoader = getClassLoader(requestData.getMsgContext());
+        boolean cacheCallbackHandlers = 
+            decodeBooleanConfigValue(
+                requestData, WSHandlerConstants.CACHE_CALLBACK_HANDLERS, false
+            );
+        List<Object> key = null;
         CallbackHandler cbHandler = null;
+        if (cacheCallbackHandlers) {
+            key = Arrays.<Object>asList(classLoader, callbackHandlerClass);
+            cbHandler = callbackHandlers.get(key);
+            if (cbHandler != null) {
+                return cbHandler;
+            }
+        }
+        
+        Class<? extends CallbackHandler> cbClass = null;
         try {
             cbClass = 
-                Loader.loadClass(getClassLoader(requestData.getMsgContext()), 
+                Loader.loadClass(classLoader, 
                                  callbackHandlerClass,
                                  CallbackHandler.class);
         } catch (ClassNotFoundException e) {
@@ -1050,9 +1243,25 @@ public abstract class WSHandler {
                     "WSHandler: cannot create instance of callback handler: " + callbackHandlerClass
             );
         }
+        if (cacheCallbackHandlers) {
+            callbackHandlers.put(key, cbHandler);
+        }
         return cbHandler;
     }
     
+    /**
+     * Clear the Crypto and CallbackHandler instances that have been loaded (and cached) by
+     * this handler. Crypto instances are cached by reference id or properties file name, and
+     * CallbackHandler instances by ClassLoader and class name. The handler does not detect
+     * changes to its configuration, and so nothing else invalidates these caches: this method 
+     * must be called if the configuration that the instances were loaded from (e.g. a Crypto 
+     * properties file, or the object that a reference id points to) has changed.
+     */
+    public void clearCache() {
+        cryptos.clear();
+        callbackHandlers.clear();
+    }
+    
     /**
      * Get a password callback (WSPasswordCallback object) from a CallbackHandler instance
      * @param username The username to supply to the CallbackHandler
@@ -1146,7 +1355,7 @@ public abstract class WSHandler {
         return new WSPasswordCallback(username, reason);
     }
 
-    private void splitEncParts(String tmpS, List<WSEncryptionPart> parts, RequestData reqData)
+    private void splitEncParts(String tmpS, List<WSEncryptionPart> parts, String envelopeURI)
         throws WSSecurityException {
         WSEncryptionPart encPart = null;
         String[] rawParts = StringUtil.split(tmpS, ';');
@@ -1159,9 +1368,7 @@ public abstract class WSHandler {
                     log.debug("single partDef: '" + partDef[0] + "'");
                 }
                 encPart =
-                    new WSEncryptionPart(partDef[0].trim(),
-                            reqData.getSoapConstants().getEnvelopeURI(),
-                            "Content");
+                    new WSEncryptionPart(partDef[0].trim(), envelopeURI, "Content");
             } else if (partDef.length == 3) {
                 String mode = partDef[0].trim();
                 if (mode.length() <= 1) {
@@ -1171,7 +1378,7 @@ public abstract class WSHandler {
                 }
                 String nmSpace = partDef[1].trim();
                 if (nmSpace.length() <= 1) {
-                    nmSpace = reqData.getSoapConstants().getEnvelopeURI();
+                    nmSpace = envelopeURI;
                 } else {
                     nmSpace = nmSpace.substring(1);
                     if (nmSpace.equals(WSConstants.NULL_NS)) {
@@ -1221,12 +1428,8 @@ public abstract class WSHandler {
              * encryption action :-).
              */
             for (WSSecurityEngineResult wser : wsSecEngineResults) {
-                int wserAction =
-                        (Integer) wser.get(WSSecurityEngineResult.TAG_ACTION);
-                if (wserAction == WSConstants.SIGN) {
-                    X509Certificate cert = 
-                        (X509Certificate)wser.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE);
-                    reqData.setEncCert(cert);
+                if (wser.getAction() == WSConstants.SIGN) {
+                    reqData.setEncCert(wser.getX509Certificate());
                     return;
                 }
             }
@@ -1248,7 +1451,7 @@ public abstract class WSHandler {
         reqData.setEnableRevocation(enableRevocation);
         
         String certConstraints = 
-            getString(WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS, reqData.getMsgContext());
+            lookupString(WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS, reqData.getMsgContext());
         if (certConstraints != null) {
             String[] certConstraintsList = certConstraints.split(",");
             if (certConstraintsList != null) {
@@ -1284,14 +1487,70 @@ public abstract class WSHandler {
         reqData.setAllowRSA15KeyTransportAlgorithm(allowRsa15);
     }
 
+    /**
+     * Set the (optional) UsernameTokenCache instance on the RequestData
+     */
+    protected void decodeUsernameTokenCache(RequestData reqData) {
+        Object mc = reqData.getMsgContext();
+        Object cache = getOption(WSHandlerConstants.USERNAME_TOKEN_CACHE_INSTANCE);
+        if (cache == null && mc != null) {
+            cache = getProperty(mc, WSHandlerConstants.USERNAME_TOKEN_CACHE_INSTANCE);
+        }
+        if (cache instanceof UsernameTokenCache) {
+            reqData.setUsernameTokenCache((UsernameTokenCache)cache);
+        }
+    }
+
+    /**
+     * Set the (optional) SessionKeyCache instance on the RequestData
+     */
+    protected void decodeSessionKeyCache(RequestData reqData) {
+        Object mc = reqData.getMsgContext();
+        Object cache = getOption(WSHandlerConstants.SESSION_KEY_CACHE_INSTANCE);
+        if (cache == null && mc != null) {
+            cache = getProperty(mc, WSHandlerConstants.SESSION_KEY_CACHE_INSTANCE);
+        }
+        if (cache instanceof SessionKeyCache) {
+            reqData.setSessionKeyCache((SessionKeyCache)cache);
+        }
+    }
+
+    /**
+     * Set the (optional) AuthenticationResultCache instance on the RequestData
+     */
+    protected void decodeAuthenticationResultCache(RequestData reqData) {
+        Object mc = reqData.getMsgContext();
+        Object cache = getOption(WSHandlerConstants.AUTHENTICATION_RESULT_CACHE_INSTANCE);
+        if (cache == null && mc != null) {
+            cache = getProperty(mc, WSHandlerConstants.AUTHENTICATION_RESULT_CACHE_INSTANCE);
+        }
+        if (cache instanceof AuthenticationResultCache) {
+            reqData.setAuthenticationResultCache((AuthenticationResultCache)cache);
+        }
+    }
+
+    /**
+     * Set the (optional) SignatureVerificationCache instance on the RequestData
+     */
+    protected void decodeSignatureVerificationCache(RequestData reqData) {
+        Object mc = reqData.getMsgContext();
+        Object cache = getOption(WSHandlerConstants.SIGNATURE_VERIFICATION_CACHE_INSTANCE);
+        if (cache == null && mc != null) {
+            cache = getProperty(mc, WSHandlerConstants.SIGNATURE_VERIFICATION_CACHE_INSTANCE);
+        }
+        if (cache instanceof SignatureVerificationCache) {
+            reqData.setSignatureVerificationCache((SignatureVerificationCache)cache);
+        }
+    }
+
     /**
      * Looks up key first via {@link #getOption(String)} and if not found
      * there, via {@link #getProperty(Object, String)}
      *
      * @param key the key to search for. May not be null.
-     * @param mc the message context to search. 
+     * @param mc the message context to search. May not be null.
      * @return the value found.
-     * @throws IllegalArgumentException if <code>key</code> is null.
+     * @throws IllegalArgumentException if <code>key</code> or <code>mc</code> is null.
      */
     public String getString(String key, Object mc) { 
         if (key == null) {
@@ -1306,6 +1565,21 @@ public abstract class WSHandler {
         }
         return (String) getProperty(mc, key);
     }
+    
+    /**
+     * Looks up key like {@link #getString(String, Object)}, except that only the options
+     * are searched if the message context is null. This is the case when a SecurityPlan
+     * is compiled.
+     */
+    private String lookupString(String key, Object mc) {
+        if (mc == null) {
+            if (key == null) {
+                throw new IllegalArgumentException("Key cannot be null");
+            }
+            return getStringOption(key);
+        }
+        return getString(key, mc);
+    }
 
 
     /**
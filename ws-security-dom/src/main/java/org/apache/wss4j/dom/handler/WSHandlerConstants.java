@@ -509,6 +509,15 @@ public final class WSHandlerConstants {
     public static final String INCLUDE_SIGNATURE_TOKEN = 
         ConfigurationConstants.INCLUDE_SIGNATURE_TOKEN;
     
+    /**
+     * Whether to reuse the CallbackHandler instances that are loaded via a class name (e.g.
+     * PW_CALLBACK_CLASS) for all messages with the same ClassLoader, instead of creating a new
+     * instance per message. Only enable this for thread-safe CallbackHandlers without per-message
+     * state. The default is false.
+     */
+    public static final String CACHE_CALLBACK_HANDLERS = 
+        ConfigurationConstants.CACHE_CALLBACK_HANDLERS;
+    
     //
     // (Non-boolean) Configuration parameters for the actions/processors
     //
@@ -777,6 +786,53 @@ public final class WSHandlerConstants {
      */
     public static final String TTL_FUTURE_TIMESTAMP = ConfigurationConstants.TTL_FUTURE_TIMESTAMP;
     
+    /**
+     * This holds a reference to a UsernameTokenCache instance used to cache the passwords
+     * returned by the password CallbackHandler, as well as keys derived from a UsernameToken.
+     * There is no default instance, i.e. this caching is disabled unless an instance is supplied.
+     */
+    public static final String USERNAME_TOKEN_CACHE_INSTANCE = 
+        ConfigurationConstants.USERNAME_TOKEN_CACHE_INSTANCE;
+    
+    /**
+     * This holds a reference to a SessionKeyCache instance used to store the session keys
+     * transported in an EncryptedKey, so that they can be referred to in subsequent messages via
+     * an EncryptedKeySHA1 KeyIdentifier. There is no default instance, i.e. EncryptedKeySHA1
+     * references are only resolved via the CallbackHandler unless an instance is supplied.
+     */
+    public static final String SESSION_KEY_CACHE_INSTANCE = 
+        ConfigurationConstants.SESSION_KEY_CACHE_INSTANCE;
+    
+    /**
+     * This holds a reference to a ReusableSessionKey instance, which allows the sender to reuse
+     * the session key for encryption for a number of messages. The first message carries the
+     * session key in an EncryptedKey, and subsequent messages refer to it via an
+     * EncryptedKeySHA1 KeyIdentifier, which requires the recipient to cache the session key
+     * (see SESSION_KEY_CACHE_INSTANCE). There is no default instance, i.e. a new session key
+     * is generated for each message unless an instance is supplied.
+     */
+    public static final String REUSABLE_SESSION_KEY_INSTANCE = 
+        ConfigurationConstants.REUSABLE_SESSION_KEY_INSTANCE;
+    
+    /**
+     * This holds a reference to an AuthenticationResultCache instance used to cache the Subject
+     * of a successful JAAS login for a UsernameToken, keyed on the username and a salted digest
+     * of the password. There is no default instance, i.e. every UsernameToken is authenticated
+     * via the LoginContext unless an instance is supplied.
+     */
+    public static final String AUTHENTICATION_RESULT_CACHE_INSTANCE = 
+        ConfigurationConstants.AUTHENTICATION_RESULT_CACHE_INSTANCE;
+    
+    /**
+     * This holds a reference to a SignatureVerificationCache instance used to cache successful
+     * signature verifications, keyed on a digest of the canonicalized SignedInfo, the
+     * SignatureValue and the public key. The public key operation is then skipped when the same
+     * signature is received again, while the Reference digests are still verified. There is no
+     * default instance, i.e. every signature is verified unless an instance is supplied.
+     */
+    public static final String SIGNATURE_VERIFICATION_CACHE_INSTANCE = 
+        ConfigurationConstants.SIGNATURE_VERIFICATION_CACHE_INSTANCE;
+    
     
     //
     // Internal storage constants
@@ -23,7 +23,6 @@ import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSEncryptionPart;
 import org.apache.wss4j.dom.WSSConfig;
 import org.apache.wss4j.common.crypto.Crypto;
-import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.message.token.KerberosSecurity;
 import org.apache.wss4j.dom.message.token.Reference;
@@ -33,7 +32,6 @@ import org.apache.xml.security.encryption.EncryptedData;
 import org.apache.xml.security.encryption.XMLCipher;
 import org.apache.xml.security.encryption.XMLEncryptionException;
 import org.apache.xml.security.keys.KeyInfo;
-import org.apache.xml.security.utils.Base64;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -141,6 +139,20 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
     public void prepare(Document doc, Crypto crypto) throws WSSecurityException {
         document = doc;
 
+        //
+        // Get the certificate that contains the public key for the public key
+        // algorithm that will encrypt the generated symmetric (session) key.
+        // The session key of a previous message might be reused instead.
+        //
+        X509Certificate remoteCert = null;
+        boolean generateSessionKey = ephemeralKey == null && symmetricKey == null;
+        if (encryptSymmKey) {
+            remoteCert = getRemoteCertificate(crypto);
+            if (generateSessionKey && !embedEncryptedKey && reuseSessionKey(remoteCert)) {
+                return;
+            }
+        }
+
         //
         // If no external key (symmetricalKey) was set generate an encryption
         // key (session key) for this Encrypt element. This key will be
@@ -158,25 +170,13 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
             symmetricKey = WSSecurityUtil.prepareSecretKey(symEncAlgo, ephemeralKey);
         }
         
-        //
-        // Get the certificate that contains the public key for the public key
-        // algorithm that will encrypt the generated symmetric (session) key.
-        //
         if (encryptSymmKey) {
-            X509Certificate remoteCert = useThisCert;
-            if (remoteCert == null) {
-                CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
-                cryptoType.setAlias(user);
-                X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
-                if (certs == null || certs.length <= 0) {
-                    throw new WSSecurityException(
-                        WSSecurityException.ErrorCode.FAILURE,
-                        "noUserCertsFound",
-                        user, "encryption");
-                }
-                remoteCert = certs[0];
-            }
             prepareInternal(symmetricKey, remoteCert, crypto);
+            if (generateSessionKey && !embedEncryptedKey && reusableSessionKey != null) {
+                reusableSessionKey.update(
+                    remoteCert, symEncAlgo, ephemeralKey, encryptedEphemeralKey
+                );
+            }
         } else {
             encryptedEphemeralKey = ephemeralKey;
         }
@@ -488,14 +488,14 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
         KeyInfo keyInfo = new KeyInfo(document);
         if (embedEncryptedKey) {
             keyInfo.addUnknownElement(getEncryptedKeyElement());
-        } else if (keyIdentifierType == WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER) {
+        } else if (sessionKeyReused
+            || keyIdentifierType == WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER) {
             SecurityTokenReference secToken = new SecurityTokenReference(document);
             secToken.addWSSENamespace();
-            if (customReferenceValue != null) {
+            if (customReferenceValue != null && !sessionKeyReused) {
                 secToken.setKeyIdentifierEncKeySHA1(customReferenceValue);
             } else {
-                byte[] encodedBytes = WSSecurityUtil.generateDigest(encryptedEphemeralKey);
-                secToken.setKeyIdentifierEncKeySHA1(Base64.encode(encodedBytes));
+                secToken.setKeyIdentifierEncKeySHA1(getEncryptedKeySHA1());
             }
             secToken.addTokenType(WSConstants.WSS_ENC_KEY_VALUE_TYPE);
             keyInfo.addUnknownElement(secToken.getElement());
@@ -34,6 +34,7 @@ import javax.crypto.spec.PSource;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.common.cache.ReusableSessionKey;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -46,6 +47,7 @@ import org.apache.wss4j.dom.message.token.X509Security;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.stax.impl.util.IDGenerator;
+import org.apache.xml.security.utils.Base64;
 import org.apache.xml.security.utils.Constants;
 import org.apache.xml.security.utils.XMLUtils;
 
@@ -140,6 +142,17 @@ public class WSSecEncryptedKey extends WSSecBase {
     
     protected X509Certificate useThisCert;
     
+    /**
+     * The (optional) holder of a session key to reuse across messages
+     */
+    protected ReusableSessionKey reusableSessionKey;
+    
+    /**
+     * True if the session key of a previous message is reused, in which case no
+     * EncryptedKey element is created
+     */
+    protected boolean sessionKeyReused;
+    
     public WSSecEncryptedKey() {
         super();
     }
@@ -184,6 +197,16 @@ public class WSSecEncryptedKey extends WSSecBase {
 
         document = doc;
 
+        //
+        // Get the certificate that contains the public key for the public key
+        // algorithm that will encrypt the generated symmetric (session) key.
+        //
+        X509Certificate remoteCert = getRemoteCertificate(crypto);
+        boolean generateSessionKey = ephemeralKey == null && symmetricKey == null;
+        if (generateSessionKey && reuseSessionKey(remoteCert)) {
+            return;
+        }
+
         //
         // Set up the ephemeral key
         //
@@ -198,26 +221,59 @@ public class WSSecEncryptedKey extends WSSecBase {
         if (symmetricKey == null) {
             symmetricKey = WSSecurityUtil.prepareSecretKey(symEncAlgo, ephemeralKey);
         }
-
-        //
-        // Get the certificate that contains the public key for the public key
-        // algorithm that will encrypt the generated symmetric (session) key.
-        //
-        X509Certificate remoteCert = useThisCert;
-        if (remoteCert == null) {
-            CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
-            cryptoType.setAlias(user);
-            X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
-            if (certs == null || certs.length <= 0) {
-                throw new WSSecurityException(
-                    WSSecurityException.ErrorCode.FAILURE,
-                    "noUserCertsFound",
-                    user, "encryption");
-            }
-            remoteCert = certs[0];
-        }
         
         prepareInternal(symmetricKey, remoteCert, crypto);
+        if (generateSessionKey && reusableSessionKey != null) {
+            reusableSessionKey.update(remoteCert, symEncAlgo, ephemeralKey, encryptedEphemeralKey);
+        }
+    }
+    
+    /**
+     * Get the certificate that contains the public key to encrypt the symmetric
+     * (session) key with.
+     * 
+     * @param crypto An instance of the Crypto API to handle keystore and certificates
+     * @return the certificate of the recipient
+     * @throws WSSecurityException
+     */
+    protected X509Certificate getRemoteCertificate(Crypto crypto) throws WSSecurityException {
+        if (useThisCert != null) {
+            return useThisCert;
+        }
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias(user);
+        X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
+        if (certs == null || certs.length <= 0) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE,
+                "noUserCertsFound",
+                user, "encryption");
+        }
+        return certs[0];
+    }
+    
+    /**
+     * Reuse the session key of a previous message to the given recipient, if a
+     * ReusableSessionKey is configured and its current session key is still valid.
+     * 
+     * @param remoteCert The certificate of the recipient
+     * @return true if the session key of a previous message is reused
+     * @throws WSSecurityException
+     */
+    protected boolean reuseSessionKey(X509Certificate remoteCert) throws WSSecurityException {
+        if (reusableSessionKey == null) {
+            return false;
+        }
+        ReusableSessionKey.SessionKey sessionKey = 
+            reusableSessionKey.acquire(remoteCert, symEncAlgo);
+        if (sessionKey == null) {
+            return false;
+        }
+        ephemeralKey = sessionKey.getKey();
+        symmetricKey = WSSecurityUtil.prepareSecretKey(symEncAlgo, ephemeralKey);
+        encryptedEphemeralKey = sessionKey.getEncryptedKey();
+        sessionKeyReused = true;
+        return true;
     }
 
     /**
@@ -508,7 +564,9 @@ public class WSSecEncryptedKey extends WSSecBase {
      * @param secHeader The security header that holds the Signature element.
      */
     public void prependToHeader(WSSecHeader secHeader) {
-        WSSecurityUtil.prependChildElement(secHeader.getSecurityHeader(), encryptedKeyElement);
+        if (encryptedKeyElement != null) {
+            WSSecurityUtil.prependChildElement(secHeader.getSecurityHeader(), encryptedKeyElement);
+        }
     }
 
     /**
@@ -522,8 +580,10 @@ public class WSSecEncryptedKey extends WSSecBase {
      * @param secHeader The security header that holds the Signature element.
      */
     public void appendToHeader(WSSecHeader secHeader) {
-        Element secHeaderElement = secHeader.getSecurityHeader();
-        secHeaderElement.appendChild(encryptedKeyElement);
+        if (encryptedKeyElement != null) {
+            Element secHeaderElement = secHeader.getSecurityHeader();
+            secHeaderElement.appendChild(encryptedKeyElement);
+        }
     }
     
     /**
@@ -750,5 +810,36 @@ public class WSSecEncryptedKey extends WSSecBase {
         this.symmetricKey = key;
     }
 
+    /**
+     * Set a ReusableSessionKey instance, to reuse the session key for a number of
+     * messages. If the session key of a previous message is reused, then no EncryptedKey
+     * element is created, and the session key must be referenced via its EncryptedKeySHA1
+     * identifier. This only applies if no ephemeral key or symmetric key is set.
+     * 
+     * @param reusableSessionKey the ReusableSessionKey instance
+     */
+    public void setReusableSessionKey(ReusableSessionKey reusableSessionKey) {
+        this.reusableSessionKey = reusableSessionKey;
+    }
+    
+    /**
+     * @return true if <code>prepare()</code> reused the session key of a previous message
+     */
+    public boolean isSessionKeyReused() {
+        return sessionKeyReused;
+    }
+    
+    /**
+     * @return the EncryptedKeySHA1 identifier of the encrypted session key, i.e. the
+     *         Base64 encoded SHA-1 digest of the encrypted session key
+     * @throws WSSecurityException
+     */
+    public String getEncryptedKeySHA1() throws WSSecurityException {
+        if (encryptedEphemeralKey == null) {
+            return null;
+        }
+        return Base64.encode(WSSecurityUtil.generateDigest(encryptedEphemeralKey));
+    }
+
 
 }
@@ -752,7 +752,26 @@ public class WSSecSignature extends WSSecSignatureBase {
     public void setEncrKeySha1value(String encrKeySha1value) {
         this.encrKeySha1value = encrKeySha1value;
     }
-    
+
+    /**
+     * Sign with the session key of the given (prepared) WSSecEncryptedKey. If the
+     * session key of a previous message was reused, then it is referenced via its
+     * EncryptedKeySHA1 identifier, otherwise via a reference to the EncryptedKey.
+     * @param encrKey the prepared WSSecEncryptedKey (or WSSecEncrypt) instance
+     * @throws WSSecurityException
+     */
+    public void setSessionKey(WSSecEncryptedKey encrKey) throws WSSecurityException {
+        secretKey = encrKey.getEphemeralKey();
+        if (encrKey.isSessionKeyReused()) {
+            keyIdentifierType = WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER;
+            encrKeySha1value = encrKey.getEncryptedKeySHA1();
+        } else {
+            keyIdentifierType = WSConstants.CUSTOM_SYMM_SIGNING;
+            customTokenId = encrKey.getId();
+            customTokenValueType = WSConstants.WSS_ENC_KEY_VALUE_TYPE;
+        }
+    }
+
     /**
      * Set the X509 Certificate to use
      * @param cer the X509 Certificate to use
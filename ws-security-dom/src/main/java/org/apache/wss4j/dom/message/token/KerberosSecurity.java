@@ -33,6 +33,8 @@ import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
 
 import org.apache.wss4j.common.kerberos.KerberosClientAction;
+import org.apache.wss4j.common.kerberos.KerberosClientCredential;
+import org.apache.wss4j.common.kerberos.KerberosClientCredentialCache;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.bsp.BSPEnforcer;
@@ -145,6 +147,38 @@ public class KerberosSecurity extends BinarySecurity {
         CallbackHandler callbackHandler,
         String serviceName
     ) throws WSSecurityException {
+        retrieveServiceTicket(jaasLoginModuleName, callbackHandler, serviceName, null);
+    }
+    
+    /**
+     * Retrieve a service ticket from a KDC using the Kerberos JAAS module, and set it in this
+     * BinarySecurityToken. If a KerberosClientCredentialCache is supplied, the login and the
+     * service ticket are reused across calls, and only a new AP-REQ is created from the cached
+     * service ticket.
+     * @param jaasLoginModuleName the JAAS Login Module name to use
+     * @param callbackHandler a CallbackHandler instance to retrieve a password (optional)
+     * @param serviceName the desired Kerberized service
+     * @param clientCredentialCache the KerberosClientCredentialCache to use (optional)
+     * @throws WSSecurityException
+     */
+    public void retrieveServiceTicket(
+        String jaasLoginModuleName, 
+        CallbackHandler callbackHandler,
+        String serviceName,
+        KerberosClientCredentialCache clientCredentialCache
+    ) throws WSSecurityException {
+        if (clientCredentialCache != null) {
+            KerberosClientCredential clientCredential = 
+                clientCredentialCache.getClientCredential(jaasLoginModuleName, callbackHandler, serviceName);
+            setToken(clientCredentialCache.createServiceTicket(clientCredential));
+            secretKey = clientCredential.getServiceTicket().getSessionKey();
+            
+            if ("".equals(getValueType())) {
+                setValueType(WSConstants.WSS_GSS_KRB_V5_AP_REQ);
+            }
+            return;
+        }
+        
         // Get a TGT from the KDC using JAAS
         LoginContext loginContext = null;
         try {
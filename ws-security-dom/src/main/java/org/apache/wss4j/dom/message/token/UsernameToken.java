@@ -34,6 +34,7 @@ import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.UsernameTokenCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.principal.WSUsernameTokenPrincipalImpl;
@@ -551,6 +552,15 @@ public class UsernameToken {
      * Set the raw (plain text) password used to compute secret key.
      */
     public void setRawPassword(RequestData data) throws WSSecurityException {
+        UsernameTokenCache usernameTokenCache = data.getUsernameTokenCache();
+        if (usernameTokenCache != null) {
+            String cachedPassword = usernameTokenCache.getPassword(getName());
+            if (cachedPassword != null) {
+                rawPassword = cachedPassword;
+                return;
+            }
+        }
+        
         WSPasswordCallback pwCb = 
             new WSPasswordCallback(
                 getName(), getPassword(), getPasswordType(), 
@@ -579,6 +589,9 @@ public class UsernameToken {
             );
         }
         rawPassword = pwCb.getPassword();
+        if (usernameTokenCache != null) {
+            usernameTokenCache.addPassword(getName(), rawPassword);
+        }
     }
     
     /**
@@ -719,6 +732,22 @@ public class UsernameToken {
      * @throws WSSecurityException
      */
     public byte[] getDerivedKey(BSPEnforcer bspEnforcer) throws WSSecurityException {
+        return getDerivedKey(bspEnforcer, null);
+    }
+    
+    /**
+     * This method gets a derived key as defined in WSS Username Token Profile. If a
+     * UsernameTokenCache is supplied, then a key previously derived for the same username,
+     * salt and iteration count is returned from the cache.
+     * 
+     * @param bspEnforcer The BSPEnforcer to check the token against
+     * @param usernameTokenCache The (optional) cache of derived keys
+     * @return Returns the derived key as a byte array
+     * @throws WSSecurityException
+     */
+    public byte[] getDerivedKey(
+        BSPEnforcer bspEnforcer, UsernameTokenCache usernameTokenCache
+    ) throws WSSecurityException {
         if (rawPassword == null) {
             LOG.debug("The raw password was null");
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
@@ -740,17 +769,31 @@ public class UsernameToken {
         
         int iteration = getIteration();
         byte[] salt = getSalt();
+        if (usernameTokenCache != null) {
+            byte[] cachedKey = usernameTokenCache.getDerivedKey(getName(), salt, iteration);
+            if (cachedKey != null) {
+                return cachedKey;
+            }
+        }
+        
+        byte[] derivedKey = null;
         if (passwordsAreEncoded) {
             try {
-                return UsernameTokenUtil.generateDerivedKey(Base64.decode(rawPassword), salt, iteration);
+                derivedKey = 
+                    UsernameTokenUtil.generateDerivedKey(Base64.decode(rawPassword), salt, iteration);
             } catch (Base64DecodingException e) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.FAILURE, "decoding.general", e
                 );
             }
         } else {
-            return UsernameTokenUtil.generateDerivedKey(rawPassword, salt, iteration);
+            derivedKey = UsernameTokenUtil.generateDerivedKey(rawPassword, salt, iteration);
+        }
+        
+        if (usernameTokenCache != null) {
+            usernameTokenCache.addDerivedKey(getName(), salt, iteration, derivedKey);
         }
+        return derivedKey;
     }
     
     /**
@@ -36,6 +36,8 @@ import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
@@ -151,12 +153,18 @@ public class EncryptedDataProcessor implements Processor {
         }
         Node previousSibling = elem.getPreviousSibling();
         Node parent = elem.getParentNode();
+        SecurityMetricsListener metrics = request.getMetricsListener();
+        long cipherValueLength = ReferenceListProcessor.getCipherValueLength(elem);
+        metrics.phaseStarted(SecurityPhase.DECRYPTION);
         try {
             xmlCipher.doFinal(elem.getOwnerDocument(), elem, false);
+            metrics.bytesProcessed(SecurityPhase.DECRYPTION, cipherValueLength);
         } catch (Exception e) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILED_CHECK, e
             );
+        } finally {
+            metrics.phaseFinished(SecurityPhase.DECRYPTION);
         }
         
         WSDataRef dataRef = new WSDataRef();
@@ -41,6 +41,8 @@ import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSDocInfo;
@@ -103,7 +105,6 @@ public class EncryptedKeyProcessor implements Processor {
         // Check BSP Compliance
         checkBSPCompliance(elem, encryptedKeyTransportMethod, data.getBSPEnforcer());
         
-        Cipher cipher = WSSecurityUtil.getCipherInstance(encryptedKeyTransportMethod);
         //
         // Now lookup CipherValue.
         //
@@ -135,6 +136,7 @@ public class EncryptedKeyProcessor implements Processor {
             );
         }
         
+        Cipher cipher = WSSecurityUtil.getCipherInstance(encryptedKeyTransportMethod);
         try {
             PrivateKey privateKey = data.getDecCrypto().getPrivateKey(certs[0], data.getCallbackHandler());
             OAEPParameterSpec oaepParameterSpec = null;
@@ -185,14 +187,31 @@ public class EncryptedKeyProcessor implements Processor {
         
         byte[] encryptedEphemeralKey = null;
         byte[] decryptedBytes = null;
+        boolean unwrapped = false;
+        SecurityMetricsListener metrics = data.getMetricsListener();
+        metrics.phaseStarted(SecurityPhase.KEY_TRANSPORT);
         try {
             encryptedEphemeralKey = getDecodedBase64EncodedData(xencCipherValue);
             String keyAlgorithm = JCEMapper.translateURItoJCEID(encryptedKeyTransportMethod);
             decryptedBytes = cipher.unwrap(encryptedEphemeralKey, keyAlgorithm, Cipher.SECRET_KEY).getEncoded();
+            unwrapped = true;
+            metrics.bytesProcessed(SecurityPhase.KEY_TRANSPORT, encryptedEphemeralKey.length);
         } catch (IllegalStateException ex) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
         } catch (Exception ex) {
             decryptedBytes = getRandomKey(dataRefURIs, elem.getOwnerDocument(), wsDocInfo);
+        } finally {
+            metrics.phaseFinished(SecurityPhase.KEY_TRANSPORT);
+        }
+        
+        //
+        // Store the session key so that subsequent messages can refer to it via an
+        // EncryptedKeySHA1 KeyIdentifier. A random key (generated on an unwrapping
+        // failure) is never stored.
+        //
+        if (unwrapped && data.getSessionKeyCache() != null) {
+            byte[] digest = WSSecurityUtil.generateDigest(encryptedEphemeralKey);
+            data.getSessionKeyCache().addSessionKey(Base64.encode(digest), decryptedBytes);
         }
 
         List<WSDataRef> dataRefs = decryptDataRefs(dataRefURIs, elem.getOwnerDocument(), wsDocInfo,
@@ -473,7 +492,8 @@ public class EncryptedKeyProcessor implements Processor {
         }
 
         return ReferenceListProcessor.decryptEncryptedData(
-            doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo
+            doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo,
+            data.getMetricsListener()
         );
     }
     
@@ -31,11 +31,15 @@ import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.Text;
 
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.NoOpSecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
@@ -198,7 +202,8 @@ public class ReferenceListProcessor implements Processor {
 
         return 
             decryptEncryptedData(
-                doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo
+                doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo,
+                data.getMetricsListener()
             );
     }
     
@@ -302,6 +307,33 @@ public class ReferenceListProcessor implements Processor {
         Element encData,
         SecretKey symmetricKey,
         String symEncAlgo
+    ) throws WSSecurityException {
+        return 
+            decryptEncryptedData(
+                doc, dataRefURI, encData, symmetricKey, symEncAlgo,
+                NoOpSecurityMetricsListener.INSTANCE
+            );
+    }
+    
+    /**
+     * Decrypt the EncryptedData argument using a SecretKey, and report the DECRYPTION 
+     * phase to the given SecurityMetricsListener.
+     * @param doc The (document) owner of EncryptedData
+     * @param dataRefURI The URI of EncryptedData
+     * @param encData The EncryptedData element
+     * @param symmetricKey The SecretKey with which to decrypt EncryptedData
+     * @param symEncAlgo The symmetric encryption algorithm to use
+     * @param metrics The SecurityMetricsListener to report to
+     * @throws WSSecurityException
+     */
+    public static WSDataRef
+    decryptEncryptedData(
+        Document doc,
+        String dataRefURI,
+        Element encData,
+        SecretKey symmetricKey,
+        String symEncAlgo,
+        SecurityMetricsListener metrics
     ) throws WSSecurityException {
         XMLCipher xmlCipher = null;
         try {
@@ -319,6 +351,7 @@ public class ReferenceListProcessor implements Processor {
         dataRef.setAlgorithm(symEncAlgo);
         boolean content = X509Util.isContent(encData);
         dataRef.setContent(content);
+        long cipherValueLength = getCipherValueLength(encData);
         
         Node parent = encData.getParentNode();
         Node previousSibling = encData.getPreviousSibling();
@@ -327,10 +360,14 @@ public class ReferenceListProcessor implements Processor {
             parent = encData.getParentNode();
         }
         
+        metrics.phaseStarted(SecurityPhase.DECRYPTION);
         try {
             xmlCipher.doFinal(doc, encData, content);
+            metrics.bytesProcessed(SecurityPhase.DECRYPTION, cipherValueLength);
         } catch (Exception ex) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
+        } finally {
+            metrics.phaseFinished(SecurityPhase.DECRYPTION);
         }
         
         if (parent.getLocalName().equals(WSConstants.ENCRYPTED_HEADER)
@@ -414,5 +451,27 @@ public class ReferenceListProcessor implements Processor {
             return prependFullPath(xpath, node.getParentNode());
         }
     }
-
+    
+    /**
+     * Get the (approximate) number of octets of the CipherValue of an EncryptedData element,
+     * without decoding it.
+     * @param encData The EncryptedData element
+     * @return the number of encrypted octets, or 0 if there is no CipherValue
+     */
+    static long getCipherValueLength(Element encData) {
+        Element cipherData = 
+            WSSecurityUtil.getDirectChildElement(encData, "CipherData", WSConstants.ENC_NS);
+        Element cipherValue = 
+            WSSecurityUtil.getDirectChildElement(cipherData, "CipherValue", WSConstants.ENC_NS);
+        if (cipherValue == null) {
+            return 0L;
+        }
+        long length = 0L;
+        for (Node node = cipherValue.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (Node.TEXT_NODE == node.getNodeType()) {
+                length += ((Text)node).getLength();
+            }
+        }
+        return length * 3L / 4L;
+    }
 }
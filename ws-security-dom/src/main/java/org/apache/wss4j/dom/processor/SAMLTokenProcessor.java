@@ -36,6 +36,8 @@ import org.w3c.dom.Element;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -188,7 +190,13 @@ public class SAMLTokenProcessor implements Processor {
         Credential credential = new Credential();
         credential.setSamlAssertion(samlAssertion);
         if (validator != null) {
-            return validator.validate(credential, data);
+            SecurityMetricsListener metrics = data.getMetricsListener();
+            metrics.phaseStarted(SecurityPhase.SAML_VALIDATION);
+            try {
+                return validator.validate(credential, data);
+            } finally {
+                metrics.phaseFinished(SecurityPhase.SAML_VALIDATION);
+            }
         }
         return credential;
     }
@@ -19,6 +19,7 @@
 
 package org.apache.wss4j.dom.processor;
 
+import java.io.InputStream;
 import java.security.Key;
 import java.security.NoSuchProviderException;
 import java.security.Principal;
@@ -60,11 +61,15 @@ import org.w3c.dom.Node;
 
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SignatureVerificationCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
@@ -86,6 +91,8 @@ import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.wss4j.dom.util.XmlSchemaDateFormat;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.utils.JavaUtils;
 
 public class SignatureProcessor implements Processor {
     private static final org.slf4j.Logger LOG = 
@@ -227,8 +234,15 @@ public class SignatureProcessor implements Processor {
             }
         }
         
-        XMLSignature xmlSignature = 
-            verifyXMLSignature(elem, certs, publicKey, secretKey, signatureMethod, data, wsDocInfo);
+        SecurityMetricsListener metrics = data.getMetricsListener();
+        XMLSignature xmlSignature = null;
+        metrics.phaseStarted(SecurityPhase.SIGNATURE_VERIFICATION);
+        try {
+            xmlSignature = 
+                verifyXMLSignature(elem, certs, publicKey, secretKey, signatureMethod, data, wsDocInfo);
+        } finally {
+            metrics.phaseFinished(SecurityPhase.SIGNATURE_VERIFICATION);
+        }
         byte[] signatureValue = xmlSignature.getSignatureValue().getValue();
         String c14nMethod = xmlSignature.getSignedInfo().getCanonicalizationMethod().getAlgorithm();
 
@@ -413,7 +427,19 @@ public class SignatureProcessor implements Processor {
             testMessageReplay(elem, xmlSignature.getSignatureValue().getValue(), data, wsDocInfo);
             
             setElementsOnContext(xmlSignature, (DOMValidateContext)context, wsDocInfo, elem.getOwnerDocument());
-            boolean signatureOk = xmlSignature.validate(context);
+            boolean signatureOk;
+            SignatureVerificationCache verificationCache = null;
+            if (key instanceof PublicKey) {
+                verificationCache = data.getSignatureVerificationCache();
+            }
+            if (verificationCache != null) {
+                signatureOk = 
+                    validateSignature(
+                        elem, xmlSignature, context, (PublicKey)key, verificationCache, data
+                    );
+            } else {
+                signatureOk = xmlSignature.validate(context);
+            }
             if (signatureOk) {
                 return xmlSignature;
             }
@@ -447,6 +473,91 @@ public class SignatureProcessor implements Processor {
         throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
     }
     
+    /**
+     * Validate the signature, skipping the verification of the SignatureValue if exactly the
+     * same SignedInfo and SignatureValue were successfully verified with the same key before.
+     * The References are validated in any case.
+     */
+    private boolean validateSignature(
+        Element elem,
+        XMLSignature xmlSignature,
+        XMLValidateContext context,
+        PublicKey publicKey,
+        SignatureVerificationCache verificationCache,
+        RequestData data
+    ) throws Exception {
+        byte[] signatureValue = xmlSignature.getSignatureValue().getValue();
+        SignedInfo signedInfo = xmlSignature.getSignedInfo();
+        
+        byte[] canonicalizedSignedInfo = canonicalizeSignedInfo(elem, signedInfo);
+        boolean verified = 
+            canonicalizedSignedInfo != null 
+            && verificationCache.isVerified(canonicalizedSignedInfo, signatureValue, publicKey);
+        data.getMetricsListener().cacheAccessed(CacheType.SIGNATURE_VERIFICATION, verified);
+        
+        if (!verified) {
+            if (!xmlSignature.validate(context)) {
+                return false;
+            }
+            // Cache the SignedInfo as it was actually verified
+            InputStream canonicalizedData = signedInfo.getCanonicalizedData();
+            if (canonicalizedData != null) {
+                verificationCache.addVerified(
+                    JavaUtils.getBytesFromStream(canonicalizedData), signatureValue, publicKey
+                );
+            }
+            return true;
+        }
+        
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("The SignatureValue was verified before, only the References are validated");
+        }
+        for (Object reference : signedInfo.getReferences()) {
+            if (!((Reference)reference).validate(context)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Canonicalize the SignedInfo element of the given Signature element. Returns null if the
+     * SignedInfo can't be canonicalized here, in which case the signature is verified as usual.
+     */
+    private byte[] canonicalizeSignedInfo(
+        Element elem, SignedInfo signedInfo
+    ) {
+        Element signedInfoElement = 
+            WSSecurityUtil.getDirectChildElement(elem, "SignedInfo", WSConstants.SIG_NS);
+        if (signedInfoElement == null) {
+            return null;
+        }
+        String c14nAlgorithm = signedInfo.getCanonicalizationMethod().getAlgorithm();
+        try {
+            Canonicalizer canonicalizer = Canonicalizer.getInstance(c14nAlgorithm);
+            Object parameterSpec = signedInfo.getCanonicalizationMethod().getParameterSpec();
+            // Only the exclusive canonicalizers support an InclusiveNamespaces PrefixList
+            if ((WSConstants.C14N_EXCL_OMIT_COMMENTS.equals(c14nAlgorithm)
+                || WSConstants.C14N_EXCL_WITH_COMMENTS.equals(c14nAlgorithm))
+                && parameterSpec instanceof ExcC14NParameterSpec) {
+                StringBuilder prefixes = new StringBuilder();
+                for (Object prefix : ((ExcC14NParameterSpec)parameterSpec).getPrefixList()) {
+                    if (prefixes.length() > 0) {
+                        prefixes.append(' ');
+                    }
+                    prefixes.append(prefix);
+                }
+                return canonicalizer.canonicalizeSubtree(signedInfoElement, prefixes.toString());
+            }
+            return canonicalizer.canonicalizeSubtree(signedInfoElement);
+        } catch (Exception ex) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Can't canonicalize the SignedInfo with " + c14nAlgorithm, ex);
+            }
+            return null;
+        }
+    }
+    
     /**
      * Retrieve the Reference elements and set them on the ValidateContext
      * @param xmlSignature the XMLSignature object to get the references from
@@ -668,7 +779,9 @@ public class SignatureProcessor implements Processor {
         DateFormat zulu = new XmlSchemaDateFormat();
         String identifier = zulu.format(created) + "" + Arrays.hashCode(signatureValue);
 
-        if (replayCache.contains(identifier)) {
+        boolean replayed = replayCache.contains(identifier);
+        requestData.getMetricsListener().cacheAccessed(CacheType.TIMESTAMP_REPLAY, replayed);
+        if (replayed) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.INVALID_SECURITY,
                 "invalidTimestamp",
@@ -22,6 +22,8 @@ package org.apache.wss4j.dom.processor;
 import java.util.List;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.WSSecurityEngine;
@@ -57,7 +59,13 @@ public class TimestampProcessor implements Processor {
         
         Validator validator = data.getValidator(WSSecurityEngine.TIMESTAMP);
         if (validator != null) {
-            validator.validate(credential, data);
+            SecurityMetricsListener metrics = data.getMetricsListener();
+            metrics.phaseStarted(SecurityPhase.TIMESTAMP_VALIDATION);
+            try {
+                validator.validate(credential, data);
+            } finally {
+                metrics.phaseFinished(SecurityPhase.TIMESTAMP_VALIDATION);
+            }
             
             result.put(WSSecurityEngineResult.TAG_VALIDATED_TOKEN, Boolean.TRUE);
         }
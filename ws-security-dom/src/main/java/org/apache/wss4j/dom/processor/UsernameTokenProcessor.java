@@ -29,6 +29,9 @@ import org.w3c.dom.Element;
 
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.WSSConfig;
@@ -75,7 +78,8 @@ public class UsernameTokenProcessor implements Processor {
             action = WSConstants.UT_NOPASSWORD;
             if (token.isDerivedKey()) {
                 token.setRawPassword(data);
-                secretKey = token.getDerivedKey(data.getBSPEnforcer());
+                secretKey = 
+                    token.getDerivedKey(data.getBSPEnforcer(), data.getUsernameTokenCache());
             } 
         }
         WSSecurityEngineResult result = new WSSecurityEngineResult(action, token);
@@ -142,7 +146,9 @@ public class UsernameTokenProcessor implements Processor {
         // Test for replay attacks
         ReplayCache replayCache = data.getNonceReplayCache();
         if (replayCache != null && ut.getNonce() != null) {
-            if (replayCache.contains(ut.getNonce())) {
+            boolean replayed = replayCache.contains(ut.getNonce());
+            data.getMetricsListener().cacheAccessed(CacheType.NONCE_REPLAY, replayed);
+            if (replayed) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badUsernameToken",
@@ -169,7 +175,13 @@ public class UsernameTokenProcessor implements Processor {
         Credential credential = new Credential();
         credential.setUsernametoken(ut);
         if (validator != null) {
-            return validator.validate(credential, data);
+            SecurityMetricsListener metrics = data.getMetricsListener();
+            metrics.phaseStarted(SecurityPhase.USERNAME_TOKEN_VALIDATION);
+            try {
+                return validator.validate(credential, data);
+            } finally {
+                metrics.phaseFinished(SecurityPhase.USERNAME_TOKEN_VALIDATION);
+            }
         }
         return credential;
     }
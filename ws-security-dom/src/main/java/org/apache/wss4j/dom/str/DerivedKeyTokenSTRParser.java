@@ -212,6 +212,10 @@ public class DerivedKeyTokenSTRParser implements STRParser {
         if (id.charAt(0) == '#') {
             id = id.substring(1);
         }
+        byte[] cachedKey = STRParserUtil.getCachedSessionKey(id, type, data);
+        if (cachedKey != null) {
+            return cachedKey;
+        }
         WSPasswordCallback pwcb = 
             new WSPasswordCallback(id, null, type, identifier);
         try {
@@ -239,7 +243,7 @@ public class DerivedKeyTokenSTRParser implements STRParser {
         RequestData data,
         WSDocInfo wsDocInfo
     ) throws WSSecurityException {
-        int action = ((Integer)result.get(WSSecurityEngineResult.TAG_ACTION));
+        int action = result.getAction();
         if (WSConstants.UT_NOPASSWORD == action || WSConstants.UT == action) {
             STRParserUtil.checkUsernameTokenBSPCompliance(secRef, data.getBSPEnforcer());
             secretKey = (byte[])result.get(WSSecurityEngineResult.TAG_SECRET);
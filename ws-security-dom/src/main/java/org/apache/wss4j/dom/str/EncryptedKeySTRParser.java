@@ -197,7 +197,7 @@ public class EncryptedKeySTRParser implements STRParser {
         RequestData data,
         WSDocInfo wsDocInfo
     ) throws WSSecurityException {
-        int action = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+        int action = result.getAction();
         if (WSConstants.BST == action) {
             BinarySecurity token = 
                 (BinarySecurity)result.get(
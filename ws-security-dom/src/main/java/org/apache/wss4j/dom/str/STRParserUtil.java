@@ -22,7 +22,9 @@ package org.apache.wss4j.dom.str;
 import java.util.List;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.SessionKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
@@ -111,6 +113,26 @@ public final class STRParserUtil {
     }
     
 
+    /**
+     * Get a session key referred to via an EncryptedKeySHA1 KeyIdentifier from the 
+     * SessionKeyCache, if one is configured. 
+     * @param id The EncryptedKeySHA1 identifier
+     * @param type The ValueType of the reference
+     * @param request The RequestData instance
+     * @return the cached session key, or null if the reference is not an EncryptedKeySHA1
+     * reference or if no key is cached
+     */
+    public static byte[] getCachedSessionKey(String id, String type, RequestData request) {
+        SessionKeyCache sessionKeyCache = request.getSessionKeyCache();
+        if (sessionKeyCache == null || id == null 
+            || !SecurityTokenReference.ENC_KEY_SHA1_URI.equals(type)) {
+            return null;
+        }
+        byte[] sessionKey = sessionKeyCache.getSessionKey(id.trim());
+        request.getMetricsListener().cacheAccessed(CacheType.SESSION_KEY, sessionKey != null);
+        return sessionKey;
+    }
+
     /**
      * Check that the BinarySecurityToken referenced by the SecurityTokenReference argument 
      * is BSP compliant.
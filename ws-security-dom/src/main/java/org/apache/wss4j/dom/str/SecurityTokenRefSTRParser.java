@@ -241,6 +241,10 @@ public class SecurityTokenRefSTRParser implements STRParser {
         if (id.charAt(0) == '#') {
             id = id.substring(1);
         }
+        byte[] cachedKey = STRParserUtil.getCachedSessionKey(id, type, data);
+        if (cachedKey != null) {
+            return cachedKey;
+        }
         WSPasswordCallback pwcb = 
             new WSPasswordCallback(id, null, type, WSPasswordCallback.Usage.SECRET_KEY);
         try {
@@ -290,7 +294,7 @@ public class SecurityTokenRefSTRParser implements STRParser {
         Map<String, Object> parameters,
         WSDocInfo wsDocInfo
     ) throws WSSecurityException {
-        int action = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+        int action = result.getAction();
         if (WSConstants.ENCR == action) {
             STRParserUtil.checkEncryptedKeyBSPCompliance(secRef, data.getBSPEnforcer());
             secretKey = (byte[])result.get(WSSecurityEngineResult.TAG_SECRET);
@@ -314,7 +318,8 @@ public class SecurityTokenRefSTRParser implements STRParser {
                 (UsernameToken)result.get(WSSecurityEngineResult.TAG_USERNAME_TOKEN);
 
             usernameToken.setRawPassword(data);
-            secretKey = usernameToken.getDerivedKey(data.getBSPEnforcer());
+            secretKey = 
+                usernameToken.getDerivedKey(data.getBSPEnforcer(), data.getUsernameTokenCache());
         } 
     }
     
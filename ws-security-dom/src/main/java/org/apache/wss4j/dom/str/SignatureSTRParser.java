@@ -309,6 +309,10 @@ public class SignatureSTRParser implements STRParser {
         if (id.charAt(0) == '#') {
             id = id.substring(1);
         }
+        byte[] cachedKey = STRParserUtil.getCachedSessionKey(id, type, data);
+        if (cachedKey != null) {
+            return cachedKey;
+        }
         WSPasswordCallback pwcb = 
             new WSPasswordCallback(id, null, type, WSPasswordCallback.Usage.SECRET_KEY);
         try {
@@ -454,7 +458,7 @@ public class SignatureSTRParser implements STRParser {
         RequestData data,
         Map<String, Object> parameters
     ) throws WSSecurityException {
-        int action = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+        int action = result.getAction();
         if (WSConstants.UT_NOPASSWORD == action || WSConstants.UT == action) {
             STRParserUtil.checkUsernameTokenBSPCompliance(secRef, data.getBSPEnforcer());
             
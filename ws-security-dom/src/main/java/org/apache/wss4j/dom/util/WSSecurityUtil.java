@@ -27,6 +27,7 @@ import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSEncryptionPart;
 import org.apache.wss4j.dom.WSSecurityEngineResult;
 import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.common.crypto.CryptoPrimitives;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.StringUtil;
 import org.apache.wss4j.common.util.XMLUtils;
@@ -43,14 +44,11 @@ import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 
 import javax.crypto.Cipher;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import javax.xml.crypto.dom.DOMCryptoContext;
 import javax.xml.namespace.QName;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -65,11 +63,6 @@ public final class WSSecurityUtil {
     private static org.slf4j.Logger log = 
         org.slf4j.LoggerFactory.getLogger(WSSecurityUtil.class);
 
-    /**
-     * A cached MessageDigest object
-     */
-    private static MessageDigest digest;
-    
     private WSSecurityUtil() {
         // Complete
     }
@@ -830,24 +823,20 @@ public final class WSSecurityUtil {
 
     /**
      * Translate the "cipherAlgo" URI to a JCE ID, and return a javax.crypto.Cipher instance
-     * of this type. 
+     * of this type. The Cipher is confined to the calling thread and must be initialized
+     * before use.
      */
     public static Cipher getCipherInstance(String cipherAlgo)
         throws WSSecurityException {
         try {
-            String keyAlgorithm = JCEMapper.translateURItoJCEID(cipherAlgo);
-            return Cipher.getInstance(keyAlgorithm);
-        } catch (NoSuchPaddingException ex) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, "unsupportedKeyTransp", 
-                ex, "No such padding: " + cipherAlgo);
-        } catch (NoSuchAlgorithmException ex) {
+            return CryptoPrimitives.getCipher(cipherAlgo);
+        } catch (WSSecurityException ex) {
             // Check to see if an RSA OAEP MGF-1 with SHA-1 algorithm was requested
             // Some JDKs don't support RSA/ECB/OAEPPadding
             if (WSConstants.KEYTRANSPORT_RSAOEP.equals(cipherAlgo)) {
                 try {
-                    return Cipher.getInstance("RSA/ECB/OAEPWithSHA1AndMGF1Padding");
-                } catch (Exception e) {
+                    return CryptoPrimitives.getCipher("RSA/ECB/OAEPWithSHA1AndMGF1Padding");
+                } catch (WSSecurityException e) {
                     throw new WSSecurityException(
                         WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, "unsupportedKeyTransp",
                         e, "No such algorithm: " + cipherAlgo);
@@ -879,9 +868,7 @@ public final class WSSecurityUtil {
             //
             // Check the result of every action whether it matches the given action
             //
-            int resultAction =
-                    (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
-            if (resultAction == action) {
+            if (result.getAction() == action) {
                 returnResult = result;
             }
         }
@@ -901,7 +888,16 @@ public final class WSSecurityUtil {
         List<WSSecurityEngineResult> resultList,
         int action
     ) {
-        return fetchAllActionResults(resultList, Collections.singletonList(action));
+        List<WSSecurityEngineResult> actionResultList = Collections.emptyList();
+        for (WSSecurityEngineResult result : resultList) {
+            if (result.getAction() == action) {
+                if (actionResultList.isEmpty()) {
+                    actionResultList = new ArrayList<WSSecurityEngineResult>();
+                }
+                actionResultList.add(result);
+            }
+        }
+        return actionResultList;
     }
     
     /**
@@ -920,13 +916,16 @@ public final class WSSecurityUtil {
             return actionResultList;
         }
         
+        int[] actionArray = new int[actions.size()];
+        for (int i = 0; i < actionArray.length; i++) {
+            actionArray[i] = actions.get(i);
+        }
+        
         for (WSSecurityEngineResult result : resultList) {
             //
             // Check the result of every action whether it matches the given action
             //
-            int resultAction =
-                    (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
-            if (actions.contains(resultAction)) {
+            if (containsAction(actionArray, result.getAction())) {
                 if (actionResultList.isEmpty()) {
                     actionResultList = new ArrayList<WSSecurityEngineResult>();
                 }
@@ -935,6 +934,15 @@ public final class WSSecurityUtil {
         }
         return actionResultList;
     }
+    
+    private static boolean containsAction(int[] actions, int action) {
+        for (int i = 0; i < actions.length; i++) {
+            if (actions[i] == action) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     public static int decodeAction(
         String action, 
@@ -1105,22 +1113,13 @@ public final class WSSecurityUtil {
     
     /**
      * Generate a (SHA1) digest of the input bytes. The MessageDigest instance that backs this
-     * method is cached for efficiency.  
+     * method is cached per thread for efficiency.  
      * @param inputBytes the bytes to digest
      * @return the digest of the input bytes
      * @throws WSSecurityException
      */
-    public static synchronized byte[] generateDigest(byte[] inputBytes) throws WSSecurityException {
-        try {
-            if (digest == null) {
-                digest = MessageDigest.getInstance("SHA-1");
-            }
-            return digest.digest(inputBytes);
-        } catch (Exception e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty", e,
-                    "Error in generating digest"
-            );
-        }
+    public static byte[] generateDigest(byte[] inputBytes) throws WSSecurityException {
+        return CryptoPrimitives.digestSHA1(inputBytes);
     }
     
     /**
@@ -1145,13 +1144,10 @@ public final class WSSecurityUtil {
                 for (Iterator<WSSecurityEngineResult> iter = results.iterator(); 
                     iter.hasNext() && !found;) {
                     WSSecurityEngineResult result = iter.next();
-                    int resultAction =
-                            (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
-                    if (resultAction != action) {
+                    if (result.getAction() != action) {
                         continue;
                     }
-                    List<WSDataRef> refList = 
-                        (List<WSDataRef>)result.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+                    List<WSDataRef> refList = result.getDataRefs();
                     if (refList != null) {
                         for (WSDataRef dataRef : refList) {
                             if (dataRef.getName().equals(requiredPart)) {
@@ -1185,9 +1181,7 @@ public final class WSSecurityUtil {
         WSSecurityEngineResult resultItem, 
         String[] requiredIDs
     ) throws WSSecurityException {
-        int resultAction =
-                (Integer) resultItem.get(WSSecurityEngineResult.TAG_ACTION);
-        if (resultAction != WSConstants.SIGN) {
+        if (resultItem.getAction() != WSConstants.SIGN) {
             throw new IllegalArgumentException("Not a SIGN result");
         }
 
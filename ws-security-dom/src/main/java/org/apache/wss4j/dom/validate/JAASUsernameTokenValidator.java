@@ -26,7 +26,9 @@ import javax.security.auth.login.LoginException;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.NamePasswordCallbackHandler;
+import org.apache.wss4j.common.cache.AuthenticationResultCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
 
@@ -99,12 +101,27 @@ public class JAASUsernameTokenValidator implements Validator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
         
+        CallbackHandler handler = getCallbackHandler(user, password);
+        AuthenticationResultCache authenticationResultCache = data.getAuthenticationResultCache();
+        String realm = null;
+        if (authenticationResultCache != null) {
+            realm = getContextName() + "|" + handler.getClass().getName();
+            Subject subject = authenticationResultCache.getSubject(realm, user, password);
+            data.getMetricsListener().cacheAccessed(CacheType.AUTHENTICATION_RESULT, subject != null);
+            if (subject != null) {
+                credential.setSubject(subject);
+                return credential;
+            }
+        }
+        
         try {
-            CallbackHandler handler = getCallbackHandler(user, password);  
             LoginContext ctx = new LoginContext(getContextName(), handler);  
             ctx.login();
             Subject subject = ctx.getSubject();
             credential.setSubject(subject);
+            if (authenticationResultCache != null) {
+                authenticationResultCache.addSubject(realm, user, password, subject);
+            }
 
         } catch (LoginException ex) {
             log.info("Authentication failed", ex);
@@ -34,6 +34,8 @@ import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.BinarySecurity;
 import org.apache.wss4j.dom.message.token.KerberosSecurity;
 import org.apache.wss4j.common.kerberos.KerberosServiceAction;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredential;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialCache;
 
 /**
  */
@@ -46,6 +48,7 @@ public class KerberosTokenValidator implements Validator {
     private CallbackHandler callbackHandler;
     private String contextName;
     private KerberosTokenDecoder kerberosTokenDecoder;
+    private KerberosServiceCredentialCache serviceCredentialCache;
     
     /**
      * Get the JAAS Login context name to use.
@@ -115,6 +118,24 @@ public class KerberosTokenValidator implements Validator {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
     
+    /**
+     * Get the KerberosServiceCredentialCache used to reuse the login and the credential of the
+     * service across requests.
+     * @return the KerberosServiceCredentialCache or null if every request logs in
+     */
+    public KerberosServiceCredentialCache getServiceCredentialCache() {
+        return serviceCredentialCache;
+    }
+
+    /**
+     * Set the KerberosServiceCredentialCache used to reuse the login and the credential of the
+     * service across requests. It can be null, in which case every request logs in.
+     * @param serviceCredentialCache the KerberosServiceCredentialCache to use
+     */
+    public void setServiceCredentialCache(KerberosServiceCredentialCache serviceCredentialCache) {
+        this.serviceCredentialCache = serviceCredentialCache;
+    }
+    
     /**
      * Validate the credential argument. It must contain a non-null BinarySecurityToken. 
      * 
@@ -143,6 +164,61 @@ public class KerberosTokenValidator implements Validator {
             }
         }
         
+        byte[] token = binarySecurity.getToken();
+        
+        Subject subject;
+        Subject resultSubject;
+        KerberosServiceAction action;
+        if (serviceCredentialCache != null) {
+            CallbackHandler handler = callbackHandler;
+            if (handler == null) {
+                handler = data.getCallbackHandler();
+            }
+            KerberosServiceCredential serviceCredential =
+                serviceCredentialCache.getServiceCredential(getContextName(), handler, serviceName);
+
+            subject = serviceCredential.getSubject();
+            // the cached Subject holds the keys of the service, so it is not put on the result
+            resultSubject = serviceCredential.getPublicSubject();
+            action = 
+                new KerberosServiceAction(
+                    token, serviceCredential.getServiceName(), serviceCredential.getCredential()
+                );
+        } else {
+            subject = login(data);
+            resultSubject = subject;
+            action = new KerberosServiceAction(token, getServiceName(subject));
+        }
+        
+        // Validate the ticket
+        Principal principal = Subject.doAs(subject, action);
+        if (principal == null) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, "kerberosTicketValidationError"
+            );
+        }
+        credential.setPrincipal(principal);
+        credential.setSubject(resultSubject);
+        
+        KerberosTokenDecoder kerberosTokenDecoder = this.kerberosTokenDecoder;
+        if (kerberosTokenDecoder == null) {
+            kerberosTokenDecoder = new KerberosTokenDecoderImpl();
+        }
+
+        kerberosTokenDecoder.clear();
+        kerberosTokenDecoder.setToken(token);
+        kerberosTokenDecoder.setSubject(subject);
+        byte[] sessionKey = kerberosTokenDecoder.getSessionKey();
+        credential.setSecretKey(sessionKey);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Successfully validated a ticket");
+        }
+        
+        return credential;
+    }
+    
+    private Subject login(RequestData data) throws WSSecurityException {
         // Get a TGT from the KDC using JAAS
         LoginContext loginContext = null;
         try {
@@ -167,11 +243,11 @@ public class KerberosTokenValidator implements Validator {
         if (log.isDebugEnabled()) {
             log.debug("Successfully authenticated to the TGT");
         }
-        
-        byte[] token = binarySecurity.getToken();
-        
+        return loginContext.getSubject();
+    }
+    
+    private String getServiceName(Subject subject) throws WSSecurityException {
         // Get the service name to use - fall back on the principal
-        Subject subject = loginContext.getSubject();
         String service = serviceName;
         if (service == null) {
             Set<Principal> principals = subject.getPrincipals();
@@ -183,33 +259,6 @@ public class KerberosTokenValidator implements Validator {
             }
             service = principals.iterator().next().getName();
         }
-        
-        // Validate the ticket
-        KerberosServiceAction action = new KerberosServiceAction(token, service);
-        Principal principal = Subject.doAs(subject, action);
-        if (principal == null) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, "kerberosTicketValidationError"
-            );
-        }
-        credential.setPrincipal(principal);
-        credential.setSubject(subject);
-        
-        KerberosTokenDecoder kerberosTokenDecoder = this.kerberosTokenDecoder;
-        if (kerberosTokenDecoder == null) {
-            kerberosTokenDecoder = new KerberosTokenDecoderImpl();
-        }
-
-        kerberosTokenDecoder.clear();
-        kerberosTokenDecoder.setToken(token);
-        kerberosTokenDecoder.setSubject(subject);
-        byte[] sessionKey = kerberosTokenDecoder.getSessionKey();
-        credential.setSecretKey(sessionKey);
-
-        if (log.isDebugEnabled()) {
-            log.debug("Successfully validated a ticket");
-        }
-        
-        return credential;
+        return service;
     }
 }
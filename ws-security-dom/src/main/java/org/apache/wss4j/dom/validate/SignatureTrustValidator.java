@@ -31,6 +31,8 @@ import java.util.regex.Pattern;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.dom.handler.RequestData;
 
 /**
@@ -57,6 +59,18 @@ public class SignatureTrustValidator implements Validator {
         if (credential == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noCredential");
         }
+        SecurityMetricsListener metrics = data.getMetricsListener();
+        metrics.phaseStarted(SecurityPhase.SIGNATURE_TRUST);
+        try {
+            return verifyCredentialTrust(credential, data);
+        } finally {
+            metrics.phaseFinished(SecurityPhase.SIGNATURE_TRUST);
+        }
+    }
+    
+    private Credential verifyCredentialTrust(
+        Credential credential, RequestData data
+    ) throws WSSecurityException {
         X509Certificate[] certs = credential.getCertificates();
         PublicKey publicKey = credential.getPublicKey();
         Crypto crypto = getCrypto(data);
@@ -26,8 +26,10 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.common.cache.UsernameTokenCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
 import org.apache.xml.security.exceptions.Base64DecodingException;
@@ -157,12 +159,22 @@ public class UsernameTokenValidator implements Validator {
         }
         
         String user = usernameToken.getName();
-        String password = usernameToken.getPassword();
-        String nonce = usernameToken.getNonce();
-        String createdTime = usernameToken.getCreated();
-        String pwType = usernameToken.getPasswordType();
-        boolean passwordsAreEncoded = usernameToken.getPasswordsAreEncoded();
         
+        UsernameTokenCache usernameTokenCache = data.getUsernameTokenCache();
+        if (usernameTokenCache != null) {
+            String cachedPassword = usernameTokenCache.getPassword(user);
+            if (cachedPassword != null) {
+                if (isPasswordMatch(usernameToken, cachedPassword)) {
+                    data.getMetricsListener().cacheAccessed(CacheType.USERNAME_TOKEN, true);
+                    return;
+                }
+                // The password may have changed since it was cached
+                usernameTokenCache.remove(user);
+            }
+            data.getMetricsListener().cacheAccessed(CacheType.USERNAME_TOKEN, false);
+        }
+        
+        String pwType = usernameToken.getPasswordType();
         WSPasswordCallback pwCb = 
             new WSPasswordCallback(user, null, pwType, WSPasswordCallback.Usage.USERNAME_TOKEN);
         try {
@@ -189,9 +201,26 @@ public class UsernameTokenValidator implements Validator {
             }
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
+        if (!isPasswordMatch(usernameToken, origPassword)) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        }
+        if (usernameTokenCache != null) {
+            usernameTokenCache.addPassword(user, origPassword);
+        }
+    }
+    
+    /**
+     * Check the received password (or password digest) against the stored password.
+     */
+    private boolean isPasswordMatch(
+        UsernameToken usernameToken, String origPassword
+    ) throws WSSecurityException {
+        String password = usernameToken.getPassword();
         if (usernameToken.isHashed()) {
+            String nonce = usernameToken.getNonce();
+            String createdTime = usernameToken.getCreated();
             String passDigest;
-            if (passwordsAreEncoded) {
+            if (usernameToken.getPasswordsAreEncoded()) {
                 try {
                     passDigest = UsernameToken.doPasswordDigest(nonce, createdTime, Base64.decode(origPassword));
                 } catch (Base64DecodingException e) {
@@ -202,14 +231,9 @@ public class UsernameTokenValidator implements Validator {
             } else {
                 passDigest = UsernameToken.doPasswordDigest(nonce, createdTime, origPassword);
             }
-            if (!passDigest.equals(password)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
-            }
-        } else {
-            if (!origPassword.equals(password)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
-            }
+            return passDigest.equals(password);
         }
+        return origPassword.equals(password);
     }
     
     /**
@@ -23,6 +23,7 @@ import org.apache.wss4j.dom.WSSecurityEngineResult;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.WSHandler;
 import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.SecurityPlan;
 import org.w3c.dom.Document;
 
 import java.util.HashMap;
@@ -93,6 +94,20 @@ public class CustomHandler extends WSHandler {
         );
     }
     
+    public void send(
+        Document doc,
+        RequestData reqData, 
+        SecurityPlan plan,
+        boolean request
+    ) throws WSSecurityException {
+        doSenderAction(
+            doc, 
+            reqData, 
+            plan,
+            request
+        );
+    }
+    
     public void receive(
         int action, 
         RequestData reqData
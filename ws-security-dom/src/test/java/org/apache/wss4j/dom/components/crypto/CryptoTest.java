@@ -21,6 +21,7 @@ package org.apache.wss4j.dom.components.crypto;
 
 import java.io.InputStream;
 import java.security.KeyStore;
+import java.security.PrivateKey;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSSConfig;
@@ -130,6 +131,41 @@ public class CryptoTest extends org.junit.Assert {
         }
     }
     
+    /**
+     * Test that recovered private keys are cached if private key caching is enabled
+     */
+    @org.junit.Test
+    public void testPrivateKeyCaching() throws Exception {
+        Merlin crypto = new Merlin();
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(CryptoTest.class);
+        InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks");
+        keyStore.load(input, "security".toCharArray());
+        crypto.setKeyStore(keyStore);
+        
+        // Caching is disabled by default
+        assertFalse(crypto.isPrivateKeyCaching());
+        assertNotSame(
+            crypto.getPrivateKey("wss40", "security"), crypto.getPrivateKey("wss40", "security")
+        );
+        
+        crypto.setPrivateKeyCaching(true);
+        PrivateKey privateKey = crypto.getPrivateKey("wss40", "security");
+        assertSame(privateKey, crypto.getPrivateKey("wss40", "security"));
+        
+        // The wrong password must still fail
+        try {
+            crypto.getPrivateKey("wss40", "badpassword");
+            fail("Failure expected on a bad password");
+        } catch (WSSecurityException ex) {
+            // expected
+        }
+        
+        // Setting the keystore clears the cache
+        crypto.setKeyStore(keyStore);
+        assertNotSame(privateKey, crypto.getPrivateKey("wss40", "security"));
+    }
+    
     /**
      * WSS-102 -- ensure Merlin will null properties
      * can be instantiated
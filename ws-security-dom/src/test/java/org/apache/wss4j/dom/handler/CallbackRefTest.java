@@ -22,6 +22,7 @@ package org.apache.wss4j.dom.handler;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSSConfig;
 import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
 import org.apache.wss4j.dom.common.SOAPUtil;
 import org.apache.wss4j.dom.common.UsernamePasswordCallbackHandler;
 import org.apache.wss4j.common.util.XMLUtils;
@@ -117,4 +118,93 @@ public class CallbackRefTest extends org.junit.Assert {
         assertTrue(outputString.contains("securityPassword"));
     }
     
+    /**
+     * By default, a new CallbackHandler is created per call from its class name
+     */
+    @org.junit.Test
+    public void
+    testHandlerClassIsNotCachedByDefault() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        handler.setOption(
+            WSHandlerConstants.PW_CALLBACK_CLASS, 
+            UsernamePasswordCallbackHandler.class.getName()
+        );
+        
+        final RequestData reqData = new RequestData();
+        reqData.setMsgContext(new java.util.TreeMap<String, String>());
+        
+        CallbackHandler cbHandler = handler.getPasswordCallbackHandler(reqData);
+        assertTrue(cbHandler instanceof UsernamePasswordCallbackHandler);
+        assertNotSame(cbHandler, handler.getPasswordCallbackHandler(reqData));
+    }
+    
+    /**
+     * A CallbackHandler that is loaded via its class name is only instantiated once, if
+     * CACHE_CALLBACK_HANDLERS is enabled
+     */
+    @org.junit.Test
+    public void
+    testHandlerClassIsCached() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        handler.setOption(WSHandlerConstants.CACHE_CALLBACK_HANDLERS, "true");
+        handler.setOption(
+            WSHandlerConstants.PW_CALLBACK_CLASS, 
+            UsernamePasswordCallbackHandler.class.getName()
+        );
+        
+        final RequestData reqData = new RequestData();
+        reqData.setMsgContext(new java.util.TreeMap<String, String>());
+        
+        CallbackHandler cbHandler = handler.getPasswordCallbackHandler(reqData);
+        assertTrue(cbHandler instanceof UsernamePasswordCallbackHandler);
+        assertSame(cbHandler, handler.getPasswordCallbackHandler(reqData));
+        
+        handler.clearCache();
+        CallbackHandler newHandler = handler.getPasswordCallbackHandler(reqData);
+        assertNotNull(newHandler);
+        assertNotSame(cbHandler, newHandler);
+        
+        // a change of the configured class name loads the new class
+        handler.setOption(
+            WSHandlerConstants.PW_CALLBACK_CLASS, 
+            KeystoreCallbackHandler.class.getName()
+        );
+        assertTrue(handler.getPasswordCallbackHandler(reqData) instanceof KeystoreCallbackHandler);
+    }
+    
+    /**
+     * CallbackHandler instances that are loaded via different ClassLoaders are not shared
+     */
+    @org.junit.Test
+    public void
+    testHandlerClassIsCachedPerClassLoader() throws Exception {
+        CustomHandler handler = new CustomHandler() {
+            @Override
+            public ClassLoader getClassLoader(Object msgCtx) {
+                return (ClassLoader)((java.util.Map<?, ?>)msgCtx).get("classLoader");
+            }
+        };
+        handler.setOption(WSHandlerConstants.CACHE_CALLBACK_HANDLERS, "true");
+        handler.setOption(
+            WSHandlerConstants.PW_CALLBACK_CLASS, 
+            UsernamePasswordCallbackHandler.class.getName()
+        );
+        
+        ClassLoader parent = this.getClass().getClassLoader();
+        java.util.Map<String, Object> messageContext = new java.util.TreeMap<String, Object>();
+        messageContext.put("classLoader", new java.net.URLClassLoader(new java.net.URL[0], parent));
+        RequestData reqData = new RequestData();
+        reqData.setMsgContext(messageContext);
+        CallbackHandler cbHandler = handler.getPasswordCallbackHandler(reqData);
+        assertSame(cbHandler, handler.getPasswordCallbackHandler(reqData));
+        
+        java.util.Map<String, Object> otherContext = new java.util.TreeMap<String, Object>();
+        otherContext.put("classLoader", new java.net.URLClassLoader(new java.net.URL[0], parent));
+        RequestData otherData = new RequestData();
+        otherData.setMsgContext(otherContext);
+        CallbackHandler otherHandler = handler.getPasswordCallbackHandler(otherData);
+        assertNotNull(otherHandler);
+        assertNotSame(cbHandler, otherHandler);
+    }
+    
 }
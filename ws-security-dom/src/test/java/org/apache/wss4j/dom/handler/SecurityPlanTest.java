@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.common.UsernamePasswordCallbackHandler;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.w3c.dom.Document;
+
+/**
+ * Some tests for securing outbound messages via a precompiled SecurityPlan.
+ */
+public class SecurityPlanTest extends org.junit.Assert {
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SecurityPlanTest.class);
+    private CallbackHandler callbackHandler = new KeystoreCallbackHandler();
+    private Crypto crypto = null;
+
+    public SecurityPlanTest() throws Exception {
+        crypto = CryptoFactory.getInstance();
+    }
+
+    @org.junit.Test
+    public void testSignedTimestamp() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        handler.setOption(WSHandlerConstants.SIG_PROP_FILE, "crypto.properties");
+        handler.setOption(WSHandlerConstants.SIGNATURE_USER, "16c73ab6-b892-458f-abf5-2f875f74882e");
+        handler.setOption(WSHandlerConstants.PW_CALLBACK_REF, callbackHandler);
+        handler.setOption(WSHandlerConstants.SIG_KEY_ID, "DirectReference");
+        handler.setOption(
+            WSHandlerConstants.SIGNATURE_PARTS,
+            "{}{" + WSConstants.WSU_NS + "}Timestamp;{}{}Body"
+        );
+
+        SecurityPlan plan = handler.compileSecurityPlan("Signature Timestamp", null);
+        assertEquals(WSConstants.SIGN | WSConstants.TS, plan.getDoAction());
+        assertEquals(WSConstants.SIGN, plan.getActions().get(0).intValue());
+        // The Timestamp must be created before the Signature
+        assertEquals(WSConstants.TS, plan.getActionsToPerform().get(0).intValue());
+        assertEquals(WSConstants.SIGN, plan.getActionsToPerform().get(1).intValue());
+        assertNotNull(plan.getSigCrypto());
+        assertNotSame(handler.secEngine.getWssConfig(), plan.getWssConfig());
+
+        // The same plan is used for several messages
+        for (int i = 0; i < 2; i++) {
+            RequestData reqData = new RequestData();
+            reqData.setMsgContext(new TreeMap<String, Object>());
+
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            handler.send(doc, reqData, plan, true);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(XMLUtils.PrettyDocumentToString(doc));
+            }
+
+            WSSecurityEngine secEngine = new WSSecurityEngine();
+            List<WSSecurityEngineResult> results =
+                secEngine.processSecurityHeader(doc, null, callbackHandler, crypto);
+            WSSecurityEngineResult actionResult =
+                WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN);
+            assertNotNull(actionResult);
+            assertNotNull(WSSecurityUtil.fetchActionResult(results, WSConstants.TS));
+            assertEquals(2, reqData.getSignatureParts().size());
+        }
+    }
+
+    @org.junit.Test
+    public void testUsernameToken() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        handler.setOption(WSHandlerConstants.PW_CALLBACK_REF, new UsernamePasswordCallbackHandler());
+        handler.setOption(WSHandlerConstants.PASSWORD_TYPE, WSConstants.PW_TEXT);
+
+        SecurityPlan plan = handler.compileSecurityPlan("UsernameToken", null);
+
+        // The username is specific to the message
+        RequestData reqData = new RequestData();
+        reqData.setUsername("alice");
+        Map<String, Object> messageContext = new TreeMap<String, Object>();
+        reqData.setMsgContext(messageContext);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        handler.send(doc, reqData, plan, true);
+
+        String outputString = XMLUtils.PrettyDocumentToString(doc);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(outputString);
+        }
+        assertTrue(outputString.contains("alice"));
+        assertTrue(outputString.contains("securityPassword"));
+        assertEquals(WSConstants.PASSWORD_TEXT, reqData.getPwType());
+    }
+    
+    @org.junit.Test
+    public void testWSSConfigIsNotModified() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        handler.setOption(WSHandlerConstants.PW_CALLBACK_REF, new UsernamePasswordCallbackHandler());
+        handler.setOption(WSHandlerConstants.ENABLE_SIGNATURE_CONFIRMATION, "true");
+        handler.setOption(WSHandlerConstants.TIMESTAMP_PRECISION, "false");
+        
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        SecurityPlan plan = handler.compileSecurityPlan("Timestamp", wssConfig);
+        
+        assertNotSame(wssConfig, plan.getWssConfig());
+        assertTrue(plan.getWssConfig().isEnableSignatureConfirmation());
+        assertFalse(plan.getWssConfig().isPrecisionInMilliSeconds());
+        assertFalse(wssConfig.isEnableSignatureConfirmation());
+        assertTrue(wssConfig.isPrecisionInMilliSeconds());
+        
+        // Looking up a value that is not an option still requires a message context
+        try {
+            handler.getString(WSHandlerConstants.ACTOR, null);
+            fail("Failure expected on a null message context");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+}
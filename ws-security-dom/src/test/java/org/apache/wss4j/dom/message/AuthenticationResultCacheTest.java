@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+import javax.security.auth.callback.PasswordCallback;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.FailedLoginException;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import org.apache.wss4j.common.cache.AuthenticationResultCache;
+import org.apache.wss4j.common.cache.MemoryAuthenticationResultCache;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.principal.CustomTokenPrincipal;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.apache.wss4j.dom.validate.JAASUsernameTokenValidator;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some test-cases for caching the results of JAAS UsernameToken authentication.
+ */
+public class AuthenticationResultCacheTest extends org.junit.Assert {
+
+    private static int loginCount;
+
+    private Configuration previousConfiguration;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        WSSConfig.init();
+        loginCount = 0;
+        try {
+            previousConfiguration = Configuration.getConfiguration();
+        } catch (SecurityException ex) {
+            previousConfiguration = null;
+        }
+        Configuration.setConfiguration(new Configuration() {
+            @Override
+            public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+                Map<String, ?> options = Collections.emptyMap();
+                return new AppConfigurationEntry[] {
+                    new AppConfigurationEntry(
+                        CountingLoginModule.class.getName(),
+                        AppConfigurationEntry.LoginModuleControlFlag.REQUIRED,
+                        options
+                    )
+                };
+            }
+        });
+    }
+
+    @org.junit.After
+    public void tearDown() {
+        Configuration.setConfiguration(previousConfiguration);
+    }
+
+    @org.junit.Test
+    public void testCachedAuthentication() throws Exception {
+        AuthenticationResultCache cache = new MemoryAuthenticationResultCache();
+
+        Subject subject = verify(createUsernameToken("wernerd", "verySecret"), cache);
+        assertEquals(1, loginCount);
+
+        // A new token with the same password should not log in again
+        Subject cachedSubject = verify(createUsernameToken("wernerd", "verySecret"), cache);
+        assertEquals(1, loginCount);
+        assertTrue(cachedSubject.isReadOnly());
+        assertEquals(subject.getPrincipals(), cachedSubject.getPrincipals());
+
+        // A different password must be authenticated by the LoginModule, and fail
+        try {
+            verify(createUsernameToken("wernerd", "badPassword"), cache);
+            fail("Failure expected on a bad password");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+        }
+        assertEquals(2, loginCount);
+
+        // Once invalidated, the LoginModule is consulted again
+        cache.remove("wernerd");
+        verify(createUsernameToken("wernerd", "verySecret"), cache);
+        assertEquals(3, loginCount);
+    }
+
+    @org.junit.Test
+    public void testCacheIsKeyedByContextName() throws Exception {
+        AuthenticationResultCache cache = new MemoryAuthenticationResultCache();
+
+        verify(createUsernameToken("wernerd", "verySecret"), cache, "test");
+        assertEquals(1, loginCount);
+
+        // A validator with another JAAS context must not reuse the result
+        verify(createUsernameToken("wernerd", "verySecret"), cache, "test2");
+        assertEquals(2, loginCount);
+
+        verify(createUsernameToken("wernerd", "verySecret"), cache, "test");
+        verify(createUsernameToken("wernerd", "verySecret"), cache, "test2");
+        assertEquals(2, loginCount);
+    }
+
+    @org.junit.Test
+    public void testCacheDoesNotStorePassword() throws Exception {
+        AuthenticationResultCache cache = new MemoryAuthenticationResultCache();
+        Subject subject = new Subject();
+        subject.getPrincipals().add(new CustomTokenPrincipal("wernerd"));
+        cache.addSubject("test", "wernerd", "verySecret", subject);
+
+        Subject cachedSubject = cache.getSubject("test", "wernerd", "verySecret");
+        assertNotSame(subject, cachedSubject);
+        assertTrue(cachedSubject.isReadOnly());
+        assertEquals(subject.getPrincipals(), cachedSubject.getPrincipals());
+        try {
+            cachedSubject.getPrincipals().add(new CustomTokenPrincipal("alice"));
+            fail("The cached Subject must be read-only");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertNull(cache.getSubject("test", "wernerd", "verySecret2"));
+        assertNull(cache.getSubject("test", "alice", "verySecret"));
+        assertNull(cache.getSubject("test2", "wernerd", "verySecret"));
+
+        cache.addSubject("test2", "wernerd", "verySecret", subject);
+        cache.remove("wernerd");
+        assertNull(cache.getSubject("test", "wernerd", "verySecret"));
+        assertNull(cache.getSubject("test2", "wernerd", "verySecret"));
+
+        cache.addSubject("test", "wernerd", "verySecret", subject);
+        cache.clear();
+        assertNull(cache.getSubject("test", "wernerd", "verySecret"));
+    }
+
+    private Document createUsernameToken(String user, String password) throws Exception {
+        WSSecUsernameToken builder = new WSSecUsernameToken();
+        builder.setPasswordType(WSConstants.PASSWORD_TEXT);
+        builder.setUserInfo(user, password);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        return builder.build(doc, secHeader);
+    }
+
+    private Subject verify(Document doc, AuthenticationResultCache cache) throws Exception {
+        return verify(doc, cache, "test");
+    }
+
+    private Subject verify(
+        Document doc, AuthenticationResultCache cache, String contextName
+    ) throws Exception {
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        JAASUsernameTokenValidator validator = new JAASUsernameTokenValidator();
+        validator.setContextName(contextName);
+        wssConfig.setValidator(WSSecurityEngine.USERNAME_TOKEN, validator);
+        RequestData data = new RequestData();
+        data.setWssConfig(wssConfig);
+        data.setAuthenticationResultCache(cache);
+
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+        Element elem = WSSecurityUtil.getSecurityHeader(doc, null);
+        List<WSSecurityEngineResult> results = secEngine.processSecurityHeader(elem, data);
+        WSSecurityEngineResult actionResult =
+            WSSecurityUtil.fetchActionResult(results, WSConstants.UT);
+        return (Subject)actionResult.get(WSSecurityEngineResult.TAG_SUBJECT);
+    }
+
+    /**
+     * A LoginModule which accepts the password "verySecret" and counts the logins.
+     */
+    public static class CountingLoginModule implements LoginModule {
+
+        private Subject subject;
+        private CallbackHandler callbackHandler;
+        private String name;
+
+        public void initialize(
+            Subject subject, CallbackHandler callbackHandler,
+            Map<String, ?> sharedState, Map<String, ?> options
+        ) {
+            this.subject = subject;
+            this.callbackHandler = callbackHandler;
+        }
+
+        public boolean login() throws LoginException {
+            loginCount++;
+            NameCallback nameCallback = new NameCallback("name");
+            PasswordCallback passwordCallback = new PasswordCallback("password", false);
+            try {
+                callbackHandler.handle(new Callback[]{nameCallback, passwordCallback});
+            } catch (Exception ex) {
+                throw new LoginException(ex.getMessage());
+            }
+            if (!"verySecret".equals(new String(passwordCallback.getPassword()))) {
+                throw new FailedLoginException();
+            }
+            name = nameCallback.getName();
+            return true;
+        }
+
+        public boolean commit() {
+            subject.getPrincipals().add(new CustomTokenPrincipal(name));
+            return true;
+        }
+
+        public boolean abort() {
+            return true;
+        }
+
+        public boolean logout() {
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.util.List;
+
+import javax.security.auth.callback.CallbackHandler;
+import javax.xml.crypto.dsig.SignatureMethod;
+
+import org.apache.wss4j.common.cache.MemorySessionKeyCache;
+import org.apache.wss4j.common.cache.ReusableSessionKey;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some test-cases for reusing the session key of outbound messages via a ReusableSessionKey.
+ */
+public class ReusableSessionKeyTest extends org.junit.Assert {
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ReusableSessionKeyTest.class);
+
+    private CallbackHandler keystoreCallbackHandler = new KeystoreCallbackHandler();
+    private Crypto crypto = null;
+
+    public ReusableSessionKeyTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance("wss40.properties");
+    }
+
+    @org.junit.Test
+    public void testEncryption() throws Exception {
+        ReusableSessionKey reusableSessionKey = new ReusableSessionKey(60L, 2);
+        SessionKeyCache cache = new MemorySessionKeyCache();
+
+        // The first message transports the session key in an EncryptedKey
+        WSSecEncrypt builder = createEncryptionBuilder(reusableSessionKey);
+        Document encryptedDoc = encrypt(builder);
+        assertFalse(builder.isSessionKeyReused());
+        assertTrue(XMLUtils.PrettyDocumentToString(encryptedDoc).contains("EncryptedKey "));
+        verify(encryptedDoc, cache);
+
+        // The second message refers to it via EncryptedKeySHA1
+        WSSecEncrypt followUpBuilder = createEncryptionBuilder(reusableSessionKey);
+        encryptedDoc = encrypt(followUpBuilder);
+        assertTrue(followUpBuilder.isSessionKeyReused());
+        assertArrayEquals(builder.getEphemeralKey(), followUpBuilder.getEphemeralKey());
+
+        String outputString = XMLUtils.PrettyDocumentToString(encryptedDoc);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(outputString);
+        }
+        assertTrue(outputString.contains("#EncryptedKeySHA1"));
+        assertTrue(outputString.contains(builder.getEncryptedKeySHA1()));
+        assertFalse(outputString.contains("EncryptedKey "));
+
+        List<WSSecurityEngineResult> results = verify(encryptedDoc, cache);
+        assertNotNull(WSSecurityUtil.fetchActionResult(results, WSConstants.ENCR));
+        assertTrue(XMLUtils.PrettyDocumentToString(encryptedDoc).contains("counter_port_type"));
+
+        // The session key has been used for the maximum number of messages
+        WSSecEncrypt rotatedBuilder = createEncryptionBuilder(reusableSessionKey);
+        encryptedDoc = encrypt(rotatedBuilder);
+        assertFalse(rotatedBuilder.isSessionKeyReused());
+        assertFalse(builder.getEncryptedKeySHA1().equals(rotatedBuilder.getEncryptedKeySHA1()));
+        verify(encryptedDoc, cache);
+
+        // A different algorithm requires a new session key
+        WSSecEncrypt aes256Builder = createEncryptionBuilder(reusableSessionKey);
+        aes256Builder.setSymmetricEncAlgorithm(WSConstants.AES_256);
+        encrypt(aes256Builder);
+        assertFalse(aes256Builder.isSessionKeyReused());
+    }
+
+    @org.junit.Test
+    public void testSymmetricSignature() throws Exception {
+        ReusableSessionKey reusableSessionKey = new ReusableSessionKey();
+        SessionKeyCache cache = new MemorySessionKeyCache();
+
+        for (int i = 0; i < 2; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader();
+            secHeader.insertSecurityHeader(doc);
+
+            WSSecEncryptedKey encrKey = new WSSecEncryptedKey();
+            encrKey.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+            encrKey.setUserInfo("wss40");
+            encrKey.setReusableSessionKey(reusableSessionKey);
+            encrKey.prepare(doc, crypto);
+            assertEquals(i > 0, encrKey.isSessionKeyReused());
+
+            WSSecSignature sign = new WSSecSignature();
+            sign.setSessionKey(encrKey);
+            sign.setSignatureAlgorithm(SignatureMethod.HMAC_SHA1);
+            Document signedDoc = sign.build(doc, crypto, secHeader);
+            encrKey.prependToHeader(secHeader);
+
+            String outputString = XMLUtils.PrettyDocumentToString(signedDoc);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(outputString);
+            }
+            assertEquals(i > 0, outputString.contains("#EncryptedKeySHA1"));
+
+            List<WSSecurityEngineResult> results = verify(signedDoc, cache);
+            WSSecurityEngineResult actionResult =
+                WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN);
+            assertNotNull(actionResult);
+            assertArrayEquals(
+                encrKey.getEphemeralKey(),
+                (byte[])actionResult.get(WSSecurityEngineResult.TAG_SECRET)
+            );
+        }
+    }
+
+    private WSSecEncrypt createEncryptionBuilder(ReusableSessionKey reusableSessionKey) {
+        WSSecEncrypt builder = new WSSecEncrypt();
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        builder.setReusableSessionKey(reusableSessionKey);
+        return builder;
+    }
+
+    private Document encrypt(WSSecEncrypt builder) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        return builder.build(doc, crypto, secHeader);
+    }
+
+    private List<WSSecurityEngineResult> verify(
+        Document doc, SessionKeyCache cache
+    ) throws Exception {
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        RequestData data = new RequestData();
+        data.setCallbackHandler(keystoreCallbackHandler);
+        data.setDecCrypto(crypto);
+        data.setSigVerCrypto(crypto);
+        data.setWssConfig(wssConfig);
+        data.setSessionKeyCache(cache);
+
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+        Element elem = WSSecurityUtil.getSecurityHeader(doc, null);
+        return secEngine.processSecurityHeader(elem, data);
+    }
+
+}
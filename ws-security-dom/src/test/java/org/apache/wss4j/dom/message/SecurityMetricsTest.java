@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import javax.security.auth.callback.CallbackHandler;
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.common.cache.MemoryReplayCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.metrics.AggregatingSecurityMetricsListener;
+import org.apache.wss4j.common.metrics.CacheType;
+import org.apache.wss4j.common.metrics.SecurityPhase;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.common.UsernamePasswordCallbackHandler;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some test-cases for the SecurityMetricsListener.
+ */
+public class SecurityMetricsTest extends org.junit.Assert {
+
+    private CallbackHandler keystoreCallbackHandler = new KeystoreCallbackHandler();
+    private Crypto crypto = null;
+
+    public SecurityMetricsTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance();
+    }
+
+    @org.junit.Test
+    public void testTimestampSignatureEncryption() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+
+        WSSecTimestamp timestamp = new WSSecTimestamp();
+        timestamp.build(doc, secHeader);
+
+        WSSecSignature sign = new WSSecSignature();
+        sign.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        sign.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        sign.build(doc, crypto, secHeader);
+
+        WSSecEncrypt encrypt = new WSSecEncrypt();
+        encrypt.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e");
+        encrypt.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        encrypt.build(doc, crypto, secHeader);
+
+        AggregatingSecurityMetricsListener metrics = new AggregatingSecurityMetricsListener();
+        RequestData data = new RequestData();
+        data.setCallbackHandler(keystoreCallbackHandler);
+        data.setDecCrypto(crypto);
+        data.setSigVerCrypto(crypto);
+        data.setTimestampReplayCache(new MemoryReplayCache());
+        data.setMetricsListener(metrics);
+        verify(doc, data);
+
+        assertEquals(1L, metrics.getCount(SecurityPhase.SECURITY_HEADER));
+        assertTrue(metrics.getTotalNanos(SecurityPhase.SECURITY_HEADER) > 0L);
+        assertEquals(1L, metrics.getCount(SecurityPhase.TIMESTAMP_VALIDATION));
+        assertEquals(1L, metrics.getCount(SecurityPhase.SIGNATURE_VERIFICATION));
+        assertEquals(1L, metrics.getCount(SecurityPhase.SIGNATURE_TRUST));
+        assertEquals(1L, metrics.getCount(SecurityPhase.KEY_TRANSPORT));
+        assertEquals(1L, metrics.getCount(SecurityPhase.DECRYPTION));
+        assertTrue(metrics.getBytes(SecurityPhase.DECRYPTION) > 0L);
+        assertEquals(0L, metrics.getCount(SecurityPhase.USERNAME_TOKEN_VALIDATION));
+
+        assertEquals(
+            1L, metrics.getTokenCount(new QName(WSConstants.ENC_NS, WSConstants.ENC_KEY_LN))
+        );
+        assertEquals(
+            1L, metrics.getTokenCount(new QName(WSConstants.SIG_NS, WSConstants.SIG_LN))
+        );
+        assertEquals(
+            1L, metrics.getTokenCount(new QName(WSConstants.WSU_NS, WSConstants.TIMESTAMP_TOKEN_LN))
+        );
+        assertEquals(1L, metrics.getCacheMisses(CacheType.TIMESTAMP_REPLAY));
+        assertEquals(0L, metrics.getCacheHits(CacheType.TIMESTAMP_REPLAY));
+
+        metrics.reset();
+        assertEquals(0L, metrics.getCount(SecurityPhase.SECURITY_HEADER));
+        assertTrue(metrics.getTokenCounts().isEmpty());
+    }
+
+    @org.junit.Test
+    public void testWSSConfigListener() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+
+        WSSecUsernameToken builder = new WSSecUsernameToken();
+        builder.setUserInfo("wernerd", "verySecret");
+        builder.build(doc, secHeader);
+
+        AggregatingSecurityMetricsListener metrics = new AggregatingSecurityMetricsListener();
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        wssConfig.setMetricsListener(metrics);
+
+        RequestData data = new RequestData();
+        data.setCallbackHandler(new UsernamePasswordCallbackHandler());
+        data.setWssConfig(wssConfig);
+        data.setNonceReplayCache(new MemoryReplayCache());
+        verify(doc, data);
+
+        assertEquals(1L, metrics.getCount(SecurityPhase.SECURITY_HEADER));
+        assertEquals(1L, metrics.getCount(SecurityPhase.USERNAME_TOKEN_VALIDATION));
+        assertEquals(1L, metrics.getCacheMisses(CacheType.NONCE_REPLAY));
+        assertEquals(
+            1L, metrics.getTokenCount(new QName(WSConstants.WSSE_NS, WSConstants.USERNAME_TOKEN_LN))
+        );
+    }
+
+    private void verify(Document doc, RequestData data) throws Exception {
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        Element elem = WSSecurityUtil.getSecurityHeader(doc, null);
+        secEngine.processSecurityHeader(elem, data);
+    }
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.util.List;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.cache.MemorySessionKeyCache;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.apache.xml.security.utils.Base64;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some test-cases for reusing the session key of an EncryptedKey in a subsequent message
+ * via an EncryptedKeySHA1 KeyIdentifier, resolved from a SessionKeyCache.
+ */
+public class SessionKeyCacheTest extends org.junit.Assert {
+    private static final org.slf4j.Logger LOG = 
+        org.slf4j.LoggerFactory.getLogger(SessionKeyCacheTest.class);
+    
+    private CallbackHandler keystoreCallbackHandler = new KeystoreCallbackHandler();
+    private Crypto crypto = null;
+    
+    public SessionKeyCacheTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance("wss40.properties");
+    }
+
+    @org.junit.Test
+    public void testEncryptedKeySHA1Reuse() throws Exception {
+        SessionKeyCache cache = new MemorySessionKeyCache();
+        
+        // The first message transports the session key in an EncryptedKey
+        WSSecEncrypt builder = new WSSecEncrypt();
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        Document encryptedDoc = builder.build(doc, crypto, secHeader);
+        
+        verify(encryptedDoc, crypto, keystoreCallbackHandler, cache);
+        String identifier = 
+            Base64.encode(WSSecurityUtil.generateDigest(builder.getEncryptedEphemeralKey()));
+        assertNotNull(cache.getSessionKey(identifier));
+        
+        // The second message refers to the same session key via EncryptedKeySHA1
+        WSSecEncrypt followUpBuilder = new WSSecEncrypt();
+        followUpBuilder.setKeyIdentifierType(WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER);
+        followUpBuilder.setEphemeralKey(builder.getEphemeralKey());
+        followUpBuilder.setEncryptSymmKey(false);
+        followUpBuilder.setCustomReferenceValue(identifier);
+        doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        encryptedDoc = followUpBuilder.build(doc, null, secHeader);
+        
+        String outputString = XMLUtils.PrettyDocumentToString(encryptedDoc);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(outputString);
+        }
+        assertTrue(outputString.contains("#EncryptedKeySHA1"));
+        assertFalse(outputString.contains("EncryptedKey "));
+        
+        // No Crypto is required, and the CallbackHandler does not know the session key
+        List<WSSecurityEngineResult> results = 
+            verify(encryptedDoc, null, keystoreCallbackHandler, cache);
+        assertNotNull(WSSecurityUtil.fetchActionResult(results, WSConstants.ENCR));
+        outputString = XMLUtils.PrettyDocumentToString(encryptedDoc);
+        assertTrue(outputString.contains("counter_port_type"));
+        
+        // The reference cannot be resolved once the session key is no longer cached
+        cache.remove(identifier);
+        doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        encryptedDoc = followUpBuilder.build(doc, null, secHeader);
+        try {
+            verify(encryptedDoc, null, keystoreCallbackHandler, cache);
+            fail("Failure expected on an unknown EncryptedKeySHA1 reference");
+        } catch (WSSecurityException ex) {
+            // expected
+        }
+    }
+    
+    @org.junit.Test
+    public void testBoundedCache() throws Exception {
+        SessionKeyCache cache = new MemorySessionKeyCache(1, 300L);
+        byte[] key = new byte[] {1, 2, 3, 4};
+        cache.addSessionKey("abc", key);
+        assertArrayEquals(key, cache.getSessionKey("abc"));
+        
+        // The cache is bounded
+        cache.addSessionKey("def", key);
+        assertNull(cache.getSessionKey("abc"));
+        assertNotNull(cache.getSessionKey("def"));
+        
+        cache.remove("def");
+        assertNull(cache.getSessionKey("def"));
+    }
+    
+    private List<WSSecurityEngineResult> verify(
+        Document doc, Crypto decCrypto, CallbackHandler handler, SessionKeyCache cache
+    ) throws Exception {
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        RequestData data = new RequestData();
+        data.setCallbackHandler(handler);
+        data.setDecCrypto(decCrypto);
+        data.setWssConfig(wssConfig);
+        data.setSessionKeyCache(cache);
+        
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+        Element elem = WSSecurityUtil.getSecurityHeader(doc, null);
+        return secEngine.processSecurityHeader(elem, data);
+    }
+
+}
@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.security.PublicKey;
+import java.util.List;
+
+import org.apache.wss4j.common.cache.MemorySignatureVerificationCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some test-cases for the cache of successful signature verifications.
+ */
+public class SignatureVerificationCacheTest extends org.junit.Assert {
+    private static final org.slf4j.Logger LOG = 
+        org.slf4j.LoggerFactory.getLogger(SignatureVerificationCacheTest.class);
+    
+    private Crypto crypto = null;
+    
+    public SignatureVerificationCacheTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance();
+    }
+    
+    @org.junit.Test
+    public void testRepeatedMessage() throws Exception {
+        String signedMessage = createSignedMessage();
+        CountingSignatureVerificationCache cache = new CountingSignatureVerificationCache();
+        
+        List<WSSecurityEngineResult> results = verify(signedMessage, cache);
+        assertNotNull(WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN));
+        assertEquals(0, cache.hits);
+        
+        // The byte-identical message is verified from the cache
+        results = verify(signedMessage, cache);
+        assertNotNull(WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN));
+        assertEquals(1, cache.hits);
+        
+        // A different signature of the same content is not
+        verify(createSignedMessage(), cache);
+        assertEquals(1, cache.hits);
+        
+        cache.clear();
+        verify(signedMessage, cache);
+        assertEquals(1, cache.hits);
+    }
+    
+    @org.junit.Test
+    public void testModifiedBody() throws Exception {
+        String signedMessage = createSignedMessage();
+        CountingSignatureVerificationCache cache = new CountingSignatureVerificationCache();
+        verify(signedMessage, cache);
+        
+        // The SignatureValue is found in the cache, but the References are still verified
+        Document doc = SOAPUtil.toSOAPPart(signedMessage);
+        Element body = WSSecurityUtil.findBodyElement(doc);
+        body.getFirstChild().setTextContent("modified");
+        
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        RequestData requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSignatureVerificationCache(cache);
+        try {
+            secEngine.processSecurityHeader(doc, null, requestData);
+            fail("Failure expected on a modified Body");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_CHECK, ex.getErrorCode());
+        }
+        assertEquals(1, cache.hits);
+    }
+    
+    @org.junit.Test
+    public void testInclusiveC14N() throws Exception {
+        // The in-scope namespaces of the SignedInfo change on serialization, so verify copies
+        // of the signed Document
+        Document signedDoc = createSignedDocument(WSConstants.C14N_OMIT_COMMENTS);
+        CountingSignatureVerificationCache cache = new CountingSignatureVerificationCache();
+        
+        // Inclusive C14N is not allowed by the BSP
+        List<WSSecurityEngineResult> results = verify((Document)signedDoc.cloneNode(true), cache, true);
+        assertNotNull(WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN));
+        assertEquals(0, cache.hits);
+        
+        results = verify((Document)signedDoc.cloneNode(true), cache, true);
+        assertNotNull(WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN));
+        assertEquals(1, cache.hits);
+    }
+    
+    private String createSignedMessage() throws Exception {
+        return createSignedMessage(null);
+    }
+    
+    private String createSignedMessage(String c14nAlgorithm) throws Exception {
+        Document signedDoc = createSignedDocument(c14nAlgorithm);
+        
+        String outputString = XMLUtils.PrettyDocumentToString(signedDoc);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(outputString);
+        }
+        return outputString;
+    }
+    
+    private Document createSignedDocument(String c14nAlgorithm) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        
+        WSSecTimestamp timestamp = new WSSecTimestamp();
+        timestamp.build(doc, secHeader);
+        
+        WSSecSignature builder = new WSSecSignature();
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        if (c14nAlgorithm != null) {
+            builder.setSigCanonicalization(c14nAlgorithm);
+        }
+        return builder.build(doc, crypto, secHeader);
+    }
+    
+    private List<WSSecurityEngineResult> verify(
+        String message, MemorySignatureVerificationCache cache
+    ) throws Exception {
+        return verify(message, cache, false);
+    }
+    
+    private List<WSSecurityEngineResult> verify(
+        String message, MemorySignatureVerificationCache cache, boolean disableBSP
+    ) throws Exception {
+        return verify(SOAPUtil.toSOAPPart(message), cache, disableBSP);
+    }
+    
+    private List<WSSecurityEngineResult> verify(
+        Document doc, MemorySignatureVerificationCache cache, boolean disableBSP
+    ) throws Exception {
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        RequestData requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSignatureVerificationCache(cache);
+        requestData.setDisableBSPEnforcement(disableBSP);
+        return secEngine.processSecurityHeader(doc, null, requestData);
+    }
+    
+    private static class CountingSignatureVerificationCache extends MemorySignatureVerificationCache {
+        
+        private int hits;
+        
+        @Override
+        public boolean isVerified(
+            byte[] canonicalizedSignedInfo, byte[] signatureValue, PublicKey publicKey
+        ) {
+            boolean verified = super.isVerified(canonicalizedSignedInfo, signatureValue, publicKey);
+            if (verified) {
+                hits++;
+            }
+            return verified;
+        }
+    }
+    
+}
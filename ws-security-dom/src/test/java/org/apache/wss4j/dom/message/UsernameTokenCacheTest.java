@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
+import org.apache.wss4j.common.cache.MemoryUsernameTokenCache;
+import org.apache.wss4j.common.cache.UsernameTokenCache;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.common.UsernamePasswordCallbackHandler;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some test-cases for caching UsernameToken passwords and derived keys.
+ */
+public class UsernameTokenCacheTest extends org.junit.Assert {
+
+    @org.junit.Test
+    public void testCachedPasswordDigest() throws Exception {
+        CountingCallbackHandler callbackHandler = new CountingCallbackHandler();
+        UsernameTokenCache cache = new MemoryUsernameTokenCache();
+
+        verify(createUsernameToken("wernerd", "verySecret"), callbackHandler, cache);
+        assertEquals(1, callbackHandler.getCount());
+        assertEquals("verySecret", cache.getPassword("wernerd"));
+
+        // A new token (with a fresh Nonce and Created) should not invoke the CallbackHandler
+        verify(createUsernameToken("wernerd", "verySecret"), callbackHandler, cache);
+        assertEquals(1, callbackHandler.getCount());
+
+        // A bad password must still fail
+        try {
+            verify(createUsernameToken("wernerd", "badPassword"), callbackHandler, cache);
+            fail("Failure expected on a bad password");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+        }
+    }
+
+    @org.junit.Test
+    public void testStaleCachedPassword() throws Exception {
+        CountingCallbackHandler callbackHandler = new CountingCallbackHandler();
+        UsernameTokenCache cache = new MemoryUsernameTokenCache();
+        cache.addPassword("wernerd", "oldPassword");
+
+        verify(createUsernameToken("wernerd", "verySecret"), callbackHandler, cache);
+        assertEquals(1, callbackHandler.getCount());
+        assertEquals("verySecret", cache.getPassword("wernerd"));
+    }
+
+    @org.junit.Test
+    public void testDerivedKeys() throws Exception {
+        UsernameTokenCache cache = new MemoryUsernameTokenCache();
+        byte[] salt = new byte[] {1, 2, 3, 4};
+        byte[] key = new byte[] {5, 6, 7, 8};
+        cache.addDerivedKey("wernerd", salt, 1000, key);
+
+        assertTrue(Arrays.equals(key, cache.getDerivedKey("wernerd", salt, 1000)));
+        assertNull(cache.getDerivedKey("wernerd", salt, 1001));
+        assertNull(cache.getDerivedKey("alice", salt, 1000));
+
+        // The cached key must not be modifiable by the caller
+        cache.getDerivedKey("wernerd", salt, 1000)[0] = 0;
+        assertTrue(Arrays.equals(key, cache.getDerivedKey("wernerd", salt, 1000)));
+
+        cache.remove("wernerd");
+        assertNull(cache.getDerivedKey("wernerd", salt, 1000));
+    }
+
+    private Document createUsernameToken(String user, String password) throws Exception {
+        WSSecUsernameToken builder = new WSSecUsernameToken();
+        builder.setUserInfo(user, password);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        return builder.build(doc, secHeader);
+    }
+
+    private void verify(
+        Document doc, CallbackHandler callbackHandler, UsernameTokenCache cache
+    ) throws Exception {
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        RequestData data = new RequestData();
+        data.setCallbackHandler(callbackHandler);
+        data.setWssConfig(wssConfig);
+        data.setUsernameTokenCache(cache);
+
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+        Element elem = WSSecurityUtil.getSecurityHeader(doc, null);
+        secEngine.processSecurityHeader(elem, data);
+    }
+
+    private static class CountingCallbackHandler extends UsernamePasswordCallbackHandler {
+
+        private int count;
+
+        public void handle(Callback[] callbacks)
+            throws IOException, UnsupportedCallbackException {
+            count++;
+            super.handle(callbacks);
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityBatchEngine;
+import org.apache.wss4j.dom.WSSecurityBatchResult;
+import org.apache.wss4j.dom.WSSecurityBatchTask;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some test-cases for processing a batch of documents with the WSSecurityBatchEngine.
+ */
+public class WSSecurityBatchEngineTest extends org.junit.Assert {
+    
+    private Crypto crypto = null;
+    
+    public WSSecurityBatchEngineTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance();
+    }
+    
+    @org.junit.Test
+    public void testBatchSignAndVerify() throws Exception {
+        List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < 10; i++) {
+            documents.add(SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG));
+        }
+        
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            WSSecurityBatchEngine batchEngine = new WSSecurityBatchEngine();
+            batchEngine.setExecutorService(executorService);
+            batchEngine.setCallbackHandler(new KeystoreCallbackHandler());
+            batchEngine.setSigVerCrypto(crypto);
+            
+            // Bulk signing
+            List<WSSecurityBatchResult<Document>> signed = 
+                batchEngine.execute(documents, new WSSecurityBatchTask<Document>() {
+                    public Document execute(
+                        Document doc, WSSecurityEngine engine, RequestData requestData
+                    ) throws Exception {
+                        WSSecSignature builder = new WSSecSignature();
+                        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+                        builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+                        WSSecHeader secHeader = new WSSecHeader();
+                        secHeader.insertSecurityHeader(doc);
+                        return builder.build(doc, crypto, secHeader);
+                    }
+                });
+            assertEquals(documents.size(), signed.size());
+            for (int i = 0; i < signed.size(); i++) {
+                assertTrue(signed.get(i).isSuccess());
+                assertEquals(i, signed.get(i).getIndex());
+                assertSame(documents.get(i), signed.get(i).getDocument());
+            }
+            
+            // Tamper with one of the signed documents
+            Element body = WSSecurityUtil.findBodyElement(documents.get(3));
+            body.getFirstChild().setTextContent("tampered");
+            
+            // Batch verification
+            List<WSSecurityBatchResult<List<WSSecurityEngineResult>>> results = 
+                batchEngine.processSecurityHeaders(documents);
+            assertEquals(documents.size(), results.size());
+            for (int i = 0; i < results.size(); i++) {
+                WSSecurityBatchResult<List<WSSecurityEngineResult>> result = results.get(i);
+                assertEquals(i, result.getIndex());
+                if (i == 3) {
+                    assertFalse(result.isSuccess());
+                    assertTrue(result.getException() instanceof WSSecurityException);
+                } else {
+                    assertTrue(result.isSuccess());
+                    assertNotNull(WSSecurityUtil.fetchActionResult(result.getResult(), WSConstants.SIGN));
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+    
+    @org.junit.Test
+    public void testBatchInCallingThread() throws Exception {
+        List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < 3; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader();
+            secHeader.insertSecurityHeader(doc);
+            WSSecTimestamp timestamp = new WSSecTimestamp();
+            timestamp.build(doc, secHeader);
+            documents.add(doc);
+        }
+        
+        WSSecurityBatchEngine batchEngine = new WSSecurityBatchEngine();
+        List<WSSecurityBatchResult<List<WSSecurityEngineResult>>> results = 
+            batchEngine.processSecurityHeaders(documents);
+        assertEquals(3, results.size());
+        for (WSSecurityBatchResult<List<WSSecurityEngineResult>> result : results) {
+            assertTrue(result.isSuccess());
+            assertNotNull(WSSecurityUtil.fetchActionResult(result.getResult(), WSConstants.TS));
+        }
+    }
+    
+    @org.junit.Test
+    public void testMaxInFlight() throws Exception {
+        List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < 20; i++) {
+            documents.add(SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG));
+        }
+        
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            WSSecurityBatchEngine batchEngine = new WSSecurityBatchEngine();
+            batchEngine.setExecutorService(executorService);
+            batchEngine.setMaxInFlight(2);
+            
+            List<WSSecurityBatchResult<Document>> results = 
+                batchEngine.execute(documents, new WSSecurityBatchTask<Document>() {
+                    public Document execute(
+                        Document doc, WSSecurityEngine engine, RequestData requestData
+                    ) throws Exception {
+                        int current = inFlight.incrementAndGet();
+                        synchronized (maxInFlight) {
+                            if (current > maxInFlight.get()) {
+                                maxInFlight.set(current);
+                            }
+                        }
+                        Thread.sleep(10);
+                        inFlight.decrementAndGet();
+                        return doc;
+                    }
+                });
+            assertEquals(documents.size(), results.size());
+            for (int i = 0; i < results.size(); i++) {
+                assertTrue(results.get(i).isSuccess());
+                assertEquals(i, results.get(i).getIndex());
+            }
+            assertTrue(maxInFlight.get() <= 2);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+    
+    @org.junit.Test
+    public void testConfigurationFailureIsRecorded() throws Exception {
+        List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < 3; i++) {
+            documents.add(SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG));
+        }
+        
+        WSSecurityBatchEngine batchEngine = new WSSecurityBatchEngine() {
+            private int count;
+            
+            @Override
+            protected void configureRequestData(RequestData requestData) {
+                super.configureRequestData(requestData);
+                if (count++ == 1) {
+                    throw new IllegalStateException("configuration failed");
+                }
+            }
+        };
+        List<WSSecurityBatchResult<List<WSSecurityEngineResult>>> results = 
+            batchEngine.processSecurityHeaders(documents);
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getException() instanceof IllegalStateException);
+        assertTrue(results.get(2).isSuccess());
+    }
+    
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.WSSConfig;
+import org.apache.wss4j.dom.WSSecurityEngine;
+import org.apache.wss4j.dom.WSSecurityEngineContext;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.processor.Processor;
+import org.apache.wss4j.dom.processor.TimestampProcessor;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some test-cases for processing security headers with a (reused) WSSecurityEngineContext.
+ */
+public class WSSecurityEngineContextTest extends org.junit.Assert {
+    
+    private Crypto crypto = null;
+    
+    public WSSecurityEngineContextTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance();
+    }
+    
+    @org.junit.Test
+    public void testReusedContext() throws Exception {
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        WSSecurityEngineContext context = WSSecurityEngineContext.getThreadContext();
+        
+        for (int i = 0; i < 5; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader();
+            secHeader.insertSecurityHeader(doc);
+            
+            WSSecTimestamp timestamp = new WSSecTimestamp();
+            timestamp.build(doc, secHeader);
+            
+            WSSecSignature builder = new WSSecSignature();
+            builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+            builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+            builder.build(doc, crypto, secHeader);
+            
+            RequestData requestData = new RequestData();
+            requestData.setSigVerCrypto(crypto);
+            List<WSSecurityEngineResult> expected = 
+                secEngine.processSecurityHeader(doc, null, requestData);
+            
+            requestData = context.getRequestData();
+            requestData.setSigVerCrypto(crypto);
+            List<WSSecurityEngineResult> results = 
+                secEngine.processSecurityHeader(getSecurityHeader(doc), requestData, context);
+            
+            assertEquals(2, results.size());
+            assertEquals(expected.size(), results.size());
+            for (int j = 0; j < results.size(); j++) {
+                assertEquals(
+                    expected.get(j).get(WSSecurityEngineResult.TAG_ACTION),
+                    results.get(j).get(WSSecurityEngineResult.TAG_ACTION)
+                );
+            }
+            // The Signature is prepended to the Timestamp, and the results of the last token come first
+            assertEquals(WSConstants.TS, results.get(0).get(WSSecurityEngineResult.TAG_ACTION));
+            assertEquals(WSConstants.SIGN, results.get(1).get(WSSecurityEngineResult.TAG_ACTION));
+        }
+        context.reset();
+    }
+    
+    @org.junit.Test
+    public void testMultipleTimestamps() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        
+        WSSecTimestamp timestamp = new WSSecTimestamp();
+        timestamp.build(doc, secHeader);
+        timestamp = new WSSecTimestamp();
+        timestamp.build(doc, secHeader);
+        
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        WSSecurityEngineContext context = WSSecurityEngineContext.getThreadContext();
+        try {
+            secEngine.processSecurityHeader(
+                getSecurityHeader(doc), context.getRequestData(), context
+            );
+            fail("Expected failure on multiple timestamps");
+        } catch (WSSecurityException ex) {
+            // expected
+        }
+        
+        // The context is released after a failure
+        RequestData requestData = context.getRequestData();
+        requestData.setIgnoredBSPRules(Collections.singletonList(BSPRule.R3227));
+        List<WSSecurityEngineResult> results = 
+            secEngine.processSecurityHeader(getSecurityHeader(doc), requestData, context);
+        assertEquals(2, results.size());
+        context.reset();
+    }
+    
+    @org.junit.Test
+    public void testRequestDataInUse() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        WSSecTimestamp timestamp = new WSSecTimestamp();
+        timestamp.build(doc, secHeader);
+        
+        final WSSecurityEngineContext context = WSSecurityEngineContext.getThreadContext();
+        final RequestData[] nestedRequestData = new RequestData[1];
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        wssConfig.setProcessor(WSSecurityEngine.TIMESTAMP, new Processor() {
+            public List<WSSecurityEngineResult> handleToken(
+                Element elem, RequestData request, WSDocInfo wsDocInfo
+            ) throws WSSecurityException {
+                // a re-entrant caller must not clear the RequestData of the current message
+                nestedRequestData[0] = context.getRequestData();
+                context.reset();
+                return new TimestampProcessor().handleToken(elem, request, wsDocInfo);
+            }
+        });
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+        
+        secEngine.setUseThreadContext(true);
+        
+        RequestData requestData = context.getRequestData();
+        requestData.setWssConfig(wssConfig);
+        requestData.setSigVerCrypto(crypto);
+        List<WSSecurityEngineResult> results = 
+            secEngine.processSecurityHeader(getSecurityHeader(doc), requestData);
+        assertEquals(1, results.size());
+        assertNotSame(requestData, nestedRequestData[0]);
+        assertSame(crypto, requestData.getSigVerCrypto());
+        
+        // The context is released once the processing has finished
+        assertSame(requestData, context.getRequestData());
+        context.reset();
+    }
+    
+    @org.junit.Test
+    public void testThreadContextIsOptIn() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader();
+        secHeader.insertSecurityHeader(doc);
+        WSSecTimestamp timestamp = new WSSecTimestamp();
+        timestamp.build(doc, secHeader);
+        
+        final WSSecurityEngineContext context = WSSecurityEngineContext.getThreadContext();
+        final boolean[] contextInUse = new boolean[1];
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        wssConfig.setProcessor(WSSecurityEngine.TIMESTAMP, new Processor() {
+            public List<WSSecurityEngineResult> handleToken(
+                Element elem, RequestData request, WSDocInfo wsDocInfo
+            ) throws WSSecurityException {
+                // a context in use returns a new RequestData on every call
+                contextInUse[0] = context.getRequestData() != context.getRequestData();
+                return new TimestampProcessor().handleToken(elem, request, wsDocInfo);
+            }
+        });
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+        assertFalse(secEngine.isUseThreadContext());
+        
+        RequestData requestData = new RequestData();
+        requestData.setWssConfig(wssConfig);
+        secEngine.processSecurityHeader(getSecurityHeader(doc), requestData);
+        assertFalse(contextInUse[0]);
+        
+        secEngine.setUseThreadContext(true);
+        secEngine.processSecurityHeader(getSecurityHeader(doc), requestData);
+        assertTrue(contextInUse[0]);
+        context.reset();
+    }
+    
+    @org.junit.Test
+    public void testRemove() throws Exception {
+        WSSecurityEngineContext context = WSSecurityEngineContext.getThreadContext();
+        assertSame(context, WSSecurityEngineContext.getThreadContext());
+        
+        WSSecurityEngineContext.remove();
+        WSSecurityEngineContext newContext = WSSecurityEngineContext.getThreadContext();
+        assertNotSame(context, newContext);
+        WSSecurityEngineContext.remove();
+    }
+    
+    @org.junit.Test
+    public void testProcessorName() throws Exception {
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        QName name = wssConfig.getProcessorName(WSConstants.WSU_NS, WSConstants.TIMESTAMP_TOKEN_LN);
+        assertEquals(WSSecurityEngine.TIMESTAMP, name);
+        assertNull(wssConfig.getProcessorName(WSConstants.WSU_NS, "Unknown"));
+        
+        QName custom = new QName("http://www.example.com", "CustomToken");
+        wssConfig.setProcessor(custom, org.apache.wss4j.dom.processor.TimestampProcessor.class);
+        assertEquals(custom, wssConfig.getProcessorName("http://www.example.com", "CustomToken"));
+        
+        wssConfig.setProcessor(custom, (Class<?>)null);
+        assertNull(wssConfig.getProcessorName("http://www.example.com", "CustomToken"));
+    }
+    
+    private Element getSecurityHeader(Document doc) throws WSSecurityException {
+        return WSSecurityUtil.getSecurityHeader(doc, "");
+    }
+    
+}
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.misc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.WSSecurityEngineResult;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+
+/**
+ * Some tests for the Map view and the typed accessors of WSSecurityEngineResult.
+ */
+public class WSSecurityEngineResultTest extends org.junit.Assert {
+    
+    @org.junit.Test
+    public void testMapView() throws Exception {
+        List<WSDataRef> dataRefs = Collections.emptyList();
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.ENCR, dataRefs);
+        
+        assertEquals(WSConstants.ENCR, result.getAction());
+        assertEquals(WSConstants.ENCR, result.get(WSSecurityEngineResult.TAG_ACTION));
+        assertSame(dataRefs, result.getDataRefs());
+        assertSame(dataRefs, result.get(WSSecurityEngineResult.TAG_DATA_REF_URIS));
+        assertEquals(Boolean.FALSE, result.get(WSSecurityEngineResult.TAG_VALIDATED_TOKEN));
+        assertEquals(3, result.size());
+        
+        // A null value is still a mapping
+        result.put(WSSecurityEngineResult.TAG_PRINCIPAL, null);
+        assertTrue(result.containsKey(WSSecurityEngineResult.TAG_PRINCIPAL));
+        assertNull(result.getPrincipal());
+        assertFalse(result.containsKey(WSSecurityEngineResult.TAG_SUBJECT));
+        
+        result.put(WSSecurityEngineResult.TAG_ID, "id-1");
+        result.put("custom", "value");
+        assertEquals("id-1", result.getId());
+        assertEquals("value", result.get("custom"));
+        assertEquals(6, result.size());
+        
+        Map<String, Object> copy = new HashMap<String, Object>(result);
+        assertEquals(copy, result);
+        assertEquals(result, copy);
+        assertEquals(copy.hashCode(), result.hashCode());
+        
+        result.put(WSSecurityEngineResult.TAG_VALIDATED_TOKEN, Boolean.TRUE);
+        assertTrue(result.isValidatedToken());
+        assertEquals("id-1", result.remove(WSSecurityEngineResult.TAG_ID));
+        assertNull(result.getId());
+        assertEquals("value", result.remove("custom"));
+        assertEquals(4, result.size());
+        
+        // Removal via the entry set
+        for (Iterator<Map.Entry<String, Object>> iter = result.entrySet().iterator(); 
+            iter.hasNext();) {
+            if (WSSecurityEngineResult.TAG_PRINCIPAL.equals(iter.next().getKey())) {
+                iter.remove();
+            }
+        }
+        assertFalse(result.containsKey(WSSecurityEngineResult.TAG_PRINCIPAL));
+        assertEquals(3, result.size());
+        
+        result.clear();
+        assertTrue(result.isEmpty());
+        assertNull(result.get(WSSecurityEngineResult.TAG_ACTION));
+    }
+    
+    @org.junit.Test
+    public void testRemoveAction() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.SIGN);
+        assertEquals(WSConstants.SIGN, result.remove(WSSecurityEngineResult.TAG_ACTION));
+        assertEquals(0, result.getAction());
+        assertNull(result.get(WSSecurityEngineResult.TAG_ACTION));
+        assertFalse(result.containsKey(WSSecurityEngineResult.TAG_ACTION));
+        
+        result.put(WSSecurityEngineResult.TAG_ACTION, WSConstants.ENCR);
+        Iterator<Map.Entry<String, Object>> iterator = result.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (WSSecurityEngineResult.TAG_ACTION.equals(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+        assertEquals(0, result.getAction());
+    }
+    
+    @org.junit.Test(expected = IllegalArgumentException.class)
+    public void testNonIntegerAction() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.TS);
+        result.put(WSSecurityEngineResult.TAG_ACTION, "32");
+    }
+    
+    @org.junit.Test
+    public void testFetchActionResults() throws Exception {
+        List<WSSecurityEngineResult> results = new ArrayList<WSSecurityEngineResult>();
+        results.add(new WSSecurityEngineResult(WSConstants.TS));
+        results.add(new WSSecurityEngineResult(WSConstants.SIGN));
+        results.add(new WSSecurityEngineResult(WSConstants.ENCR));
+        results.add(new WSSecurityEngineResult(WSConstants.SIGN));
+        
+        assertEquals(2, WSSecurityUtil.fetchAllActionResults(results, WSConstants.SIGN).size());
+        assertTrue(WSSecurityUtil.fetchAllActionResults(results, WSConstants.UT).isEmpty());
+        
+        List<Integer> actions = new ArrayList<Integer>();
+        actions.add(WSConstants.TS);
+        actions.add(WSConstants.ENCR);
+        assertEquals(2, WSSecurityUtil.fetchAllActionResults(results, actions).size());
+        assertSame(results.get(3), WSSecurityUtil.fetchActionResult(results, WSConstants.SIGN));
+    }
+    
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.policy.stax;
+
+import org.apache.wss4j.stax.ext.WSSConstants;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trie over the QNames of the XPath derived element paths of all assertions of the effective
+ * policy. Looking up the element path of an event costs O(depth), independent of the number of
+ * assertions and XPaths. The result of the last lookups is kept, since the policy events of one
+ * element share the same element path instance.
+ *
+ * Matches with the same semantic as WSSUtils.pathMatches(path, elementPath, true, false): a
+ * QName of a policy path in the SOAP 1.1 or 1.2 namespace matches any element with the same
+ * local name.
+ */
+public class ElementPathTrie {
+
+    private final Node root = new Node();
+
+    private List<QName> lastElementPath;
+    private List<Node> lastResult;
+    private List<QName> previousElementPath;
+    private List<Node> previousResult;
+
+    /**
+     * Add the element path of an assertion (state).
+     *
+     * @param path the element path derived from the XPath
+     * @param owner the assertion state the path belongs to
+     */
+    public void addPath(List<QName> path, Object owner) {
+        Node node = root;
+        for (int i = 0; i < path.size(); i++) {
+            QName qName = path.get(i);
+            Node child;
+            if (isSOAPNamespace(qName)) {
+                child = node.soapChildren.get(qName.getLocalPart());
+                if (child == null) {
+                    child = new Node();
+                    node.soapChildren.put(qName.getLocalPart(), child);
+                }
+            } else {
+                child = node.children.get(qName);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(qName, child);
+                }
+            }
+            node = child;
+        }
+        if (!node.owners.containsKey(owner)) {
+            node.owners.put(owner, path);
+        }
+        invalidate();
+    }
+
+    /**
+     * Find the path of the given owner which matches the element path.
+     *
+     * @return the matching path of the owner as it was added or null if no path of the owner matches
+     */
+    public List<QName> match(List<QName> elementPath, Object owner) {
+        if (elementPath == null) {
+            return null;
+        }
+        List<Node> nodes = lookup(elementPath);
+        for (int i = 0; i < nodes.size(); i++) {
+            List<QName> path = nodes.get(i).owners.get(owner);
+            if (path != null) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    private List<Node> lookup(List<QName> elementPath) {
+        if (elementPath == lastElementPath) {
+            return lastResult;
+        }
+        if (elementPath == previousElementPath) {
+            return previousResult;
+        }
+
+        List<Node> nodes = Collections.singletonList(root);
+        for (int i = 0; i < elementPath.size() && !nodes.isEmpty(); i++) {
+            QName qName = elementPath.get(i);
+            List<Node> nextNodes = new ArrayList<Node>(1);
+            for (int j = 0; j < nodes.size(); j++) {
+                Node node = nodes.get(j);
+                Node child = node.children.get(qName);
+                if (child != null) {
+                    nextNodes.add(child);
+                }
+                child = node.soapChildren.get(qName.getLocalPart());
+                if (child != null) {
+                    nextNodes.add(child);
+                }
+            }
+            nodes = nextNodes;
+        }
+
+        previousElementPath = lastElementPath;
+        previousResult = lastResult;
+        lastElementPath = elementPath;
+        lastResult = nodes;
+        return nodes;
+    }
+
+    private void invalidate() {
+        lastElementPath = null;
+        lastResult = null;
+        previousElementPath = null;
+        previousResult = null;
+    }
+
+    private static boolean isSOAPNamespace(QName qName) {
+        return WSSConstants.NS_SOAP11.equals(qName.getNamespaceURI())
+                || WSSConstants.NS_SOAP12.equals(qName.getNamespaceURI());
+    }
+
+    private static final class Node {
+        final Map<QName, Node> children = new HashMap<QName, Node>();
+        final Map<String, Node> soapChildren = new HashMap<String, Node>();
+        final Map<Object, List<QName>> owners = new IdentityHashMap<Object, List<QName>>();
+    }
+}
@@ -18,8 +18,12 @@
  */
 package org.apache.wss4j.policy.stax;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -121,23 +125,82 @@ public class PolicyEnforcer implements SecurityEventListener {
     private final List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> failedAssertionStateMap;
 
     private final Deque<SecurityEvent> securityEventQueue = new LinkedList<SecurityEvent>();
+    private final ElementPathTrie elementPathTrie = new ElementPathTrie();
     private boolean operationSecurityEventOccured = false;
     private boolean initiator;
 
+    //the lazy alternatives: every distinct assertion of the policy has its assertables only once,
+    //an alternative is the bit mask of the indexes of its assertables
+    private final boolean lazyAlternatives;
+    private final List<Assertable> assertables = new ArrayList<Assertable>();
+    private final List<Assertion> assertableAssertions = new ArrayList<Assertion>();
+    private final Map<SecurityEventConstants.Event, BitSet> eventAssertables =
+            new HashMap<SecurityEventConstants.Event, BitSet>();
+    private final List<BitSet> alternatives = new LinkedList<BitSet>();
+    private final List<BitSet> failedAlternatives = new LinkedList<BitSet>();
+
     public PolicyEnforcer(List<OperationPolicy> operationPolicies, String soapAction, boolean initiator) throws WSSPolicyException {
+        this(operationPolicies, soapAction, initiator, false);
+    }
+
+    /**
+     * @param lazyAlternatives if true, the assertables of an assertion which occurs in multiple
+     *                         alternatives of the normalized policy are created and asserted only once,
+     *                         and the alternatives are kept as bit masks over them. Memory and the cost
+     *                         per SecurityEvent then scale with the number of distinct assertions
+     *                         instead of the number of alternatives.
+     */
+    public PolicyEnforcer(List<OperationPolicy> operationPolicies, String soapAction, boolean initiator,
+                          boolean lazyAlternatives) throws WSSPolicyException {
         this.operationPolicies = operationPolicies;
         this.initiator = initiator;
+        this.lazyAlternatives = lazyAlternatives;
         assertionStateMap = new LinkedList<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>>();
         failedAssertionStateMap = new LinkedList<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>>();
 
         if (soapAction != null && !soapAction.isEmpty()) {
             effectivePolicy = findPolicyBySOAPAction(operationPolicies, soapAction);
             if (effectivePolicy != null) {
-                buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
+                buildAlternatives(effectivePolicy.getPolicy());
             }
         }
     }
 
+    /**
+     * Returns the types of the SecurityEvents this PolicyEnforcer consumes, which can be passed to
+     * InboundWSSec.processInMessage so that only these SecurityEvents are built. This is only known
+     * if the effective policy could be determined by the SOAPAction, otherwise null is returned,
+     * which means that all SecurityEvents are required.
+     *
+     * @return the required SecurityEvent types or null if all SecurityEvents are required
+     */
+    public synchronized Set<SecurityEventConstants.Event> getRequiredSecurityEvents() {
+        if (effectivePolicy == null) {
+            return null;
+        }
+        Set<SecurityEventConstants.Event> requiredSecurityEvents = new HashSet<SecurityEventConstants.Event>();
+        requiredSecurityEvents.add(WSSecurityEventConstants.Operation);
+        if (lazyAlternatives) {
+            BitSet liveAssertables = new BitSet();
+            for (int i = 0; i < alternatives.size(); i++) {
+                liveAssertables.or(alternatives.get(i));
+            }
+            Iterator<Map.Entry<SecurityEventConstants.Event, BitSet>> eventIterator = eventAssertables.entrySet().iterator();
+            while (eventIterator.hasNext()) {
+                Map.Entry<SecurityEventConstants.Event, BitSet> entry = eventIterator.next();
+                if (entry.getValue().intersects(liveAssertables)) {
+                    requiredSecurityEvents.add(entry.getKey());
+                }
+            }
+            return requiredSecurityEvents;
+        }
+        Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = this.assertionStateMap.iterator();
+        while (assertionStateMapIterator.hasNext()) {
+            requiredSecurityEvents.addAll(assertionStateMapIterator.next().keySet());
+        }
+        return requiredSecurityEvents;
+    }
+
     private OperationPolicy findPolicyBySOAPAction(List<OperationPolicy> operationPolicies, String soapAction) {
         Iterator<OperationPolicy> operationPolicyIterator = operationPolicies.iterator();
         while (operationPolicyIterator.hasNext()) {
@@ -160,6 +223,14 @@ public class PolicyEnforcer implements SecurityEventListener {
         return null;
     }
 
+    private void buildAlternatives(PolicyComponent policyComponent) throws WSSPolicyException {
+        if (lazyAlternatives) {
+            buildLazyAlternatives(policyComponent, new IdentityHashMap<Assertion, BitSet>());
+        } else {
+            buildAssertionStateMap(policyComponent, assertionStateMap);
+        }
+    }
+
     /**
      * Precondition: Policy _must_ be normalized!
      */
@@ -202,6 +273,9 @@ public class PolicyEnforcer implements SecurityEventListener {
             Iterator<Assertable> assertableIterator = assertablesList.iterator();
             while (assertableIterator.hasNext()) {
                 Assertable assertable = assertableIterator.next();
+                if (assertable instanceof ElementPathAssertable) {
+                    ((ElementPathAssertable) assertable).setElementPathTrie(elementPathTrie);
+                }
                 final Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map = assertionStateMap.get(alternative);
                 final SecurityEventConstants.Event[] securityEventType = assertable.getSecurityEventType();
                 for (int j = 0; j < securityEventType.length; j++) {
@@ -222,6 +296,83 @@ public class PolicyEnforcer implements SecurityEventListener {
         }
     }
 
+    /**
+     * Precondition: Policy _must_ be normalized!
+     *
+     * The normalization reuses the same assertion instances in the alternatives it expands, so
+     * assertables are shared by the identity of their assertion.
+     */
+    private void buildLazyAlternatives(
+            PolicyComponent policyComponent, Map<Assertion, BitSet> assertionIndexes) throws WSSPolicyException {
+        if (policyComponent instanceof PolicyOperator) {
+            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
+            List<PolicyComponent> policyComponents = policyOperator.getPolicyComponents();
+            Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
+            while (policyComponentIterator.hasNext()) {
+                PolicyComponent curPolicyComponent = policyComponentIterator.next();
+                if (policyOperator instanceof ExactlyOne) {
+                    BitSet alternative = new BitSet();
+                    alternatives.add(alternative);
+                    buildLazyAlternative(curPolicyComponent, alternative, assertionIndexes);
+                } else {
+                    buildLazyAlternatives(curPolicyComponent, assertionIndexes);
+                }
+            }
+        } else {
+            throw new WSSPolicyException("Invalid PolicyComponent: " + policyComponent + " " + policyComponent.getType());
+        }
+    }
+
+    private void buildLazyAlternative(
+            PolicyComponent policyComponent, BitSet alternative, Map<Assertion, BitSet> assertionIndexes) throws WSSPolicyException {
+        if (policyComponent instanceof PolicyOperator) {
+            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
+            List<PolicyComponent> policyComponents = policyOperator.getPolicyComponents();
+            Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
+            while (policyComponentIterator.hasNext()) {
+                PolicyComponent curPolicyComponent = policyComponentIterator.next();
+                buildLazyAlternative(curPolicyComponent, alternative, assertionIndexes);
+            }
+        } else if (policyComponent instanceof AbstractSecurityAssertion) {
+            AbstractSecurityAssertion abstractSecurityAssertion = (AbstractSecurityAssertion) policyComponent;
+            BitSet indexes = assertionIndexes.get(abstractSecurityAssertion);
+            if (indexes == null) {
+                indexes = new BitSet();
+                List<Assertable> assertablesList = getAssertableForAssertion(abstractSecurityAssertion);
+                Iterator<Assertable> assertableIterator = assertablesList.iterator();
+                while (assertableIterator.hasNext()) {
+                    Assertable assertable = assertableIterator.next();
+                    final SecurityEventConstants.Event[] securityEventType = assertable.getSecurityEventType();
+                    if (securityEventType.length == 0) {
+                        continue;
+                    }
+                    if (assertable instanceof ElementPathAssertable) {
+                        ((ElementPathAssertable) assertable).setElementPathTrie(elementPathTrie);
+                    }
+                    int index = assertables.size();
+                    assertables.add(assertable);
+                    assertableAssertions.add(abstractSecurityAssertion);
+                    for (int j = 0; j < securityEventType.length; j++) {
+                        BitSet eventIndexes = eventAssertables.get(securityEventType[j]);
+                        if (eventIndexes == null) {
+                            eventIndexes = new BitSet();
+                            eventAssertables.put(securityEventType[j], eventIndexes);
+                        }
+                        eventIndexes.set(index);
+                    }
+                    indexes.set(index);
+                }
+                assertionIndexes.put(abstractSecurityAssertion, indexes);
+            }
+            alternative.or(indexes);
+            if (abstractSecurityAssertion instanceof PolicyContainingAssertion) {
+                buildLazyAlternative(((PolicyContainingAssertion) abstractSecurityAssertion).getPolicy(), alternative, assertionIndexes);
+            }
+        } else if (!(policyComponent instanceof PrimitiveAssertion)) {
+            throw new WSSPolicyException("Unsupported PolicyComponent: " + policyComponent + " type: " + policyComponent.getType());
+        }
+    }
+
     private void addAssertionState(Map<Assertion, List<Assertable>> assertables, Assertion keyAssertion, Assertable assertable) {
         List<Assertable> assertableList = assertables.get(keyAssertion);
         if (assertableList == null) {
@@ -337,6 +488,10 @@ public class PolicyEnforcer implements SecurityEventListener {
      * @throws WSSPolicyException
      */
     private void verifyPolicy(SecurityEvent securityEvent) throws WSSPolicyException, XMLSecurityException {
+        if (lazyAlternatives) {
+            verifyLazyAlternatives(securityEvent);
+            return;
+        }
         {
             //We have to check the failed assertions for logging purposes firstly...
             Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = this.failedAssertionStateMap.iterator();
@@ -409,6 +564,20 @@ public class PolicyEnforcer implements SecurityEventListener {
      * @throws PolicyViolationException thrown when no alternative could be satisifed
      */
     private void verifyPolicy() throws WSSPolicyException {
+        if (lazyAlternatives) {
+            BitSet notAsserted = new BitSet();
+            for (int i = 0; i < assertables.size(); i++) {
+                if (!assertables.get(i).isAsserted()) {
+                    notAsserted.set(i);
+                }
+            }
+            String assertionMessage = eliminateAlternatives(notAsserted);
+            if (alternatives.isEmpty()) {
+                logFailedAssertions();
+                throw new WSSPolicyException(assertionMessage);
+            }
+            return;
+        }
         String assertionMessage = null;
         Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = this.assertionStateMap.iterator();
         alternative:
@@ -448,6 +617,21 @@ public class PolicyEnforcer implements SecurityEventListener {
      * @throws PolicyViolationException thrown when no alternative could be satisfied
      */
     private void verifyPolicyAfterOperationSecurityEvent() throws WSSPolicyException {
+        if (lazyAlternatives) {
+            BitSet notAsserted = new BitSet();
+            for (int i = 0; i < assertables.size(); i++) {
+                Assertable assertable = assertables.get(i);
+                if (isAssertedAfterOperationSecurityEvent(assertable) && !assertable.isAsserted()) {
+                    notAsserted.set(i);
+                }
+            }
+            String assertionMessage = eliminateAlternatives(notAsserted);
+            if (alternatives.isEmpty()) {
+                logFailedAssertions();
+                throw new WSSPolicyException(assertionMessage);
+            }
+            return;
+        }
         String assertionMessage = null;
         Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = this.assertionStateMap.iterator();
         alternative:
@@ -463,20 +647,7 @@ public class PolicyEnforcer implements SecurityEventListener {
                     Iterator<Assertable> assertableIterator = assertableList.iterator();
                     while (assertableIterator.hasNext()) {
                         Assertable assertable = assertableIterator.next();
-
-                        boolean doAssert = false;
-                        if (assertable instanceof TokenAssertionState) {
-                            TokenAssertionState tokenAssertionState = (TokenAssertionState) assertable;
-                            AbstractToken abstractToken = (AbstractToken) tokenAssertionState.getAssertion();
-                            AbstractSecurityAssertion assertion = abstractToken.getParentAssertion();
-                            if (assertion instanceof SupportingTokens) {
-                                doAssert = true;
-                            }
-                        } else if (assertable instanceof TokenProtectionAssertionState) {
-                            doAssert = true;
-                        }
-
-                        if (doAssert && !assertable.isAsserted()) {
+                        if (isAssertedAfterOperationSecurityEvent(assertable) && !assertable.isAsserted()) {
                             assertionMessage = assertable.getErrorMessage();
                             failedAssertionStateMap.add(map);
                             assertionStateMapIterator.remove();
@@ -492,7 +663,79 @@ public class PolicyEnforcer implements SecurityEventListener {
         }
     }
 
+    private boolean isAssertedAfterOperationSecurityEvent(Assertable assertable) {
+        if (assertable instanceof TokenAssertionState) {
+            TokenAssertionState tokenAssertionState = (TokenAssertionState) assertable;
+            AbstractToken abstractToken = (AbstractToken) tokenAssertionState.getAssertion();
+            AbstractSecurityAssertion assertion = abstractToken.getParentAssertion();
+            return assertion instanceof SupportingTokens;
+        }
+        return assertable instanceof TokenProtectionAssertionState;
+    }
+
+    /**
+     * the lazy counterpart of verifyPolicy(SecurityEvent): every assertable which consumes the
+     * SecurityEvent is asserted once, and every alternative which contains a falsified
+     * assertable is eliminated.
+     */
+    private void verifyLazyAlternatives(SecurityEvent securityEvent) throws WSSPolicyException, XMLSecurityException {
+        String assertionMessage = null;
+        BitSet indexes = eventAssertables.get(securityEvent.getSecurityEventType());
+        if (indexes != null) {
+            BitSet falsified = new BitSet();
+            for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+                if (!assertables.get(i).assertEvent(securityEvent)) {
+                    falsified.set(i);
+                }
+            }
+            assertionMessage = eliminateAlternatives(falsified);
+        }
+        //if no alternative is left then we could not satisfy any alternative
+        if (alternatives.isEmpty()) {
+            logFailedAssertions();
+            throw new PolicyViolationException(assertionMessage);
+        }
+    }
+
+    /**
+     * moves the alternatives which contain one of the given assertables to the failed alternatives
+     *
+     * @return the error message of the last eliminated alternative or null
+     */
+    private String eliminateAlternatives(BitSet falsified) {
+        String assertionMessage = null;
+        if (falsified.isEmpty()) {
+            return assertionMessage;
+        }
+        Iterator<BitSet> alternativeIterator = alternatives.iterator();
+        while (alternativeIterator.hasNext()) {
+            BitSet alternative = alternativeIterator.next();
+            if (alternative.intersects(falsified)) {
+                BitSet failed = (BitSet) alternative.clone();
+                failed.and(falsified);
+                assertionMessage = assertables.get(failed.nextSetBit(0)).getErrorMessage();
+                failedAlternatives.add(alternative);
+                alternativeIterator.remove();
+            }
+        }
+        return assertionMessage;
+    }
+
     private void logFailedAssertions() {
+        if (lazyAlternatives) {
+            BitSet failedAssertables = new BitSet();
+            for (int i = 0; i < failedAlternatives.size(); i++) {
+                failedAssertables.or(failedAlternatives.get(i));
+            }
+            for (int i = failedAssertables.nextSetBit(0); i >= 0; i = failedAssertables.nextSetBit(i + 1)) {
+                Assertable assertable = assertables.get(i);
+                if (!assertable.isAsserted() && !assertable.isLogged()) {
+                    log.error(assertableAssertions.get(i).getName() + " not satisfied: " + assertable.getErrorMessage());
+                    assertable.setLogged(true);
+                }
+            }
+            return;
+        }
         Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = this.failedAssertionStateMap.iterator();
         while (assertionStateMapIterator.hasNext()) {
             Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map = assertionStateMapIterator.next();
@@ -548,7 +791,7 @@ public class PolicyEnforcer implements SecurityEventListener {
                     effectivePolicy.setPolicy(new Policy());
                 }
                 try {
-                    buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
+                    buildAlternatives(effectivePolicy.getPolicy());
                 } catch (WSSPolicyException e) {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
                 }
@@ -24,6 +24,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.wsdl.Binding;
 import javax.wsdl.BindingOperation;
@@ -87,6 +89,8 @@ import org.apache.wss4j.policy.builders.WSS10Builder;
 import org.apache.wss4j.policy.builders.WSS11Builder;
 import org.apache.wss4j.policy.builders.X509TokenBuilder;
 import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.xml.security.stax.ext.SecurePart;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -105,6 +109,8 @@ public class PolicyEnforcerFactory {
     private Definition wsdlDefinition;
     private List<OperationPolicy> operationPolicies;
     private final Map<Element, Policy> elementPolicyCache;
+    private final ConcurrentMap<String, WSSSecurityProperties> securityPropertiesTemplates =
+            new ConcurrentHashMap<String, WSSSecurityProperties>();
 
     private PolicyEnforcerFactory(List<AssertionBuilder<Element>> customAssertionBuilders) {
         elementPolicyCache = new HashMap<Element, Policy>();
@@ -419,4 +425,103 @@ public class PolicyEnforcerFactory {
     public PolicyEnforcer newPolicyEnforcer(String soapAction, boolean initiator) throws WSSPolicyException {
         return new PolicyEnforcer(this.operationPolicies, soapAction, initiator);
     }
+
+    /**
+     * Returns the WSSSecurityProperties for securing an outbound message of the given operation,
+     * compiled from its policy by the WSSSecurityPropertiesCompiler. The compiled template is cached
+     * per operation, every call returns a copy of it to which the keys, crypto and callbacks can be added.
+     *
+     * @return the WSSSecurityProperties or null if the operation is unknown
+     * @throws WSSPolicyException if none of the policy alternatives can be compiled
+     */
+    public WSSSecurityProperties newOutboundSecurityProperties(String operationName, boolean initiator)
+            throws WSSPolicyException {
+        WSSSecurityProperties template = getSecurityPropertiesTemplate(operationName, initiator, true);
+        if (template == null) {
+            return null;
+        }
+        return copyTemplate(template);
+    }
+
+    /**
+     * Returns the WSSSecurityProperties for processing an inbound message of the given operation,
+     * see newOutboundSecurityProperties(String, boolean).
+     *
+     * @return the WSSSecurityProperties or null if the operation is unknown
+     * @throws WSSPolicyException if the policy can't be compiled
+     */
+    public WSSSecurityProperties newInboundSecurityProperties(String operationName, boolean initiator)
+            throws WSSPolicyException {
+        WSSSecurityProperties template = getSecurityPropertiesTemplate(operationName, initiator, false);
+        if (template == null) {
+            return null;
+        }
+        return copyTemplate(template);
+    }
+
+    /**
+     * The copy constructor of the XMLSecurityProperties shares the actions and the SecureParts with
+     * the template, so they are copied here, otherwise a caller could modify the cached template.
+     */
+    private static WSSSecurityProperties copyTemplate(WSSSecurityProperties template) {
+        WSSSecurityProperties properties = new WSSSecurityProperties(template);
+        if (template.getOutAction() != null) {
+            properties.setOutAction(template.getOutAction().clone());
+        }
+        List<SecurePart> signatureParts = properties.getSignatureSecureParts();
+        signatureParts.clear();
+        for (int i = 0; i < template.getSignatureSecureParts().size(); i++) {
+            signatureParts.add(copySecurePart(template.getSignatureSecureParts().get(i)));
+        }
+        List<SecurePart> encryptionParts = properties.getEncryptionSecureParts();
+        encryptionParts.clear();
+        for (int i = 0; i < template.getEncryptionSecureParts().size(); i++) {
+            encryptionParts.add(copySecurePart(template.getEncryptionSecureParts().get(i)));
+        }
+        return properties;
+    }
+
+    private static SecurePart copySecurePart(SecurePart securePart) {
+        SecurePart copy = new SecurePart(
+                securePart.getName(), securePart.isGenerateXPointer(), securePart.getModifier(),
+                securePart.getTransforms(), securePart.getDigestMethod());
+        copy.setExternalReference(securePart.getExternalReference());
+        copy.setIdToReference(securePart.getIdToReference());
+        copy.setIdToSign(securePart.getIdToSign());
+        copy.setRequired(securePart.isRequired());
+        return copy;
+    }
+
+    private WSSSecurityProperties getSecurityPropertiesTemplate(String operationName, boolean initiator, boolean outbound)
+            throws WSSPolicyException {
+        String key = (outbound ? "out:" : "in:") + (initiator ? "initiator:" : "recipient:") + operationName;
+        WSSSecurityProperties template = securityPropertiesTemplates.get(key);
+        if (template != null) {
+            return template;
+        }
+        for (int i = 0; i < operationPolicies.size(); i++) {
+            OperationPolicy operationPolicy = operationPolicies.get(i);
+            if (operationPolicy.getOperationName().equals(operationName)) {
+                WSSSecurityPropertiesCompiler compiler = new WSSSecurityPropertiesCompiler(initiator);
+                if (outbound) {
+                    template = compiler.compileOutbound(operationPolicy);
+                } else {
+                    template = compiler.compileInbound(operationPolicy);
+                }
+                WSSSecurityProperties existing = securityPropertiesTemplates.putIfAbsent(key, template);
+                return existing != null ? existing : template;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Create a PolicyEnforcer which shares the assertables of the policy alternatives, see
+     * PolicyEnforcer(List, String, boolean, boolean). This pays off for policies which normalize
+     * into many alternatives, e.g. with optional supporting tokens or multiple algorithm suites.
+     */
+    public PolicyEnforcer newPolicyEnforcer(String soapAction, boolean initiator, boolean lazyAlternatives)
+            throws WSSPolicyException {
+        return new PolicyEnforcer(this.operationPolicies, soapAction, initiator, lazyAlternatives);
+    }
 }
@@ -0,0 +1,450 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.policy.stax;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.apache.neethi.Assertion;
+import org.apache.neethi.Policy;
+import org.apache.wss4j.policy.SP11Constants;
+import org.apache.wss4j.policy.SP12Constants;
+import org.apache.wss4j.policy.SPConstants;
+import org.apache.wss4j.policy.SPConstants.IncludeTokenType;
+import org.apache.wss4j.policy.WSSPolicyException;
+import org.apache.wss4j.policy.model.AbstractBinding;
+import org.apache.wss4j.policy.model.AbstractSymmetricAsymmetricBinding;
+import org.apache.wss4j.policy.model.AbstractToken;
+import org.apache.wss4j.policy.model.AbstractTokenWrapper;
+import org.apache.wss4j.policy.model.AlgorithmSuite;
+import org.apache.wss4j.policy.model.AsymmetricBinding;
+import org.apache.wss4j.policy.model.EncryptedParts;
+import org.apache.wss4j.policy.model.Header;
+import org.apache.wss4j.policy.model.KerberosToken;
+import org.apache.wss4j.policy.model.Layout;
+import org.apache.wss4j.policy.model.SamlToken;
+import org.apache.wss4j.policy.model.SignedParts;
+import org.apache.wss4j.policy.model.SupportingTokens;
+import org.apache.wss4j.policy.model.SymmetricBinding;
+import org.apache.wss4j.policy.model.TransportBinding;
+import org.apache.wss4j.policy.model.UsernameToken;
+import org.apache.wss4j.policy.model.Wss11;
+import org.apache.wss4j.policy.model.X509Token;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.xml.security.stax.ext.SecurePart;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants.Action;
+
+/**
+ * Compiles the normalized policy of an operation into WSSSecurityProperties templates, one for
+ * the outbound and one for the inbound message, so that a policy driven endpoint doesn't have to
+ * interpret the policy for every message. A template contains the actions, the SecureParts,
+ * the algorithms, the key identifiers and the header layout (via the order of the actions), but
+ * no keys, crypto or callbacks, which must be added to a copy of it.
+ *
+ * The outbound template is compiled from the first alternative of the policy which can be
+ * compiled, the inbound template allows everything which one of the alternatives allows. With a
+ * TransportBinding the message parts are protected by the transport, so only the timestamp and
+ * the supporting tokens are compiled. A SymmetricBinding is compiled for X509 and Kerberos
+ * protection tokens. As there is no action which signs with the EncryptedKey itself, a
+ * SymmetricBinding with an X509 token only compiles for signing if the token requires derived
+ * keys. XPath based SignedElements and EncryptedElements, endorsing supporting tokens and
+ * ProtectTokens are not compiled and must be configured by hand if needed.
+ */
+public class WSSSecurityPropertiesCompiler {
+
+    private static final Set<QName> SIGNED_SUPPORTING_TOKENS = new HashSet<QName>();
+
+    static {
+        SIGNED_SUPPORTING_TOKENS.add(SP11Constants.SIGNED_SUPPORTING_TOKENS);
+        SIGNED_SUPPORTING_TOKENS.add(SP12Constants.SIGNED_SUPPORTING_TOKENS);
+        SIGNED_SUPPORTING_TOKENS.add(SP12Constants.SIGNED_ENCRYPTED_SUPPORTING_TOKENS);
+    }
+
+    private final boolean initiator;
+
+    /**
+     * @param initiator true if the templates are compiled for the initiator (the client) of the
+     *                  operation, false for the recipient
+     */
+    public WSSSecurityPropertiesCompiler(boolean initiator) {
+        this.initiator = initiator;
+    }
+
+    /**
+     * Compile the WSSSecurityProperties for securing an outbound message.
+     *
+     * @throws WSSPolicyException if none of the policy alternatives can be compiled
+     */
+    public WSSSecurityProperties compileOutbound(OperationPolicy operationPolicy) throws WSSPolicyException {
+        List<List<Assertion>> alternatives = getAlternatives(operationPolicy.getPolicy());
+        String soapNamespace = getSoapNamespace(operationPolicy);
+        if (alternatives.isEmpty()) {
+            return compileOutbound(new ArrayList<Assertion>(), soapNamespace);
+        }
+        WSSPolicyException firstException = null;
+        for (int i = 0; i < alternatives.size(); i++) {
+            try {
+                return compileOutbound(alternatives.get(i), soapNamespace);
+            } catch (WSSPolicyException e) {
+                if (firstException == null) {
+                    firstException = e;
+                }
+            }
+        }
+        throw firstException;
+    }
+
+    private WSSSecurityProperties compileOutbound(List<Assertion> alternative, String soapNamespace)
+            throws WSSPolicyException {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+
+        AbstractBinding binding = null;
+        List<Action> tokenActions = new ArrayList<Action>();
+        List<SecurePart> signatureParts = new ArrayList<SecurePart>();
+        List<SecurePart> encryptionParts = new ArrayList<SecurePart>();
+
+        for (int i = 0; i < alternative.size(); i++) {
+            Assertion assertion = alternative.get(i);
+            if (assertion instanceof AbstractBinding) {
+                binding = (AbstractBinding) assertion;
+            } else if (assertion instanceof EncryptedParts) {
+                addParts((EncryptedParts) assertion, soapNamespace, SecurePart.Modifier.Content, encryptionParts);
+            } else if (assertion instanceof SignedParts) {
+                addParts((SignedParts) assertion, soapNamespace, SecurePart.Modifier.Element, signatureParts);
+            } else if (assertion instanceof SupportingTokens) {
+                compileSupportingTokens(
+                        (SupportingTokens) assertion, soapNamespace, properties,
+                        tokenActions, signatureParts, encryptionParts);
+            } else if (assertion instanceof Wss11
+                    && ((Wss11) assertion).isRequireSignatureConfirmation() && !initiator) {
+                properties.setEnableSignatureConfirmation(true);
+            }
+        }
+
+        List<Action> actions = new ArrayList<Action>();
+        actions.addAll(tokenActions);
+        if (binding instanceof TransportBinding) {
+            //the message parts are protected by the transport
+            signatureParts.clear();
+            encryptionParts.clear();
+        } else if (binding instanceof AbstractSymmetricAsymmetricBinding) {
+            compileBinding(
+                    (AbstractSymmetricAsymmetricBinding) binding, properties,
+                    actions, signatureParts, encryptionParts);
+        }
+        if (binding != null && binding.isIncludeTimestamp()) {
+            if (!signatureParts.isEmpty()) {
+                signatureParts.add(0, new SecurePart(WSSConstants.TAG_wsu_Timestamp, SecurePart.Modifier.Element));
+            }
+            //the security header is built in the reverse order of the actions
+            Layout layout = binding.getLayout();
+            if (layout != null && layout.getLayoutType() == Layout.LayoutType.LaxTsLast) {
+                actions.add(0, WSSConstants.TIMESTAMP);
+            } else {
+                actions.add(WSSConstants.TIMESTAMP);
+            }
+        }
+
+        for (int i = 0; i < signatureParts.size(); i++) {
+            properties.addSignaturePart(signatureParts.get(i));
+        }
+        for (int i = 0; i < encryptionParts.size(); i++) {
+            properties.addEncryptionPart(encryptionParts.get(i));
+        }
+        properties.setOutAction(actions.toArray(new Action[actions.size()]));
+        return properties;
+    }
+
+    /**
+     * Compile the WSSSecurityProperties for processing an inbound message. The inbound message
+     * itself is checked against the policy by the PolicyEnforcer, so this template only contains
+     * what one of the policy alternatives allows beyond the defaults.
+     */
+    public WSSSecurityProperties compileInbound(OperationPolicy operationPolicy) {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        List<List<Assertion>> alternatives = getAlternatives(operationPolicy.getPolicy());
+        for (int i = 0; i < alternatives.size(); i++) {
+            compileInbound(alternatives.get(i), properties);
+        }
+        return properties;
+    }
+
+    private void compileInbound(List<Assertion> alternative, WSSSecurityProperties properties) {
+        for (int i = 0; i < alternative.size(); i++) {
+            Assertion assertion = alternative.get(i);
+            if (assertion instanceof AbstractBinding) {
+                AlgorithmSuite algorithmSuite = ((AbstractBinding) assertion).getAlgorithmSuite();
+                if (algorithmSuite != null && algorithmSuite.getAlgorithmSuiteType() != null
+                        && SPConstants.KW_RSA15.equals(algorithmSuite.getAlgorithmSuiteType().getAsymmetricKeyWrap())) {
+                    properties.setAllowRSA15KeyTransportAlgorithm(true);
+                }
+            } else if (assertion instanceof SupportingTokens) {
+                List<AbstractToken> tokens = ((SupportingTokens) assertion).getTokens();
+                for (int j = 0; j < tokens.size(); j++) {
+                    AbstractToken token = tokens.get(j);
+                    if (token instanceof UsernameToken
+                            && ((UsernameToken) token).getPasswordType() == UsernameToken.PasswordType.NoPassword) {
+                        properties.setAllowUsernameTokenNoPassword(true);
+                    }
+                }
+            } else if (assertion instanceof Wss11
+                    && ((Wss11) assertion).isRequireSignatureConfirmation() && initiator) {
+                properties.setEnableSignatureConfirmationVerification(true);
+            }
+        }
+    }
+
+    private void compileBinding(
+            AbstractSymmetricAsymmetricBinding binding, WSSSecurityProperties properties,
+            List<Action> actions, List<SecurePart> signatureParts, List<SecurePart> encryptionParts)
+            throws WSSPolicyException {
+
+        AbstractToken signatureToken;
+        AbstractToken encryptionToken;
+        if (binding instanceof AsymmetricBinding) {
+            AsymmetricBinding asymmetricBinding = (AsymmetricBinding) binding;
+            if (initiator) {
+                signatureToken = getToken(asymmetricBinding.getInitiatorSignatureToken(), asymmetricBinding.getInitiatorToken());
+                encryptionToken = getToken(asymmetricBinding.getRecipientEncryptionToken(), asymmetricBinding.getRecipientToken());
+            } else {
+                signatureToken = getToken(asymmetricBinding.getRecipientSignatureToken(), asymmetricBinding.getRecipientToken());
+                encryptionToken = getToken(asymmetricBinding.getInitiatorEncryptionToken(), asymmetricBinding.getInitiatorToken());
+            }
+        } else {
+            SymmetricBinding symmetricBinding = (SymmetricBinding) binding;
+            signatureToken = getToken(symmetricBinding.getSignatureToken(), symmetricBinding.getProtectionToken());
+            encryptionToken = getToken(symmetricBinding.getEncryptionToken(), symmetricBinding.getProtectionToken());
+        }
+
+        boolean symmetricBinding = binding instanceof SymmetricBinding;
+        Action signatureAction = null;
+        if (!signatureParts.isEmpty()) {
+            if (signatureToken instanceof KerberosToken) {
+                signatureAction = WSSConstants.SIGNATURE_WITH_KERBEROS_TOKEN;
+            } else if (symmetricBinding) {
+                if (!(signatureToken instanceof X509Token) || signatureToken.getDerivedKeys() == null) {
+                    throw new WSSPolicyException(
+                            "A SymmetricBinding signature can only be compiled for a Kerberos token "
+                                    + "or an X509 token with derived keys");
+                }
+                signatureAction = WSSConstants.SIGNATURE_WITH_DERIVED_KEY;
+            } else {
+                signatureAction = WSSConstants.SIGNATURE;
+            }
+            properties.setSignatureKeyIdentifier(getKeyIdentifier(signatureToken));
+        }
+        Action encryptionAction = null;
+        if (!encryptionParts.isEmpty()) {
+            if (encryptionToken instanceof KerberosToken) {
+                encryptionAction = WSSConstants.ENCRYPT_WITH_KERBEROS_TOKEN;
+            } else if (symmetricBinding) {
+                if (!(encryptionToken instanceof X509Token)) {
+                    throw new WSSPolicyException(
+                            "A SymmetricBinding encryption can only be compiled for a Kerberos or an X509 token");
+                }
+                if (encryptionToken.getDerivedKeys() != null) {
+                    encryptionAction = WSSConstants.ENCRYPT_WITH_DERIVED_KEY;
+                } else {
+                    //the parts are encrypted with the key of the EncryptedKey itself
+                    encryptionAction = WSSConstants.ENCRYPT;
+                }
+            } else {
+                encryptionAction = WSSConstants.ENCRYPT;
+            }
+            properties.setEncryptionKeyIdentifier(getKeyIdentifier(encryptionToken));
+        }
+        if (signatureAction == WSSConstants.SIGNATURE_WITH_DERIVED_KEY
+                || encryptionAction == WSSConstants.ENCRYPT_WITH_DERIVED_KEY) {
+            properties.setDerivedKeyTokenReference(WSSConstants.DerivedKeyTokenReference.EncryptedKey);
+        }
+
+        if (binding.getProtectionOrder() == AbstractSymmetricAsymmetricBinding.ProtectionOrder.EncryptBeforeSigning) {
+            addAction(actions, encryptionAction);
+            addAction(actions, signatureAction);
+        } else {
+            addAction(actions, signatureAction);
+            addAction(actions, encryptionAction);
+            if (signatureAction != null && encryptionAction != null && binding.isEncryptSignature()) {
+                encryptionParts.add(new SecurePart(WSSConstants.TAG_dsig_Signature, SecurePart.Modifier.Element));
+            }
+        }
+
+        AlgorithmSuite algorithmSuite = binding.getAlgorithmSuite();
+        if (algorithmSuite != null && algorithmSuite.getAlgorithmSuiteType() != null) {
+            AlgorithmSuite.AlgorithmSuiteType algorithmSuiteType = algorithmSuite.getAlgorithmSuiteType();
+            if (symmetricBinding) {
+                properties.setSignatureAlgorithm(algorithmSuite.getSymmetricSignature());
+            } else {
+                properties.setSignatureAlgorithm(algorithmSuite.getAsymmetricSignature());
+            }
+            properties.setSignatureDigestAlgorithm(algorithmSuiteType.getDigest());
+            if (algorithmSuite.getC14n() != null) {
+                properties.setSignatureCanonicalizationAlgorithm(algorithmSuite.getC14n().getValue());
+            }
+            properties.setEncryptionSymAlgorithm(algorithmSuiteType.getEncryption());
+            properties.setEncryptionKeyTransportAlgorithm(algorithmSuiteType.getAsymmetricKeyWrap());
+        }
+    }
+
+    private void compileSupportingTokens(
+            SupportingTokens supportingTokens, String soapNamespace, WSSSecurityProperties properties,
+            List<Action> actions, List<SecurePart> signatureParts, List<SecurePart> encryptionParts) {
+
+        if (supportingTokens.isEndorsing()) {
+            return;
+        }
+        boolean signed = SIGNED_SUPPORTING_TOKENS.contains(supportingTokens.getName());
+        List<AbstractToken> tokens = supportingTokens.getTokens();
+        for (int i = 0; i < tokens.size(); i++) {
+            AbstractToken token = tokens.get(i);
+            if (!isIncluded(token)) {
+                continue;
+            }
+            QName tokenElement = null;
+            if (token instanceof UsernameToken) {
+                UsernameToken usernameToken = (UsernameToken) token;
+                addAction(actions, WSSConstants.USERNAMETOKEN);
+                if (usernameToken.getPasswordType() == UsernameToken.PasswordType.HashPassword) {
+                    properties.setUsernameTokenPasswordType(WSSConstants.UsernameTokenPasswordType.PASSWORD_DIGEST);
+                } else if (usernameToken.getPasswordType() == UsernameToken.PasswordType.NoPassword) {
+                    properties.setUsernameTokenPasswordType(WSSConstants.UsernameTokenPasswordType.PASSWORD_NONE);
+                } else {
+                    properties.setUsernameTokenPasswordType(WSSConstants.UsernameTokenPasswordType.PASSWORD_TEXT);
+                }
+                properties.setAddUsernameTokenNonce(usernameToken.isNonce());
+                properties.setAddUsernameTokenCreated(usernameToken.isCreated());
+                tokenElement = WSSConstants.TAG_wsse_UsernameToken;
+            } else if (token instanceof SamlToken) {
+                addAction(actions, WSSConstants.SAML_TOKEN_UNSIGNED);
+            } else if (token instanceof KerberosToken) {
+                addAction(actions, WSSConstants.KERBEROS_TOKEN);
+            }
+            if (tokenElement != null) {
+                if (signed) {
+                    signatureParts.add(new SecurePart(tokenElement, SecurePart.Modifier.Element));
+                }
+                if (supportingTokens.isEncryptedToken()) {
+                    encryptionParts.add(new SecurePart(tokenElement, SecurePart.Modifier.Element));
+                }
+            }
+        }
+        if (supportingTokens.getSignedParts() != null) {
+            addParts(supportingTokens.getSignedParts(), soapNamespace, SecurePart.Modifier.Element, signatureParts);
+        }
+        if (supportingTokens.getEncryptedParts() != null) {
+            addParts(supportingTokens.getEncryptedParts(), soapNamespace, SecurePart.Modifier.Content, encryptionParts);
+        }
+    }
+
+    private void addParts(SignedParts signedParts, String soapNamespace,
+                          SecurePart.Modifier bodyModifier, List<SecurePart> secureParts) {
+        if (signedParts.isBody()) {
+            addPart(new SecurePart(new QName(soapNamespace, "Body"), bodyModifier), secureParts);
+        }
+        List<Header> headers = signedParts.getHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            Header header = headers.get(i);
+            //a header without a name stands for all headers of the namespace, which can't be expressed as SecurePart
+            if (header.getName() != null) {
+                addPart(new SecurePart(new QName(header.getNamespace(), header.getName()), SecurePart.Modifier.Element), secureParts);
+            }
+        }
+    }
+
+    private void addPart(SecurePart securePart, List<SecurePart> secureParts) {
+        for (int i = 0; i < secureParts.size(); i++) {
+            if (securePart.getName().equals(secureParts.get(i).getName())) {
+                return;
+            }
+        }
+        secureParts.add(securePart);
+    }
+
+    private void addAction(List<Action> actions, Action action) {
+        if (action != null && !actions.contains(action)) {
+            actions.add(action);
+        }
+    }
+
+    private boolean isIncluded(AbstractToken token) {
+        IncludeTokenType includeTokenType = token.getIncludeTokenType();
+        if (includeTokenType == IncludeTokenType.INCLUDE_TOKEN_NEVER) {
+            return false;
+        } else if (initiator && includeTokenType == IncludeTokenType.INCLUDE_TOKEN_ALWAYS_TO_INITIATOR) {
+            return false;
+        } else if (!initiator && includeTokenType == IncludeTokenType.INCLUDE_TOKEN_ALWAYS_TO_RECIPIENT) {
+            return false;
+        }
+        return true;
+    }
+
+    private WSSecurityTokenConstants.KeyIdentifier getKeyIdentifier(AbstractToken token) {
+        if (token == null) {
+            return null;
+        }
+        if (isIncluded(token)) {
+            return WSSecurityTokenConstants.KeyIdentifier_SecurityTokenDirectReference;
+        }
+        if (token instanceof X509Token) {
+            X509Token x509Token = (X509Token) token;
+            if (x509Token.isRequireThumbprintReference()) {
+                return WSSecurityTokenConstants.KeyIdentifier_ThumbprintIdentifier;
+            } else if (x509Token.isRequireKeyIdentifierReference()) {
+                return WSSecurityTokenConstants.KeyIdentifier_SkiKeyIdentifier;
+            }
+            return WSSecurityTokenConstants.KeyIdentifier_IssuerSerial;
+        }
+        return null;
+    }
+
+    private static AbstractToken getToken(AbstractTokenWrapper tokenWrapper, AbstractTokenWrapper defaultTokenWrapper) {
+        if (tokenWrapper != null) {
+            return tokenWrapper.getToken();
+        }
+        if (defaultTokenWrapper != null) {
+            return defaultTokenWrapper.getToken();
+        }
+        return null;
+    }
+
+    private static String getSoapNamespace(OperationPolicy operationPolicy) {
+        if (operationPolicy.getSoapMessageVersionNamespace() != null) {
+            return operationPolicy.getSoapMessageVersionNamespace();
+        }
+        return WSSConstants.NS_SOAP11;
+    }
+
+    private static List<List<Assertion>> getAlternatives(Policy policy) {
+        List<List<Assertion>> alternatives = new ArrayList<List<Assertion>>();
+        if (policy != null) {
+            Iterator<List<Assertion>> iterator = policy.getAlternatives();
+            while (iterator.hasNext()) {
+                alternatives.add(iterator.next());
+            }
+        }
+        return alternatives;
+    }
+}
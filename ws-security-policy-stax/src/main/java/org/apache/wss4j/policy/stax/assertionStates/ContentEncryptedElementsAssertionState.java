@@ -26,7 +26,8 @@ import org.apache.wss4j.policy.model.XPath;
 import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
-import org.apache.wss4j.policy.stax.Assertable;
+import org.apache.wss4j.policy.stax.ElementPathAssertable;
+import org.apache.wss4j.policy.stax.ElementPathTrie;
 import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.ext.WSSUtils;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
@@ -39,9 +40,10 @@ import java.util.List;
 /**
  * WSP1.3, 4.2.3 ContentEncryptedElements Assertion
  */
-public class ContentEncryptedElementsAssertionState extends AssertionState implements Assertable {
+public class ContentEncryptedElementsAssertionState extends AssertionState implements ElementPathAssertable {
 
     private final List<List<QName>> pathElements = new ArrayList<List<QName>>();
+    private ElementPathTrie elementPathTrie;
 
     public ContentEncryptedElementsAssertionState(AbstractSecurityAssertion assertion, boolean asserted) {
         super(assertion, asserted);
@@ -61,26 +63,43 @@ public class ContentEncryptedElementsAssertionState extends AssertionState imple
         };
     }
 
+    @Override
+    public void setElementPathTrie(ElementPathTrie elementPathTrie) {
+        this.elementPathTrie = elementPathTrie;
+        for (int i = 0; i < pathElements.size(); i++) {
+            elementPathTrie.addPath(pathElements.get(i), this);
+        }
+    }
+
     @Override
     public boolean assertEvent(SecurityEvent securityEvent) throws WSSPolicyException {
         ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent = (ContentEncryptedElementSecurityEvent) securityEvent;
 
-        Iterator<List<QName>> pathElementIterator = pathElements.iterator();
-        while (pathElementIterator.hasNext()) {
-            List<QName> pathElements = pathElementIterator.next();
-            if (WSSUtils.pathMatches(pathElements, contentEncryptedElementSecurityEvent.getElementPath(), true, false)) {
-                if (contentEncryptedElementSecurityEvent.isEncrypted()) {
-                    setAsserted(true);
-                    return true;
-                } else {
-                    //an element must be encrypted but isn't
-                    setAsserted(false);
-                    setErrorMessage("Content of element " + WSSUtils.pathAsString(contentEncryptedElementSecurityEvent.getElementPath()) + " must be encrypted");
-                    return false;
-                }
+        if (matches(contentEncryptedElementSecurityEvent.getElementPath())) {
+            if (contentEncryptedElementSecurityEvent.isEncrypted()) {
+                setAsserted(true);
+                return true;
+            } else {
+                //an element must be encrypted but isn't
+                setAsserted(false);
+                setErrorMessage("Content of element " + WSSUtils.pathAsString(contentEncryptedElementSecurityEvent.getElementPath()) + " must be encrypted");
+                return false;
             }
         }
         //if we return false here other encrypted elements will trigger a PolicyViolationException
         return true;
     }
+
+    private boolean matches(List<QName> elementPath) {
+        if (elementPathTrie != null) {
+            return elementPathTrie.match(elementPath, this) != null;
+        }
+        Iterator<List<QName>> pathElementIterator = pathElements.iterator();
+        while (pathElementIterator.hasNext()) {
+            if (WSSUtils.pathMatches(pathElementIterator.next(), elementPath, true, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -26,7 +26,8 @@ import org.apache.wss4j.policy.model.XPath;
 import org.apache.xml.security.stax.securityEvent.EncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
-import org.apache.wss4j.policy.stax.Assertable;
+import org.apache.wss4j.policy.stax.ElementPathAssertable;
+import org.apache.wss4j.policy.stax.ElementPathTrie;
 import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.ext.WSSUtils;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
@@ -39,9 +40,10 @@ import java.util.List;
 /**
  * WSP1.3, 4.2.2 EncryptedElements Assertion
  */
-public class EncryptedElementsAssertionState extends AssertionState implements Assertable {
+public class EncryptedElementsAssertionState extends AssertionState implements ElementPathAssertable {
 
     private final List<List<QName>> pathElements = new ArrayList<List<QName>>();
+    private ElementPathTrie elementPathTrie;
 
     public EncryptedElementsAssertionState(AbstractSecurityAssertion assertion, boolean asserted) {
         super(assertion, asserted);
@@ -61,26 +63,43 @@ public class EncryptedElementsAssertionState extends AssertionState implements A
         };
     }
 
+    @Override
+    public void setElementPathTrie(ElementPathTrie elementPathTrie) {
+        this.elementPathTrie = elementPathTrie;
+        for (int i = 0; i < pathElements.size(); i++) {
+            elementPathTrie.addPath(pathElements.get(i), this);
+        }
+    }
+
     @Override
     public boolean assertEvent(SecurityEvent securityEvent) throws WSSPolicyException {
         EncryptedElementSecurityEvent encryptedElementSecurityEvent = (EncryptedElementSecurityEvent) securityEvent;
 
-        Iterator<List<QName>> pathElementIterator = pathElements.iterator();
-        while (pathElementIterator.hasNext()) {
-            List<QName> pathElements = pathElementIterator.next();
-            if (WSSUtils.pathMatches(pathElements, encryptedElementSecurityEvent.getElementPath(), true, false)) {
-                if (encryptedElementSecurityEvent.isEncrypted()) {
-                    setAsserted(true);
-                    return true;
-                } else {
-                    //an element must be encrypted but isn't
-                    setAsserted(false);
-                    setErrorMessage("Element " + WSSUtils.pathAsString(encryptedElementSecurityEvent.getElementPath()) + " must be encrypted");
-                    return false;
-                }
+        if (matches(encryptedElementSecurityEvent.getElementPath())) {
+            if (encryptedElementSecurityEvent.isEncrypted()) {
+                setAsserted(true);
+                return true;
+            } else {
+                //an element must be encrypted but isn't
+                setAsserted(false);
+                setErrorMessage("Element " + WSSUtils.pathAsString(encryptedElementSecurityEvent.getElementPath()) + " must be encrypted");
+                return false;
             }
         }
         //if we return false here other encrypted elements will trigger a PolicyViolationException
         return true;
     }
+
+    private boolean matches(List<QName> elementPath) {
+        if (elementPathTrie != null) {
+            return elementPathTrie.match(elementPath, this) != null;
+        }
+        Iterator<List<QName>> pathElementIterator = pathElements.iterator();
+        while (pathElementIterator.hasNext()) {
+            if (WSSUtils.pathMatches(pathElementIterator.next(), elementPath, true, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
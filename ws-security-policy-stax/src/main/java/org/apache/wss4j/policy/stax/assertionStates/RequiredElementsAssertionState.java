@@ -25,7 +25,8 @@ import org.apache.wss4j.policy.model.RequiredElements;
 import org.apache.wss4j.policy.model.XPath;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
-import org.apache.wss4j.policy.stax.Assertable;
+import org.apache.wss4j.policy.stax.ElementPathAssertable;
+import org.apache.wss4j.policy.stax.ElementPathTrie;
 import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.ext.WSSUtils;
 import org.apache.wss4j.stax.securityEvent.RequiredElementSecurityEvent;
@@ -40,9 +41,10 @@ import java.util.Map;
 /**
  * WSP1.3, 4.3.1 RequiredElements Assertion
  */
-public class RequiredElementsAssertionState extends AssertionState implements Assertable {
+public class RequiredElementsAssertionState extends AssertionState implements ElementPathAssertable {
 
     private final Map<List<QName>, Boolean> pathElements = new HashMap<List<QName>, Boolean>();
+    private ElementPathTrie elementPathTrie;
 
     public RequiredElementsAssertionState(AbstractSecurityAssertion assertion, boolean asserted) {
         super(assertion, asserted);
@@ -59,6 +61,18 @@ public class RequiredElementsAssertionState extends AssertionState implements As
 
     public void addElement(List<QName> pathElement) {
         this.pathElements.put(pathElement, Boolean.FALSE);
+        if (elementPathTrie != null) {
+            elementPathTrie.addPath(pathElement, this);
+        }
+    }
+
+    @Override
+    public void setElementPathTrie(ElementPathTrie elementPathTrie) {
+        this.elementPathTrie = elementPathTrie;
+        Iterator<List<QName>> pathIterator = pathElements.keySet().iterator();
+        while (pathIterator.hasNext()) {
+            elementPathTrie.addPath(pathIterator.next(), this);
+        }
     }
 
     @Override
@@ -72,6 +86,14 @@ public class RequiredElementsAssertionState extends AssertionState implements As
     public boolean assertEvent(SecurityEvent securityEvent) throws WSSPolicyException {
         RequiredElementSecurityEvent requiredElementSecurityEvent = (RequiredElementSecurityEvent) securityEvent;
 
+        if (elementPathTrie != null) {
+            List<QName> qNameList = elementPathTrie.match(requiredElementSecurityEvent.getElementPath(), this);
+            if (qNameList != null) {
+                pathElements.put(qNameList, Boolean.TRUE);
+            }
+            return true;
+        }
+
         Iterator<Map.Entry<List<QName>, Boolean>> elementMapIterator = pathElements.entrySet().iterator();
         while (elementMapIterator.hasNext()) {
             Map.Entry<List<QName>, Boolean> next = elementMapIterator.next();
@@ -26,7 +26,8 @@ import org.apache.wss4j.policy.model.XPath;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 import org.apache.xml.security.stax.securityEvent.SignedElementSecurityEvent;
-import org.apache.wss4j.policy.stax.Assertable;
+import org.apache.wss4j.policy.stax.ElementPathAssertable;
+import org.apache.wss4j.policy.stax.ElementPathTrie;
 import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.ext.WSSUtils;
 
@@ -38,9 +39,10 @@ import java.util.List;
 /**
  * WSP1.3, 4.1.2 SignedElements Assertion
  */
-public class SignedElementsAssertionState extends AssertionState implements Assertable {
+public class SignedElementsAssertionState extends AssertionState implements ElementPathAssertable {
 
     private final List<List<QName>> pathElements = new ArrayList<List<QName>>();
+    private ElementPathTrie elementPathTrie;
 
     public SignedElementsAssertionState(AbstractSecurityAssertion assertion, boolean asserted) {
         super(assertion, asserted);
@@ -64,28 +66,48 @@ public class SignedElementsAssertionState extends AssertionState implements Asse
 
     public void addElement(List<QName> pathElement) {
         this.pathElements.add(pathElement);
+        if (elementPathTrie != null) {
+            elementPathTrie.addPath(pathElement, this);
+        }
+    }
+
+    @Override
+    public void setElementPathTrie(ElementPathTrie elementPathTrie) {
+        this.elementPathTrie = elementPathTrie;
+        for (int i = 0; i < pathElements.size(); i++) {
+            elementPathTrie.addPath(pathElements.get(i), this);
+        }
     }
 
     @Override
     public boolean assertEvent(SecurityEvent securityEvent) throws WSSPolicyException {
         SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
 
-        Iterator<List<QName>> pathElementIterator = pathElements.iterator();
-        while (pathElementIterator.hasNext()) {
-            List<QName> pathElements = pathElementIterator.next();
-            if (WSSUtils.pathMatches(pathElements, signedElementSecurityEvent.getElementPath(), true, false)) {
-                if (signedElementSecurityEvent.isSigned()) {
-                    setAsserted(true);
-                    return true;
-                } else {
-                    //an element must be signed but isn't
-                    setAsserted(false);
-                    setErrorMessage("Element " + WSSUtils.pathAsString(signedElementSecurityEvent.getElementPath()) + " must be signed");
-                    return false;
-                }
+        if (matches(signedElementSecurityEvent.getElementPath())) {
+            if (signedElementSecurityEvent.isSigned()) {
+                setAsserted(true);
+                return true;
+            } else {
+                //an element must be signed but isn't
+                setAsserted(false);
+                setErrorMessage("Element " + WSSUtils.pathAsString(signedElementSecurityEvent.getElementPath()) + " must be signed");
+                return false;
             }
         }
         //if we return false here other signed elements will trigger a PolicyViolationException
         return true;
     }
+
+    private boolean matches(List<QName> elementPath) {
+        if (elementPathTrie != null) {
+            return elementPathTrie.match(elementPath, this) != null;
+        }
+        Iterator<List<QName>> pathElementIterator = pathElements.iterator();
+        while (pathElementIterator.hasNext()) {
+            if (WSSUtils.pathMatches(pathElementIterator.next(), elementPath, true, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
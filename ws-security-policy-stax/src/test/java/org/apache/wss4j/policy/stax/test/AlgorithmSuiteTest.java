@@ -185,6 +185,67 @@ public class AlgorithmSuiteTest extends AbstractPolicyTestBase {
         }
     }
 
+    @Test
+    public void testAlgorithmSuitePolicyLazyAlternatives() throws Exception {
+        String policyString =
+                "<wsp:Policy xmlns:wsp=\"http://schemas.xmlsoap.org/ws/2004/09/policy\" " +
+                        "xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\">\n" +
+                        "<sp:SignedParts>\n" +
+                        "<sp:Body/>\n" +
+                        "</sp:SignedParts>\n" +
+                        "<sp:AlgorithmSuite>\n" +
+                        "<wsp:Policy>\n" +
+                        "<wsp:ExactlyOne>\n" +
+                        "<sp:Basic256/>\n" +
+                        "<sp:TripleDesRsa15/>\n" +
+                        "</wsp:ExactlyOne>\n" +
+                        "</wsp:Policy>\n" +
+                        "</sp:AlgorithmSuite>\n" +
+                        "</wsp:Policy>";
+        PolicyEnforcer policyEnforcer = buildAndStartPolicyEngine(policyString, false, null, true);
+
+        OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+        operationSecurityEvent.setOperation(new QName("definitions"));
+        policyEnforcer.registerSecurityEvent(operationSecurityEvent);
+
+        AlgorithmSuiteSecurityEvent algorithmSuiteSecurityEvent = new AlgorithmSuiteSecurityEvent();
+        algorithmSuiteSecurityEvent.setAlgorithmURI("http://www.w3.org/2001/04/xmlenc#tripledes-cbc");
+        algorithmSuiteSecurityEvent.setKeyLength(192);
+        algorithmSuiteSecurityEvent.setAlgorithmUsage(WSSConstants.Enc);
+        policyEnforcer.registerSecurityEvent(algorithmSuiteSecurityEvent);
+        policyEnforcer.doFinal();
+    }
+
+    @Test
+    public void testAlgorithmSuitePolicyLazyAlternativesNegative() throws Exception {
+        String policyString =
+                "<sp:AlgorithmSuite xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\">\n" +
+                        "<wsp:Policy xmlns:wsp=\"http://schemas.xmlsoap.org/ws/2004/09/policy\">\n" +
+                        "<wsp:ExactlyOne>\n" +
+                        "<sp:Basic256/>\n" +
+                        "<sp:TripleDesRsa15/>\n" +
+                        "</wsp:ExactlyOne>\n" +
+                        "</wsp:Policy>\n" +
+                        "</sp:AlgorithmSuite>";
+        PolicyEnforcer policyEnforcer = buildAndStartPolicyEngine(policyString, false, null, true);
+
+        OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+        operationSecurityEvent.setOperation(new QName("definitions"));
+        policyEnforcer.registerSecurityEvent(operationSecurityEvent);
+
+        AlgorithmSuiteSecurityEvent algorithmSuiteSecurityEvent = new AlgorithmSuiteSecurityEvent();
+        algorithmSuiteSecurityEvent.setAlgorithmURI("http://www.w3.org/2001/04/xmlenc#aes128-cbc");
+        algorithmSuiteSecurityEvent.setKeyLength(128);
+        algorithmSuiteSecurityEvent.setAlgorithmUsage(WSSConstants.Enc);
+        try {
+            policyEnforcer.registerSecurityEvent(algorithmSuiteSecurityEvent);
+            Assert.fail("Exception expected");
+        } catch (WSSecurityException e) {
+            Assert.assertTrue(e.getCause() instanceof PolicyViolationException);
+            Assert.assertEquals(e.getFaultCode(), WSSecurityException.INVALID_SECURITY);
+        }
+    }
+
     @Test
     public void testAES256GCMAlgorithmSuitePolicy() throws Exception {
         String policyString =
@@ -0,0 +1,326 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.policy.stax.test;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.policy.WSSPolicyException;
+import org.apache.wss4j.policy.stax.PolicyEnforcer;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.impl.securityToken.X509SecurityTokenImpl;
+import org.apache.wss4j.stax.securityEvent.EncryptedPartSecurityEvent;
+import org.apache.wss4j.stax.securityEvent.OperationSecurityEvent;
+import org.apache.wss4j.stax.securityEvent.SignedPartSecurityEvent;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SignedElementSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.X509TokenSecurityEvent;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Enforces policies with multiple alternatives with an eager and a lazy PolicyEnforcer, and compares the results
+ * of the same security events.
+ */
+public class LazyAlternativesTest extends AbstractPolicyTestBase {
+
+    private static final String PARTS_AND_SUPPORTING_TOKENS_POLICY =
+            "<wsp:Policy xmlns:wsp=\"http://schemas.xmlsoap.org/ws/2004/09/policy\" " +
+                    "xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\">\n" +
+                    "<wsp:ExactlyOne>\n" +
+                    "<wsp:All>\n" +
+                    "<sp:SignedParts>\n" +
+                    "<sp:Body/>\n" +
+                    "</sp:SignedParts>\n" +
+                    "<sp:EncryptedParts>\n" +
+                    "<sp:Body/>\n" +
+                    "</sp:EncryptedParts>\n" +
+                    "</wsp:All>\n" +
+                    "<wsp:All>\n" +
+                    "<sp:SignedParts>\n" +
+                    "<sp:Body/>\n" +
+                    "</sp:SignedParts>\n" +
+                    "<sp:SupportingTokens>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:X509Token>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:WssX509V3Token11/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:X509Token>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:SupportingTokens>\n" +
+                    "</wsp:All>\n" +
+                    "</wsp:ExactlyOne>\n" +
+                    "</wsp:Policy>";
+
+    private static final String TOKEN_PROTECTION_POLICY =
+            "<wsp:Policy xmlns:wsp=\"http://schemas.xmlsoap.org/ws/2004/09/policy\" " +
+                    "xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\">\n" +
+                    "<wsp:ExactlyOne>\n" +
+                    "<sp:AsymmetricBinding>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:AlgorithmSuite>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:Basic256/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:AlgorithmSuite>\n" +
+                    "<sp:ProtectTokens/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:AsymmetricBinding>\n" +
+                    "<wsp:All>\n" +
+                    "<sp:AsymmetricBinding>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:AlgorithmSuite>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:Basic256/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:AlgorithmSuite>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:AsymmetricBinding>\n" +
+                    "<sp:SignedParts>\n" +
+                    "<sp:Body/>\n" +
+                    "</sp:SignedParts>\n" +
+                    "</wsp:All>\n" +
+                    "</wsp:ExactlyOne>\n" +
+                    "</wsp:Policy>";
+
+    @Test
+    public void testSignedAndEncryptedParts() throws Exception {
+        String result = assertSameResult(PARTS_AND_SUPPORTING_TOKENS_POLICY, new SecurityEvents() {
+            @Override
+            public List<SecurityEvent> create() throws Exception {
+                List<SecurityEvent> securityEvents = new ArrayList<SecurityEvent>();
+                securityEvents.add(createOperationSecurityEvent());
+                securityEvents.add(createSignedBodySecurityEvent(true));
+                securityEvents.add(createEncryptedBodySecurityEvent(true));
+                return securityEvents;
+            }
+        });
+        Assert.assertNull(result);
+    }
+
+    @Test
+    public void testSignedPartsAndSupportingToken() throws Exception {
+        String result = assertSameResult(PARTS_AND_SUPPORTING_TOKENS_POLICY, new SecurityEvents() {
+            @Override
+            public List<SecurityEvent> create() throws Exception {
+                List<SecurityEvent> securityEvents = new ArrayList<SecurityEvent>();
+                securityEvents.add(createSupportingTokenSecurityEvent(WSSecurityTokenConstants.X509V3Token));
+                securityEvents.add(createOperationSecurityEvent());
+                securityEvents.add(createSignedBodySecurityEvent(true));
+                return securityEvents;
+            }
+        });
+        Assert.assertNull(result);
+    }
+
+    @Test
+    public void testSupportingTokenNegative() throws Exception {
+        String result = assertSameResult(PARTS_AND_SUPPORTING_TOKENS_POLICY, new SecurityEvents() {
+            @Override
+            public List<SecurityEvent> create() throws Exception {
+                List<SecurityEvent> securityEvents = new ArrayList<SecurityEvent>();
+                securityEvents.add(createSupportingTokenSecurityEvent(WSSecurityTokenConstants.X509V1Token));
+                securityEvents.add(createOperationSecurityEvent());
+                securityEvents.add(createSignedBodySecurityEvent(true));
+                securityEvents.add(createEncryptedBodySecurityEvent(false));
+                return securityEvents;
+            }
+        });
+        Assert.assertNotNull(result);
+    }
+
+    @Test
+    public void testUnsignedBodyNegative() throws Exception {
+        String result = assertSameResult(PARTS_AND_SUPPORTING_TOKENS_POLICY, new SecurityEvents() {
+            @Override
+            public List<SecurityEvent> create() throws Exception {
+                List<SecurityEvent> securityEvents = new ArrayList<SecurityEvent>();
+                securityEvents.add(createSupportingTokenSecurityEvent(WSSecurityTokenConstants.X509V3Token));
+                securityEvents.add(createOperationSecurityEvent());
+                securityEvents.add(createEncryptedBodySecurityEvent(true));
+                securityEvents.add(createSignedBodySecurityEvent(false));
+                return securityEvents;
+            }
+        });
+        Assert.assertNotNull(result);
+    }
+
+    @Test
+    public void testUnencryptedBody() throws Exception {
+        String result = assertSameResult(PARTS_AND_SUPPORTING_TOKENS_POLICY, new SecurityEvents() {
+            @Override
+            public List<SecurityEvent> create() throws Exception {
+                List<SecurityEvent> securityEvents = new ArrayList<SecurityEvent>();
+                securityEvents.add(createSupportingTokenSecurityEvent(WSSecurityTokenConstants.X509V3Token));
+                securityEvents.add(createOperationSecurityEvent());
+                securityEvents.add(createSignedBodySecurityEvent(true));
+                securityEvents.add(createEncryptedBodySecurityEvent(false));
+                return securityEvents;
+            }
+        });
+        // the second alternative doesn't require the body to be encrypted
+        Assert.assertNull(result);
+    }
+
+    @Test
+    public void testProtectedToken() throws Exception {
+        String result = assertSameResult(TOKEN_PROTECTION_POLICY, new SecurityEvents() {
+            @Override
+            public List<SecurityEvent> create() throws Exception {
+                return createMainSignatureTokenSecurityEvents(true);
+            }
+        });
+        Assert.assertNull(result);
+    }
+
+    @Test
+    public void testUnprotectedToken() throws Exception {
+        String result = assertSameResult(TOKEN_PROTECTION_POLICY, new SecurityEvents() {
+            @Override
+            public List<SecurityEvent> create() throws Exception {
+                List<SecurityEvent> securityEvents = createMainSignatureTokenSecurityEvents(false);
+                securityEvents.add(createSignedBodySecurityEvent(true));
+                return securityEvents;
+            }
+        });
+        // the second alternative doesn't require the token to be protected, but the body to be signed
+        Assert.assertNull(result);
+    }
+
+    @Test
+    public void testUnprotectedTokenNegative() throws Exception {
+        String result = assertSameResult(TOKEN_PROTECTION_POLICY, new SecurityEvents() {
+            @Override
+            public List<SecurityEvent> create() throws Exception {
+                List<SecurityEvent> securityEvents = createMainSignatureTokenSecurityEvents(false);
+                securityEvents.add(createSignedBodySecurityEvent(false));
+                return securityEvents;
+            }
+        });
+        Assert.assertNotNull(result);
+    }
+
+    /**
+     * Registers the security events with an eager and a lazy PolicyEnforcer, and asserts that both give the same
+     * result.
+     *
+     * @return the message of the policy violation, or null if the policy is fulfilled
+     */
+    private String assertSameResult(String policyString, SecurityEvents securityEvents) throws Exception {
+        String eagerResult = enforce(policyString, securityEvents.create(), false);
+        String lazyResult = enforce(policyString, securityEvents.create(), true);
+        Assert.assertEquals(lazyResult, eagerResult);
+        return eagerResult;
+    }
+
+    private String enforce(String policyString, List<SecurityEvent> securityEvents, boolean lazyAlternatives)
+            throws Exception {
+        PolicyEnforcer policyEnforcer = buildAndStartPolicyEngine(policyString, false, null, lazyAlternatives);
+        try {
+            for (int i = 0; i < securityEvents.size(); i++) {
+                policyEnforcer.registerSecurityEvent(securityEvents.get(i));
+            }
+            policyEnforcer.doFinal();
+            return null;
+        } catch (WSSecurityException e) {
+            return e.getMessage();
+        } catch (WSSPolicyException e) {
+            return e.getMessage();
+        }
+    }
+
+    private OperationSecurityEvent createOperationSecurityEvent() {
+        OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+        operationSecurityEvent.setOperation(new QName("definitions"));
+        return operationSecurityEvent;
+    }
+
+    private SignedPartSecurityEvent createSignedBodySecurityEvent(boolean signed) {
+        SignedPartSecurityEvent signedPartSecurityEvent =
+                new SignedPartSecurityEvent(null, signed, getProtectionOrder());
+        signedPartSecurityEvent.setElementPath(WSSConstants.SOAP_11_BODY_PATH);
+        return signedPartSecurityEvent;
+    }
+
+    private EncryptedPartSecurityEvent createEncryptedBodySecurityEvent(boolean encrypted) {
+        EncryptedPartSecurityEvent encryptedPartSecurityEvent =
+                new EncryptedPartSecurityEvent(null, encrypted, getProtectionOrder());
+        encryptedPartSecurityEvent.setElementPath(WSSConstants.SOAP_11_BODY_PATH);
+        return encryptedPartSecurityEvent;
+    }
+
+    private org.apache.wss4j.stax.securityEvent.X509TokenSecurityEvent createSupportingTokenSecurityEvent(
+            WSSecurityTokenConstants.TokenType tokenType) throws Exception {
+        org.apache.wss4j.stax.securityEvent.X509TokenSecurityEvent x509TokenSecurityEvent =
+                new org.apache.wss4j.stax.securityEvent.X509TokenSecurityEvent();
+        X509SecurityTokenImpl x509SecurityToken = getX509Token(tokenType);
+        x509SecurityToken.addTokenUsage(WSSecurityTokenConstants.TokenUsage_SupportingTokens);
+        x509TokenSecurityEvent.setSecurityToken(x509SecurityToken);
+        return x509TokenSecurityEvent;
+    }
+
+    /**
+     * The events of a main signature token, which is only signed by its own signature if it is protected
+     */
+    private List<SecurityEvent> createMainSignatureTokenSecurityEvents(boolean protectedToken) throws Exception {
+        List<QName> bstPath = new ArrayList<QName>();
+        bstPath.addAll(WSSConstants.WSSE_SECURITY_HEADER_PATH);
+        bstPath.add(WSSConstants.TAG_wsse_BinarySecurityToken);
+
+        List<SecurityEvent> securityEvents = new ArrayList<SecurityEvent>();
+        X509TokenSecurityEvent x509TokenSecurityEvent = new X509TokenSecurityEvent();
+        X509SecurityTokenImpl securityToken = getX509Token(WSSecurityTokenConstants.X509V3Token);
+        securityToken.setElementPath(bstPath);
+        securityToken.addTokenUsage(WSSecurityTokenConstants.TokenUsage_MainSignature);
+        x509TokenSecurityEvent.setSecurityToken(securityToken);
+        securityEvents.add(x509TokenSecurityEvent);
+
+        if (protectedToken) {
+            List<XMLSecurityConstants.ContentType> protectionOrder = new LinkedList<XMLSecurityConstants.ContentType>();
+            protectionOrder.add(XMLSecurityConstants.ContentType.SIGNATURE);
+            SignedElementSecurityEvent signedElementSecurityEvent =
+                    new SignedElementSecurityEvent(securityToken, true, protectionOrder);
+            signedElementSecurityEvent.setElementPath(bstPath);
+            securityEvents.add(signedElementSecurityEvent);
+        }
+
+        securityEvents.add(createOperationSecurityEvent());
+        return securityEvents;
+    }
+
+    private List<XMLSecurityConstants.ContentType> getProtectionOrder() {
+        List<XMLSecurityConstants.ContentType> protectionOrder = new LinkedList<XMLSecurityConstants.ContentType>();
+        protectionOrder.add(XMLSecurityConstants.ContentType.SIGNATURE);
+        protectionOrder.add(XMLSecurityConstants.ContentType.ENCRYPTION);
+        return protectionOrder;
+    }
+
+    /**
+     * Creates a new list of the same security events for each PolicyEnforcer.
+     */
+    private interface SecurityEvents {
+        List<SecurityEvent> create() throws Exception;
+    }
+}
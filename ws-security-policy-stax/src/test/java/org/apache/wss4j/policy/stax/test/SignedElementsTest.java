@@ -99,4 +99,43 @@ public class SignedElementsTest extends AbstractPolicyTestBase {
             Assert.assertEquals(e.getFaultCode(), WSSecurityException.INVALID_SECURITY);
         }
     }
+
+    @Test
+    public void testPolicyMultipleXPaths() throws Exception {
+        String policyString =
+                "<sp:SignedElements xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\" xmlns:sp3=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200802\">\n" +
+                        "<sp:XPath xmlns:b=\"http://example.org\">/b:a</sp:XPath>\n" +
+                        "<sp:XPath xmlns:b=\"http://example.org\">/b:a/b:b</sp:XPath>\n" +
+                        "<sp:XPath xmlns:b=\"http://example.org\" xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">/soap:Envelope/soap:Body/b:c</sp:XPath>\n" +
+                        "</sp:SignedElements>";
+        PolicyEnforcer policyEnforcer = buildAndStartPolicyEngine(policyString);
+
+        OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+        operationSecurityEvent.setOperation(new QName("definitions"));
+        policyEnforcer.registerSecurityEvent(operationSecurityEvent);
+
+        List<XMLSecurityConstants.ContentType> protectionOrder = new LinkedList<XMLSecurityConstants.ContentType>();
+        protectionOrder.add(XMLSecurityConstants.ContentType.SIGNATURE);
+        SignedElementSecurityEvent signedElementSecurityEvent = new SignedElementSecurityEvent(null, true, protectionOrder);
+        List<QName> elementPath = new ArrayList<QName>();
+        elementPath.add(new QName("http://example.org", "a"));
+        elementPath.add(new QName("http://example.org", "b"));
+        signedElementSecurityEvent.setElementPath(elementPath);
+        policyEnforcer.registerSecurityEvent(signedElementSecurityEvent);
+
+        //the SOAP namespace of the XPath matches the SOAP 1.2 namespace too
+        signedElementSecurityEvent = new SignedElementSecurityEvent(null, false, null);
+        elementPath = new ArrayList<QName>();
+        elementPath.add(WSSConstants.TAG_soap12_Envelope);
+        elementPath.add(WSSConstants.TAG_soap12_Body);
+        elementPath.add(new QName("http://example.org", "c"));
+        signedElementSecurityEvent.setElementPath(elementPath);
+        try {
+            policyEnforcer.registerSecurityEvent(signedElementSecurityEvent);
+            Assert.fail("Exception expected");
+        } catch (WSSecurityException e) {
+            Assert.assertTrue(e.getCause() instanceof PolicyViolationException);
+            Assert.assertEquals(e.getFaultCode(), WSSecurityException.INVALID_SECURITY);
+        }
+    }
 }
@@ -0,0 +1,348 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.policy.stax.test;
+
+import org.apache.wss4j.policy.WSSPolicyException;
+import org.apache.wss4j.policy.stax.PolicyEnforcerFactory;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.xml.security.stax.ext.SecurePart;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.namespace.QName;
+import java.util.List;
+
+public class WSSSecurityPropertiesCompilerTest extends AbstractPolicyTestBase {
+
+    private static final String POLICY =
+            "<wsp:ExactlyOne xmlns:wsp=\"http://schemas.xmlsoap.org/ws/2004/09/policy\" " +
+                    "xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\">\n" +
+                    "<wsp:All>\n" +
+                    "<sp:AsymmetricBinding>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:InitiatorToken>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:X509Token sp:IncludeToken=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702/IncludeToken/AlwaysToRecipient\">\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:WssX509V3Token11/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:X509Token>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:InitiatorToken>\n" +
+                    "<sp:RecipientToken>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:X509Token sp:IncludeToken=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702/IncludeToken/Never\">\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:RequireThumbprintReference/>\n" +
+                    "<sp:WssX509V3Token11/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:X509Token>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:RecipientToken>\n" +
+                    "<sp:AlgorithmSuite>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:Basic128/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:AlgorithmSuite>\n" +
+                    "<sp:Layout>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:Strict/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:Layout>\n" +
+                    "<sp:IncludeTimestamp/>\n" +
+                    "<sp:EncryptSignature/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:AsymmetricBinding>\n" +
+                    "<sp:SignedParts>\n" +
+                    "<sp:Body/>\n" +
+                    "<sp:Header Name=\"Header1\" Namespace=\"http://www.example.com\"/>\n" +
+                    "</sp:SignedParts>\n" +
+                    "<sp:EncryptedParts>\n" +
+                    "<sp:Body/>\n" +
+                    "</sp:EncryptedParts>\n" +
+                    "<sp:SignedSupportingTokens>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:UsernameToken sp:IncludeToken=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702/IncludeToken/AlwaysToRecipient\">\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:HashPassword/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:UsernameToken>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:SignedSupportingTokens>\n" +
+                    "</wsp:All>\n" +
+                    "</wsp:ExactlyOne>";
+
+    private static final String SYMMETRIC_BINDING =
+            "<sp:SymmetricBinding>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:ProtectionToken>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:X509Token sp:IncludeToken=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702/IncludeToken/Never\">\n" +
+                    "<wsp:Policy>\n" +
+                    "%s" +
+                    "<sp:RequireThumbprintReference/>\n" +
+                    "<sp:WssX509V3Token11/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:X509Token>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:ProtectionToken>\n" +
+                    "<sp:AlgorithmSuite>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:Basic128/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:AlgorithmSuite>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:SymmetricBinding>\n";
+
+    private static final String SIGNED_BODY =
+            "<sp:SignedParts>\n" +
+                    "<sp:Body/>\n" +
+                    "</sp:SignedParts>\n";
+
+    private static final String ENCRYPTED_BODY =
+            "<sp:EncryptedParts>\n" +
+                    "<sp:Body/>\n" +
+                    "</sp:EncryptedParts>\n";
+
+    private static final String TRANSPORT_BINDING =
+            "<sp:TransportBinding>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:TransportToken>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:HttpsToken>\n" +
+                    "<wsp:Policy/>\n" +
+                    "</sp:HttpsToken>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:TransportToken>\n" +
+                    "<sp:AlgorithmSuite>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:Basic128Rsa15/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:AlgorithmSuite>\n" +
+                    "<sp:IncludeTimestamp/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:TransportBinding>\n" +
+                    "<sp:SignedSupportingTokens>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:UsernameToken sp:IncludeToken=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702/IncludeToken/AlwaysToRecipient\">\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:NoPassword/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:UsernameToken>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:SignedSupportingTokens>\n" +
+                    "<sp:Wss11>\n" +
+                    "<wsp:Policy>\n" +
+                    "<sp:RequireSignatureConfirmation/>\n" +
+                    "</wsp:Policy>\n" +
+                    "</sp:Wss11>\n";
+
+    private static String policy(String... alternatives) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("<wsp:ExactlyOne xmlns:wsp=\"http://schemas.xmlsoap.org/ws/2004/09/policy\" ");
+        stringBuilder.append("xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\">\n");
+        for (int i = 0; i < alternatives.length; i++) {
+            stringBuilder.append("<wsp:All>\n").append(alternatives[i]).append("</wsp:All>\n");
+        }
+        stringBuilder.append("</wsp:ExactlyOne>");
+        return stringBuilder.toString();
+    }
+
+    @Test
+    public void testCompileOutboundAsymmetricBinding() throws Exception {
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(POLICY, false, null);
+        WSSSecurityProperties securityProperties =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+        Assert.assertNotNull(securityProperties);
+
+        XMLSecurityConstants.Action[] actions = securityProperties.getOutAction();
+        Assert.assertEquals(actions.length, 4);
+        Assert.assertEquals(actions[0], WSSConstants.USERNAMETOKEN);
+        Assert.assertEquals(actions[1], WSSConstants.SIGNATURE);
+        Assert.assertEquals(actions[2], WSSConstants.ENCRYPT);
+        Assert.assertEquals(actions[3], WSSConstants.TIMESTAMP);
+
+        List<SecurePart> signatureParts = securityProperties.getSignatureSecureParts();
+        Assert.assertEquals(signatureParts.size(), 4);
+        Assert.assertEquals(signatureParts.get(0).getName(), WSSConstants.TAG_wsu_Timestamp);
+        Assert.assertEquals(signatureParts.get(1).getName(), new QName(WSSConstants.NS_SOAP11, "Body"));
+        Assert.assertEquals(signatureParts.get(2).getName(), new QName("http://www.example.com", "Header1"));
+        Assert.assertEquals(signatureParts.get(3).getName(), WSSConstants.TAG_wsse_UsernameToken);
+
+        List<SecurePart> encryptionParts = securityProperties.getEncryptionSecureParts();
+        Assert.assertEquals(encryptionParts.size(), 2);
+        Assert.assertEquals(encryptionParts.get(0).getName(), new QName(WSSConstants.NS_SOAP11, "Body"));
+        Assert.assertEquals(encryptionParts.get(0).getModifier(), SecurePart.Modifier.Content);
+        Assert.assertEquals(encryptionParts.get(1).getName(), WSSConstants.TAG_dsig_Signature);
+
+        Assert.assertEquals(securityProperties.getSignatureKeyIdentifier(),
+                WSSecurityTokenConstants.KeyIdentifier_SecurityTokenDirectReference);
+        Assert.assertEquals(securityProperties.getEncryptionKeyIdentifier(),
+                WSSecurityTokenConstants.KeyIdentifier_ThumbprintIdentifier);
+        Assert.assertEquals(securityProperties.getSignatureAlgorithm(), "http://www.w3.org/2000/09/xmldsig#rsa-sha1");
+        Assert.assertEquals(securityProperties.getSignatureDigestAlgorithm(), "http://www.w3.org/2000/09/xmldsig#sha1");
+        Assert.assertEquals(securityProperties.getEncryptionSymAlgorithm(), "http://www.w3.org/2001/04/xmlenc#aes128-cbc");
+        Assert.assertEquals(securityProperties.getEncryptionKeyTransportAlgorithm(),
+                "http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p");
+        Assert.assertEquals(securityProperties.getUsernameTokenPasswordType(),
+                WSSConstants.UsernameTokenPasswordType.PASSWORD_DIGEST);
+    }
+
+    @Test
+    public void testCachedTemplateIsCopied() throws Exception {
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(POLICY, false, null);
+        WSSSecurityProperties securityProperties =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+        securityProperties.addSignaturePart(
+                new SecurePart(new QName("http://www.example.com", "Header2"), SecurePart.Modifier.Element));
+
+        WSSSecurityProperties securityProperties2 =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+        Assert.assertNotSame(securityProperties2, securityProperties);
+        Assert.assertEquals(securityProperties2.getSignatureSecureParts().size(), 4);
+
+        Assert.assertNull(policyEnforcerFactory.newOutboundSecurityProperties("unknown", true));
+        Assert.assertNotNull(policyEnforcerFactory.newInboundSecurityProperties("definitions", false));
+    }
+
+    @Test
+    public void testCopyDoesNotShareActionsAndSecureParts() throws Exception {
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(POLICY, false, null);
+        WSSSecurityProperties securityProperties =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+        securityProperties.getOutAction()[0] = WSSConstants.SAML_TOKEN_UNSIGNED;
+        securityProperties.getSignatureSecureParts().get(1).setRequired(false);
+        securityProperties.getEncryptionSecureParts().clear();
+
+        WSSSecurityProperties securityProperties2 =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+        Assert.assertEquals(securityProperties2.getOutAction()[0], WSSConstants.USERNAMETOKEN);
+        Assert.assertTrue(securityProperties2.getSignatureSecureParts().get(1).isRequired());
+        Assert.assertEquals(securityProperties2.getEncryptionSecureParts().size(), 2);
+    }
+
+    @Test
+    public void testCompileOutboundSymmetricBindingWithDerivedKeys() throws Exception {
+        String policy = policy(String.format(SYMMETRIC_BINDING, "<sp:RequireDerivedKeys/>\n") + SIGNED_BODY + ENCRYPTED_BODY);
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(policy, false, null);
+        WSSSecurityProperties securityProperties =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+
+        XMLSecurityConstants.Action[] actions = securityProperties.getOutAction();
+        Assert.assertEquals(actions.length, 2);
+        Assert.assertEquals(actions[0], WSSConstants.SIGNATURE_WITH_DERIVED_KEY);
+        Assert.assertEquals(actions[1], WSSConstants.ENCRYPT_WITH_DERIVED_KEY);
+        Assert.assertEquals(securityProperties.getDerivedKeyTokenReference(),
+                WSSConstants.DerivedKeyTokenReference.EncryptedKey);
+        Assert.assertEquals(securityProperties.getSignatureAlgorithm(), "http://www.w3.org/2000/09/xmldsig#hmac-sha1");
+    }
+
+    @Test
+    public void testCompileOutboundSymmetricBindingWithoutDerivedKeys() throws Exception {
+        String policy = policy(String.format(SYMMETRIC_BINDING, "") + ENCRYPTED_BODY);
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(policy, false, null);
+        WSSSecurityProperties securityProperties =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+
+        XMLSecurityConstants.Action[] actions = securityProperties.getOutAction();
+        Assert.assertEquals(actions.length, 1);
+        Assert.assertEquals(actions[0], WSSConstants.ENCRYPT);
+        Assert.assertNull(securityProperties.getDerivedKeyTokenReference());
+    }
+
+    @Test
+    public void testCompileOutboundSymmetricSignatureWithoutDerivedKeys() throws Exception {
+        String policy = policy(String.format(SYMMETRIC_BINDING, "") + SIGNED_BODY);
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(policy, false, null);
+        try {
+            policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+            Assert.fail("Expected WSSPolicyException");
+        } catch (WSSPolicyException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testCompileOutboundFirstCompilableAlternative() throws Exception {
+        String policy = policy(
+                String.format(SYMMETRIC_BINDING, "") + SIGNED_BODY,
+                String.format(SYMMETRIC_BINDING, "<sp:RequireDerivedKeys/>\n") + SIGNED_BODY);
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(policy, false, null);
+        WSSSecurityProperties securityProperties =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+
+        XMLSecurityConstants.Action[] actions = securityProperties.getOutAction();
+        Assert.assertEquals(actions.length, 1);
+        Assert.assertEquals(actions[0], WSSConstants.SIGNATURE_WITH_DERIVED_KEY);
+    }
+
+    @Test
+    public void testCompileOutboundTransportBinding() throws Exception {
+        String policy = policy(TRANSPORT_BINDING + SIGNED_BODY + ENCRYPTED_BODY);
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(policy, false, null);
+        WSSSecurityProperties securityProperties =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+
+        XMLSecurityConstants.Action[] actions = securityProperties.getOutAction();
+        Assert.assertEquals(actions.length, 2);
+        Assert.assertEquals(actions[0], WSSConstants.USERNAMETOKEN);
+        Assert.assertEquals(actions[1], WSSConstants.TIMESTAMP);
+        Assert.assertTrue(securityProperties.getSignatureSecureParts().isEmpty());
+        Assert.assertTrue(securityProperties.getEncryptionSecureParts().isEmpty());
+    }
+
+    @Test
+    public void testUnsignedSupportingTokensAreNotSigned() throws Exception {
+        String policy = POLICY.replace("sp:SignedSupportingTokens", "sp:SupportingTokens");
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(policy, false, null);
+        WSSSecurityProperties securityProperties =
+                policyEnforcerFactory.newOutboundSecurityProperties("definitions", true);
+
+        List<SecurePart> signatureParts = securityProperties.getSignatureSecureParts();
+        Assert.assertEquals(signatureParts.size(), 3);
+        for (int i = 0; i < signatureParts.size(); i++) {
+            Assert.assertFalse(WSSConstants.TAG_wsse_UsernameToken.equals(signatureParts.get(i).getName()));
+        }
+    }
+
+    @Test
+    public void testCompileInbound() throws Exception {
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(POLICY, false, null);
+        WSSSecurityProperties securityProperties =
+                policyEnforcerFactory.newInboundSecurityProperties("definitions", true);
+        Assert.assertFalse(securityProperties.isAllowRSA15KeyTransportAlgorithm());
+        Assert.assertFalse(securityProperties.isAllowUsernameTokenNoPassword());
+        Assert.assertFalse(securityProperties.isEnableSignatureConfirmationVerification());
+
+        //the second alternative allows RSA15, UsernameTokens without password and requires SignatureConfirmation
+        String policy = policy(String.format(SYMMETRIC_BINDING, "") + ENCRYPTED_BODY, TRANSPORT_BINDING);
+        policyEnforcerFactory = buildPolicyEnforcerFactory(policy, false, null);
+        securityProperties = policyEnforcerFactory.newInboundSecurityProperties("definitions", true);
+        Assert.assertTrue(securityProperties.isAllowRSA15KeyTransportAlgorithm());
+        Assert.assertTrue(securityProperties.isAllowUsernameTokenNoPassword());
+        Assert.assertTrue(securityProperties.isEnableSignatureConfirmationVerification());
+
+        //SignatureConfirmation is only verified by the initiator
+        securityProperties = policyEnforcerFactory.newInboundSecurityProperties("definitions", false);
+        Assert.assertFalse(securityProperties.isEnableSignatureConfirmationVerification());
+    }
+}
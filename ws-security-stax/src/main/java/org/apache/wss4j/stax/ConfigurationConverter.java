@@ -27,7 +27,12 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.cache.AuthenticationResultCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.ReusableSessionKey;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.cache.SignatureVerificationCache;
+import org.apache.wss4j.common.cache.UsernameTokenCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -519,6 +524,33 @@ public final class ConfigurationConverter {
         if (timestampCache != null) {
             properties.setTimestampReplayCache(timestampCache);
         }
+        
+        Object usernameTokenCache = config.get(ConfigurationConstants.USERNAME_TOKEN_CACHE_INSTANCE);
+        if (usernameTokenCache instanceof UsernameTokenCache) {
+            properties.setUsernameTokenCache((UsernameTokenCache)usernameTokenCache);
+        }
+        
+        Object sessionKeyCache = config.get(ConfigurationConstants.SESSION_KEY_CACHE_INSTANCE);
+        if (sessionKeyCache instanceof SessionKeyCache) {
+            properties.setSessionKeyCache((SessionKeyCache)sessionKeyCache);
+        }
+        
+        Object reusableSessionKey = config.get(ConfigurationConstants.REUSABLE_SESSION_KEY_INSTANCE);
+        if (reusableSessionKey instanceof ReusableSessionKey) {
+            properties.setReusableSessionKey((ReusableSessionKey)reusableSessionKey);
+        }
+        
+        Object authenticationResultCache = 
+            config.get(ConfigurationConstants.AUTHENTICATION_RESULT_CACHE_INSTANCE);
+        if (authenticationResultCache instanceof AuthenticationResultCache) {
+            properties.setAuthenticationResultCache((AuthenticationResultCache)authenticationResultCache);
+        }
+        
+        Object signatureVerificationCache = 
+            config.get(ConfigurationConstants.SIGNATURE_VERIFICATION_CACHE_INSTANCE);
+        if (signatureVerificationCache instanceof SignatureVerificationCache) {
+            properties.setSignatureVerificationCache((SignatureVerificationCache)signatureVerificationCache);
+        }
     }
     
     private static WSSecurityTokenConstants.KeyIdentifier convertKeyIdentifier(String keyIdentifier) {
@@ -33,6 +33,7 @@ import org.apache.xml.security.stax.impl.processor.input.LogInputProcessor;
 import org.apache.xml.security.stax.impl.processor.input.XMLEventReaderInputProcessor;
 import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
 import org.apache.xml.security.stax.securityEvent.TokenSecurityEvent;
 import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
@@ -44,6 +45,7 @@ import javax.xml.stream.XMLStreamReader;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Inbound Streaming-WebService-Security
@@ -118,6 +120,35 @@ public class InboundWSSec {
     public XMLStreamReader processInMessage(
             XMLStreamReader xmlStreamReader, List<SecurityEvent> requestSecurityEvents,
             SecurityEventListener securityEventListener) throws XMLStreamException, WSSecurityException {
+        return this.processInMessage(xmlStreamReader, requestSecurityEvents, securityEventListener, null);
+    }
+
+    /**
+     * Warning:
+     * configure your xmlStreamReader correctly. Otherwise you can create a security hole.
+     * At minimum configure the following properties:
+     * xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+     * xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+     * xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+     * xmlInputFactory.setProperty(WstxInputProperties.P_MIN_TEXT_SEGMENT, new Integer(8192));
+     * <p/>
+     * This method is the entry point for the incoming security-engine.
+     * Hand over the original XMLStreamReader and use the returned one for further processing
+     *
+     * @param xmlStreamReader       The original XMLStreamReader
+     * @param securityEventListener A SecurityEventListener to receive security-relevant events.
+     * @param requiredSecurityEvents The types of the SecurityEvents the securityEventListener consumes.
+     *                               Only these SecurityEvents are built and forwarded to the listener.
+     *                               AlgorithmSuite SecurityEvents are always forwarded. Pass null to
+     *                               receive all SecurityEvents.
+     * @return A new XMLStreamReader which does transparently the security processing.
+     * @throws XMLStreamException  thrown when a streaming error occurs
+     * @throws XMLSecurityException 
+     */
+    public XMLStreamReader processInMessage(
+            XMLStreamReader xmlStreamReader, List<SecurityEvent> requestSecurityEvents,
+            SecurityEventListener securityEventListener,
+            Set<SecurityEventConstants.Event> requiredSecurityEvents) throws XMLStreamException, WSSecurityException {
 
         if (requestSecurityEvents == null) {
             requestSecurityEvents = Collections.emptyList();
@@ -126,6 +157,7 @@ public class InboundWSSec {
         final InboundWSSecurityContextImpl securityContextImpl = new InboundWSSecurityContextImpl();
         securityContextImpl.putList(SecurityEvent.class, requestSecurityEvents);
         securityContextImpl.addSecurityEventListener(securityEventListener);
+        securityContextImpl.setRequiredSecurityEvents(requiredSecurityEvents);
         securityContextImpl.ignoredBSPRules(this.securityProperties.getIgnoredBSPRules());
         securityContextImpl.setDisableBSPEnforcement(this.securityProperties.isDisableBSPEnforcement());
         securityContextImpl.setAllowRSA15KeyTransportAlgorithm(this.securityProperties.isAllowRSA15KeyTransportAlgorithm());
@@ -19,6 +19,9 @@
 package org.apache.wss4j.stax.ext;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.NoOpSecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.stax.impl.MetricsOutputProcessorChainImpl;
 import org.apache.wss4j.stax.impl.processor.output.*;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.ext.OutboundSecurityContext;
@@ -130,7 +133,14 @@ public class OutboundWSSec {
         final DocumentContextImpl documentContext = new DocumentContextImpl();
         documentContext.setEncoding(encoding);
 
-        OutputProcessorChainImpl outputProcessorChain = new OutputProcessorChainImpl(outboundSecurityContext, documentContext);
+        OutputProcessorChainImpl outputProcessorChain;
+        SecurityMetricsListener metricsListener = securityProperties.getMetricsListener();
+        if (metricsListener == NoOpSecurityMetricsListener.INSTANCE) {
+            outputProcessorChain = new OutputProcessorChainImpl(outboundSecurityContext, documentContext);
+        } else {
+            outputProcessorChain =
+                new MetricsOutputProcessorChainImpl(outboundSecurityContext, documentContext, metricsListener);
+        }
 
         try {
             final SecurityHeaderOutputProcessor securityHeaderOutputProcessor = new SecurityHeaderOutputProcessor();
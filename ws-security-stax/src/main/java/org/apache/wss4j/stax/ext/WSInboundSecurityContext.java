@@ -21,6 +21,7 @@ package org.apache.wss4j.stax.ext;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.xml.security.stax.ext.InboundSecurityContext;
+import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 
 import java.util.List;
 
@@ -32,4 +33,17 @@ public interface WSInboundSecurityContext extends InboundSecurityContext {
     public void handleBSPRule(BSPRule bspRule) throws WSSecurityException;
 
     public void ignoredBSPRules(List<BSPRule> bspRules);
+
+    /**
+     * Returns whether SecurityEvents of the given type must be built and registered, because
+     * they are consumed by a SecurityEventListener or needed internally. Handlers can use this
+     * to skip building SecurityEvents nobody consumes.
+     */
+    public boolean isSecurityEventRequired(SecurityEventConstants.Event securityEventType);
+
+    /**
+     * Declare that SecurityEvents of the given types are consumed, e.g. by an internal
+     * SecurityEventListener which is added during the processing of a message.
+     */
+    public void requireSecurityEvents(SecurityEventConstants.Event... securityEventTypes);
 }
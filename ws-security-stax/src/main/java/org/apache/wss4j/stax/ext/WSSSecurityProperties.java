@@ -35,11 +35,20 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.AuthenticationResultCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.ReusableSessionKey;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.cache.SignatureVerificationCache;
+import org.apache.wss4j.common.cache.UsernameTokenCache;
 import org.apache.wss4j.common.cache.ReplayCacheFactory;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosClientCredentialCache;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialCache;
+import org.apache.wss4j.common.metrics.NoOpSecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.validate.Validator;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
@@ -104,6 +113,16 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     private ReplayCache nonceReplayCache;
     private boolean enableTimestampReplayCache = true;
     private boolean enableNonceReplayCache = true;
+    private UsernameTokenCache usernameTokenCache;
+    private SessionKeyCache sessionKeyCache;
+    private KerberosServiceCredentialCache kerberosServiceCredentialCache;
+    private KerberosClientCredentialCache kerberosClientCredentialCache;
+    private ReusableSessionKey reusableSessionKey;
+    private AuthenticationResultCache authenticationResultCache;
+    private SignatureVerificationCache signatureVerificationCache;
+    private SecurityMetricsListener metricsListener;
+    private boolean inlineDecryption = false;
+    private boolean streamingSecurityHeader = false;
     private boolean validateSamlSubjectConfirmation = true;
 
     public WSSSecurityProperties() {
@@ -150,6 +169,16 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.nonceReplayCache = wssSecurityProperties.nonceReplayCache;
         this.enableTimestampReplayCache = wssSecurityProperties.enableTimestampReplayCache;
         this.enableNonceReplayCache = wssSecurityProperties.enableNonceReplayCache;
+        this.usernameTokenCache = wssSecurityProperties.usernameTokenCache;
+        this.sessionKeyCache = wssSecurityProperties.sessionKeyCache;
+        this.kerberosServiceCredentialCache = wssSecurityProperties.kerberosServiceCredentialCache;
+        this.kerberosClientCredentialCache = wssSecurityProperties.kerberosClientCredentialCache;
+        this.reusableSessionKey = wssSecurityProperties.reusableSessionKey;
+        this.authenticationResultCache = wssSecurityProperties.authenticationResultCache;
+        this.signatureVerificationCache = wssSecurityProperties.signatureVerificationCache;
+        this.metricsListener = wssSecurityProperties.metricsListener;
+        this.inlineDecryption = wssSecurityProperties.inlineDecryption;
+        this.streamingSecurityHeader = wssSecurityProperties.streamingSecurityHeader;
         this.allowRSA15KeyTransportAlgorithm = wssSecurityProperties.allowRSA15KeyTransportAlgorithm;
         this.derivedKeyIterations = wssSecurityProperties.derivedKeyIterations;
         this.useDerivedKeyForMAC = wssSecurityProperties.useDerivedKeyForMAC;
@@ -744,6 +773,109 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         return nonceReplayCache;
     }
 
+    /**
+     * Set the cache for UsernameToken passwords and derived keys
+     */
+    public void setUsernameTokenCache(UsernameTokenCache usernameTokenCache) {
+        this.usernameTokenCache = usernameTokenCache;
+    }
+
+    /**
+     * Get the cache for UsernameToken passwords and derived keys. This is null (disabled) by default.
+     */
+    public UsernameTokenCache getUsernameTokenCache() {
+        return usernameTokenCache;
+    }
+
+    /**
+     * Set the cache for session keys referred to via EncryptedKeySHA1
+     */
+    public void setSessionKeyCache(SessionKeyCache sessionKeyCache) {
+        this.sessionKeyCache = sessionKeyCache;
+    }
+
+    /**
+     * Get the cache for session keys referred to via EncryptedKeySHA1. This is null (disabled)
+     * by default.
+     */
+    public SessionKeyCache getSessionKeyCache() {
+        return sessionKeyCache;
+    }
+
+    /**
+     * Set the cache for the login and the credential of a Kerberos service
+     */
+    public void setKerberosServiceCredentialCache(KerberosServiceCredentialCache kerberosServiceCredentialCache) {
+        this.kerberosServiceCredentialCache = kerberosServiceCredentialCache;
+    }
+
+    /**
+     * Get the cache for the login and the credential of a Kerberos service. This is null
+     * (disabled) by default.
+     */
+    public KerberosServiceCredentialCache getKerberosServiceCredentialCache() {
+        return kerberosServiceCredentialCache;
+    }
+
+    /**
+     * Set the cache for the login and the service ticket of a Kerberos client
+     */
+    public void setKerberosClientCredentialCache(KerberosClientCredentialCache kerberosClientCredentialCache) {
+        this.kerberosClientCredentialCache = kerberosClientCredentialCache;
+    }
+
+    /**
+     * Get the cache for the login and the service ticket of a Kerberos client. This is null
+     * (disabled) by default.
+     */
+    public KerberosClientCredentialCache getKerberosClientCredentialCache() {
+        return kerberosClientCredentialCache;
+    }
+
+    /**
+     * Set the holder of the session key to reuse for outbound encryption
+     */
+    public void setReusableSessionKey(ReusableSessionKey reusableSessionKey) {
+        this.reusableSessionKey = reusableSessionKey;
+    }
+
+    /**
+     * Get the holder of the session key to reuse for outbound encryption. This is null
+     * (disabled) by default, i.e. a new session key is generated for each message.
+     */
+    public ReusableSessionKey getReusableSessionKey() {
+        return reusableSessionKey;
+    }
+
+    /**
+     * Set the cache for the results of JAAS UsernameToken authentication
+     */
+    public void setAuthenticationResultCache(AuthenticationResultCache authenticationResultCache) {
+        this.authenticationResultCache = authenticationResultCache;
+    }
+
+    /**
+     * Get the cache for the results of JAAS UsernameToken authentication. This is null (disabled)
+     * by default.
+     */
+    public AuthenticationResultCache getAuthenticationResultCache() {
+        return authenticationResultCache;
+    }
+
+    /**
+     * Set the cache of successful signature verifications
+     */
+    public void setSignatureVerificationCache(SignatureVerificationCache signatureVerificationCache) {
+        this.signatureVerificationCache = signatureVerificationCache;
+    }
+
+    /**
+     * Get the cache of successful signature verifications. This is null (disabled) by default.
+     */
+    public SignatureVerificationCache getSignatureVerificationCache() {
+        return signatureVerificationCache;
+    }
+
     public boolean isDisableBSPEnforcement() {
         return disableBSPEnforcement;
     }
@@ -839,5 +971,59 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     public void setEnableNonceReplayCache(boolean enableNonceReplayCache) {
         this.enableNonceReplayCache = enableNonceReplayCache;
     }
+
+    /**
+     * Set the listener that receives the timings of the security processing phases
+     */
+    public void setMetricsListener(SecurityMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Get the listener that receives the timings of the security processing phases. If no
+     * listener is set, a listener that discards all events is returned.
+     */
+    public SecurityMetricsListener getMetricsListener() {
+        if (metricsListener == null) {
+            return NoOpSecurityMetricsListener.INSTANCE;
+        }
+        return metricsListener;
+    }
+
+    /**
+     * Whether EncryptedData is decrypted on the thread which consumes the decrypted events.
+     */
+    public boolean isInlineDecryption() {
+        return inlineDecryption;
+    }
+
+    /**
+     * Set whether EncryptedData is decrypted on the thread which consumes the decrypted events,
+     * instead of in a separate decryption thread which hands the plain text over a pipe.
+     * The default is false.
+     */
+    public void setInlineDecryption(boolean inlineDecryption) {
+        this.inlineDecryption = inlineDecryption;
+    }
+
+    /**
+     * Whether the outbound tokens of the action which is placed first in the security header are written
+     * as they arrive.
+     */
+    public boolean isStreamingSecurityHeader() {
+        return streamingSecurityHeader;
+    }
+
+    /**
+     * Set whether the non encrypted outbound tokens of the action which is placed first in the security
+     * header (the last configured action) are written as they arrive, instead of being collected and
+     * reordered at the end of the security header. The signature of that action and all elements of the
+     * other actions are still held back until the end of the security header, so the layout does not
+     * change. The signature and encryption processors still buffer the document, so this does not bound
+     * the memory used per message. The default is false.
+     */
+    public void setStreamingSecurityHeader(boolean streamingSecurityHeader) {
+        this.streamingSecurityHeader = streamingSecurityHeader;
+    }
     
 }
@@ -20,10 +20,14 @@ package org.apache.wss4j.stax.impl;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -55,7 +59,28 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     private static final transient org.slf4j.Logger logger =
             org.slf4j.LoggerFactory.getLogger(InboundWSSecurityContextImpl.class);
 
+    // The types of the TokenSecurityEvents, which are subject to the token dependency and usage analysis
+    private static final List<SecurityEventConstants.Event> TOKEN_SECURITY_EVENTS =
+            Arrays.asList(
+                    WSSecurityEventConstants.X509Token, WSSecurityEventConstants.KeyValueToken,
+                    WSSecurityEventConstants.KeyNameToken, WSSecurityEventConstants.DefaultToken,
+                    WSSecurityEventConstants.EncryptedKeyToken, WSSecurityEventConstants.UsernameToken,
+                    WSSecurityEventConstants.IssuedToken, WSSecurityEventConstants.KerberosToken,
+                    WSSecurityEventConstants.SpnegoContextToken, WSSecurityEventConstants.SamlToken,
+                    WSSecurityEventConstants.SecurityContextToken, WSSecurityEventConstants.SecureConversationToken,
+                    WSSecurityEventConstants.RelToken, WSSecurityEventConstants.HttpsToken,
+                    WSSecurityEventConstants.DerivedKeyToken);
+
+    // The other SecurityEvents the token dependency and usage analysis is based on
+    private static final List<SecurityEventConstants.Event> TOKEN_USAGE_SECURITY_EVENTS =
+            Arrays.asList(
+                    WSSecurityEventConstants.SignedElement, WSSecurityEventConstants.EncryptedElement,
+                    WSSecurityEventConstants.ContentEncrypted);
+
     private final Deque<SecurityEvent> securityEventQueue = new ArrayDeque<SecurityEvent>();
+    // null means that all SecurityEvents are required
+    private Set<SecurityEventConstants.Event> requiredSecurityEvents;
+    private boolean tokenSecurityEventsRequired = true;
     private boolean operationSecurityEventOccured = false;
     private boolean messageEncryptionTokenOccured = false;
     private boolean allowRSA15KeyTransportAlgorithm = false;
@@ -73,6 +98,12 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
             return;
         }
 
+        if (!WSSecurityEventConstants.Operation.equals(securityEvent.getSecurityEventType())
+                && !isSecurityEventRequired(securityEvent.getSecurityEventType())) {
+            //nobody consumes this securityEvent, neither a listener nor the token usage analysis
+            return;
+        }
+
         if (operationSecurityEventOccured) {
             if (!this.messageEncryptionTokenOccured
                     && (securityEvent instanceof TokenSecurityEvent)) {
@@ -101,7 +132,9 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         if (WSSecurityEventConstants.Operation.equals(securityEvent.getSecurityEventType())) {
             operationSecurityEventOccured = true;
 
-            identifySecurityTokenDepenedenciesAndUsage(securityEventQueue);
+            if (tokenSecurityEventsRequired) {
+                identifySecurityTokenDepenedenciesAndUsage(securityEventQueue);
+            }
 
             Iterator<SecurityEvent> securityEventIterator = securityEventQueue.descendingIterator();
             while (securityEventIterator.hasNext()) {
@@ -129,6 +162,13 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
             }
         }
 
+        //AlgorithmSuite securityEvents are always forwarded, as the algorithms are checked on the way
+        if (requiredSecurityEvents != null
+                && !SecurityEventConstants.AlgorithmSuite.equals(securityEvent.getSecurityEventType())
+                && !requiredSecurityEvents.contains(securityEvent.getSecurityEventType())) {
+            return;
+        }
+
         try {
             super.forwardSecurityEvent(securityEvent);
         } catch (WSSecurityException e) {
@@ -564,6 +604,46 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         ignoredBSPRules = new ArrayList<BSPRule>(bspRules);
     }
 
+    /**
+     * Set the types of the SecurityEvents the SecurityEventListeners consume. Only these
+     * SecurityEvents (and the AlgorithmSuite SecurityEvents) are forwarded to the listeners, and
+     * the token dependency and usage analysis is only done if TokenSecurityEvents are required.
+     * @param securityEventTypes the required SecurityEvent types, or null if all are required
+     */
+    public synchronized void setRequiredSecurityEvents(Collection<SecurityEventConstants.Event> securityEventTypes) {
+        if (securityEventTypes == null) {
+            this.requiredSecurityEvents = null;
+            this.tokenSecurityEventsRequired = true;
+            return;
+        }
+        this.requiredSecurityEvents = new HashSet<SecurityEventConstants.Event>();
+        this.tokenSecurityEventsRequired = false;
+        requireSecurityEvents(securityEventTypes.toArray(new SecurityEventConstants.Event[securityEventTypes.size()]));
+    }
+
+    @Override
+    public synchronized void requireSecurityEvents(SecurityEventConstants.Event... securityEventTypes) {
+        if (requiredSecurityEvents == null) {
+            return;
+        }
+        for (int i = 0; i < securityEventTypes.length; i++) {
+            requiredSecurityEvents.add(securityEventTypes[i]);
+            if (TOKEN_SECURITY_EVENTS.contains(securityEventTypes[i])) {
+                tokenSecurityEventsRequired = true;
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean isSecurityEventRequired(SecurityEventConstants.Event securityEventType) {
+        if (requiredSecurityEvents == null || requiredSecurityEvents.contains(securityEventType)) {
+            return true;
+        }
+        return tokenSecurityEventsRequired
+                && (TOKEN_SECURITY_EVENTS.contains(securityEventType)
+                || TOKEN_USAGE_SECURITY_EVENTS.contains(securityEventType));
+    }
+
     public boolean isDisableBSPEnforcement() {
         return disableBSPEnforcement;
     }
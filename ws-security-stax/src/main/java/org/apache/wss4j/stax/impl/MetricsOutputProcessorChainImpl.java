@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.OutboundSecurityContext;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.impl.DocumentContextImpl;
+import org.apache.xml.security.stax.impl.OutputProcessorChainImpl;
+
+/**
+ * An OutputProcessorChain that reports the time spent in the outbound processors to a
+ * SecurityMetricsListener as STREAMING_OUTBOUND phase, once per event that is written and
+ * once for the final processing. The processors pass an event on via the same chain, so
+ * only the outermost invocation is reported.
+ */
+public class MetricsOutputProcessorChainImpl extends OutputProcessorChainImpl {
+
+    private final SecurityMetricsListener metricsListener;
+    private int depth;
+
+    public MetricsOutputProcessorChainImpl(
+            OutboundSecurityContext outboundSecurityContext, DocumentContextImpl documentContext,
+            SecurityMetricsListener metricsListener) {
+        super(outboundSecurityContext, documentContext);
+        this.metricsListener = metricsListener;
+    }
+
+    @Override
+    public void processEvent(XMLSecEvent xmlSecEvent) throws XMLStreamException, XMLSecurityException {
+        if (depth++ == 0) {
+            metricsListener.phaseStarted(SecurityPhase.STREAMING_OUTBOUND);
+        }
+        try {
+            super.processEvent(xmlSecEvent);
+        } finally {
+            if (--depth == 0) {
+                metricsListener.phaseFinished(SecurityPhase.STREAMING_OUTBOUND);
+            }
+        }
+    }
+
+    @Override
+    public void doFinal() throws XMLStreamException, XMLSecurityException {
+        if (depth++ == 0) {
+            metricsListener.phaseStarted(SecurityPhase.STREAMING_OUTBOUND);
+        }
+        try {
+            super.doFinal();
+        } finally {
+            if (--depth == 0) {
+                metricsListener.phaseFinished(SecurityPhase.STREAMING_OUTBOUND);
+            }
+        }
+    }
+}
@@ -19,6 +19,10 @@
 package org.apache.wss4j.stax.impl;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.NoOpSecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
@@ -28,12 +32,20 @@ import javax.xml.stream.XMLStreamException;
 
 public class WSSecurityStreamReader extends XMLSecurityStreamReader {
 
+    private final SecurityMetricsListener metricsListener;
+
     public WSSecurityStreamReader(InputProcessorChain inputProcessorChain, XMLSecurityProperties securityProperties) {
         super(inputProcessorChain, securityProperties);
+        if (securityProperties instanceof WSSSecurityProperties) {
+            this.metricsListener = ((WSSSecurityProperties) securityProperties).getMetricsListener();
+        } else {
+            this.metricsListener = NoOpSecurityMetricsListener.INSTANCE;
+        }
     }
 
     @Override
     public int next() throws XMLStreamException {
+        metricsListener.phaseStarted(SecurityPhase.STREAMING_INBOUND);
         try {
             return super.next();
         } catch (XMLStreamException e) {
@@ -47,6 +59,8 @@ public class WSSecurityStreamReader extends XMLSecurityStreamReader {
                                 WSSecurityException.ErrorCode.FAILED_CHECK, (XMLSecurityException)cause));
             }
             throw e;
+        } finally {
+            metricsListener.phaseFinished(SecurityPhase.STREAMING_INBOUND);
         }
     }
 }
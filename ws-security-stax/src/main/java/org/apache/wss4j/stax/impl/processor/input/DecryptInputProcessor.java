@@ -18,14 +18,30 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
@@ -36,15 +52,25 @@ import org.apache.xml.security.binding.xmldsig.KeyInfoType;
 import org.apache.xml.security.binding.xmldsig.TransformType;
 import org.apache.xml.security.binding.xmldsig.TransformsType;
 import org.apache.xml.security.binding.xmlenc.EncryptedDataType;
+import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
 import org.apache.xml.security.binding.xmlenc.ReferenceList;
 import org.apache.xml.security.binding.xmlenc.ReferenceType;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.config.ConfigurationProperties;
+import org.apache.xml.security.stax.config.JCEAlgorithmMapper;
 import org.apache.xml.security.stax.config.TransformerAlgorithmMapper;
 import org.apache.xml.security.stax.ext.*;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecNamespace;
 import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.stax.impl.XMLSecurityEventReader;
 import org.apache.xml.security.stax.impl.processor.input.AbstractDecryptInputProcessor;
+import org.apache.xml.security.stax.impl.processor.input.XMLEncryptedKeyInputHandler;
+import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.stax.impl.util.LimitingInputStream;
+import org.apache.xml.security.stax.impl.util.MultiInputStream;
+import org.apache.xml.security.stax.impl.util.UnsynchronizedByteArrayInputStream;
 import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.EncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.TokenSecurityEvent;
@@ -52,8 +78,11 @@ import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.ext.WSSUtils;
 import org.apache.wss4j.stax.securityEvent.EncryptedPartSecurityEvent;
+import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
 import org.apache.xml.security.stax.securityToken.SecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
+import org.apache.xml.security.stax.securityToken.SecurityTokenFactory;
 
 /**
  * Processor for decryption of EncryptedData XML structures
@@ -65,12 +94,22 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
         
     private static final Long maximumAllowedDecompressedBytes =
             Long.valueOf(ConfigurationProperties.getProperty("MaximumAllowedDecompressedBytes"));
+    //the same limit the AbstractDecryptInputProcessor applies when it parses the EncryptedData structure
+    private static final int MAXIMUM_ALLOWED_ENCRYPTED_DATA_EVENTS = 50;
+
+    private final KeyInfoType keyInfoType;
+    private final boolean inlineDecryption;
+    private final QName wrapperElementName =
+            new QName("http://dummy", IDGenerator.generateID(null), "dummy");
+    private final ArrayDeque<XMLSecEvent> tmpXmlEventList = new ArrayDeque<XMLSecEvent>();
 
     public DecryptInputProcessor(KeyInfoType keyInfoType, ReferenceList referenceList,
                                  WSSSecurityProperties securityProperties, WSInboundSecurityContext securityContext)
             throws XMLSecurityException {
 
         super(keyInfoType, referenceList, securityProperties);
+        this.keyInfoType = keyInfoType;
+        this.inlineDecryption = securityProperties.isInlineDecryption();
         checkBSPCompliance(keyInfoType, referenceList, securityContext, BSPRule.R3006);
     }
 
@@ -99,6 +138,323 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
         }
     }
 
+    @Override
+    public XMLSecEvent processNextHeaderEvent(InputProcessorChain inputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
+        if (!inlineDecryption) {
+            return super.processNextHeaderEvent(inputProcessorChain);
+        }
+        return processEventInline(inputProcessorChain, true);
+    }
+
+    @Override
+    public XMLSecEvent processNextEvent(InputProcessorChain inputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
+        if (!inlineDecryption) {
+            return super.processNextEvent(inputProcessorChain);
+        }
+        return processEventInline(inputProcessorChain, false);
+    }
+
+    /**
+     * Decrypts EncryptedData structures without a separate decryption thread: The cipher text is
+     * pulled from the InputProcessorChain and decrypted by the DecryptionInputStream whenever the
+     * StAX reader of the DecryptedEventReaderInputProcessor requires more plain text.
+     */
+    private XMLSecEvent processEventInline(InputProcessorChain inputProcessorChain, boolean header)
+            throws XMLStreamException, XMLSecurityException {
+
+        if (!tmpXmlEventList.isEmpty()) {
+            return tmpXmlEventList.pollLast();
+        }
+
+        XMLSecEvent xmlSecEvent = header ? inputProcessorChain.processHeaderEvent() : inputProcessorChain.processEvent();
+        if (xmlSecEvent.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            return xmlSecEvent;
+        }
+
+        boolean encryptedHeader = false;
+        XMLSecStartElement xmlSecStartElement = xmlSecEvent.asStartElement();
+
+        //buffer the events until the EncryptedData Element appears and discard it if we found the reference inside it
+        //otherwise replay it
+        if (WSSConstants.TAG_wsse11_EncryptedHeader.equals(xmlSecStartElement.getName())) {
+            xmlSecEvent = readAndBufferEncryptedHeader(inputProcessorChain, header, xmlSecEvent);
+            xmlSecStartElement = xmlSecEvent.asStartElement();
+            encryptedHeader = true;
+        }
+
+        if (!XMLSecurityConstants.TAG_xenc_EncryptedData.equals(xmlSecStartElement.getName())) {
+            return xmlSecEvent;
+        }
+
+        ReferenceType referenceType = null;
+        if (getReferences() != null) {
+            referenceType = matchesReferenceId(xmlSecStartElement);
+            if (referenceType == null) {
+                //if the events were not for us (no matching reference-id the we have to replay the EncryptedHeader elements)
+                if (!tmpXmlEventList.isEmpty()) {
+                    return tmpXmlEventList.pollLast();
+                }
+                return xmlSecEvent;
+            }
+            //duplicate id's are forbidden
+            if (getProcessedReferences().contains(referenceType)) {
+                throw new XMLSecurityException("signature.Verification.MultipleIDs");
+            }
+            getProcessedReferences().add(referenceType);
+        }
+        tmpXmlEventList.clear();
+
+        //the following logic reads the encryptedData structure and doesn't pass them further
+        //through the chain
+        InputProcessorChain subInputProcessorChain = inputProcessorChain.createSubChain(this);
+
+        EncryptedDataType encryptedDataType =
+                parseEncryptedDataStructure(header, xmlSecEvent, subInputProcessorChain);
+        if (encryptedDataType.getId() == null) {
+            encryptedDataType.setId(IDGenerator.generateID(null));
+        }
+
+        InboundSecurityToken inboundSecurityToken =
+                getSecurityToken(inputProcessorChain, xmlSecStartElement, encryptedDataType);
+        handleSecurityToken(inboundSecurityToken, inputProcessorChain.getSecurityContext(), encryptedDataType);
+
+        final String algorithmURI = encryptedDataType.getEncryptionMethod().getAlgorithm();
+        final int ivLength = JCEAlgorithmMapper.getIVLengthFromURI(algorithmURI) / 8;
+        Cipher symCipher = getCipher(algorithmURI);
+
+        Key secretKey =
+                inboundSecurityToken.getSecretKey(algorithmURI, XMLSecurityConstants.Enc, encryptedDataType.getId());
+        secretKey = XMLSecurityUtils.prepareSecretKey(algorithmURI, secretKey.getEncoded());
+
+        //the DecryptionInputStream pulls the cipher text from the sub-chain on demand
+        DecryptionInputStream decryptionInputStream =
+                new DecryptionInputStream(subInputProcessorChain, header, symCipher, secretKey, ivLength);
+
+        XMLSecStartElement parentXMLSecStartElement = xmlSecStartElement.getParentXMLSecStartElement();
+        if (encryptedHeader) {
+            parentXMLSecStartElement = parentXMLSecStartElement.getParentXMLSecStartElement();
+        }
+
+        checkEncryptionAlgorithm(encryptedDataType, inputProcessorChain.getSecurityContext());
+        InlineDecryptedEventReaderInputProcessor decryptedEventReaderInputProcessor =
+                new InlineDecryptedEventReaderInputProcessor(getSecurityProperties(),
+                        SecurePart.Modifier.getModifier(encryptedDataType.getType()),
+                        encryptedHeader, parentXMLSecStartElement, encryptedDataType, this, inboundSecurityToken);
+
+        //add the new created EventReader processor to the chain.
+        inputProcessorChain.addProcessor(decryptedEventReaderInputProcessor);
+
+        inputProcessorChain.getDocumentContext().setIsInEncryptedContent(
+                inputProcessorChain.getProcessors().indexOf(decryptedEventReaderInputProcessor),
+                decryptedEventReaderInputProcessor);
+
+        //fire here only ContentEncryptedElementEvents
+        //the other ones will be fired later, because we don't know the encrypted element name yet
+        //important: this must occur after setIsInEncryptedContent!
+        if (SecurePart.Modifier.Content.getModifier().equals(encryptedDataType.getType())) {
+            handleEncryptedContent(inputProcessorChain, xmlSecStartElement.getParentXMLSecStartElement(),
+                    inboundSecurityToken, encryptedDataType);
+        }
+
+        InputStream prologInputStream;
+        InputStream epilogInputStream;
+        try {
+            prologInputStream = writeWrapperStartElement(xmlSecStartElement);
+            epilogInputStream = new UnsynchronizedByteArrayInputStream(
+                    ("</" + wrapperElementName.getPrefix() + ":" + wrapperElementName.getLocalPart() + ">")
+                            .getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new XMLSecurityException(e);
+        }
+
+        InputStream decryptInputStream = applyTransforms(referenceType, decryptionInputStream);
+
+        //spec says (4.2): "The cleartext octet sequence obtained in step 3 is
+        //interpreted as UTF-8 encoded character data."
+        XMLInputFactory xmlInputFactory =
+                (XMLInputFactory) inputProcessorChain.getSecurityContext().get(XMLSecurityConstants.XMLINPUTFACTORY);
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(
+                new MultiInputStream(prologInputStream, decryptInputStream, epilogInputStream), "UTF-8");
+
+        //forward to wrapper element
+        forwardToWrapperElement(xmlStreamReader);
+
+        decryptedEventReaderInputProcessor.setXmlStreamReader(xmlStreamReader);
+
+        if (header) {
+            return decryptedEventReaderInputProcessor.processNextHeaderEvent(inputProcessorChain);
+        } else {
+            return decryptedEventReaderInputProcessor.processNextEvent(inputProcessorChain);
+        }
+    }
+
+    private XMLSecEvent readAndBufferEncryptedHeader(InputProcessorChain inputProcessorChain, boolean header,
+                                                     XMLSecEvent xmlSecEvent)
+            throws XMLStreamException, XMLSecurityException {
+
+        InputProcessorChain subInputProcessorChain = inputProcessorChain.createSubChain(this);
+        do {
+            tmpXmlEventList.push(xmlSecEvent);
+
+            subInputProcessorChain.reset();
+            if (header) {
+                xmlSecEvent = subInputProcessorChain.processHeaderEvent();
+            } else {
+                xmlSecEvent = subInputProcessorChain.processEvent();
+            }
+        }
+        while (!(xmlSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT
+                && XMLSecurityConstants.TAG_xenc_EncryptedData.equals(xmlSecEvent.asStartElement().getName())));
+
+        tmpXmlEventList.push(xmlSecEvent);
+        return xmlSecEvent;
+    }
+
+    private EncryptedDataType parseEncryptedDataStructure(boolean isSecurityHeaderEvent, XMLSecEvent xmlSecEvent,
+                                                          InputProcessorChain subInputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
+
+        Deque<XMLSecEvent> xmlSecEvents = new ArrayDeque<XMLSecEvent>();
+        xmlSecEvents.push(xmlSecEvent);
+        XMLSecEvent encryptedDataXMLSecEvent;
+        int count = 0;
+        int keyInfoCount = 0;
+        do {
+            subInputProcessorChain.reset();
+            if (isSecurityHeaderEvent) {
+                encryptedDataXMLSecEvent = subInputProcessorChain.processHeaderEvent();
+            } else {
+                encryptedDataXMLSecEvent = subInputProcessorChain.processEvent();
+            }
+
+            xmlSecEvents.push(encryptedDataXMLSecEvent);
+            if (++count >= MAXIMUM_ALLOWED_ENCRYPTED_DATA_EVENTS) {
+                throw new XMLSecurityException("stax.xmlStructureSizeExceeded", MAXIMUM_ALLOWED_ENCRYPTED_DATA_EVENTS);
+            }
+
+            //the keyInfoCount is necessary to prevent early while-loop abortion when the KeyInfo also contains a CipherValue.
+            if (encryptedDataXMLSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT
+                    && encryptedDataXMLSecEvent.asStartElement().getName().equals(XMLSecurityConstants.TAG_dsig_KeyInfo)) {
+                keyInfoCount++;
+            } else if (encryptedDataXMLSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT
+                    && encryptedDataXMLSecEvent.asEndElement().getName().equals(XMLSecurityConstants.TAG_dsig_KeyInfo)) {
+                keyInfoCount--;
+            }
+        }
+        while (!((encryptedDataXMLSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT
+                && encryptedDataXMLSecEvent.asStartElement().getName().equals(XMLSecurityConstants.TAG_xenc_CipherValue)
+                || encryptedDataXMLSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT
+                && encryptedDataXMLSecEvent.asEndElement().getName().equals(XMLSecurityConstants.TAG_xenc_EncryptedData))
+                && keyInfoCount == 0));
+
+        xmlSecEvents.push(XMLSecEventFactory.createXmlSecEndElement(XMLSecurityConstants.TAG_xenc_CipherValue));
+        xmlSecEvents.push(XMLSecEventFactory.createXmlSecEndElement(XMLSecurityConstants.TAG_xenc_CipherData));
+        xmlSecEvents.push(XMLSecEventFactory.createXmlSecEndElement(XMLSecurityConstants.TAG_xenc_EncryptedData));
+
+        try {
+            @SuppressWarnings("unchecked")
+            JAXBElement<EncryptedDataType> encryptedDataTypeJAXBElement =
+                    (JAXBElement<EncryptedDataType>) XMLSecurityConstants.getJaxbUnmarshaller(
+                            getSecurityProperties().isDisableSchemaValidation()).unmarshal(
+                                    new XMLSecurityEventReader(xmlSecEvents, 0));
+            return encryptedDataTypeJAXBElement.getValue();
+        } catch (JAXBException e) {
+            throw new XMLSecurityException(e);
+        }
+    }
+
+    private InboundSecurityToken getSecurityToken(InputProcessorChain inputProcessorChain,
+                                                  XMLSecStartElement xmlSecStartElement,
+                                                  EncryptedDataType encryptedDataType) throws XMLSecurityException {
+        KeyInfoType keyInfo = this.keyInfoType;
+        if (keyInfo == null) {
+            keyInfo = encryptedDataType.getKeyInfo();
+        }
+
+        //retrieve the securityToken which must be used for decryption
+        if (keyInfo != null) {
+            EncryptedKeyType encryptedKeyType =
+                    XMLSecurityUtils.getQNameType(keyInfo.getContent(), XMLSecurityConstants.TAG_xenc_EncryptedKey);
+            if (encryptedKeyType != null) {
+                XMLEncryptedKeyInputHandler handler = new XMLEncryptedKeyInputHandler();
+                handler.handle(inputProcessorChain, encryptedKeyType, xmlSecStartElement, getSecurityProperties());
+                return inputProcessorChain.getSecurityContext()
+                        .getSecurityTokenProvider(encryptedKeyType.getId()).getSecurityToken();
+            }
+        }
+        return SecurityTokenFactory.getInstance().getSecurityToken(
+                keyInfo, SecurityTokenConstants.KeyUsage_Decryption,
+                getSecurityProperties(), inputProcessorChain.getSecurityContext());
+    }
+
+    private Cipher getCipher(String algorithmURI) throws XMLSecurityException {
+        String jceName = JCEAlgorithmMapper.translateURItoJCEID(algorithmURI);
+        String jceProvider = JCEAlgorithmMapper.getJCEProviderFromURI(algorithmURI);
+        if (jceName == null) {
+            throw new XMLSecurityException("algorithms.NoSuchMap", algorithmURI);
+        }
+        try {
+            if (jceProvider != null) {
+                return Cipher.getInstance(jceName, jceProvider);
+            }
+            return Cipher.getInstance(jceName);
+        } catch (NoSuchAlgorithmException e) {
+            throw new XMLSecurityException(e);
+        } catch (NoSuchPaddingException e) {
+            throw new XMLSecurityException(e);
+        } catch (NoSuchProviderException e) {
+            throw new XMLSecurityException(e);
+        }
+    }
+
+    /**
+     * Creates the start tag of the wrapper element, which declares all namespaces in scope of the
+     * EncryptedData element, so that the decrypted fragment can be parsed standalone.
+     */
+    private InputStream writeWrapperStartElement(XMLSecStartElement xmlSecStartElement) throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append('<').append(wrapperElementName.getPrefix()).append(':')
+                .append(wrapperElementName.getLocalPart()).append(" xmlns:")
+                .append(wrapperElementName.getPrefix()).append("=\"")
+                .append(wrapperElementName.getNamespaceURI()).append('"');
+
+        //apply all namespaces from current scope to get a valid documentfragment:
+        List<XMLSecNamespace> comparableNamespacesToApply = new ArrayList<XMLSecNamespace>();
+        xmlSecStartElement.getNamespacesFromCurrentScope(comparableNamespacesToApply);
+        Set<String> prefixes = new HashSet<String>();
+        for (int i = comparableNamespacesToApply.size() - 1; i >= 0; i--) {
+            XMLSecNamespace xmlSecNamespace = comparableNamespacesToApply.get(i);
+            String prefix = xmlSecNamespace.getPrefix();
+            if (prefix == null) {
+                prefix = "";
+            }
+            if (!prefixes.add(prefix)) {
+                continue;
+            }
+            if (prefix.length() == 0) {
+                stringBuilder.append(" xmlns=\"");
+            } else {
+                stringBuilder.append(" xmlns:").append(prefix).append("=\"");
+            }
+            stringBuilder.append(xmlSecNamespace.getNamespaceURI()).append('"');
+        }
+        stringBuilder.append('>');
+        return new UnsynchronizedByteArrayInputStream(stringBuilder.toString().getBytes("UTF-8"));
+    }
+
+    private void forwardToWrapperElement(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        do {
+            if (xmlStreamReader.getEventType() == XMLStreamConstants.START_ELEMENT
+                    && xmlStreamReader.getName().equals(wrapperElementName)) {
+                xmlStreamReader.next();
+                break;
+            }
+            xmlStreamReader.next();
+        } while (xmlStreamReader.hasNext());
+    }
+
     @Override
     protected InputStream applyTransforms(ReferenceType referenceType, InputStream inputStream) throws XMLSecurityException {
         if (referenceType != null) {
@@ -140,9 +496,14 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
             InboundSecurityToken inboundSecurityToken, EncryptedDataType encryptedDataType) throws XMLSecurityException {
 
         final DocumentContext documentContext = inputProcessorChain.getDocumentContext();
+        final WSInboundSecurityContext securityContext =
+                (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
         List<QName> elementPath = parentStartXMLEvent.getElementPath();
         if (elementPath.size() == 2 && WSSUtils.isInSOAPBody(elementPath)) {
             //soap:body content encryption counts as EncryptedPart
+            if (!securityContext.isSecurityEventRequired(WSSecurityEventConstants.EncryptedPart)) {
+                return;
+            }
             EncryptedPartSecurityEvent encryptedPartSecurityEvent =
                     new EncryptedPartSecurityEvent(inboundSecurityToken, true, documentContext.getProtectionOrder());
             encryptedPartSecurityEvent.setElementPath(elementPath);
@@ -150,6 +511,9 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
             encryptedPartSecurityEvent.setCorrelationID(encryptedDataType.getId());
             inputProcessorChain.getSecurityContext().registerSecurityEvent(encryptedPartSecurityEvent);
         } else {
+            if (!securityContext.isSecurityEventRequired(WSSecurityEventConstants.ContentEncrypted)) {
+                return;
+            }
             ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
                     new ContentEncryptedElementSecurityEvent(inboundSecurityToken, true, documentContext.getProtectionOrder());
             contentEncryptedElementSecurityEvent.setElementPath(elementPath);
@@ -164,6 +528,14 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
             boolean encryptedHeader, XMLSecStartElement xmlSecStartElement, EncryptedDataType encryptedDataType,
             InboundSecurityToken inboundSecurityToken, InboundSecurityContext inboundSecurityContext) throws XMLSecurityException {
 
+        checkEncryptionAlgorithm(encryptedDataType, inboundSecurityContext);
+        return new DecryptedEventReaderInputProcessor(getSecurityProperties(),
+                SecurePart.Modifier.getModifier(encryptedDataType.getType()),
+                encryptedHeader, xmlSecStartElement, encryptedDataType, this, inboundSecurityToken);
+    }
+
+    private void checkEncryptionAlgorithm(EncryptedDataType encryptedDataType,
+                                          InboundSecurityContext inboundSecurityContext) throws XMLSecurityException {
         // Check encryption algorithm against the required algorithm, if defined
         String encryptionAlgorithm = encryptedDataType.getEncryptionMethod().getAlgorithm();
         if (this.getSecurityProperties().getEncryptionSymAlgorithm() != null
@@ -181,10 +553,6 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
                 && !WSSConstants.NS_XENC11_AES256_GCM.equals(encryptionAlgorithm)) {
             ((WSInboundSecurityContext) inboundSecurityContext).handleBSPRule(BSPRule.R5620);
         }
-
-        return new DecryptedEventReaderInputProcessor(getSecurityProperties(),
-                SecurePart.Modifier.getModifier(encryptedDataType.getType()),
-                encryptedHeader, xmlSecStartElement, encryptedDataType, this, inboundSecurityToken);
     }
 
     @Override
@@ -195,6 +563,38 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
         inboundSecurityContext.registerSecurityEvent(tokenSecurityEvent);
     }
     
+    private void fireEncryptedElementSecurityEvent(
+            InputProcessorChain inputProcessorChain, XMLSecStartElement xmlSecStartElement,
+            InboundSecurityToken inboundSecurityToken, EncryptedDataType encryptedDataType) throws XMLSecurityException {
+
+        //fire a SecurityEvent:
+        final DocumentContext documentContext = inputProcessorChain.getDocumentContext();
+        final WSInboundSecurityContext securityContext =
+                (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
+        List<QName> elementPath = xmlSecStartElement.getElementPath();
+        if (elementPath.size() == 3 && WSSUtils.isInSOAPHeader(elementPath)) {
+            if (!securityContext.isSecurityEventRequired(WSSecurityEventConstants.EncryptedPart)) {
+                return;
+            }
+            EncryptedPartSecurityEvent encryptedPartSecurityEvent =
+                    new EncryptedPartSecurityEvent(inboundSecurityToken, true, documentContext.getProtectionOrder());
+            encryptedPartSecurityEvent.setElementPath(elementPath);
+            encryptedPartSecurityEvent.setXmlSecEvent(xmlSecStartElement);
+            encryptedPartSecurityEvent.setCorrelationID(encryptedDataType.getId());
+            inputProcessorChain.getSecurityContext().registerSecurityEvent(encryptedPartSecurityEvent);
+        } else {
+            if (!securityContext.isSecurityEventRequired(WSSecurityEventConstants.EncryptedElement)) {
+                return;
+            }
+            EncryptedElementSecurityEvent encryptedElementSecurityEvent =
+                    new EncryptedElementSecurityEvent(inboundSecurityToken, true, documentContext.getProtectionOrder());
+            encryptedElementSecurityEvent.setElementPath(elementPath);
+            encryptedElementSecurityEvent.setXmlSecEvent(xmlSecStartElement);
+            encryptedElementSecurityEvent.setCorrelationID(encryptedDataType.getId());
+            inputProcessorChain.getSecurityContext().registerSecurityEvent(encryptedElementSecurityEvent);
+        }
+    }
+
     /*
    <xenc:EncryptedData xmlns:xenc="http://www.w3.org/2001/04/xmlenc#" Id="EncDataId-1612925417" Type="http://www.w3.org/2001/04/xmlenc#Content">
        <xenc:EncryptionMethod xmlns:xenc="http://www.w3.org/2001/04/xmlenc#" Algorithm="http://www.w3.org/2001/04/xmlenc#aes256-cbc" />
@@ -232,25 +632,116 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
         protected void handleEncryptedElement(
                 InputProcessorChain inputProcessorChain, XMLSecStartElement xmlSecStartElement,
                 InboundSecurityToken inboundSecurityToken, EncryptedDataType encryptedDataType) throws XMLSecurityException {
+            fireEncryptedElementSecurityEvent(inputProcessorChain, xmlSecStartElement, inboundSecurityToken, encryptedDataType);
+        }
+    }
 
-            //fire a SecurityEvent:
-            final DocumentContext documentContext = inputProcessorChain.getDocumentContext();
-            List<QName> elementPath = xmlSecStartElement.getElementPath();
-            if (elementPath.size() == 3 && WSSUtils.isInSOAPHeader(elementPath)) {
-                EncryptedPartSecurityEvent encryptedPartSecurityEvent =
-                        new EncryptedPartSecurityEvent(inboundSecurityToken, true, documentContext.getProtectionOrder());
-                encryptedPartSecurityEvent.setElementPath(elementPath);
-                encryptedPartSecurityEvent.setXmlSecEvent(xmlSecStartElement);
-                encryptedPartSecurityEvent.setCorrelationID(encryptedDataType.getId());
-                inputProcessorChain.getSecurityContext().registerSecurityEvent(encryptedPartSecurityEvent);
-            } else {
-                EncryptedElementSecurityEvent encryptedElementSecurityEvent =
-                        new EncryptedElementSecurityEvent(inboundSecurityToken, true, documentContext.getProtectionOrder());
-                encryptedElementSecurityEvent.setElementPath(elementPath);
-                encryptedElementSecurityEvent.setXmlSecEvent(xmlSecStartElement);
-                encryptedElementSecurityEvent.setCorrelationID(encryptedDataType.getId());
-                inputProcessorChain.getSecurityContext().registerSecurityEvent(encryptedElementSecurityEvent);
+    /**
+     * The InlineDecryptedEventReaderInputProcessor reads the plain text of a DecryptionInputStream
+     * with a StAX reader and forwards the generated XMLEvents. Unlike the
+     * DecryptedEventReaderInputProcessor it doesn't depend on a decryption thread.
+     */
+    class InlineDecryptedEventReaderInputProcessor extends AbstractInputProcessor {
+
+        private final boolean encryptedHeader;
+        private final InboundSecurityToken inboundSecurityToken;
+        private final EncryptedDataType encryptedDataType;
+        private XMLStreamReader xmlStreamReader;
+        private XMLSecStartElement parentXmlSecStartElement;
+        private boolean rootElementProcessed;
+        private int currentXMLStructureDepth;
+
+        InlineDecryptedEventReaderInputProcessor(
+                XMLSecurityProperties securityProperties, SecurePart.Modifier encryptionModifier,
+                boolean encryptedHeader, XMLSecStartElement xmlSecStartElement,
+                EncryptedDataType encryptedDataType,
+                DecryptInputProcessor decryptInputProcessor,
+                InboundSecurityToken inboundSecurityToken
+        ) {
+            super(securityProperties);
+            addAfterProcessor(decryptInputProcessor);
+            this.rootElementProcessed = encryptionModifier == SecurePart.Modifier.Content;
+            this.encryptedHeader = encryptedHeader;
+            this.inboundSecurityToken = inboundSecurityToken;
+            this.parentXmlSecStartElement = xmlSecStartElement;
+            this.encryptedDataType = encryptedDataType;
+            if (xmlSecStartElement != null) {
+                this.currentXMLStructureDepth = xmlSecStartElement.getDocumentLevel();
+            }
+        }
+
+        void setXmlStreamReader(XMLStreamReader xmlStreamReader) {
+            this.xmlStreamReader = xmlStreamReader;
+        }
+
+        @Override
+        public XMLSecEvent processNextHeaderEvent(InputProcessorChain inputProcessorChain)
+                throws XMLStreamException, XMLSecurityException {
+            return processEvent(inputProcessorChain, true);
+        }
+
+        @Override
+        public XMLSecEvent processNextEvent(InputProcessorChain inputProcessorChain)
+                throws XMLStreamException, XMLSecurityException {
+            return processEvent(inputProcessorChain, false);
+        }
+
+        private XMLSecEvent processEvent(InputProcessorChain inputProcessorChain, boolean header)
+                throws XMLStreamException, XMLSecurityException {
+
+            XMLSecEvent xmlSecEvent = XMLSecEventFactory.allocate(xmlStreamReader, parentXmlSecStartElement);
+            switch (xmlSecEvent.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    currentXMLStructureDepth++;
+                    if (currentXMLStructureDepth > maximumAllowedXMLStructureDepth) {
+                        throw new XMLSecurityException("secureProcessing.MaximumAllowedXMLStructureDepth",
+                                maximumAllowedXMLStructureDepth);
+                    }
+                    parentXmlSecStartElement = xmlSecEvent.asStartElement();
+                    if (!rootElementProcessed) {
+                        fireEncryptedElementSecurityEvent(inputProcessorChain, parentXmlSecStartElement,
+                                inboundSecurityToken, encryptedDataType);
+                        rootElementProcessed = true;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    currentXMLStructureDepth--;
+                    if (parentXmlSecStartElement != null) {
+                        parentXmlSecStartElement = parentXmlSecStartElement.getParentXMLSecStartElement();
+                    }
+                    if (xmlSecEvent.asEndElement().getName().equals(wrapperElementName)) {
+                        //correct depth:
+                        InputProcessorChain subInputProcessorChain = inputProcessorChain.createSubChain(this);
+                        QName endElement = encryptedHeader
+                                ? WSSConstants.TAG_wsse11_EncryptedHeader : XMLSecurityConstants.TAG_xenc_EncryptedData;
+                        XMLSecEvent endEvent;
+                        //read the remaining events of the EncryptedData structure
+                        do {
+                            subInputProcessorChain.reset();
+                            if (header) {
+                                endEvent = subInputProcessorChain.processHeaderEvent();
+                            } else {
+                                endEvent = subInputProcessorChain.processEvent();
+                            }
+                        }
+                        while (!(endEvent.getEventType() == XMLStreamConstants.END_ELEMENT
+                                && endEvent.asEndElement().getName().equals(endElement)));
+
+                        inputProcessorChain.getDocumentContext().unsetIsInEncryptedContent(this);
+
+                        //... and get the next event of the document
+                        if (header) {
+                            xmlSecEvent = inputProcessorChain.processHeaderEvent();
+                        } else {
+                            xmlSecEvent = inputProcessorChain.processEvent();
+                        }
+                        //the decrypted content is done, remove us from the chain
+                        inputProcessorChain.removeProcessor(this);
+                    }
+                    break;
             }
+            xmlStreamReader.next();
+            return xmlSecEvent;
         }
     }
 }
@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.processor.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.security.Key;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.IllegalBlockSizeException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.InputProcessorChain;
+import org.apache.xml.security.stax.ext.XMLSecurityUtils;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.impl.util.FullyBufferedOutputStream;
+import org.apache.xml.security.stax.impl.util.IVSplittingOutputStream;
+import org.apache.xml.security.stax.impl.util.ReplaceableOuputStream;
+
+/**
+ * An InputStream which decrypts the CipherValue of an EncryptedData structure on demand. Each
+ * time the buffered plain text is exhausted, the next XMLEvent is pulled from the
+ * InputProcessorChain and its base64 encoded cipher text is decrypted into a reusable byte
+ * buffer. The decryption therefore runs on the thread which consumes the decrypted XML.
+ */
+class DecryptionInputStream extends InputStream {
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final InputProcessorChain inputProcessorChain;
+    private final boolean header;
+    private final PlainTextBuffer plainTextBuffer = new PlainTextBuffer();
+    private final OutputStreamWriter outputStreamWriter;
+    private int position;
+    private boolean finished;
+
+    DecryptionInputStream(InputProcessorChain inputProcessorChain, boolean header,
+                          Cipher symmetricCipher, Key secretKey, int ivLength) throws XMLSecurityException {
+        this.inputProcessorChain = inputProcessorChain;
+        this.header = header;
+
+        //authenticated ciphers must not release any plain text before the tag is verified
+        final OutputStream plainTextOutputStream;
+        if (symmetricCipher.getAlgorithm().toUpperCase().contains("GCM")) {
+            plainTextOutputStream = new FullyBufferedOutputStream(plainTextBuffer);
+        } else {
+            plainTextOutputStream = plainTextBuffer;
+        }
+
+        final Cipher cipher = symmetricCipher;
+        CipherOutputStream cipherOutputStream = new CipherOutputStream(plainTextOutputStream, cipher) {
+            @Override
+            public void close() throws IOException {
+                //we overwrite the close method and throw an IOException if the
+                //cipher fails, CipherOutputStream swallows such exceptions
+                super.flush();
+                try {
+                    plainTextOutputStream.write(cipher.doFinal());
+                } catch (IllegalBlockSizeException e) {
+                    throw new IOException(e);
+                } catch (BadPaddingException e) {
+                    throw new IOException(e);
+                }
+                plainTextOutputStream.close();
+            }
+        };
+
+        try {
+            IVSplittingOutputStream ivSplittingOutputStream =
+                    new IVSplittingOutputStream(cipherOutputStream, cipher, secretKey, ivLength);
+            ReplaceableOuputStream replaceableOuputStream = new ReplaceableOuputStream(ivSplittingOutputStream);
+            ivSplittingOutputStream.setParentOutputStream(replaceableOuputStream);
+            this.outputStreamWriter = new OutputStreamWriter(
+                    new Base64OutputStream(replaceableOuputStream, false),
+                    inputProcessorChain.getDocumentContext().getEncoding());
+        } catch (IOException e) {
+            throw new XMLSecurityException(e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return plainTextBuffer.buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int length = Math.min(len, plainTextBuffer.count - position);
+        System.arraycopy(plainTextBuffer.buffer, position, b, off, length);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return plainTextBuffer.count - position;
+    }
+
+    /**
+     * Decrypts further cipher text until plain text is available or the CipherValue ends.
+     *
+     * @return false if all plain text has been consumed
+     */
+    private boolean fill() throws IOException {
+        while (position == plainTextBuffer.count) {
+            if (finished) {
+                return false;
+            }
+            //the previous content has been consumed completely, so the buffer can be reused
+            position = 0;
+            plainTextBuffer.count = 0;
+            decryptNextEvent();
+        }
+        return true;
+    }
+
+    private void decryptNextEvent() throws IOException {
+        XMLSecEvent xmlSecEvent;
+        try {
+            inputProcessorChain.reset();
+            if (header) {
+                xmlSecEvent = inputProcessorChain.processHeaderEvent();
+            } else {
+                xmlSecEvent = inputProcessorChain.processEvent();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } catch (XMLSecurityException e) {
+            throw new IOException(e);
+        }
+
+        switch (xmlSecEvent.getEventType()) {
+            case XMLStreamConstants.END_ELEMENT:
+                //this must be the CipherValue EndElement
+                finished = true;
+                outputStreamWriter.close();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+                outputStreamWriter.write(xmlSecEvent.asCharacters().getText());
+                outputStreamWriter.flush();
+                break;
+            default:
+                throw new IOException(new XMLSecurityException(
+                        "stax.unexpectedXMLEvent", XMLSecurityUtils.getXMLEventAsString(xmlSecEvent)));
+        }
+    }
+
+    /**
+     * Collects the decrypted bytes. The backing array only grows when a single chunk of cipher
+     * text yields more plain text than it can hold.
+     */
+    private static class PlainTextBuffer extends OutputStream {
+
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(count + 1);
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buffer.length) {
+                byte[] newBuffer = new byte[Math.max(buffer.length << 1, capacity)];
+                System.arraycopy(buffer, 0, newBuffer, 0, count);
+                buffer = newBuffer;
+            }
+        }
+    }
+}
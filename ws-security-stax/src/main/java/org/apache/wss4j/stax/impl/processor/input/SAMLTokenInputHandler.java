@@ -258,6 +258,9 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
             SAMLTokenVerifierInputProcessor samlTokenVerifierInputProcessor =
                     new SAMLTokenVerifierInputProcessor(
                             securityProperties, samlAssertionWrapper, subjectSecurityTokenProvider, subjectSecurityToken);
+            //the verifier needs the SignedElement SecurityEvents including the token usage analysis
+            wsInboundSecurityContext.requireSecurityEvents(
+                    WSSecurityEventConstants.SignedElement, WSSecurityEventConstants.SamlToken);
             wsInboundSecurityContext.addSecurityEventListener(samlTokenVerifierInputProcessor);
             inputProcessorChain.addProcessor(samlTokenVerifierInputProcessor);
         }
@@ -27,6 +27,8 @@ import javax.xml.stream.XMLStreamException;
 
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityPhase;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -70,6 +72,20 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
     public XMLSecEvent processNextEvent(InputProcessorChain inputProcessorChain)
             throws XMLStreamException, XMLSecurityException {
 
+        SecurityMetricsListener metrics =
+                ((WSSSecurityProperties) getSecurityProperties()).getMetricsListener();
+        metrics.phaseStarted(SecurityPhase.SECURITY_HEADER);
+        try {
+            return processSecurityHeader(inputProcessorChain, metrics);
+        } finally {
+            metrics.phaseFinished(SecurityPhase.SECURITY_HEADER);
+        }
+    }
+
+    private XMLSecEvent processSecurityHeader(InputProcessorChain inputProcessorChain,
+                                              SecurityMetricsListener metrics)
+            throws XMLStreamException, XMLSecurityException {
+
         //buffer all events until the end of the security header
         final InputProcessorChain subInputProcessorChain = inputProcessorChain.createSubChain(this);
         final InternalSecurityHeaderBufferProcessor internalSecurityHeaderBufferProcessor
@@ -135,8 +151,22 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
                             ((WSSSecurityProperties) getSecurityProperties()).getActor())) {
                         //we are in the security header and the depth is +1, so every child
                         //element should have a responsible handler:
-                        engageSecurityHeaderHandler(subInputProcessorChain, getSecurityProperties(),
-                                xmlSecEventList, startIndexForProcessor, xmlSecEndElement.getName());
+                        QName elementName = xmlSecEndElement.getName();
+                        SecurityPhase tokenPhase = getTokenPhase(elementName);
+                        metrics.tokenProcessed(elementName);
+                        metrics.phaseStarted(SecurityPhase.TOKEN_PROCESSING);
+                        if (tokenPhase != null) {
+                            metrics.phaseStarted(tokenPhase);
+                        }
+                        try {
+                            engageSecurityHeaderHandler(subInputProcessorChain, getSecurityProperties(),
+                                    xmlSecEventList, startIndexForProcessor, elementName);
+                        } finally {
+                            if (tokenPhase != null) {
+                                metrics.phaseFinished(tokenPhase);
+                            }
+                            metrics.phaseFinished(SecurityPhase.TOKEN_PROCESSING);
+                        }
                         
                         // Check for multiple timestamps
                         if (xmlSecEndElement.getName().equals(WSSConstants.TAG_wsu_Timestamp)) {
@@ -160,6 +190,28 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
         throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, "missingSecurityHeader");
     }
 
+    /**
+     * The phase to report for the handling of the given security header child element, in
+     * addition to TOKEN_PROCESSING, or null if there is none. Note that the streaming engine verifies signed and
+     * decrypts encrypted content while the message body is read, i.e. after the handler
+     * returns.
+     */
+    private static SecurityPhase getTokenPhase(QName elementName) {
+        if (WSSConstants.TAG_dsig_Signature.equals(elementName)) {
+            return SecurityPhase.SIGNATURE_VERIFICATION;
+        } else if (WSSConstants.TAG_xenc_EncryptedKey.equals(elementName)) {
+            return SecurityPhase.KEY_TRANSPORT;
+        } else if (WSSConstants.TAG_wsse_UsernameToken.equals(elementName)) {
+            return SecurityPhase.USERNAME_TOKEN_VALIDATION;
+        } else if (WSSConstants.TAG_wsu_Timestamp.equals(elementName)) {
+            return SecurityPhase.TIMESTAMP_VALIDATION;
+        } else if (WSSConstants.TAG_saml2_Assertion.equals(elementName)
+                || WSSConstants.TAG_saml_Assertion.equals(elementName)) {
+            return SecurityPhase.SAML_VALIDATION;
+        }
+        return null;
+    }
+
     @SuppressWarnings("unchecked")
     private void engageSecurityHeaderHandler(InputProcessorChain inputProcessorChain,
                                              XMLSecurityProperties securityProperties,
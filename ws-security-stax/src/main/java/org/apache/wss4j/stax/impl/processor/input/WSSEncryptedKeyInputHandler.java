@@ -18,20 +18,41 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.spec.MGF1ParameterSpec;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.ReferenceType;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.SessionKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
+import org.apache.xml.security.binding.xmldsig.DigestMethodType;
 import org.apache.xml.security.binding.xmldsig.KeyInfoType;
 import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
 import org.apache.xml.security.binding.xmlenc.EncryptionMethodType;
+import org.apache.xml.security.binding.xmlenc11.MGFType;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.config.JCEAlgorithmMapper;
+import org.apache.xml.security.stax.ext.InboundSecurityContext;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
+import org.apache.xml.security.stax.ext.XMLSecurityUtils;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.processor.input.XMLEncryptedKeyInputHandler;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 
@@ -61,6 +82,137 @@ public class WSSEncryptedKeyInputHandler extends XMLEncryptedKeyInputHandler {
         }
         
         super.handle(inputProcessorChain, encryptedKeyType, responsibleXMLSecStartXMLEvent, securityProperties);
+        
+        SessionKeyCache sessionKeyCache = ((WSSSecurityProperties) securityProperties).getSessionKeyCache();
+        if (sessionKeyCache != null && encryptedKeyType.getId() != null) {
+            InboundSecurityContext securityContext = inputProcessorChain.getSecurityContext();
+            SecurityTokenProvider<? extends InboundSecurityToken> securityTokenProvider =
+                    securityContext.getSecurityTokenProvider(encryptedKeyType.getId());
+            if (securityTokenProvider != null) {
+                securityContext.addSecurityEventListener(
+                        new SessionKeyCacheListener(securityTokenProvider.getSecurityToken(),
+                                encryptedKeyType, sessionKeyCache));
+            }
+        }
+    }
+
+    /**
+     * The session key of an EncryptedKey is only unwrapped on first use. This listener stores it
+     * in the SessionKeyCache once it is available, so that subsequent messages can refer to it
+     * via an EncryptedKeySHA1 KeyIdentifier.
+     * 
+     * If unwrapping fails, the security token holds a random key instead (to mitigate timing 
+     * attacks), which must never be stored. As the token doesn't tell whether this happened, 
+     * the key is unwrapped once more here, and only stored if this succeeds and yields the same
+     * key.
+     */
+    private static class SessionKeyCacheListener implements SecurityEventListener {
+
+        private final InboundSecurityToken securityToken;
+        private final EncryptedKeyType encryptedKeyType;
+        private final SessionKeyCache sessionKeyCache;
+        private boolean done;
+
+        SessionKeyCacheListener(InboundSecurityToken securityToken, EncryptedKeyType encryptedKeyType,
+                                SessionKeyCache sessionKeyCache) {
+            this.securityToken = securityToken;
+            this.encryptedKeyType = encryptedKeyType;
+            this.sessionKeyCache = sessionKeyCache;
+        }
+
+        @Override
+        public void registerSecurityEvent(SecurityEvent securityEvent) throws XMLSecurityException {
+            if (done) {
+                return;
+            }
+            Map<String, Key> secretKeys = securityToken.getSecretKey();
+            if (secretKeys == null || secretKeys.isEmpty() || securityToken.getSha1Identifier() == null) {
+                return;
+            }
+            // Set first, as the unwrapping below registers further SecurityEvents
+            done = true;
+            Key key = secretKeys.values().iterator().next();
+            byte[] unwrappedKey = unwrapSessionKey(securityToken, encryptedKeyType);
+            if (unwrappedKey != null && MessageDigest.isEqual(unwrappedKey, key.getEncoded())) {
+                sessionKeyCache.addSessionKey(securityToken.getSha1Identifier(), unwrappedKey);
+            } else {
+                log.debug("The session key of EncryptedKey {} is not cached, as it could not be unwrapped",
+                        encryptedKeyType.getId());
+            }
+        }
+    }
+
+    /**
+     * Unwrap the session key of the given EncryptedKey with the key of its key wrapping token.
+     * @return the session key, or null if it can't be unwrapped
+     */
+    private static byte[] unwrapSessionKey(InboundSecurityToken securityToken, EncryptedKeyType encryptedKeyType) {
+        try {
+            SecurityToken keyWrappingToken = securityToken.getKeyWrappingToken();
+            EncryptionMethodType encryptionMethodType = encryptedKeyType.getEncryptionMethod();
+            if (!(keyWrappingToken instanceof InboundSecurityToken) || encryptionMethodType == null
+                    || encryptedKeyType.getCipherData() == null
+                    || encryptedKeyType.getCipherData().getCipherValue() == null) {
+                return null;
+            }
+            InboundSecurityToken wrappingSecurityToken = (InboundSecurityToken) keyWrappingToken;
+            String algorithmURI = encryptionMethodType.getAlgorithm();
+            String jceName = JCEAlgorithmMapper.translateURItoJCEID(algorithmURI);
+            if (jceName == null) {
+                return null;
+            }
+            String jceProvider = JCEAlgorithmMapper.getJCEProviderFromURI(algorithmURI);
+            Cipher cipher;
+            if (jceProvider == null) {
+                cipher = Cipher.getInstance(jceName);
+            } else {
+                cipher = Cipher.getInstance(jceName, jceProvider);
+            }
+
+            XMLSecurityConstants.AlgorithmUsage algorithmUsage = XMLSecurityConstants.Sym_Key_Wrap;
+            if (wrappingSecurityToken.isAsymmetric()) {
+                algorithmUsage = XMLSecurityConstants.Asym_Key_Wrap;
+            }
+            Key wrappingKey =
+                    wrappingSecurityToken.getSecretKey(algorithmURI, algorithmUsage, encryptedKeyType.getId());
+            if (wrappingKey == null) {
+                return null;
+            }
+
+            if (XMLSecurityConstants.NS_XENC11_RSAOAEP.equals(algorithmURI)
+                    || XMLSecurityConstants.NS_XENC_RSAOAEPMGF1P.equals(algorithmURI)) {
+                String jceDigestAlgorithm = "SHA-1";
+                DigestMethodType digestMethodType = XMLSecurityUtils.getQNameType(
+                        encryptionMethodType.getContent(), XMLSecurityConstants.TAG_dsig_DigestMethod);
+                if (digestMethodType != null) {
+                    jceDigestAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(digestMethodType.getAlgorithm());
+                }
+                PSource.PSpecified pSource = PSource.PSpecified.DEFAULT;
+                byte[] oaepParams = XMLSecurityUtils.getQNameType(
+                        encryptionMethodType.getContent(), XMLSecurityConstants.TAG_xenc_OAEPparams);
+                if (oaepParams != null) {
+                    pSource = new PSource.PSpecified(oaepParams);
+                }
+                MGF1ParameterSpec mgfParameterSpec = new MGF1ParameterSpec("SHA-1");
+                MGFType mgfType = XMLSecurityUtils.getQNameType(
+                        encryptionMethodType.getContent(), XMLSecurityConstants.TAG_xenc11_MGF);
+                if (mgfType != null) {
+                    mgfParameterSpec =
+                            new MGF1ParameterSpec(JCEAlgorithmMapper.translateURItoJCEID(mgfType.getAlgorithm()));
+                }
+                cipher.init(Cipher.UNWRAP_MODE, wrappingKey,
+                        new OAEPParameterSpec(jceDigestAlgorithm, "MGF1", mgfParameterSpec, pSource));
+            } else {
+                cipher.init(Cipher.UNWRAP_MODE, wrappingKey);
+            }
+
+            // The key algorithm is irrelevant, as only the encoded key is used
+            return cipher.unwrap(
+                    encryptedKeyType.getCipherData().getCipherValue(), "AES", Cipher.SECRET_KEY).getEncoded();
+        } catch (Exception e) {
+            log.debug("Unwrapping of the encrypted key failed: {}", e.getMessage());
+            return null;
+        }
     }
 
     //if this EncryptedKey structure contains a reference list, instantiate a new DecryptInputProcessor
@@ -20,11 +20,15 @@ package org.apache.wss4j.stax.impl.processor.input;
 
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.SignatureVerificationCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.ext.WSSUtils;
+import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.validate.SignatureTokenValidator;
 import org.apache.wss4j.stax.validate.SignatureTokenValidatorImpl;
@@ -35,7 +39,12 @@ import org.apache.xml.security.binding.xmldsig.ObjectType;
 import org.apache.xml.security.binding.xmldsig.SignatureType;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.ext.*;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.impl.algorithms.SignatureAlgorithm;
+import org.apache.xml.security.stax.impl.algorithms.SignatureAlgorithmFactory;
 import org.apache.xml.security.stax.impl.processor.input.AbstractSignatureInputHandler;
+import org.apache.xml.security.stax.impl.util.SignerOutputStream;
+import org.apache.xml.security.stax.impl.util.UnsynchronizedBufferedOutputStream;
 import org.apache.xml.security.stax.securityEvent.AlgorithmSuiteSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SignatureValueSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.TokenSecurityEvent;
@@ -43,10 +52,20 @@ import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
 import org.apache.xml.security.stax.securityToken.SecurityToken;
 import org.apache.xml.security.stax.securityToken.SecurityTokenFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PublicKey;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+
 public class WSSSignatureInputHandler extends AbstractSignatureInputHandler {
     
     private static final transient org.slf4j.Logger log =
@@ -73,10 +92,12 @@ public class WSSSignatureInputHandler extends AbstractSignatureInputHandler {
 
         final WSInboundSecurityContext securityContext = (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
 
-        SignatureValueSecurityEvent signatureValueSecurityEvent = new SignatureValueSecurityEvent();
-        signatureValueSecurityEvent.setSignatureValue(signatureType.getSignatureValue().getValue());
-        signatureValueSecurityEvent.setCorrelationID(signatureType.getId());
-        securityContext.registerSecurityEvent(signatureValueSecurityEvent);
+        if (securityContext.isSecurityEventRequired(WSSecurityEventConstants.SignatureValue)) {
+            SignatureValueSecurityEvent signatureValueSecurityEvent = new SignatureValueSecurityEvent();
+            signatureValueSecurityEvent.setSignatureValue(signatureType.getSignatureValue().getValue());
+            signatureValueSecurityEvent.setCorrelationID(signatureType.getId());
+            securityContext.registerSecurityEvent(signatureValueSecurityEvent);
+        }
 
         AlgorithmSuiteSecurityEvent algorithmSuiteSecurityEvent = new AlgorithmSuiteSecurityEvent();
         algorithmSuiteSecurityEvent.setAlgorithmURI(signatureType.getSignedInfo().getCanonicalizationMethod().getAlgorithm());
@@ -84,6 +105,11 @@ public class WSSSignatureInputHandler extends AbstractSignatureInputHandler {
         algorithmSuiteSecurityEvent.setCorrelationID(signatureType.getId());
         securityContext.registerSecurityEvent(algorithmSuiteSecurityEvent);
 
+        WSSSecurityProperties wssSecurityProperties = (WSSSecurityProperties) securityProperties;
+        if (wssSecurityProperties.getSignatureVerificationCache() != null) {
+            return new CachingSignatureVerifier(
+                    signatureType, inputProcessorChain.getSecurityContext(), wssSecurityProperties);
+        }
         return new WSSSignatureVerifier(signatureType, inputProcessorChain.getSecurityContext(), securityProperties);
     }
 
@@ -175,4 +201,156 @@ public class WSSSignatureInputHandler extends AbstractSignatureInputHandler {
             return inboundSecurityToken;
         }
     }
+
+    /**
+     * A SignatureVerifier which is only used when a SignatureVerificationCache is configured. The
+     * SignerOutputStream and the canonicalizer of the super class are private, so this verifier
+     * sets up its own ones. Only then doFinal can close them without verifying the SignatureValue
+     * on a cache hit.
+     */
+    public class CachingSignatureVerifier extends WSSSignatureVerifier {
+
+        private final SignatureType signatureType;
+        private final SignatureVerificationCache verificationCache;
+        private final SecurityMetricsListener metricsListener;
+        private final Key verifyKey;
+        private final SignerOutputStream signerOutputStream;
+        private final SignedInfoOutputStream signedInfoOutputStream;
+        private final Transformer transformer;
+        private final ByteArrayOutputStream canonicalizedSignedInfo;
+
+        public CachingSignatureVerifier(SignatureType signatureType, InboundSecurityContext inboundSecurityContext,
+                                        WSSSecurityProperties securityProperties) throws XMLSecurityException {
+            super(signatureType, inboundSecurityContext, securityProperties);
+            this.signatureType = signatureType;
+
+            String algorithmURI = signatureType.getSignedInfo().getSignatureMethod().getAlgorithm();
+            InboundSecurityToken inboundSecurityToken = getInboundSecurityToken();
+            if (inboundSecurityToken.isAsymmetric()) {
+                verifyKey = inboundSecurityToken.getPublicKey(
+                        algorithmURI, XMLSecurityConstants.Asym_Sig, signatureType.getId());
+            } else {
+                Key secretKey = inboundSecurityToken.getSecretKey(
+                        algorithmURI, XMLSecurityConstants.Sym_Sig, signatureType.getId());
+                verifyKey = XMLSecurityUtils.prepareSecretKey(algorithmURI, secretKey.getEncoded());
+            }
+
+            try {
+                SignatureAlgorithm signatureAlgorithm =
+                        SignatureAlgorithmFactory.getInstance().getSignatureAlgorithm(algorithmURI);
+                signatureAlgorithm.engineInitVerify(verifyKey);
+                signerOutputStream = new SignerOutputStream(signatureAlgorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new XMLSecurityException(e);
+            } catch (NoSuchProviderException e) {
+                throw new XMLSecurityException(e);
+            }
+            signedInfoOutputStream =
+                    new SignedInfoOutputStream(new UnsynchronizedBufferedOutputStream(signerOutputStream));
+
+            //only asymmetric keys are cached, HMAC verification is cheap
+            if (verifyKey instanceof PublicKey) {
+                verificationCache = securityProperties.getSignatureVerificationCache();
+                metricsListener = securityProperties.getMetricsListener();
+                //keep a copy of the canonicalized SignedInfo as the key of the cache
+                canonicalizedSignedInfo = new ByteArrayOutputStream();
+                signedInfoOutputStream.setCopy(canonicalizedSignedInfo);
+            } else {
+                verificationCache = null;
+                metricsListener = null;
+                canonicalizedSignedInfo = null;
+            }
+
+            CanonicalizationMethodType canonicalizationMethodType =
+                    signatureType.getSignedInfo().getCanonicalizationMethod();
+            InclusiveNamespaces inclusiveNamespacesType = XMLSecurityUtils.getQNameType(
+                    canonicalizationMethodType.getContent(), XMLSecurityConstants.TAG_c14nExcl_InclusiveNamespaces);
+            List<String> inclusiveNamespaces = null;
+            if (inclusiveNamespacesType != null) {
+                inclusiveNamespaces = inclusiveNamespacesType.getPrefixList();
+            }
+            transformer = XMLSecurityUtils.getTransformer(
+                    inclusiveNamespaces, signedInfoOutputStream,
+                    canonicalizationMethodType.getAlgorithm(), XMLSecurityConstants.DIRECTION.IN);
+        }
+
+        @Override
+        protected void createSignatureAlgorithm(InboundSecurityToken inboundSecurityToken, SignatureType signatureType)
+                throws XMLSecurityException {
+            //the verification of the SignatureValue is set up by the constructor of this class
+        }
+
+        @Override
+        protected void processEvent(XMLSecEvent xmlSecEvent) throws XMLStreamException {
+            transformer.transform(xmlSecEvent);
+        }
+
+        /**
+         * Skip the verification of the SignatureValue if exactly the same SignedInfo and
+         * SignatureValue were successfully verified with the same key before. The References
+         * are verified by the WSSSignatureReferenceVerifyInputProcessor in any case.
+         */
+        @Override
+        protected void doFinal() throws XMLSecurityException {
+            try {
+                transformer.doFinal();
+                signedInfoOutputStream.close();
+            } catch (IOException e) {
+                throw new XMLSecurityException(e);
+            } catch (XMLStreamException e) {
+                throw new XMLSecurityException(e);
+            }
+            byte[] signatureValue = signatureType.getSignatureValue().getValue();
+
+            byte[] signedInfo = null;
+            if (verificationCache != null) {
+                signedInfo = canonicalizedSignedInfo.toByteArray();
+                boolean verified = verificationCache.isVerified(signedInfo, signatureValue, (PublicKey) verifyKey);
+                metricsListener.cacheAccessed(CacheType.SIGNATURE_VERIFICATION, verified);
+                if (verified) {
+                    log.debug("The SignatureValue was verified before, only the References are verified");
+                    return;
+                }
+            }
+            if (!signerOutputStream.verify(signatureValue)) {
+                throw new XMLSecurityException("errorMessages.InvalidSignatureValueException");
+            }
+            if (verificationCache != null) {
+                verificationCache.addVerified(signedInfo, signatureValue, (PublicKey) verifyKey);
+            }
+        }
+    }
+
+    /**
+     * Passes the canonicalized SignedInfo on to the SignerOutputStream, and optionally to a
+     * copy which is used as the key of the SignatureVerificationCache.
+     */
+    private static final class SignedInfoOutputStream extends FilterOutputStream {
+
+        private OutputStream copy;
+
+        SignedInfoOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        void setCopy(OutputStream copy) {
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+            }
+        }
+    }
 }
@@ -22,6 +22,7 @@ import org.apache.wss4j.binding.wss10.TransformationParametersType;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
 import org.apache.wss4j.stax.securityToken.SecurityTokenReference;
 import org.apache.xml.security.binding.excc14n.InclusiveNamespaces;
 import org.apache.xml.security.binding.xmldsig.CanonicalizationMethodType;
@@ -38,6 +39,7 @@ import org.apache.xml.security.stax.securityEvent.SignedElementSecurityEvent;
 import org.apache.wss4j.stax.ext.*;
 import org.apache.wss4j.stax.securityEvent.SignedPartSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.TimestampSecurityEvent;
+import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
 import org.apache.xml.security.stax.securityToken.SecurityToken;
 import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
@@ -140,7 +142,12 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
             throws XMLSecurityException {
         //fire a SecurityEvent:
         final DocumentContext documentContext = inputProcessorChain.getDocumentContext();
+        final WSInboundSecurityContext securityContext =
+                (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
         if (elementPath.size() == 3 && WSSUtils.isInSOAPHeader(elementPath)) {
+            if (!securityContext.isSecurityEventRequired(WSSecurityEventConstants.SignedPart)) {
+                return;
+            }
             SignedPartSecurityEvent signedPartSecurityEvent =
                     new SignedPartSecurityEvent(getInboundSecurityToken(), true, documentContext.getProtectionOrder());
             signedPartSecurityEvent.setElementPath(elementPath);
@@ -148,6 +155,9 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
             signedPartSecurityEvent.setCorrelationID(referenceType.getId());
             inputProcessorChain.getSecurityContext().registerSecurityEvent(signedPartSecurityEvent);
         } else {
+            if (!securityContext.isSecurityEventRequired(WSSecurityEventConstants.SignedElement)) {
+                return;
+            }
             SignedElementSecurityEvent signedElementSecurityEvent =
                     new SignedElementSecurityEvent(getInboundSecurityToken(), true, documentContext.getProtectionOrder());
             signedElementSecurityEvent.setElementPath(elementPath);
@@ -174,7 +184,10 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
             final String cacheKey = String.valueOf(
                     timestampSecurityEvent.getCreated().getTimeInMillis()) +
                     "" + Arrays.hashCode(getSignatureType().getSignatureValue().getValue());
-            if (replayCache.contains(cacheKey)) {
+            boolean replayed = replayCache.contains(cacheKey);
+            ((WSSSecurityProperties)getSecurityProperties()).getMetricsListener().cacheAccessed(
+                    CacheType.TIMESTAMP_REPLAY, replayed);
+            if (replayed) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
             }
             
@@ -209,7 +209,18 @@ public class EncryptOutputProcessor extends AbstractEncryptOutputProcessor {
             createStartElementAndOutputAsEvent(outputProcessorChain, XMLSecurityConstants.TAG_dsig_KeyInfo, true, null);
             createStartElementAndOutputAsEvent(outputProcessorChain, WSSConstants.TAG_wsse_SecurityTokenReference, true, null);
 
-            if (WSSecurityTokenConstants.KeyIdentifier_EncryptedKeySha1Identifier.equals(
+            SecurityTokenProvider<OutboundSecurityToken> securityTokenProvider =
+                    outputProcessorChain.getSecurityContext().getSecurityTokenProvider(getEncryptionPartDef().getKeyId());
+            OutboundSecurityToken securityToken = null;
+            if (securityTokenProvider != null) {
+                securityToken = securityTokenProvider.getSecurityToken();
+            }
+
+            if (securityToken != null && securityToken.getSha1Identifier() != null
+                    && WSSecurityTokenConstants.EncryptedKeyToken.equals(securityToken.getTokenType())) {
+                //the session key of a previous message is reused
+                WSSUtils.createEncryptedKeySha1IdentifierStructure(this, outputProcessorChain, securityToken.getSha1Identifier());
+            } else if (WSSecurityTokenConstants.KeyIdentifier_EncryptedKeySha1Identifier.equals(
                     ((WSSSecurityProperties) getSecurityProperties()).getEncryptionKeyIdentifier())) {
                 WSSUtils.createEncryptedKeySha1IdentifierStructure(this, outputProcessorChain, getEncryptionPartDef().getSymmetricKey());
             } else {
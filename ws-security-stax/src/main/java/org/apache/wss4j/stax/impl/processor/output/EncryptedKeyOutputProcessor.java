@@ -19,6 +19,8 @@
 package org.apache.wss4j.stax.impl.processor.output;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.wss4j.common.cache.ReusableSessionKey;
+import org.apache.wss4j.common.crypto.CryptoPrimitives;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -37,9 +39,9 @@ import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.KeyGenerator;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.OAEPParameterSpec;
 import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 import java.security.InvalidAlgorithmParameterException;
@@ -75,28 +77,51 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE);
             }
 
-            //prepare the symmetric session key for all encryption parts
-            String keyAlgorithm = JCEAlgorithmMapper.getJCERequiredKeyFromURI(securityProperties.getEncryptionSymAlgorithm());
-            KeyGenerator keyGen;
-            try {
-                keyGen = KeyGenerator.getInstance(keyAlgorithm);
-            } catch (NoSuchAlgorithmException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
-            }
-            //the sun JCE provider expects the real key size for 3DES (112 or 168 bit)
-            //whereas bouncy castle expects the block size of 128 or 192 bits
-            if (keyAlgorithm.contains("AES")) {
-                int keyLength = JCEAlgorithmMapper.getKeyLengthFromURI(securityProperties.getEncryptionSymAlgorithm());
-                keyGen.init(keyLength);
+            //the session key of a previous message might be reused for encryption
+            final String symmetricAlgorithm = securityProperties.getEncryptionSymAlgorithm();
+            ReusableSessionKey reusableSessionKey = null;
+            ReusableSessionKey.SessionKey sessionKey = null;
+            X509Certificate[] x509Certificates = wrappingSecurityToken.getX509Certificates();
+            if (WSSConstants.ENCRYPT.equals(getAction())
+                    && x509Certificates != null && x509Certificates.length > 0) {
+                reusableSessionKey = ((WSSSecurityProperties) getSecurityProperties()).getReusableSessionKey();
+                if (reusableSessionKey != null) {
+                    sessionKey = reusableSessionKey.acquire(x509Certificates[0], symmetricAlgorithm);
+                }
             }
 
-            final Key symmetricKey = keyGen.generateKey();
+            //prepare the symmetric session key for all encryption parts
+            String keyAlgorithm = JCEAlgorithmMapper.getJCERequiredKeyFromURI(symmetricAlgorithm);
+            final Key symmetricKey;
+            if (sessionKey != null) {
+                symmetricKey = new SecretKeySpec(sessionKey.getKey(), keyAlgorithm);
+            } else {
+                KeyGenerator keyGen;
+                try {
+                    keyGen = KeyGenerator.getInstance(keyAlgorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+                }
+                //the sun JCE provider expects the real key size for 3DES (112 or 168 bit)
+                //whereas bouncy castle expects the block size of 128 or 192 bits
+                if (keyAlgorithm.contains("AES")) {
+                    int keyLength = JCEAlgorithmMapper.getKeyLengthFromURI(symmetricAlgorithm);
+                    keyGen.init(keyLength);
+                }
+
+                symmetricKey = keyGen.generateKey();
+            }
 
             final String ekId = IDGenerator.generateID(null);
 
             final GenericOutboundSecurityToken encryptedKeySecurityToken = new GenericOutboundSecurityToken(ekId, WSSecurityTokenConstants.EncryptedKeyToken, symmetricKey);
             encryptedKeySecurityToken.setKeyWrappingToken(wrappingSecurityToken);
             wrappingSecurityToken.addWrappedToken(encryptedKeySecurityToken);
+            if (sessionKey != null) {
+                //the EncryptedKey is not sent again, but referred to via its EncryptedKeySHA1 identifier
+                encryptedKeySecurityToken.setSha1Identifier(sessionKey.getSha1Identifier());
+                reusableSessionKey = null;
+            }
 
             final SecurityTokenProvider<OutboundSecurityToken> encryptedKeySecurityTokenProvider =
                     new SecurityTokenProvider<OutboundSecurityToken>() {
@@ -112,7 +137,8 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
                 }
             };
 
-            FinalEncryptedKeyOutputProcessor finalEncryptedKeyOutputProcessor = new FinalEncryptedKeyOutputProcessor(encryptedKeySecurityToken);
+            FinalEncryptedKeyOutputProcessor finalEncryptedKeyOutputProcessor =
+                    new FinalEncryptedKeyOutputProcessor(encryptedKeySecurityToken, reusableSessionKey);
             finalEncryptedKeyOutputProcessor.setXMLSecurityProperties(getSecurityProperties());
             finalEncryptedKeyOutputProcessor.setAction(getAction());
             XMLSecurityConstants.Action action = getAction();
@@ -150,11 +176,14 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
     class FinalEncryptedKeyOutputProcessor extends AbstractOutputProcessor {
 
         private final OutboundSecurityToken securityToken;
+        private final ReusableSessionKey reusableSessionKey;
 
-        FinalEncryptedKeyOutputProcessor(OutboundSecurityToken securityToken) throws XMLSecurityException {
+        FinalEncryptedKeyOutputProcessor(OutboundSecurityToken securityToken, ReusableSessionKey reusableSessionKey)
+                throws XMLSecurityException {
             super();
             this.addAfterProcessor(FinalEncryptedKeyOutputProcessor.class.getName());
             this.securityToken = securityToken;
+            this.reusableSessionKey = reusableSessionKey;
         }
 
         /*
@@ -186,6 +215,15 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
 
             if (WSSUtils.isSecurityHeaderElement(xmlSecEvent, ((WSSSecurityProperties) getSecurityProperties()).getActor())) {
 
+                if (securityToken.getSha1Identifier() != null) {
+                    //the session key of a previous message is reused, so only the ReferenceList is needed
+                    WSSUtils.updateSecurityHeaderOrder(outputProcessorChain, WSSConstants.TAG_xenc_ReferenceList, getAction(), false);
+                    OutputProcessorChain subOutputProcessorChain = outputProcessorChain.createSubChain(this);
+                    WSSUtils.createReferenceListStructureForEncryption(this, subOutputProcessorChain);
+                    outputProcessorChain.removeProcessor(this);
+                    return;
+                }
+
                 final QName headerElementName = WSSConstants.TAG_xenc_EncryptedKey;
                 WSSUtils.updateSecurityHeaderOrder(outputProcessorChain, headerElementName, getAction(), false);
 
@@ -243,8 +281,7 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
 
                 try {
                     //encrypt the symmetric session key with the public key from the receiver:
-                    String jceid = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportAlgorithm);
-                    Cipher cipher = Cipher.getInstance(jceid);
+                    Cipher cipher = CryptoPrimitives.getCipher(encryptionKeyTransportAlgorithm);
 
                     AlgorithmParameterSpec algorithmParameterSpec = null;
                     if (XMLSecurityConstants.NS_XENC11_RSAOAEP.equals(encryptionKeyTransportAlgorithm) ||
@@ -283,13 +320,13 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
                         );
                     }
                     byte[] encryptedEphemeralKey = cipher.wrap(secretKey);
+                    if (reusableSessionKey != null) {
+                        reusableSessionKey.update(x509Certificate, getSecurityProperties().getEncryptionSymAlgorithm(),
+                                secretKey.getEncoded(), encryptedEphemeralKey);
+                    }
 
                     createCharactersAndOutputAsEvent(subOutputProcessorChain, new Base64(76, new byte[]{'\n'}).encodeToString(encryptedEphemeralKey));
 
-                } catch (NoSuchPaddingException e) {
-                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
-                } catch (NoSuchAlgorithmException e) {
-                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
                 } catch (InvalidKeyException e) {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
                 } catch (IllegalBlockSizeException e) {
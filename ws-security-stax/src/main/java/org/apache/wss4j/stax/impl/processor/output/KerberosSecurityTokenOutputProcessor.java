@@ -65,6 +65,8 @@ public class KerberosSecurityTokenOutputProcessor extends AbstractOutputProcesso
                                 ((WSSSecurityProperties) getSecurityProperties()).getCallbackHandler(),
                                 bstId
                         );
+                kerberosClientSecurityToken.setClientCredentialCache(
+                        ((WSSSecurityProperties) getSecurityProperties()).getKerberosClientCredentialCache());
     
                 final SecurityTokenProvider<OutboundSecurityToken> kerberosSecurityTokenProvider =
                         new SecurityTokenProvider<OutboundSecurityToken>() {
@@ -42,6 +42,13 @@ import java.util.*;
  * means that the timestamp is below the signature in the sec-header. Because of the highly dynamic nature
  * of the processor chain (and encryption makes it far more worse) we have to order the headers afterwards.
  * So that is what this processor does, the final header reordering...
+ *
+ * With WSSSecurityProperties#setStreamingSecurityHeader(true) the non encrypted tokens of the action which
+ * is placed first in the security header (the last configured action) are written straight through when
+ * they arrive, except its signature. These tokens are at the top of the reordered security header anyway,
+ * so the layout is the same. All other elements are still held back and reordered at the end of the
+ * security header. This only reduces the number of buffered header elements, it does not bound the memory:
+ * the ending processors (e.g. the signature and encryption ending output processors) still buffer the document.
  */
 public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
 
@@ -51,6 +58,8 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
     private int securityHeaderIndex = 0;
     private Deque<XMLSecEvent> currentDeque;
 
+    private XMLSecurityConstants.Action streamedAction;
+
     public SecurityHeaderReorderProcessor() throws XMLSecurityException {
         super();
         setPhase(XMLSecurityConstants.Phase.POSTPROCESSING);
@@ -76,6 +85,10 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
                 }
             }));
         }
+
+        if (((WSSSecurityProperties) getSecurityProperties()).isStreamingSecurityHeader() && outActions.length > 0) {
+            streamedAction = outActions[outActions.length - 1];
+        }
     }
 
     @Override
@@ -159,14 +172,27 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
                                         " but got " + xmlSecStartElement.getName());
                     }
 
+                    securityHeaderIndex++;
+
+                    if (securityHeaderOrder.getAction().equals(streamedAction)
+                            && !securityHeaderOrder.isEncrypted()
+                            && !WSSConstants.TAG_dsig_Signature.equals(securityHeaderOrder.getSecurityHeaderElementName())) {
+                        //the element would be written at this position by the reordering below too
+                        currentDeque = null;
+                        break;
+                    }
+
                     Map<SecurityHeaderOrder, Deque<XMLSecEvent>> map = actionEventMap.get(securityHeaderOrder.getAction());
                     currentDeque = new ArrayDeque<XMLSecEvent>();
                     map.put(securityHeaderOrder, currentDeque);
-
-                    securityHeaderIndex++;
                     break;
             }
         }
+        if (currentDeque == null) {
+            //streamed header element
+            outputProcessorChain.processEvent(xmlSecEvent);
+            return;
+        }
         currentDeque.offer(xmlSecEvent);
     }
 }
@@ -18,8 +18,12 @@
  */
 package org.apache.wss4j.stax.impl.securityToken;
 
+import org.apache.wss4j.common.cache.SessionKeyCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
+import org.apache.wss4j.common.metrics.NoOpSecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSUtils;
@@ -40,14 +44,27 @@ public class EncryptedKeySha1SecurityTokenImpl
 
     private CallbackHandler callbackHandler;
     private String sha1Identifier;
+    private SessionKeyCache sessionKeyCache;
+    private SecurityMetricsListener metricsListener = NoOpSecurityMetricsListener.INSTANCE;
 
     public EncryptedKeySha1SecurityTokenImpl(
             WSInboundSecurityContext inboundSecurityContext, CallbackHandler callbackHandler,
             String sha1Identifier, String id) {
+        this(inboundSecurityContext, callbackHandler, sha1Identifier, id, null);
+    }
+
+    public EncryptedKeySha1SecurityTokenImpl(
+            WSInboundSecurityContext inboundSecurityContext, CallbackHandler callbackHandler,
+            String sha1Identifier, String id, SessionKeyCache sessionKeyCache) {
 
         super(inboundSecurityContext, id, WSSecurityTokenConstants.KeyIdentifier_EncryptedKeySha1Identifier, false);
         this.callbackHandler = callbackHandler;
         this.sha1Identifier = sha1Identifier;
+        this.sessionKeyCache = sessionKeyCache;
+    }
+
+    public void setMetricsListener(SecurityMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
     }
 
     @Override
@@ -64,16 +81,24 @@ public class EncryptedKeySha1SecurityTokenImpl
             return key;
         }
 
-        WSPasswordCallback secretKeyCallback =
-                new WSPasswordCallback(getId(), null,
-                        WSSConstants.NS_ENCRYPTED_KEY_SHA1, WSPasswordCallback.Usage.SECRET_KEY);
-        WSSUtils.doSecretKeyCallback(callbackHandler, secretKeyCallback, sha1Identifier);
-        if (secretKeyCallback.getKey() == null) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noKey", sha1Identifier);
+        byte[] secretKey = null;
+        if (sessionKeyCache != null && sha1Identifier != null) {
+            secretKey = sessionKeyCache.getSessionKey(sha1Identifier.trim());
+            metricsListener.cacheAccessed(CacheType.SESSION_KEY, secretKey != null);
+        }
+        if (secretKey == null) {
+            WSPasswordCallback secretKeyCallback =
+                    new WSPasswordCallback(getId(), null,
+                            WSSConstants.NS_ENCRYPTED_KEY_SHA1, WSPasswordCallback.Usage.SECRET_KEY);
+            WSSUtils.doSecretKeyCallback(callbackHandler, secretKeyCallback, sha1Identifier);
+            if (secretKeyCallback.getKey() == null) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noKey", sha1Identifier);
+            }
+            secretKey = secretKeyCallback.getKey();
         }
 
         String algoFamily = JCEAlgorithmMapper.getJCERequiredKeyFromURI(algorithmURI);
-        key = new SecretKeySpec(secretKeyCallback.getKey(), algoFamily);
+        key = new SecretKeySpec(secretKey, algoFamily);
         setSecretKey(algorithmURI, key);
         return key;
     }
@@ -20,6 +20,8 @@ package org.apache.wss4j.stax.impl.securityToken;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.kerberos.KerberosClientAction;
+import org.apache.wss4j.common.kerberos.KerberosClientCredential;
+import org.apache.wss4j.common.kerberos.KerberosClientCredentialCache;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.xml.security.exceptions.XMLSecurityException;
@@ -42,6 +44,7 @@ import java.util.Set;
 public class KerberosClientSecurityToken extends GenericOutboundSecurityToken {
 
     private CallbackHandler callbackHandler;
+    private KerberosClientCredentialCache clientCredentialCache;
     private Key secretKey;
     private byte[] ticket;
 
@@ -56,6 +59,14 @@ public class KerberosClientSecurityToken extends GenericOutboundSecurityToken {
         this.callbackHandler = callbackHandler;
     }
 
+    public KerberosClientCredentialCache getClientCredentialCache() {
+        return clientCredentialCache;
+    }
+
+    public void setClientCredentialCache(KerberosClientCredentialCache clientCredentialCache) {
+        this.clientCredentialCache = clientCredentialCache;
+    }
+
     private void getTGT() throws WSSecurityException {
         try {
             KerberosContextAndServiceNameCallback contextAndServiceNameCallback = new KerberosContextAndServiceNameCallback();
@@ -68,6 +79,17 @@ public class KerberosClientSecurityToken extends GenericOutboundSecurityToken {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "kerberosCallbackServiceNameNotSupplied");
             }
 
+            if (clientCredentialCache != null) {
+                // Create a new AP-REQ from the cached service ticket
+                KerberosClientCredential clientCredential =
+                        clientCredentialCache.getClientCredential(
+                                contextAndServiceNameCallback.getContextName(), callbackHandler,
+                                contextAndServiceNameCallback.getServiceName());
+                this.ticket = clientCredentialCache.createServiceTicket(clientCredential);
+                this.secretKey = clientCredential.getServiceTicket().getSessionKey();
+                return;
+            }
+
             LoginContext loginContext = new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
             loginContext.login();
 
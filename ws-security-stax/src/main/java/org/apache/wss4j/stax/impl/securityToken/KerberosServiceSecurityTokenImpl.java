@@ -21,6 +21,8 @@ package org.apache.wss4j.stax.impl.securityToken;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.common.kerberos.KerberosServiceAction;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredential;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialCache;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderImpl;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
@@ -49,6 +51,7 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
     private byte[] binaryContent;
     private String kerberosTokenValueType;
 
+    private KerberosServiceCredentialCache serviceCredentialCache;
     private KerberosTokenDecoder kerberosTokenDecoder;
     private Subject subject;
     private Principal principal;
@@ -72,6 +75,14 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
         return WSSecurityTokenConstants.KerberosToken;
     }
 
+    public KerberosServiceCredentialCache getServiceCredentialCache() {
+        return serviceCredentialCache;
+    }
+
+    public void setServiceCredentialCache(KerberosServiceCredentialCache serviceCredentialCache) {
+        this.serviceCredentialCache = serviceCredentialCache;
+    }
+
     protected KerberosTokenDecoder getTGT() throws WSSecurityException {
         try {
             KerberosContextAndServiceNameCallback contextAndServiceNameCallback = new KerberosContextAndServiceNameCallback();
@@ -84,28 +95,43 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "kerberosCallbackServiceNameNotSupplied");
             }
 
-            LoginContext loginContext = new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
-            loginContext.login();
-
-            // Get the service name to use - fall back on the principal
-            this.subject = loginContext.getSubject();
-
-            String service = contextAndServiceNameCallback.getServiceName();
-            if (service == null) {
-                Set<Principal> principals = subject.getPrincipals();
-                if (principals.isEmpty()) {
-                    throw new WSSecurityException(
-                            WSSecurityException.ErrorCode.FAILURE,
-                            "kerberosLoginError",
-                            "No Client principals found after login"
-                    );
+            Subject serviceSubject;
+            KerberosServiceAction action;
+            if (serviceCredentialCache != null) {
+                KerberosServiceCredential serviceCredential =
+                        serviceCredentialCache.getServiceCredential(
+                                contextAndServiceNameCallback.getContextName(), callbackHandler,
+                                contextAndServiceNameCallback.getServiceName());
+                serviceSubject = serviceCredential.getSubject();
+                //the cached Subject holds the keys of the service, so it is not handed out
+                this.subject = serviceCredential.getPublicSubject();
+                action = new KerberosServiceAction(
+                        binaryContent, serviceCredential.getServiceName(), serviceCredential.getCredential());
+            } else {
+                LoginContext loginContext = new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
+                loginContext.login();
+
+                // Get the service name to use - fall back on the principal
+                this.subject = loginContext.getSubject();
+                serviceSubject = subject;
+
+                String service = contextAndServiceNameCallback.getServiceName();
+                if (service == null) {
+                    Set<Principal> principals = subject.getPrincipals();
+                    if (principals.isEmpty()) {
+                        throw new WSSecurityException(
+                                WSSecurityException.ErrorCode.FAILURE,
+                                "kerberosLoginError",
+                                "No Client principals found after login"
+                        );
+                    }
+                    service = principals.iterator().next().getName();
                 }
-                service = principals.iterator().next().getName();
+                action = new KerberosServiceAction(binaryContent, service);
             }
 
             // Validate the ticket
-            KerberosServiceAction action = new KerberosServiceAction(binaryContent, service);
-            this.principal = Subject.doAs(subject, action);
+            this.principal = Subject.doAs(serviceSubject, action);
             if (this.principal == null) {
                 throw new WSSecurityException(
                         WSSecurityException.ErrorCode.FAILURE, "kerberosTicketValidationError"
@@ -114,7 +140,7 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
 
             KerberosTokenDecoder kerberosTokenDecoder = new KerberosTokenDecoderImpl();
             kerberosTokenDecoder.setToken(binaryContent);
-            kerberosTokenDecoder.setSubject(subject);
+            kerberosTokenDecoder.setSubject(serviceSubject);
             return kerberosTokenDecoder;
 
         } catch (LoginException e) {
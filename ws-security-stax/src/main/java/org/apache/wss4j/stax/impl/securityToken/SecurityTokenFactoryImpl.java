@@ -23,6 +23,7 @@ import org.apache.wss4j.binding.wss10.KeyIdentifierType;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoPrimitives;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -44,8 +45,6 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -206,7 +205,6 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                             securityTokenReferenceType.getId(), securityProperties);
                 } else if (WSSConstants.NS_THUMBPRINT.equals(valueType)) {
                     try {
-                        MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
                         //first look if the token is included in the message (necessary for TokenInclusion policy)...
                         List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
                                 inboundSecurityContext.getRegisteredSecurityTokenProviders();
@@ -215,7 +213,7 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                             InboundSecurityToken inboundSecurityToken = tokenProvider.getSecurityToken();
                             if (inboundSecurityToken instanceof X509SecurityToken) {
                                 X509SecurityToken x509SecurityToken = (X509SecurityToken)inboundSecurityToken;
-                                byte[] tokenDigest = messageDigest.digest(x509SecurityToken.getX509Certificates()[0].getEncoded());
+                                byte[] tokenDigest = CryptoPrimitives.digestSHA1(x509SecurityToken.getX509Certificates()[0].getEncoded());
 
                                 if (Arrays.equals(tokenDigest, binaryContent)) {
                                     return createSecurityTokenProxy(inboundSecurityToken,
@@ -223,8 +221,6 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                                 }
                             }
                         }
-                    } catch (NoSuchAlgorithmException e) {
-                        throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
                     } catch (CertificateEncodingException e) {
                         throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN);
                     }
@@ -234,9 +230,11 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                             (WSInboundSecurityContext) inboundSecurityContext, crypto, callbackHandler, binaryContent,
                             securityTokenReferenceType.getId(), securityProperties);
                 } else if (WSSConstants.NS_ENCRYPTED_KEY_SHA1.equals(valueType)) {
-                    return new EncryptedKeySha1SecurityTokenImpl(
+                    EncryptedKeySha1SecurityTokenImpl encryptedKeySha1SecurityToken = new EncryptedKeySha1SecurityTokenImpl(
                             (WSInboundSecurityContext) inboundSecurityContext, callbackHandler, keyIdentifierType.getValue(),
-                            securityTokenReferenceType.getId());
+                            securityTokenReferenceType.getId(), securityProperties.getSessionKeyCache());
+                    encryptedKeySha1SecurityToken.setMetricsListener(securityProperties.getMetricsListener());
+                    return encryptedKeySha1SecurityToken;
                 } else if (WSSConstants.NS_SAML10_TYPE.equals(valueType) || WSSConstants.NS_SAML20_TYPE.equals(valueType)) {
                     if (WSSConstants.NS_SAML20_TYPE.equals(valueType) && !WSSConstants.NS_SAML20_TOKEN_PROFILE_TYPE.equals(tokenType)) {
                         ((WSInboundSecurityContext) inboundSecurityContext).handleBSPRule(BSPRule.R6617);
@@ -259,25 +257,20 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                                 WSSecurityTokenConstants.KeyIdentifier_SecurityTokenDirectReference);
                     }
 
-                    try {
-                        //ok we have to find the token via digesting...
-                        MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
-                        List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
-                                inboundSecurityContext.getRegisteredSecurityTokenProviders();
-                        for (int i = 0; i < securityTokenProviders.size(); i++) {
-                            SecurityTokenProvider<? extends InboundSecurityToken> tokenProvider = securityTokenProviders.get(i);
-                            InboundSecurityToken inboundSecurityToken = tokenProvider.getSecurityToken();
-                            if (inboundSecurityToken instanceof KerberosServiceSecurityToken) {
-                                KerberosServiceSecurityToken kerberosSecurityToken = (KerberosServiceSecurityToken)inboundSecurityToken;
-                                byte[] tokenDigest = messageDigest.digest(kerberosSecurityToken.getBinaryContent());
-                                if (Arrays.equals(tokenDigest, binaryContent)) {
-                                    return createSecurityTokenProxy(inboundSecurityToken,
-                                            WSSecurityTokenConstants.KeyIdentifier_ThumbprintIdentifier);
-                                }
+                    //ok we have to find the token via digesting...
+                    List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
+                            inboundSecurityContext.getRegisteredSecurityTokenProviders();
+                    for (int i = 0; i < securityTokenProviders.size(); i++) {
+                        SecurityTokenProvider<? extends InboundSecurityToken> tokenProvider = securityTokenProviders.get(i);
+                        InboundSecurityToken inboundSecurityToken = tokenProvider.getSecurityToken();
+                        if (inboundSecurityToken instanceof KerberosServiceSecurityToken) {
+                            KerberosServiceSecurityToken kerberosSecurityToken = (KerberosServiceSecurityToken)inboundSecurityToken;
+                            byte[] tokenDigest = CryptoPrimitives.digestSHA1(kerberosSecurityToken.getBinaryContent());
+                            if (Arrays.equals(tokenDigest, binaryContent)) {
+                                return createSecurityTokenProxy(inboundSecurityToken,
+                                        WSSecurityTokenConstants.KeyIdentifier_ThumbprintIdentifier);
                             }
                         }
-                    } catch (NoSuchAlgorithmException e) {
-                        throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
                     }
 
                     throw new WSSecurityException(
@@ -19,6 +19,7 @@
 package org.apache.wss4j.stax.impl.securityToken;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.UsernameTokenCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.principal.UsernameTokenPrincipal;
 import org.apache.wss4j.common.util.UsernameTokenUtil;
@@ -50,6 +51,7 @@ public class UsernameSecurityTokenImpl extends AbstractInboundSecurityToken impl
     private final WSInboundSecurityContext wsInboundSecurityContext;
     private Subject subject;
     private Principal principal;
+    private UsernameTokenCache usernameTokenCache;
 
     public UsernameSecurityTokenImpl(WSSConstants.UsernameTokenPasswordType usernameTokenPasswordType,
                                      String username, String password, String createdTime, byte[] nonce,
@@ -123,7 +125,18 @@ public class UsernameSecurityTokenImpl extends AbstractInboundSecurityToken impl
             }
         }
 
-        return UsernameTokenUtil.generateDerivedKey(password, salt, iteration.intValue());
+        if (usernameTokenCache != null) {
+            byte[] cachedKey = usernameTokenCache.getDerivedKey(username, salt, iteration.intValue());
+            if (cachedKey != null) {
+                return cachedKey;
+            }
+        }
+
+        byte[] derivedKey = UsernameTokenUtil.generateDerivedKey(password, salt, iteration.intValue());
+        if (usernameTokenCache != null) {
+            usernameTokenCache.addDerivedKey(username, salt, iteration.intValue(), derivedKey);
+        }
+        return derivedKey;
     }
 
     @Override
@@ -194,6 +207,17 @@ public class UsernameSecurityTokenImpl extends AbstractInboundSecurityToken impl
         return iteration;
     }
 
+    public UsernameTokenCache getUsernameTokenCache() {
+        return usernameTokenCache;
+    }
+
+    /**
+     * Set a (optional) cache to look up and store keys derived from this token.
+     */
+    public void setUsernameTokenCache(UsernameTokenCache usernameTokenCache) {
+        this.usernameTokenCache = usernameTokenCache;
+    }
+
     public void setSubject(Subject subject) {
         this.subject = subject;
     }
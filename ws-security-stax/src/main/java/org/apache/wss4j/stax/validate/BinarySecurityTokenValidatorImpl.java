@@ -85,6 +85,8 @@ public class BinarySecurityTokenValidatorImpl implements BinarySecurityTokenVali
                         binarySecurityTokenType.getId(),
                         WSSecurityTokenConstants.KeyIdentifier_SecurityTokenDirectReference
                 );
+                kerberosServiceSecurityToken.setServiceCredentialCache(
+                        tokenContext.getWssSecurityProperties().getKerberosServiceCredentialCache());
                 kerberosServiceSecurityToken.setElementPath(tokenContext.getElementPath());
                 kerberosServiceSecurityToken.setXMLSecEvent(tokenContext.getFirstXMLSecEvent());
                 return kerberosServiceSecurityToken;
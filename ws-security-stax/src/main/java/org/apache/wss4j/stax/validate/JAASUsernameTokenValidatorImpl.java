@@ -29,7 +29,9 @@ import org.apache.wss4j.binding.wss10.PasswordString;
 import org.apache.wss4j.binding.wss10.UsernameTokenType;
 import org.apache.wss4j.binding.wsu10.AttributedDateTime;
 import org.apache.wss4j.common.NamePasswordCallbackHandler;
+import org.apache.wss4j.common.cache.AuthenticationResultCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.CacheType;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.securityToken.UsernameSecurityToken;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
@@ -86,17 +88,31 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
 
-        Subject subject;
-        try {
-            CallbackHandler handler = getCallbackHandler(username, password);
-            LoginContext ctx = new LoginContext(getContextName(), handler);
-            ctx.login();
-            subject = ctx.getSubject();
-        } catch (LoginException ex) {
-            log.info("Authentication failed", ex);
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
-            );
+        AuthenticationResultCache authenticationResultCache =
+                tokenContext.getWssSecurityProperties().getAuthenticationResultCache();
+        CallbackHandler handler = getCallbackHandler(username, password);
+        String realm = null;
+        Subject subject = null;
+        if (authenticationResultCache != null) {
+            realm = getContextName() + "|" + handler.getClass().getName();
+            subject = authenticationResultCache.getSubject(realm, username, password);
+            tokenContext.getWssSecurityProperties().getMetricsListener().cacheAccessed(
+                    CacheType.AUTHENTICATION_RESULT, subject != null);
+        }
+        if (subject == null) {
+            try {
+                LoginContext ctx = new LoginContext(getContextName(), handler);
+                ctx.login();
+                subject = ctx.getSubject();
+            } catch (LoginException ex) {
+                log.info("Authentication failed", ex);
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
+                );
+            }
+            if (authenticationResultCache != null) {
+                authenticationResultCache.addSubject(realm, username, password, subject);
+            }
         }
 
         final EncodedString encodedNonce =
@@ -24,6 +24,7 @@ import org.apache.wss4j.binding.wss10.EncodedString;
 import org.apache.wss4j.binding.wss10.PasswordString;
 import org.apache.wss4j.binding.wss10.UsernameTokenType;
 import org.apache.wss4j.binding.wsu10.AttributedDateTime;
+import org.apache.wss4j.common.cache.UsernameTokenCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -134,14 +135,26 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
         if (passwordType != null) {
             password = passwordType.getValue();
         } else if (salt != null) {
-            WSPasswordCallback pwCb = new WSPasswordCallback(username.getValue(),
-                   WSPasswordCallback.Usage.USERNAME_TOKEN);
-            try {
-                WSSUtils.doPasswordCallback(tokenContext.getWssSecurityProperties().getCallbackHandler(), pwCb);
-            } catch (WSSecurityException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, e);
+            UsernameTokenCache usernameTokenCache = tokenContext.getWssSecurityProperties().getUsernameTokenCache();
+            String cachedPassword = null;
+            if (usernameTokenCache != null) {
+                cachedPassword = usernameTokenCache.getPassword(username.getValue());
+            }
+            if (cachedPassword != null) {
+                password = cachedPassword;
+            } else {
+                WSPasswordCallback pwCb = new WSPasswordCallback(username.getValue(),
+                       WSPasswordCallback.Usage.USERNAME_TOKEN);
+                try {
+                    WSSUtils.doPasswordCallback(tokenContext.getWssSecurityProperties().getCallbackHandler(), pwCb);
+                } catch (WSSecurityException e) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, e);
+                }
+                password = pwCb.getPassword();
+                if (usernameTokenCache != null) {
+                    usernameTokenCache.addPassword(username.getValue(), password);
+                }
             }
-            password = pwCb.getPassword();
         } else {
             password = null;
         }
@@ -153,6 +166,7 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
                 WSSecurityTokenConstants.KeyIdentifier_SecurityTokenDirectReference);
         usernameSecurityToken.setElementPath(tokenContext.getElementPath());
         usernameSecurityToken.setXMLSecEvent(tokenContext.getFirstXMLSecEvent());
+        usernameSecurityToken.setUsernameTokenCache(tokenContext.getWssSecurityProperties().getUsernameTokenCache());
 
         @SuppressWarnings("unchecked")
         T token = (T)usernameSecurityToken;
@@ -169,6 +183,20 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
         String created,
         TokenContext tokenContext
     ) throws WSSecurityException {
+        UsernameTokenCache usernameTokenCache = tokenContext.getWssSecurityProperties().getUsernameTokenCache();
+        if (usernameTokenCache != null) {
+            String cachedPassword = usernameTokenCache.getPassword(username);
+            if (cachedPassword != null) {
+                String passDigest = WSSUtils.doPasswordDigest(nonceVal, created, cachedPassword);
+                if (passwordType.getValue().equals(passDigest)) {
+                    passwordType.setValue(cachedPassword);
+                    return;
+                }
+                // The password may have changed since it was cached
+                usernameTokenCache.remove(username);
+            }
+        }
+
         WSPasswordCallback pwCb = new WSPasswordCallback(username,
                 null,
                 passwordType.getType(),
@@ -188,6 +216,9 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
         passwordType.setValue(pwCb.getPassword());
+        if (usernameTokenCache != null) {
+            usernameTokenCache.addPassword(username, pwCb.getPassword());
+        }
     }
     
     /**
@@ -198,6 +229,18 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
         PasswordString passwordType,
         TokenContext tokenContext
     ) throws WSSecurityException {
+        UsernameTokenCache usernameTokenCache = tokenContext.getWssSecurityProperties().getUsernameTokenCache();
+        if (usernameTokenCache != null) {
+            String cachedPassword = usernameTokenCache.getPassword(username);
+            if (cachedPassword != null) {
+                if (passwordType.getValue().equals(cachedPassword)) {
+                    return;
+                }
+                // The password may have changed since it was cached
+                usernameTokenCache.remove(username);
+            }
+        }
+
         WSPasswordCallback pwCb = new WSPasswordCallback(username,
                 null,
                 passwordType.getType(),
@@ -216,6 +259,9 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
         passwordType.setValue(pwCb.getPassword());
+        if (usernameTokenCache != null) {
+            usernameTokenCache.addPassword(username, pwCb.getPassword());
+        }
     }
     
     /**
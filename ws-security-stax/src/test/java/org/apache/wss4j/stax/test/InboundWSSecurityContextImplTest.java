@@ -49,6 +49,7 @@ import javax.xml.namespace.QName;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -87,6 +88,55 @@ public class InboundWSSecurityContextImplTest {
         }
     }
 
+    @Test
+    public void testRequiredSecurityEvents() throws Exception {
+
+        final List<SecurityEvent> securityEventList = new LinkedList<SecurityEvent>();
+
+        SecurityEventListener securityEventListener = new SecurityEventListener() {
+            @Override
+            public void registerSecurityEvent(SecurityEvent securityEvent) throws WSSecurityException {
+                securityEventList.add(securityEvent);
+            }
+        };
+
+        InboundWSSecurityContextImpl inboundWSSecurityContext = new InboundWSSecurityContextImpl();
+        inboundWSSecurityContext.addSecurityEventListener(securityEventListener);
+        inboundWSSecurityContext.setRequiredSecurityEvents(
+                Collections.<SecurityEventConstants.Event>singletonList(WSSecurityEventConstants.Timestamp));
+
+        Assert.assertTrue(inboundWSSecurityContext.isSecurityEventRequired(WSSecurityEventConstants.Timestamp));
+        Assert.assertFalse(inboundWSSecurityContext.isSecurityEventRequired(WSSecurityEventConstants.SignedElement));
+        Assert.assertFalse(inboundWSSecurityContext.isSecurityEventRequired(WSSecurityEventConstants.X509Token));
+
+        inboundWSSecurityContext.registerSecurityEvent(new TimestampSecurityEvent());
+        inboundWSSecurityContext.registerSecurityEvent(new SignatureValueSecurityEvent());
+
+        AlgorithmSuiteSecurityEvent algorithmSuiteSecurityEvent = new AlgorithmSuiteSecurityEvent();
+        algorithmSuiteSecurityEvent.setAlgorithmURI(XMLSecurityConstants.NS_C14N_EXCL_OMIT_COMMENTS);
+        algorithmSuiteSecurityEvent.setAlgorithmUsage(XMLSecurityConstants.C14n);
+        inboundWSSecurityContext.registerSecurityEvent(algorithmSuiteSecurityEvent);
+
+        OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+        operationSecurityEvent.setOperation(new QName("definitions"));
+        inboundWSSecurityContext.registerSecurityEvent(operationSecurityEvent);
+
+        //AlgorithmSuite securityEvents are always forwarded
+        Assert.assertEquals(securityEventList.size(), 2);
+        Assert.assertEquals(securityEventList.get(0).getSecurityEventType(), WSSecurityEventConstants.AlgorithmSuite);
+        Assert.assertEquals(securityEventList.get(1).getSecurityEventType(), WSSecurityEventConstants.Timestamp);
+
+        //requiring a TokenSecurityEvent requires the SecurityEvents for the token usage analysis as well
+        inboundWSSecurityContext.requireSecurityEvents(WSSecurityEventConstants.X509Token);
+        Assert.assertTrue(inboundWSSecurityContext.isSecurityEventRequired(WSSecurityEventConstants.X509Token));
+        Assert.assertTrue(inboundWSSecurityContext.isSecurityEventRequired(WSSecurityEventConstants.SignedElement));
+        Assert.assertFalse(inboundWSSecurityContext.isSecurityEventRequired(WSSecurityEventConstants.SignatureValue));
+
+        //all securityEvents are required by default
+        inboundWSSecurityContext.setRequiredSecurityEvents(null);
+        Assert.assertTrue(inboundWSSecurityContext.isSecurityEventRequired(WSSecurityEventConstants.SignatureValue));
+    }
+
     public List<SecurityEvent> generateTransportBindingSecurityEvents() throws Exception {
 
         final List<SecurityEvent> securityEventList = new LinkedList<SecurityEvent>();
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Properties;
+
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.wss4j.common.cache.MemorySessionKeyCache;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.dom.handler.WSHandlerConstants;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.xml.security.utils.Base64;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class SessionKeyCacheTest extends AbstractTestBase {
+
+    @Test
+    public void testSessionKeyIsCached() throws Exception {
+        Document securedDocument = encrypt();
+        String sha1Identifier = getEncryptedKeySha1(securedDocument);
+
+        SessionKeyCache sessionKeyCache = new MemorySessionKeyCache();
+        doInboundSecurity(toBytes(securedDocument), sessionKeyCache);
+
+        Assert.assertNotNull(sessionKeyCache.getSessionKey(sha1Identifier));
+    }
+
+    @Test
+    public void testFailedUnwrappingIsNotCached() throws Exception {
+        Document securedDocument = encrypt();
+
+        // Modify the wrapped key, so that unwrapping it fails and a random key is used instead
+        NodeList nodeList = securedDocument.getElementsByTagNameNS(
+                WSSConstants.TAG_xenc_CipherValue.getNamespaceURI(), WSSConstants.TAG_xenc_CipherValue.getLocalPart());
+        Element cipherValue = (Element) nodeList.item(0);
+        Assert.assertEquals(cipherValue.getParentNode().getParentNode().getLocalName(),
+                WSSConstants.TAG_xenc_EncryptedKey.getLocalPart());
+        byte[] wrappedKey = Base64.decode(cipherValue.getTextContent());
+        wrappedKey[wrappedKey.length - 1] ^= 0x01;
+        cipherValue.setTextContent(Base64.encode(wrappedKey));
+        String sha1Identifier = getEncryptedKeySha1(securedDocument);
+
+        SessionKeyCache sessionKeyCache = new MemorySessionKeyCache();
+        try {
+            doInboundSecurity(toBytes(securedDocument), sessionKeyCache);
+        } catch (Exception e) {
+            // decryption with the random key is expected to fail
+        }
+
+        Assert.assertNull(sessionKeyCache.getSessionKey(sha1Identifier));
+    }
+
+    private Document encrypt() throws Exception {
+        InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+        return doOutboundSecurityWithWSS4J(sourceDocument, WSHandlerConstants.ENCRYPT, new Properties());
+    }
+
+    private void doInboundSecurity(byte[] message, SessionKeyCache sessionKeyCache) throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+        securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+        securityProperties.setSessionKeyCache(sessionKeyCache);
+        doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(message)));
+    }
+
+    private byte[] toBytes(Document document) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+        transformer.transform(new DOMSource(document), new StreamResult(baos));
+        return baos.toByteArray();
+    }
+
+    private String getEncryptedKeySha1(Document document) throws Exception {
+        NodeList nodeList = document.getElementsByTagNameNS(
+                WSSConstants.TAG_xenc_CipherValue.getNamespaceURI(), WSSConstants.TAG_xenc_CipherValue.getLocalPart());
+        byte[] wrappedKey = Base64.decode(nodeList.item(0).getTextContent());
+        return Base64.encode(MessageDigest.getInstance("SHA-1").digest(wrappedKey));
+    }
+}
@@ -22,6 +22,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.PublicKey;
 import java.security.Security;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -45,6 +46,8 @@ import javax.xml.xpath.XPathExpression;
 
 import org.apache.wss4j.common.ConfigurationConstants;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.MemorySignatureVerificationCache;
+import org.apache.wss4j.common.cache.SignatureVerificationCache;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -1667,4 +1670,62 @@ public class SignatureTest extends AbstractTestBase {
             }
         }
     }
+
+    @Test
+    public void testSignatureVerificationCacheInbound() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.SIGNATURE;
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, new Properties());
+
+            javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+
+        final int[] hits = new int[1];
+        SignatureVerificationCache cache = new MemorySignatureVerificationCache() {
+            @Override
+            public boolean isVerified(byte[] canonicalizedSignedInfo, byte[] signatureValue, PublicKey publicKey) {
+                boolean verified = super.isVerified(canonicalizedSignedInfo, signatureValue, publicKey);
+                if (verified) {
+                    hits[0]++;
+                }
+                return verified;
+            }
+        };
+
+        //the second verification of the same message is served by the cache:
+        for (int i = 0; i < 2; i++) {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.loadSignatureVerificationKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+            securityProperties.setSignatureVerificationCache(cache);
+            InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+            XMLStreamReader xmlStreamReader = wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+
+            Document document = StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), xmlStreamReader);
+            NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_dsig_Signature.getNamespaceURI(), WSSConstants.TAG_dsig_Signature.getLocalPart());
+            Assert.assertEquals(nodeList.getLength(), 1);
+            Assert.assertEquals(hits[0], i);
+        }
+
+        //the references are still verified:
+        {
+            String modified = new String(baos.toByteArray(), "UTF-8").replace("comprehensive types test", "comprehensive types tset");
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.loadSignatureVerificationKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+            securityProperties.setSignatureVerificationCache(cache);
+            InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+            XMLStreamReader xmlStreamReader = wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(modified.getBytes("UTF-8"))));
+
+            try {
+                StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), xmlStreamReader);
+                Assert.fail("Exception expected");
+            } catch (XMLStreamException e) {
+                Assert.assertTrue(e.getCause() instanceof XMLSecurityException);
+            }
+            Assert.assertEquals(hits[0], 2);
+        }
+    }
 }